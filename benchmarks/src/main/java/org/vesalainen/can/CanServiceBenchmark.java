@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ * Measures frame handling through AbstractCanService with N2K messages. 
+ * Frames are random data for a mix of single frame PGN's.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanServiceBenchmark
+{
+    private static final int[] PGNS = new int[]{127250, 127251, 127257, 128259, 128267, 129025, 129026, 130306, 127488, 127245};
+    private static final int FRAMES = 1024;
+    @Param({"false", "true"})
+    public boolean changeDetection;
+    private CachedScheduledThreadPool executor;
+    private Service service;
+    private Sum sum;
+    private final FrameBatch batch = new FrameBatch(FRAMES);
+    private final ByteBuffer data = ByteBuffer.allocate(FRAMES*8);
+
+    @Setup
+    public void setup()
+    {
+        executor = new CachedScheduledThreadPool();
+        sum = new Sum();
+        service = new Service(executor, sum);
+        service.addN2K();
+        Random random = new Random(123456L);
+        data.clear();
+        batch.clear(data);
+        for (int ii=0;ii<FRAMES;ii++)
+        {
+            int pgn = PGNS[random.nextInt(PGNS.length)];
+            int canId = PGN.canId(2, pgn, 1+random.nextInt(4));
+            int off = data.position();
+            for (int jj=0;jj<8;jj++)
+            {
+                data.put((byte) random.nextInt(4));
+            }
+            batch.add(ii*10, canId, off, 8);
+        }
+        batch.forEach(service);
+        service.procMap.forEach((msg, id)->msg.setChangeDetection(changeDetection));
+    }
+    @TearDown
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+    @Benchmark
+    public void frame(Blackhole bh)
+    {
+        batch.forEach(service);
+        bh.consume(sum.sum);
+    }
+    @Benchmark
+    public void frames(Blackhole bh)
+    {
+        service.frames(batch);
+        bh.consume(sum.sum);
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(CanServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    private static class Service extends AbstractCanService
+    {
+
+        public Service(CachedScheduledThreadPool executor, SignalCompiler compiler)
+        {
+            super(executor, compiler);
+        }
+
+        @Override
+        public void run()
+        {
+        }
+
+        @Override
+        public void sendRaw(int canId, int length, byte[] data) throws IOException
+        {
+            throw new UnsupportedOperationException("Not supported.");
+        }
+        
+    }
+    private static class Sum implements SignalCompiler<Object>
+    {
+        private double sum;
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, ToIntFunction<CanSource> toIntFunction)
+        {
+            return (ctx, src)->sum += toIntFunction.applyAsInt(src);
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, ToLongFunction<CanSource> toLongFunction)
+        {
+            return (ctx, src)->sum += toLongFunction.applyAsLong(src);
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, ToDoubleFunction<CanSource> toDoubleFunction)
+        {
+            return (ctx, src)->sum += toDoubleFunction.applyAsDouble(src);
+        }
+        
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.vesalainen.can.dbc.DBCFile;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+import static org.vesalainen.can.dbc.ValueType.*;
+
+/**
+ * Compares lambda signal chains built by ActionBuilder with generated
+ * SignalDecoders. Many message classes are used so that lambda call sites
+ * become megamorphic.
+ * <p>Run with main method or with benchmarks.jar.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalDecoderBenchmark
+{
+    @Param({"1", "32"})
+    public int messages;
+    private ArrayAction<Object>[] lambdas;
+    private SignalDecoder[] decoders;
+    private CanSource[] sources;
+    private Sink sink;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(123456L);
+        DBCFile dbcFile = new DBCFile();
+        sink = new Sink();
+        Comp comp = new Comp(sink);
+        SignalDecoderGenerator generator = new SignalDecoderGenerator();
+        lambdas = new ArrayAction[messages];
+        decoders = new SignalDecoder[messages];
+        sources = new CanSource[messages];
+        for (int ii=0;ii<messages;ii++)
+        {
+            MessageClass mc = createMessageClass(dbcFile, ii, random);
+            lambdas[ii] = new ActionBuilder<Object>(mc, comp).build();
+            decoders[ii] = generator.getDecoder(mc);
+            byte[] buf = new byte[8];
+            random.nextBytes(buf);
+            sources[ii] = new SimpleCanSource(buf);
+        }
+    }
+    @Benchmark
+    public void lambda(Blackhole bh)
+    {
+        for (int ii=0;ii<messages;ii++)
+        {
+            lambdas[ii].run(null, sources[ii]);
+        }
+        bh.consume(sink.sum);
+    }
+    @Benchmark
+    public void generated(Blackhole bh)
+    {
+        for (int ii=0;ii<messages;ii++)
+        {
+            decoders[ii].decode(sources[ii].data(), sink);
+        }
+        bh.consume(sink.sum);
+    }
+    private MessageClass createMessageClass(DBCFile dbcFile, int id, Random random)
+    {
+        List<SignalClass> list = new ArrayList<>();
+        int bit = 0;
+        int index = 0;
+        while (bit < 64)
+        {
+            int size = Math.min(64-bit, 1+random.nextInt(16));
+            boolean signed = random.nextBoolean();
+            double factor = random.nextBoolean() ? 1.0 : 0.01;
+            list.add(new SignalClass(dbcFile, "s"+index, null, bit, size, LITTLE_ENDIAN, signed ? SIGNED : UNSIGNED, factor, 0.0, 0.0, 0.0, "", null));
+            bit += size;
+            index++;
+        }
+        return new MessageClass(dbcFile, id, "m"+id, 8, "", list);
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(SignalDecoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    private static class Comp implements SignalCompiler<Object>
+    {
+        private final SignalSink sink;
+
+        public Comp(SignalSink sink)
+        {
+            this.sink = sink;
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, java.util.function.ToIntFunction<CanSource> toIntFunction)
+        {
+            int index = SignalDecoderGenerator.indexOf(mc, sc);
+            return (ctx, src)->sink.setInt(index, toIntFunction.applyAsInt(src));
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, java.util.function.ToLongFunction<CanSource> toLongFunction)
+        {
+            int index = SignalDecoderGenerator.indexOf(mc, sc);
+            return (ctx, src)->sink.setLong(index, toLongFunction.applyAsLong(src));
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, java.util.function.ToDoubleFunction<CanSource> toDoubleFunction)
+        {
+            int index = SignalDecoderGenerator.indexOf(mc, sc);
+            return (ctx, src)->sink.setDouble(index, toDoubleFunction.applyAsDouble(src));
+        }
+
+    }
+    private static class Sink implements SignalSink
+    {
+        private double sum;
+
+        @Override
+        public void setInt(int signal, int value)
+        {
+            sum += value;
+        }
+
+        @Override
+        public void setLong(int signal, long value)
+        {
+            sum += value;
+        }
+
+        @Override
+        public void setDouble(int signal, double value)
+        {
+            sum += value;
+        }
+
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares AnnotatedPropertyStore MethodHandle access with generated
+ * PropertyStoreAccessor.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotatedPropertyStoreBenchmark
+{
+    private static final String[] PROPERTIES = {"latitude", "longitude", "speed", "heading"};
+    private MethodHandleStore mhStore;
+    private MethodHandleStore mhCopy;
+    private GeneratedStore genStore;
+    private GeneratedStore genCopy;
+    private double value;
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        mhStore = new MethodHandleStore();
+        mhCopy = new MethodHandleStore();
+        genStore = new GeneratedStore();
+        genCopy = new GeneratedStore();
+    }
+    @Benchmark
+    public void methodHandleSet()
+    {
+        mhStore.set(next(), value++);
+    }
+    @Benchmark
+    public double methodHandleGet()
+    {
+        return mhStore.getDouble(next());
+    }
+    @Benchmark
+    public void methodHandleCopy()
+    {
+        mhCopy.copyFrom(mhStore);
+    }
+    @Benchmark
+    public void generatedSet()
+    {
+        genStore.set(next(), value++);
+    }
+    @Benchmark
+    public double generatedGet()
+    {
+        return genStore.getDouble(next());
+    }
+    @Benchmark
+    public void generatedCopy()
+    {
+        genCopy.copyFrom(genStore);
+    }
+    private String next()
+    {
+        return PROPERTIES[index++ & 3];
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(AnnotatedPropertyStoreBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
+class MethodHandleStore extends AnnotatedPropertyStore
+{
+    @Property(ordinal = 1)
+    double latitude;
+    @Property(ordinal = 2)
+    double longitude;
+    @Property(ordinal = 3)
+    double speed;
+    @Property(ordinal = 4)
+    double heading;
+
+    public MethodHandleStore()
+    {
+        super(MethodHandles.lookup());
+    }
+}
+@PropertyStoreAccessorClass
+class GeneratedStore extends AnnotatedPropertyStore
+{
+    @Property(ordinal = 1)
+    double latitude;
+    @Property(ordinal = 2)
+    double longitude;
+    @Property(ordinal = 3)
+    double speed;
+    @Property(ordinal = 4)
+    double heading;
+
+    public GeneratedStore()
+    {
+        super(MethodHandles.lookup());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures CompressedOutput.write and BlockCompressedOutput.write with a 
+ * typical navigation record where some properties change on each write.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressedOutputBenchmark
+{
+    private static final int SAMPLES = 1024;
+    @Param({"1", "4"})
+    public int changing;
+    private CompressedOutput output;
+    private BlockCompressedOutput blockOutput;
+    private final double[] values = new double[SAMPLES];
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(123456L);
+        for (int ii=0;ii<SAMPLES;ii++)
+        {
+            values[ii] = random.nextDouble();
+        }
+        output = new CompressedOutput(new NullOutputStream(), "benchmark");
+        add(output);
+        blockOutput = new BlockCompressedOutput(new NullOutputStream(), "benchmark", "time", 4096, true);
+        add(blockOutput);
+    }
+    @Benchmark
+    public float write() throws IOException
+    {
+        set(output);
+        return output.write();
+    }
+    @Benchmark
+    public float blockWrite() throws IOException
+    {
+        set(blockOutput);
+        return blockOutput.write();
+    }
+    private void add(CompressedOutput co)
+    {
+        co.addDouble("latitude");
+        co.addDouble("longitude");
+        co.addFloat("speed");
+        co.addFloat("heading");
+        co.addInt("depth");
+        co.addLong("time");
+        co.ready();
+    }
+    private void set(CompressedOutput co)
+    {
+        index++;
+        double v = values[index % SAMPLES];
+        co.setLong("time", index);
+        co.setDouble("latitude", v);
+        if (changing > 1)
+        {
+            co.setDouble("longitude", v);
+            co.setFloat("speed", (float) v);
+            co.setFloat("heading", (float) v);
+        }
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(CompressedOutputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    private static class NullOutputStream extends OutputStream
+    {
+
+        @Override
+        public void write(int b) throws IOException
+        {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+        }
+        
+    }
+}
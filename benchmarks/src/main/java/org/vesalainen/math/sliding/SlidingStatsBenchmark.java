@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures accept of timeout sliding average and stats. Time advances 10ms
+ * per sample so that window holds timeout/10 samples.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlidingStatsBenchmark
+{
+    private static final int SAMPLES = 1024;
+    @Param({"1000", "60000"})
+    public long timeout;
+    private DoubleTimeoutSlidingAverage average;
+    private DoubleTimeoutSlidingStats stats;
+    private ConcurrentTimeoutSlidingStats concurrent;
+    private DoubleTimeoutSlidingExtremes extremes;
+    private DoubleTimeoutSlidingRollup rollup;
+    private final ConcurrentTimeoutSlidingStats.Snapshot snapshot = new ConcurrentTimeoutSlidingStats.Snapshot();
+    private final double[] values = new double[SAMPLES];
+    private long time;
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(123456L);
+        for (int ii=0;ii<SAMPLES;ii++)
+        {
+            values[ii] = random.nextGaussian();
+        }
+        average = new DoubleTimeoutSlidingAverage(()->time, 16, timeout);
+        stats = new DoubleTimeoutSlidingStats(()->time, 16, timeout);
+        concurrent = new ConcurrentTimeoutSlidingStats(()->time, 16, timeout);
+        extremes = new DoubleTimeoutSlidingExtremes(()->time, 16, timeout);
+        rollup = new DoubleTimeoutSlidingRollup(()->time, timeout, timeout/10, timeout/100);
+        for (int ii=0;ii<2*timeout/10;ii++)
+        {
+            next();
+            average.accept(values[index], time);
+            stats.accept(values[index], time);
+            concurrent.accept(values[index], time);
+            extremes.accept(values[index], time);
+            rollup.accept(values[index], time);
+        }
+    }
+    @Benchmark
+    public double averageAccept()
+    {
+        next();
+        average.accept(values[index], time);
+        return average.fast();
+    }
+    @Benchmark
+    public double statsAccept()
+    {
+        next();
+        stats.accept(values[index], time);
+        return stats.getMax()-stats.getMin();
+    }
+    @Benchmark
+    public double concurrentAccept()
+    {
+        next();
+        concurrent.accept(values[index], time);
+        return concurrent.fast();
+    }
+    @Benchmark
+    public double concurrentSnapshot()
+    {
+        return concurrent.snapshot(snapshot).getMax();
+    }
+    @Benchmark
+    public double extremesAccept()
+    {
+        next();
+        extremes.accept(values[index], time);
+        return extremes.getMax()-extremes.getMin();
+    }
+    @Benchmark
+    public double rollupAccept()
+    {
+        next();
+        rollup.accept(values[index], time);
+        return rollup.average();
+    }
+    private void next()
+    {
+        time += 10;
+        index = (index+1) % SAMPLES;
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(SlidingStatsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
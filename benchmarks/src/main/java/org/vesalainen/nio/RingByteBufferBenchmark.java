@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures RingByteBuffer fill and writeTo with ByteBuffers. Chunk size is
+ * not a divisor of ring size so that copies wrap around.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingByteBufferBenchmark
+{
+    private static final int RING_SIZE = 4096;
+    @Param({"false", "true"})
+    public boolean direct;
+    @Param({"100", "1500"})
+    public int chunk;
+    private RingByteBuffer ring;
+    private ByteBuffer src;
+    private ByteBuffer dst;
+
+    @Setup
+    public void setup()
+    {
+        ring = new RingByteBuffer(RING_SIZE, direct);
+        byte[] arr = new byte[chunk];
+        new Random(123456L).nextBytes(arr);
+        src = ByteBuffer.wrap(arr);
+        dst = direct ? ByteBuffer.allocateDirect(chunk) : ByteBuffer.allocate(chunk);
+    }
+    @Benchmark
+    public int fillAndWriteTo() throws IOException
+    {
+        src.clear();
+        ring.fill(src);
+        ring.mark(chunk);
+        dst.clear();
+        int rc = ring.writeTo(dst);
+        ring.discard();
+        return rc;
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(RingByteBufferBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util;
+
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares BinaryMap lookups with TreeMap.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryMapBenchmark
+{
+    private static final int KEYS = 1024;
+    @Param({"16", "1024"})
+    public int size;
+    private BinaryMap<Integer,String> binaryMap;
+    private TreeMap<Integer,String> treeMap;
+    private final Integer[] keys = new Integer[KEYS];
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(123456L);
+        binaryMap = new BinaryMap<>();
+        treeMap = new TreeMap<>();
+        for (int ii=0;ii<size;ii++)
+        {
+            int key = random.nextInt(size*4);
+            binaryMap.put(key, "v"+key);
+            treeMap.put(key, "v"+key);
+        }
+        for (int ii=0;ii<KEYS;ii++)
+        {
+            keys[ii] = random.nextInt(size*4);
+        }
+    }
+    @Benchmark
+    public String binaryGet()
+    {
+        return binaryMap.get(next());
+    }
+    @Benchmark
+    public Integer binaryFloorKey()
+    {
+        return binaryMap.floorKey(next());
+    }
+    @Benchmark
+    public String treeGet()
+    {
+        return treeMap.get(next());
+    }
+    @Benchmark
+    public Integer treeFloorKey()
+    {
+        return treeMap.floorKey(next());
+    }
+    private Integer next()
+    {
+        index = (index+1) % KEYS;
+        return keys[index];
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BinaryMapBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
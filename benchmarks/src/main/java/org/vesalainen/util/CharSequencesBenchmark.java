@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.vesalainen.lang.Primitives;
+
+/**
+ * Measures CharSequence parsing and searching with NMEA-like input.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharSequencesBenchmark
+{
+    private static final String SENTENCE = "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A";
+    private StringBuilder seq;
+    private CharSequence latitude;
+    private CharSequence date;
+    private CharSequence pattern;
+
+    @Setup
+    public void setup()
+    {
+        seq = new StringBuilder(SENTENCE);
+        latitude = seq.subSequence(16, 24);
+        date = seq.subSequence(51, 57);
+        pattern = CharSequences.getConstant("084.4");
+    }
+    @Benchmark
+    public double parseDouble()
+    {
+        return Primitives.parseDouble(latitude);
+    }
+    @Benchmark
+    public int parseInt()
+    {
+        return Primitives.parseInt(date);
+    }
+    @Benchmark
+    public int indexOf()
+    {
+        return CharSequences.indexOf(seq, pattern);
+    }
+    @Benchmark
+    public boolean startsWith()
+    {
+        return CharSequences.startsWith(seq, "$GPRMC");
+    }
+    @Benchmark
+    public int hashCodeOf()
+    {
+        return CharSequences.hashCode(latitude);
+    }
+    public static void main(String... args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(CharSequencesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
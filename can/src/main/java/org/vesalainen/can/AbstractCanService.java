@@ -18,9 +18,7 @@ package org.vesalainen.can;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import static java.util.logging.Level.SEVERE;
@@ -32,6 +30,7 @@ import org.vesalainen.can.j1939.AddressManager;
 import org.vesalainen.can.j1939.PGN;
 import org.vesalainen.can.socketcand.SocketCandService;
 import org.vesalainen.nio.ReadBuffer;
+import org.vesalainen.util.CopyOnWriteIntMap;
 import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
 import org.vesalainen.util.logging.JavaLogging;
 
@@ -50,12 +49,13 @@ public abstract class AbstractCanService extends JavaLogging implements Frame, R
     protected final static int CAN_EFF_MASK = 0x1FFFFFFF; /* extended frame format (EFF) */
     protected final static int CAN_ERR_MASK = 0x1FFFFFFF; /* omit EFF, RTR, ERR flags */
     
-    protected final Map<Integer,AbstractMessage> procMap = new HashMap<>();
+    protected final CopyOnWriteIntMap<AbstractMessage> procMap = new CopyOnWriteIntMap<>();
     protected AddressManager addressManager;
     protected final CachedScheduledThreadPool executor;
     protected final AbstractMessageFactory messageFactory;
     private Future<?> future;
     private List<Runnable> startables = new ArrayList<>();
+    private boolean delayTimeThrottling;
 
     protected AbstractCanService(CachedScheduledThreadPool executor, SignalCompiler compiler)
     {
@@ -113,6 +113,19 @@ public abstract class AbstractCanService extends JavaLogging implements Frame, R
         }
         future = executor.submit(this);
     }
+    public boolean isDelayTimeThrottling()
+    {
+        return delayTimeThrottling;
+    }
+    /**
+     * If true, messages compiled after this are not executed more often than
+     * their GenMsgDelayTime attribute. Default is false.
+     * @param delayTimeThrottling 
+     */
+    public void setDelayTimeThrottling(boolean delayTimeThrottling)
+    {
+        this.delayTimeThrottling = delayTimeThrottling;
+    }
     protected void started()
     {
         startables.forEach((r)->executor.submit(r));
@@ -227,22 +240,35 @@ public abstract class AbstractCanService extends JavaLogging implements Frame, R
         {
             addressManager.frame(time, canId, data);
         }
-        AbstractMessage proc = getProc(canId);
-        if (proc == null)
+        getOrCompileProc(canId).frame(time, canId, data);
+    }
+    /**
+     * Handles batch of frames. AddressManager and message lookups are done
+     * once for consecutive frames with same canId.
+     * @param batch 
+     */
+    @Override
+    public void frames(FrameBatch batch)
+    {
+        AddressManager am = addressManager;
+        int size = batch.size();
+        int lastCanId = 0;
+        AbstractMessage proc = null;
+        for (int ii=0;ii<size;ii++)
         {
-            finest("needs compiling %d pgn %d", canId, PGN.pgn(canId));
-            if (proc == null)
+            long time = batch.getTime(ii);
+            int canId = batch.getCanId(ii);
+            if (am != null)
             {
-                finest("compiling %d", canId);
-                compile(canId);
-                proc = getProc(canId);
+                am.frame(time, canId, batch.getData(ii));
             }
-            else
+            if (proc == null || canId != lastCanId)
             {
-                finest("had it compiled %d", canId);
+                proc = getOrCompileProc(canId);
+                lastCanId = canId;
             }
+            proc.frame(time, canId, batch.getData(ii));
         }
-        proc.frame(time, canId, data);
     }
     public void addN2K()
     {
@@ -252,8 +278,22 @@ public abstract class AbstractCanService extends JavaLogging implements Frame, R
     {
         DBC.addDBCFile(path);
     }
+    /**
+     * Compiles canId and replaces possible existing message.
+     * @param canId 
+     */
     protected void compile(int canId)
     {
+        addProc(canId, createProc(canId));
+    }
+    /**
+     * Creates message for canId.
+     * @param canId
+     * @return 
+     */
+    private AbstractMessage createProc(int canId)
+    {
+        finest("compiling %d", canId);
         AbstractMessage msg = null;
         try
         {
@@ -282,27 +322,34 @@ public abstract class AbstractCanService extends JavaLogging implements Frame, R
         {
             msg = AbstractMessage.getNullMessage(executor, canId);
         }
-        addProc(canId, msg);
+        return msg;
     }
     
     private void addProc(int canId, AbstractMessage msg)
     {
-        if (msg != null)
+        AbstractMessage old = procMap.put(canId, msg);
+        if (old != null)
         {
-            AbstractMessage old = procMap.put(canId, msg);
-            if (old != null)
-            {
-                old.unregisterMBean();
-            }
-            try
-            {
-                msg.registerMBean();
-            }
-            catch (RuntimeException ex)
-            {
-                
-            }
+            old.unregisterMBean();
         }
+        registerProc(msg);
+    }
+
+    private AbstractMessage registerProc(AbstractMessage msg)
+    {
+        if (delayTimeThrottling)
+        {
+            msg.applyDelayTime();
+        }
+        try
+        {
+            msg.registerMBean();
+        }
+        catch (RuntimeException ex)
+        {
+            
+        }
+        return msg;
     }
 
     private AbstractMessage getProc(int canId)
@@ -310,6 +357,17 @@ public abstract class AbstractCanService extends JavaLogging implements Frame, R
         return procMap.get(canId);
     }
 
+    private AbstractMessage getOrCompileProc(int canId)
+    {
+        AbstractMessage proc = getProc(canId);
+        if (proc == null)
+        {
+            finest("needs compiling %d pgn %d", canId, PGN.pgn(canId));
+            proc = procMap.computeIfAbsent(canId, (id)->registerProc(createProc(id)));
+        }
+        return proc;
+    }
+
     public AbstractMessage compile(int canId, MessageClass mc)
     {
         return messageFactory.createMessage(executor, canId, mc);
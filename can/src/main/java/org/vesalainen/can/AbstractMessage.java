@@ -58,6 +58,11 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
 {
     protected final String NOTIF_PREFIX = "org.vesalainen.can.notif.";
     protected final String NOTIF_HEX_TYPE = NOTIF_PREFIX+"HEX";
+    /**
+     * Message attribute for senders transmit delay in millis. Used as 
+     * minimum time between executions only if applyDelayTime is called.
+     */
+    public static final String DELAY_TIME = "GenMsgDelayTime";
     protected final MessageClass messageClass;
     protected final int canId;
     protected byte[] buf;
@@ -74,6 +79,11 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
     private final long startMillis;
     private boolean hasSignals;
     private CompilerWrapper compilerWrapper = new CompilerWrapper();
+    private ChangeFilter changeFilter;
+    private long minInterval;
+    private long lastExecute = Long.MIN_VALUE;
+    private int unchangedCount;
+    private int throttledCount;
 
     protected AbstractMessage(Executor executor, MessageClass messageClass, int canId)
     {
@@ -101,6 +111,21 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
         mBeanNotificationInfos[0] = new MBeanNotificationInfo(types, Notification.class.getName(), "CAN Signals");
         this.startMillis = System.currentTimeMillis();
     }
+    /**
+     * Sets minimum time between executions from GenMsgDelayTime attribute
+     * if message has it.
+     */
+    public void applyDelayTime()
+    {
+        if (messageClass != null)
+        {
+            Object delay = messageClass.getAttributeValue(DELAY_TIME);
+            if (delay instanceof Number)
+            {
+                this.minInterval = ((Number)delay).longValue();
+            }
+        }
+    }
 
     void registerMBean()
     {
@@ -287,6 +312,54 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
         this.hasSignals = hasSignals;
     }
 
+    @Override
+    public boolean isChangeDetection()
+    {
+        return changeFilter != null;
+    }
+    /**
+     * If set, frames having same data as last executed frame are not 
+     * executed. Signals having GenSigDeadband attribute are compared using
+     * deadband.
+     * @param changeDetection 
+     */
+    @Override
+    public void setChangeDetection(boolean changeDetection)
+    {
+        if (changeDetection != isChangeDetection())
+        {
+            this.changeFilter = changeDetection ? new ChangeFilter(messageClass) : null;
+        }
+    }
+
+    @Override
+    public long getMinInterval()
+    {
+        return minInterval;
+    }
+    /**
+     * Sets minimum time between executions. Frames arriving sooner are not
+     * executed. Default is 0.
+     * @param minInterval Millis
+     */
+    @Override
+    public void setMinInterval(long minInterval)
+    {
+        this.minInterval = minInterval;
+    }
+
+    @Override
+    public int getUnchangedCount()
+    {
+        return unchangedCount;
+    }
+
+    @Override
+    public int getThrottledCount()
+    {
+        return throttledCount;
+    }
+
     protected abstract ObjectName getObjectName() throws MalformedObjectNameException;
 
     @Override
@@ -295,6 +368,23 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
         updateCount++;
         if (update(time, canId, data))
         {
+            ChangeFilter filter = changeFilter;
+            if (filter != null && !filter.changed(this, currentBytes))
+            {
+                unchangedCount++;
+                return;
+            }
+            long delta = time - lastExecute;
+            if (minInterval > 0 && lastExecute != Long.MIN_VALUE && delta >= 0 && delta < minInterval)
+            {
+                throttledCount++;
+                return;
+            }
+            lastExecute = time;
+            if (filter != null)
+            {
+                filter.commit(this, currentBytes);
+            }
             if (action != null)
             {
                 action.run();
@@ -321,9 +411,18 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
     protected <T> Transaction compileSignals(SignalCompiler<T> compiler)
     {
         Objects.requireNonNull(messageClass, "MessageClass null");
-        ActionBuilder<T> actionBuilder = new ActionBuilder<>(messageClass, compiler);
         Runnable begin = compiler.compileBegin(messageClass, canId, ()->getMillis());
-        Runnable act = actionBuilder.build(this);
+        Runnable act;
+        ArrayAction<T> msgAction = compiler.compileMessage(messageClass);
+        if (msgAction != null)
+        {
+            act = ()->msgAction.run(compiler.target(), this);
+        }
+        else
+        {
+            ActionBuilder<T> actionBuilder = new ActionBuilder<>(messageClass, compiler);
+            act = actionBuilder.build(this);
+        }
         Consumer<Throwable> end = compiler.compileEnd(messageClass);
         return new Transaction(begin, act, end);
     }
@@ -422,6 +521,12 @@ public abstract class AbstractMessage extends JavaLogging implements Frame, CanM
             return compiler.compile(mc, sc, off);
         }
 
+        @Override
+        public ArrayAction compileMessage(MessageClass mc)
+        {
+            return compiler.compileMessage(mc);
+        }
+
         @Override
         public ArrayAction compileRaw(MessageClass mc, Supplier rawSupplier)
         {
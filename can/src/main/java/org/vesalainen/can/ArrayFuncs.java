@@ -336,7 +336,7 @@ public final class ArrayFuncs
             return res;
         };
     }
-    private static byte[] createBigEndian(int offset, int length)
+    static byte[] createBigEndian(int offset, int length)
     {
         byte[] arr = new byte[dim(offset, length)*3];
         int idx = 0;
@@ -359,7 +359,7 @@ public final class ArrayFuncs
         }
         return arr;
     }
-    private static byte[] createLittleEndian(int offset, int length)
+    static byte[] createLittleEndian(int offset, int length)
     {
         byte[] arr = new byte[dim(offset, length)*3];
         int idx = 0;
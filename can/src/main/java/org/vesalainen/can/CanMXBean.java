@@ -34,4 +34,18 @@ public interface CanMXBean
     int getCurrentBytes();
     int getMaxBytes();
     String getLastData();
+    boolean isChangeDetection();
+    void setChangeDetection(boolean changeDetection);
+    long getMinInterval();
+    void setMinInterval(long minInterval);
+    /**
+     * Returns number of frames not executed because data didn't change.
+     * @return 
+     */
+    int getUnchangedCount();
+    /**
+     * Returns number of frames not executed because of minimum interval.
+     * @return 
+     */
+    int getThrottledCount();
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+
+/**
+ * ChangeFilter compares message data against data of last executed message.
+ * <p>Signals having GenSigDeadband attribute are compared by raw value. 
+ * Change within deadband is not a change. Other bits are compared as is.
+ * Deadbands are not supported in multiplexed or repeating messages.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+class ChangeFilter
+{
+    static final String DEADBAND = "GenSigDeadband";
+    private byte[] prev;
+    private int prevLength = -1;
+    private byte[] mask;
+    private final ToLongFunction<CanSource>[] raws;
+    private final double[] bands;
+    private final long[] lasts;
+
+    ChangeFilter(MessageClass mc)
+    {
+        List<ToLongFunction<CanSource>> rawList = new ArrayList<>();
+        List<Double> bandList = new ArrayList<>();
+        if (mc != null && !mc.isMultiplexed() && !mc.isRepeating())
+        {
+            for (SignalClass sc : mc.getSignals().values())
+            {
+                Object value = sc.getAttributeValue(DEADBAND);
+                if (value instanceof Number && sc.getSize() <= 64)
+                {
+                    double deadband = ((Number)value).doubleValue();
+                    if (deadband > 0 && sc.getFactor() != 0)
+                    {
+                        boolean bigEndian = sc.getByteOrder()==BIG_ENDIAN;
+                        if (mask == null)
+                        {
+                            mask = new byte[Math.max(mc.getSize(), mc.getMinSize())];
+                        }
+                        CanSource ms = new SimpleCanSource(mask);
+                        ArrayFuncs.getLongWriter(sc.getStartBit(), sc.getSize(), bigEndian, false, (o)->-1L).run(null, ms);
+                        rawList.add(ArrayFuncs.getLongFunction(sc, 0));
+                        bandList.add(deadband/Math.abs(sc.getFactor()));
+                    }
+                }
+            }
+        }
+        this.raws = rawList.toArray(new ToLongFunction[rawList.size()]);
+        this.bands = bandList.stream().mapToDouble((d)->d).toArray();
+        this.lasts = new long[raws.length];
+        this.prev = new byte[8];
+    }
+    /**
+     * Returns true if data differs from committed data.
+     * @param src
+     * @param length
+     * @return 
+     */
+    boolean changed(CanSource src, int length)
+    {
+        if (length != prevLength)
+        {
+            return true;
+        }
+        byte[] buf = src.data();
+        if (mask == null)
+        {
+            for (int ii=0;ii<length;ii++)
+            {
+                if (buf[ii] != prev[ii])
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int ii=0;ii<length;ii++)
+        {
+            int m = ii < mask.length ? mask[ii] : 0;
+            if (((buf[ii] ^ prev[ii]) & ~m) != 0)
+            {
+                return true;
+            }
+        }
+        for (int ii=0;ii<raws.length;ii++)
+        {
+            if (Math.abs(raws[ii].applyAsLong(src) - lasts[ii]) > bands[ii])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Stores data as reference for following comparisons.
+     * @param src
+     * @param length 
+     */
+    void commit(CanSource src, int length)
+    {
+        if (prev.length < length)
+        {
+            prev = Arrays.copyOf(prev, length);
+        }
+        System.arraycopy(src.data(), 0, prev, 0, length);
+        prevLength = length;
+        for (int ii=0;ii<raws.length;ii++)
+        {
+            lasts[ii] = raws[ii].applyAsLong(src);
+        }
+    }
+}
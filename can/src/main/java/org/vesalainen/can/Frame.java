@@ -38,4 +38,13 @@ public interface Frame
         frame(time, canId, new LongBuffer(data, dataLength));
     }
     void frame(long time, int canId, ReadBuffer data);
+    /**
+     * Handles several frames in one call. Default implementation calls
+     * frame for each frame in batch.
+     * @param batch 
+     */
+    default void frames(FrameBatch batch)
+    {
+        batch.forEach(this);
+    }
 }
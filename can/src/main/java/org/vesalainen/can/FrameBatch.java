@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.vesalainen.nio.ReadBuffer;
+
+/**
+ * FrameBatch is a reusable view of several frames stored in a ByteBuffer.
+ * Transports which receive many frames in one packet collect them into
+ * FrameBatch and pass them with one Frame.frames call.
+ * <p>Frame data is not copied. Each frame is stored as time, canId, offset
+ * and length into backing ByteBuffer.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class FrameBatch
+{
+    private ByteBuffer bb;
+    private long[] times;
+    private int[] canIds;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+    private final Data data = new Data();
+
+    public FrameBatch()
+    {
+        this(16);
+    }
+
+    public FrameBatch(int initialCapacity)
+    {
+        this.times = new long[initialCapacity];
+        this.canIds = new int[initialCapacity];
+        this.offsets = new int[initialCapacity];
+        this.lengths = new int[initialCapacity];
+    }
+    /**
+     * Clears batch and sets backing buffer
+     * @param bb
+     */
+    public void clear(ByteBuffer bb)
+    {
+        this.bb = bb;
+        this.size = 0;
+    }
+    /**
+     * Adds frame
+     * @param time
+     * @param canId
+     * @param offset Absolute offset of data in backing buffer
+     * @param length Data length
+     */
+    public void add(long time, int canId, int offset, int length)
+    {
+        if (size == times.length)
+        {
+            grow();
+        }
+        times[size] = time;
+        canIds[size] = canId;
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+    /**
+     * Adds frame at buffers current position and advances position over data.
+     * @param time
+     * @param canId
+     * @param length
+     */
+    public void add(long time, int canId, int length)
+    {
+        int position = bb.position();
+        add(time, canId, position, length);
+        bb.position(position+length);
+    }
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public long getTime(int index)
+    {
+        return times[index];
+    }
+
+    public int getCanId(int index)
+    {
+        return canIds[index];
+    }
+
+    public int getOffset(int index)
+    {
+        return offsets[index];
+    }
+
+    public int getLength(int index)
+    {
+        return lengths[index];
+    }
+    /**
+     * Returns ReadBuffer positioned at the start of index frame data.
+     * <p>Returned ReadBuffer is reused for every call.
+     * @param index
+     * @return
+     */
+    public ReadBuffer getData(int index)
+    {
+        data.reset(offsets[index], lengths[index]);
+        return data;
+    }
+    /**
+     * Calls frame for each frame in batch
+     * @param frame
+     */
+    public void forEach(Frame frame)
+    {
+        for (int ii=0;ii<size;ii++)
+        {
+            frame.frame(times[ii], canIds[ii], getData(ii));
+        }
+    }
+
+    private void grow()
+    {
+        int len = times.length*2;
+        times = Arrays.copyOf(times, len);
+        canIds = Arrays.copyOf(canIds, len);
+        offsets = Arrays.copyOf(offsets, len);
+        lengths = Arrays.copyOf(lengths, len);
+    }
+
+    private class Data implements ReadBuffer
+    {
+        private int index;
+        private int limit;
+
+        private void reset(int offset, int length)
+        {
+            this.index = offset;
+            this.limit = offset+length;
+        }
+
+        @Override
+        public int remaining()
+        {
+            return limit - index;
+        }
+
+        @Override
+        public byte get()
+        {
+            return bb.get(index++);
+        }
+    }
+}
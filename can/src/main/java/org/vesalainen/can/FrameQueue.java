@@ -42,10 +42,26 @@ public class FrameQueue extends AbstractFunctionQueue implements Frame, Runnable
     private final Frame forwarder;
     private final String name;
     private byte seq;
+    private long drainCount;
+    private long drainedFrames;
+    private int maxDrainBatch;
     
     public FrameQueue(int size, int canId, Frame forwarder, String name)
     {
-        super(size);
+        this(size, canId, forwarder, name, false, false);
+    }
+    /**
+     * Creates FrameQueue
+     * @param size
+     * @param canId
+     * @param forwarder
+     * @param name
+     * @param spsc If true queue is lock-free. Only one thread may call frame.
+     * @param direct If true buffer is allocated outside of heap.
+     */
+    public FrameQueue(int size, int canId, Frame forwarder, String name, boolean spsc, boolean direct)
+    {
+        super(size, spsc, direct);
         this.canId = canId;
         this.forwarder = forwarder;
         this.name = name;
@@ -56,10 +72,11 @@ public class FrameQueue extends AbstractFunctionQueue implements Frame, Runnable
     {
         try
         {
+            int len = data.remaining();
+            reserve(14+len);
             put(seq++);
             putLong(millis);
             putInt(canId);
-            int len = data.remaining();
             put((byte)len);
             for (int ii=0;ii<len;ii++)
             {
@@ -88,20 +105,27 @@ public class FrameQueue extends AbstractFunctionQueue implements Frame, Runnable
             {
                 try
                 {
-                    byte b = getByte();
-                    if (seq2 != b)
+                    awaitData();
+                    int batch = 0;
+                    do
                     {
-                        int queueLength = getQueueLength();
-                        int maxQueueLength = getMaxQueueLength();
-                        throw new IllegalArgumentException("out of seq");
-                    }
-                    seq2++;
-                    long millis = getLong();
-                    int canId = getInt();
-                    buffer.setRemaining(getByte()&0xff);
-                    forwarder.frame(millis, canId, buffer);
-                    buffer.finish();
+                        byte b = getByte();
+                        if (seq2 != b)
+                        {
+                            throw new IllegalArgumentException("out of seq");
+                        }
+                        seq2++;
+                        long millis = getLong();
+                        int canId = getInt();
+                        buffer.setRemaining(getByte()&0xff);
+                        forwarder.frame(millis, canId, buffer);
+                        buffer.finish();
+                        batch++;
+                    } while (hasData());
                     hasMoreRoom();
+                    drainCount++;
+                    drainedFrames += batch;
+                    maxDrainBatch = Math.max(batch, maxDrainBatch);
                 }
                 catch (InterruptedException ex)
                 {
@@ -137,6 +161,19 @@ public class FrameQueue extends AbstractFunctionQueue implements Frame, Runnable
         return canId;
     }
 
+    @Override
+    public int getMaxDrainBatch()
+    {
+        return maxDrainBatch;
+    }
+
+    @Override
+    public float getAverageDrainBatch()
+    {
+        long count = drainCount;
+        return count > 0 ? (float)drainedFrames/count : 0;
+    }
+
     @Override
     public int getSource()
     {
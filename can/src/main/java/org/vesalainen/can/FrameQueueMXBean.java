@@ -24,6 +24,9 @@ public interface FrameQueueMXBean
 {
     int getQueueLength();
     int getMaxQueueLength();
+    long getProducerStalls();
+    int getMaxDrainBatch();
+    float getAverageDrainBatch();
     int getCanId();
     int getSource();
 }
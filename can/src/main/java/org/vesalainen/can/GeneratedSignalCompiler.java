@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+
+/**
+ * GeneratedSignalCompiler is a SignalCompiler backend which decodes all
+ * signals of message with one generated SignalDecoder. Decoded values are
+ * passed to SignalSink.
+ * <p>Messages which SignalDecoderGenerator doesn't support are compiled
+ * signal by signal by ActionBuilder. Then values are passed to the same
+ * sink with same indexes.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @param <T>
+ * @see org.vesalainen.can.SignalDecoderGenerator
+ */
+public abstract class GeneratedSignalCompiler<T> implements SignalCompiler<T>
+{
+    protected final SignalDecoderGenerator generator;
+
+    public GeneratedSignalCompiler()
+    {
+        this(SignalDecoderGenerator.getInstance());
+    }
+
+    public GeneratedSignalCompiler(SignalDecoderGenerator generator)
+    {
+        this.generator = generator;
+    }
+    /**
+     * Returns sink for message signals or null if message is not 
+     * interesting. Should return the same sink for every call with same 
+     * message.
+     * @param mc
+     * @return 
+     */
+    protected abstract SignalSink sink(MessageClass mc);
+    /**
+     * Returns true if signal is decoded. Default accepts all.
+     * @param mc
+     * @param sc
+     * @return 
+     */
+    protected boolean accept(MessageClass mc, SignalClass sc)
+    {
+        return true;
+    }
+
+    @Override
+    public ArrayAction<T> compileMessage(MessageClass mc)
+    {
+        SignalSink sink = sink(mc);
+        if (sink == null)
+        {
+            return null;
+        }
+        SignalDecoder decoder = generator.getDecoder(mc, (sc)->accept(mc, sc));
+        if (decoder == null)
+        {
+            return null;
+        }
+        return (ctx, src)->decoder.decode(src.data(), sink);
+    }
+
+    @Override
+    public ArrayAction<T> compile(MessageClass mc, SignalClass sc, ToIntFunction<CanSource> toIntFunction)
+    {
+        SignalSink sink = sink(mc);
+        if (sink == null || !accept(mc, sc))
+        {
+            return null;
+        }
+        int index = SignalDecoderGenerator.indexOf(mc, sc);
+        return (ctx, src)->sink.setInt(index, toIntFunction.applyAsInt(src));
+    }
+
+    @Override
+    public ArrayAction<T> compile(MessageClass mc, SignalClass sc, ToLongFunction<CanSource> toLongFunction)
+    {
+        SignalSink sink = sink(mc);
+        if (sink == null || !accept(mc, sc))
+        {
+            return null;
+        }
+        int index = SignalDecoderGenerator.indexOf(mc, sc);
+        return (ctx, src)->sink.setLong(index, toLongFunction.applyAsLong(src));
+    }
+
+    @Override
+    public ArrayAction<T> compile(MessageClass mc, SignalClass sc, ToDoubleFunction<CanSource> toDoubleFunction)
+    {
+        SignalSink sink = sink(mc);
+        if (sink == null || !accept(mc, sc))
+        {
+            return null;
+        }
+        int index = SignalDecoderGenerator.indexOf(mc, sc);
+        return (ctx, src)->sink.setDouble(index, toDoubleFunction.applyAsDouble(src));
+    }
+
+    @Override
+    public ArrayAction<T> compile(MessageClass mc, SignalClass sc, ToIntFunction<CanSource> toIntFunction, IntFunction<String> map)
+    {
+        return compile(mc, sc, toIntFunction);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ReplayPacer paces replay of recorded frames by their timestamps. Speed 0
+ * replays as fast as possible, 1 in real time and N N-times real time.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class ReplayPacer
+{
+    private final double speed;
+    private long startTime = Long.MIN_VALUE;
+    private long startNanos;
+
+    public ReplayPacer(double speed)
+    {
+        if (speed < 0)
+        {
+            throw new IllegalArgumentException("negative speed");
+        }
+        this.speed = speed;
+    }
+
+    public boolean isPaced()
+    {
+        return speed > 0;
+    }
+    /**
+     * Waits until frame time in replay speed. First call starts the clock.
+     * @param time Frame time in millis
+     */
+    public void pace(long time)
+    {
+        if (speed > 0)
+        {
+            if (startTime == Long.MIN_VALUE)
+            {
+                startTime = time;
+                startNanos = System.nanoTime();
+                return;
+            }
+            long target = startNanos + (long) ((time - startTime)*1000000/speed);
+            long wait = target - System.nanoTime();
+            while (wait > 0)
+            {
+                LockSupport.parkNanos(wait);
+                wait = target - System.nanoTime();
+            }
+        }
+    }
+}
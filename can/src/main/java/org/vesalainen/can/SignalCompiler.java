@@ -101,6 +101,13 @@ public interface SignalCompiler<T>
                     throw new UnsupportedOperationException(sc.getSignalType()+" not supported");
             }
     };
+    /**
+     * Compiles all signals of message into one action. If this returns
+     * non-null signals are not compiled one by one.
+     * @param mc
+     * @return 
+     */
+    default ArrayAction<T> compileMessage(MessageClass mc) {return null;};
     default ArrayAction<T> compileRaw(MessageClass mc, Supplier<CanSource> rawSupplier) {return null;};
     default Runnable compileBegin(MessageClass mc, int canId, LongSupplier millisSupplier) {return null;};
     default ArrayAction<T> compile(MessageClass mc, SignalClass sc, ToIntFunction<CanSource> toIntFunction) {return null;};
@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteOrder;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+import org.vesalainen.can.dbc.ValueType;
+import org.vesalainen.code.CodePrinter;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * SignalDecoderGenerator generates one SignalDecoder class per MessageClass.
+ * Generated decode method extracts all signals with constant offsets, masks
+ * and shifts in one straight-line method.
+ * <p>Java source is compiled in memory with system JavaCompiler. If compiler
+ * is not available (JRE) or message has multiplexed, repeating or string 
+ * signals getDecoder returns null and signals must be compiled by 
+ * ActionBuilder.
+ * <p>Decoded values are same as with ArrayFuncs functions. Bound checks are
+ * not made.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class SignalDecoderGenerator extends JavaLogging
+{
+    private static final String PACKAGE = "org.vesalainen.can.decoder";
+    private static final SignalDecoderGenerator INSTANCE = new SignalDecoderGenerator();
+    private final Map<String,SignalDecoder> cache = new ConcurrentHashMap<>();
+    private final JavaCompiler javaCompiler;
+    private final Loader loader;
+    private int seq;
+
+    public SignalDecoderGenerator()
+    {
+        super(SignalDecoderGenerator.class);
+        this.javaCompiler = ToolProvider.getSystemJavaCompiler();
+        this.loader = new Loader(SignalDecoder.class.getClassLoader());
+        if (javaCompiler == null)
+        {
+            warning("system JavaCompiler not available, using lambda signals");
+        }
+    }
+    /**
+     * Returns shared generator.
+     * @return 
+     */
+    public static SignalDecoderGenerator getInstance()
+    {
+        return INSTANCE;
+    }
+    /**
+     * Returns true if decoders can be generated.
+     * @return 
+     */
+    public boolean isAvailable()
+    {
+        return javaCompiler != null;
+    }
+    /**
+     * Returns index of signal in MessageClass or -1 if not found.
+     * @param mc
+     * @param sc
+     * @return 
+     */
+    public static int indexOf(MessageClass mc, SignalClass sc)
+    {
+        int index = 0;
+        for (SignalClass s : mc.getSignals().values())
+        {
+            if (s == sc || s.getName().equals(sc.getName()))
+            {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+    /**
+     * Returns true if all accepted signals of message can be decoded by
+     * generated decoder.
+     * @param mc
+     * @param accept
+     * @return 
+     */
+    public static boolean isSupported(MessageClass mc, Predicate<SignalClass> accept)
+    {
+        if (mc.isMultiplexed() || mc.isRepeating())
+        {
+            return false;
+        }
+        for (SignalClass sc : mc.getSignals().values())
+        {
+            if (accept.test(sc))
+            {
+                switch (sc.getSignalType())
+                {
+                    case INT:
+                    case LOOKUP:
+                        if (sc.getSize() > 32)
+                        {
+                            return false;
+                        }
+                        break;
+                    case LONG:
+                    case DOUBLE:
+                        if (sc.getSize() > 64)
+                        {
+                            return false;
+                        }
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+    /**
+     * Returns decoder for all signals of message.
+     * @param mc
+     * @return 
+     */
+    public SignalDecoder getDecoder(MessageClass mc)
+    {
+        return getDecoder(mc, (sc)->true);
+    }
+    /**
+     * Returns decoder for accepted signals of message or null if decoder
+     * cannot be generated.
+     * @param mc
+     * @param accept
+     * @return 
+     */
+    public SignalDecoder getDecoder(MessageClass mc, Predicate<SignalClass> accept)
+    {
+        if (javaCompiler == null || !isSupported(mc, accept))
+        {
+            return null;
+        }
+        BitSet accepted = new BitSet();
+        int index = 0;
+        for (SignalClass sc : mc.getSignals().values())
+        {
+            if (accept.test(sc))
+            {
+                accepted.set(index);
+            }
+            index++;
+        }
+        String key = mc.getId()+":"+mc.getName()+":"+accepted;
+        SignalDecoder decoder = cache.get(key);
+        if (decoder == null)
+        {
+            decoder = generate(mc, accepted);
+            SignalDecoder old = cache.putIfAbsent(key, decoder);
+            if (old != null)
+            {
+                decoder = old;
+            }
+        }
+        return decoder;
+    }
+    /**
+     * Returns decoder source code.
+     * @param mc
+     * @param className
+     * @param accepted Indexes of decoded signals
+     * @return 
+     */
+    public String createSource(MessageClass mc, String className, BitSet accepted)
+    {
+        try
+        {
+            StringBuilder sb = new StringBuilder();
+            CodePrinter cp = new CodePrinter(sb);
+            cp.println("package "+PACKAGE+";");
+            cp.println("");
+            cp.println("import org.vesalainen.can.SignalDecoder;");
+            cp.println("import org.vesalainen.can.SignalSink;");
+            cp.println("");
+            cp.println("/** "+mc.getName()+" "+mc.getPrintId()+" */");
+            cp.println("public final class "+className+" implements SignalDecoder");
+            cp.println("{");
+            CodePrinter cls = cp.createSub("}");
+            cls.println("@Override");
+            cls.println("public void decode(byte[] b, SignalSink sink)");
+            cls.println("{");
+            CodePrinter m = cls.createSub("}");
+            int index = 0;
+            for (SignalClass sc : mc.getSignals().values())
+            {
+                if (accepted.get(index))
+                {
+                    m.println("// "+sc.getName());
+                    m.println(statement(index, sc));
+                }
+                index++;
+            }
+            cls.println("}");
+            cp.println("}");
+            return sb.toString();
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    private String statement(int index, SignalClass sc)
+    {
+        double factor = sc.getFactor();
+        double offset = sc.getOffset();
+        boolean factored = factor != 1.0 || offset != 0.0;
+        switch (sc.getSignalType())
+        {
+            case INT:
+                if (factored)
+                {
+                    return "sink.setInt("+index+", (int) ("+factor+"*"+extract(sc, false)+"+"+offset+"));";
+                }
+                else
+                {
+                    return "sink.setInt("+index+", "+extract(sc, false)+");";
+                }
+            case LOOKUP:
+                return "sink.setInt("+index+", "+extract(sc, false)+");";
+            case LONG:
+                if (factored)
+                {
+                    return "sink.setLong("+index+", (long) ("+factor+"*"+extract(sc, true)+"+"+offset+"));";
+                }
+                else
+                {
+                    return "sink.setLong("+index+", "+extract(sc, true)+");";
+                }
+            case DOUBLE:
+                if (factored)
+                {
+                    return "sink.setDouble("+index+", "+factor+"*"+extract(sc, true)+"+"+offset+");";
+                }
+                else
+                {
+                    return "sink.setDouble("+index+", (double) "+extract(sc, true)+");";
+                }
+            default:
+                throw new UnsupportedOperationException(sc.getSignalType()+" not supported");
+        }
+    }
+    /**
+     * Returns expression which extracts signal value from b.
+     * @param sc
+     * @param isLong
+     * @return 
+     */
+    private String extract(SignalClass sc, boolean isLong)
+    {
+        int length = sc.getSize();
+        byte[] arr = sc.getByteOrder() == ByteOrder.BIG_ENDIAN ? 
+                ArrayFuncs.createBigEndian(sc.getStartBit(), length) :
+                ArrayFuncs.createLittleEndian(sc.getStartBit(), length);
+        StringBuilder sb = new StringBuilder();
+        sb.append('(');
+        int len = arr.length/3;
+        for (int ii=0;ii<len;ii++)
+        {
+            if (ii > 0)
+            {
+                sb.append('|');
+            }
+            int ix = arr[3*ii]&0xff;
+            int mask = arr[3*ii+1]&0xff;
+            int sh = arr[3*ii+2];
+            String term = isLong ? "(long)(b["+ix+"]&0x"+Integer.toHexString(mask)+")" : "(b["+ix+"]&0x"+Integer.toHexString(mask)+")";
+            if (sh > 0)
+            {
+                sb.append('(').append(term).append("<<").append(sh).append(')');
+            }
+            else
+            {
+                if (sh < 0)
+                {
+                    sb.append('(').append(term).append(">>>").append(-sh).append(')');
+                }
+                else
+                {
+                    sb.append(term);
+                }
+            }
+        }
+        if (len == 0)
+        {
+            sb.append('0');
+        }
+        sb.append(')');
+        if (sc.getValueType() == ValueType.SIGNED)
+        {
+            int shf = (isLong ? 64 : 32) - length;
+            if (shf > 0)
+            {
+                return "(("+sb+"<<"+shf+")>>"+shf+")";
+            }
+        }
+        return sb.toString();
+    }
+    private SignalDecoder generate(MessageClass mc, BitSet accepted)
+    {
+        String className;
+        synchronized (this)
+        {
+            className = "Decoder"+Integer.toHexString(mc.getId())+"_"+(seq++);
+        }
+        String source = createSource(mc, className, accepted);
+        finest("%s", source);
+        String qualifiedName = PACKAGE+"."+className;
+        Map<String,ByteArrayOutputStream> output = new HashMap<>();
+        JavaFileObject src = new SimpleJavaFileObject(URI.create("string:///"+qualifiedName.replace('.', '/')+Kind.SOURCE.extension), Kind.SOURCE)
+        {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException
+            {
+                return source;
+            }
+        };
+        List<String> options = new ArrayList<>(Arrays.asList("-g:none", "-classpath", classPath()));
+        StandardJavaFileManager standard = javaCompiler.getStandardFileManager(null, null, null);
+        try (JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standard)
+        {
+            @Override
+            public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String name, Kind kind, FileObject sibling) throws IOException
+            {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                output.put(name, baos);
+                return new SimpleJavaFileObject(URI.create("mem:///"+name.replace('.', '/')+kind.extension), kind)
+                {
+                    @Override
+                    public OutputStream openOutputStream() throws IOException
+                    {
+                        return baos;
+                    }
+                };
+            }
+        })
+        {
+            boolean ok = javaCompiler.getTask(null, fileManager, null, options, null, Arrays.asList(src)).call();
+            if (!ok)
+            {
+                throw new IllegalArgumentException("decoder for "+mc+" failed to compile:\n"+source);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        try
+        {
+            Class<?> cls = loader.define(qualifiedName, output.get(qualifiedName).toByteArray());
+            fine("generated %s for %s", qualifiedName, mc.getName());
+            return (SignalDecoder) cls.newInstance();
+        }
+        catch (InstantiationException | IllegalAccessException ex)
+        {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+    private static String classPath()
+    {
+        String cp = System.getProperty("java.class.path");
+        CodeSource codeSource = SignalDecoder.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null)
+        {
+            try
+            {
+                cp = new File(codeSource.getLocation().toURI()).getPath()+File.pathSeparator+cp;
+            }
+            catch (Exception ex)
+            {
+            }
+        }
+        return cp;
+    }
+    private static class Loader extends ClassLoader
+    {
+        public Loader(ClassLoader parent)
+        {
+            super(parent);
+        }
+        
+        private synchronized Class<?> define(String name, byte[] bytes)
+        {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+/**
+ * SignalSink receives decoded signal values. Signal is identified by its
+ * index in MessageClass.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.can.SignalDecoderGenerator#indexOf(org.vesalainen.can.dbc.MessageClass, org.vesalainen.can.dbc.SignalClass) 
+ */
+public interface SignalSink
+{
+    default void setInt(int signal, int value) {}
+    default void setLong(int signal, long value) {}
+    default void setDouble(int signal, double value) {}
+}
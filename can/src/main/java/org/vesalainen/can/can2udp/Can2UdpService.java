@@ -25,10 +25,9 @@ import java.util.logging.Level;
 import org.vesalainen.can.AbstractCanService;
 import org.vesalainen.can.AbstractMessageFactory;
 import org.vesalainen.can.DefaultMessageFactory;
+import org.vesalainen.can.FrameBatch;
 import org.vesalainen.can.SignalCompiler;
 import org.vesalainen.can.j1939.PGN;
-import org.vesalainen.nio.ReadBuffer;
-import org.vesalainen.nio.ReadByteBuffer;
 import org.vesalainen.nio.channels.UnconnectedDatagramChannel;
 import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
 
@@ -44,6 +43,7 @@ public class Can2UdpService extends AbstractCanService
     private SocketAddress remote;
     private final ThreadLocal<ByteBuffer> sendBuffer = ThreadLocal.withInitial(()->ByteBuffer.allocateDirect(256).order(ByteOrder.BIG_ENDIAN));
     private UnconnectedDatagramChannel channel;
+    private final FrameBatch batch = new FrameBatch();
 
     public Can2UdpService(String address, int local, CachedScheduledThreadPool executor, SignalCompiler compiler)
     {
@@ -87,7 +87,6 @@ public class Can2UdpService extends AbstractCanService
             try (UnconnectedDatagramChannel ch = UnconnectedDatagramChannel.open(address, local, BUFFER_SIZE, true, false))
             {
                 ByteBuffer bb = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
-                ReadBuffer buffer = new ReadByteBuffer(bb);
                 channel = ch;
                 started();
                 while (channel.isOpen())
@@ -95,7 +94,7 @@ public class Can2UdpService extends AbstractCanService
                     bb.clear();
                     int rc = channel.read(bb);
                     bb.flip();
-                    handlePacket(bb, buffer);
+                    handlePacket(bb);
                 }
             }
             catch (Throwable ex)
@@ -106,22 +105,32 @@ public class Can2UdpService extends AbstractCanService
         severe("can2udp stops!");
     }
 
-    private void handlePacket(ByteBuffer bb, ReadBuffer rbb)
+    /**
+     * Handles datagram containing one or more consecutive frames.
+     * @param bb 
+     */
+    private void handlePacket(ByteBuffer bb)
     {
-        byte version = bb.get();
-        if (version != 0 && version != 0xf)
+        long time = System.currentTimeMillis();
+        batch.clear(bb);
+        while (bb.hasRemaining())
         {
-            throw new UnsupportedOperationException(version+" version not supported");
-        }
-        int canId = bb.getInt();
-        finest("ID %s", PGN.toString(canId));
-        int len = bb.get() & 0xff;
-        if (len != bb.remaining())
-        {
-            severe("len=%d remaining=%d pgn=%d", len, bb.remaining(), PGN.pgn(canId));
-            throw new IllegalArgumentException("len != remaining");
+            byte version = bb.get();
+            if (version != 0 && version != 0xf)
+            {
+                throw new UnsupportedOperationException(version+" version not supported");
+            }
+            int canId = bb.getInt();
+            finest("ID %s", PGN.toString(canId));
+            int len = bb.get() & 0xff;
+            if (len > bb.remaining())
+            {
+                severe("len=%d remaining=%d pgn=%d", len, bb.remaining(), PGN.pgn(canId));
+                throw new IllegalArgumentException("len > remaining");
+            }
+            batch.add(time, canId&CAN_EFF_MASK, len);
         }
-        frame(System.currentTimeMillis(), canId&CAN_EFF_MASK, rbb);
+        frames(batch);
     }
     
 }
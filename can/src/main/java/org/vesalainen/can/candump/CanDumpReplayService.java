@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.candump;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import static java.util.logging.Level.SEVERE;
+import org.vesalainen.can.AbstractCanService;
+import org.vesalainen.can.AbstractMessageFactory;
+import org.vesalainen.can.DefaultMessageFactory;
+import org.vesalainen.can.FrameBatch;
+import org.vesalainen.can.ReplayPacer;
+import org.vesalainen.can.SignalCompiler;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ * CanDumpReplayService replays candump log file. File is memory-mapped and
+ * parsed with CanDumpScanner without allocating per line.
+ * <p>Frames are replayed as fast as possible or paced by log timestamps
+ * when speed is set. Frames are passed with log timestamps. Lines without
+ * timestamp get current time. Error and RTR frames are skipped and counted.
+ * <p>If parallelism is greater than 1 the file is split into chunks at
+ * line boundaries. Chunks are parsed in parallel and merged in time order.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CanDumpReplayService extends AbstractCanService
+{
+    private static final long MAX_MAP_SIZE = Integer.MAX_VALUE;
+    private static final long MAX_LINE = 4096;
+    private static final int BLOCK_FRAMES = 4096;
+    private static final int MAX_FRAME_DATA = 64;
+    private static final int QUEUE_SIZE = 4;
+    private final Path path;
+    private String bus;
+    private double speed;
+    private int parallelism = 1;
+    private ReplayPacer pacer;
+    private volatile long frameCount;
+    private volatile long skipped;
+    private final LongAdder errorFrames = new LongAdder();
+
+    public CanDumpReplayService(String bus, Path path, CachedScheduledThreadPool executor, SignalCompiler compiler)
+    {
+        this(bus, path, executor, new DefaultMessageFactory(compiler));
+    }
+
+    public CanDumpReplayService(String bus, Path path, CachedScheduledThreadPool executor, AbstractMessageFactory messageFactory)
+    {
+        super(executor, messageFactory);
+        this.bus = bus;
+        this.path = path;
+    }
+
+    public String getBus()
+    {
+        return bus;
+    }
+
+    public void setBus(String bus)
+    {
+        this.bus = bus;
+    }
+
+    public double getSpeed()
+    {
+        return speed;
+    }
+    /**
+     * Sets replay speed. 0 replays as fast as possible, 1 in real time and
+     * N N-times real time.
+     * @param speed
+     */
+    public void setSpeed(double speed)
+    {
+        if (speed < 0)
+        {
+            throw new IllegalArgumentException("negative speed");
+        }
+        this.speed = speed;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+    /**
+     * Sets number of chunks parsed in parallel.
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+    }
+    /**
+     * Returns number of replayed frames.
+     * @return
+     */
+    public long getFrameCount()
+    {
+        return frameCount;
+    }
+    /**
+     * Returns number of skipped lines.
+     * @return
+     */
+    public long getSkipped()
+    {
+        return skipped;
+    }
+    /**
+     * Returns number of skipped error and RTR frames.
+     * @return 
+     */
+    public long getErrorFrames()
+    {
+        return errorFrames.sum();
+    }
+
+    @Override
+    public void run()
+    {
+        try (FileChannel ch = FileChannel.open(path, READ))
+        {
+            started();
+            pacer = new ReplayPacer(speed);
+            long[] bounds = split(ch);
+            if (parallelism == 1)
+            {
+                replaySequential(ch, bounds);
+            }
+            else
+            {
+                replayParallel(ch, bounds);
+            }
+            fine("replayed %d frames, skipped %d lines", frameCount, skipped);
+        }
+        catch (InterruptedException ex)
+        {
+            fine("replay interrupted");
+        }
+        catch (Exception ex)
+        {
+            log(SEVERE, ex, "%s", ex.getMessage());
+        }
+    }
+
+    private void replaySequential(FileChannel ch, long[] bounds) throws IOException, InterruptedException
+    {
+        CanDumpScanner scanner = new CanDumpScanner(bus);
+        Block block = new Block();
+        for (int ii=0;ii<bounds.length-1;ii++)
+        {
+            MappedByteBuffer mbb = ch.map(READ_ONLY, bounds[ii], bounds[ii+1]-bounds[ii]);
+            while (block.fill(scanner, mbb))
+            {
+                deliver(block.batch);
+            }
+        }
+        skipped = scanner.getSkipped();
+    }
+
+    /**
+     * Merges parsed chunks in time order.
+     * @param ch
+     * @param bounds
+     * @throws IOException If parsing of chunk failed.
+     * @throws InterruptedException 
+     */
+    private void replayParallel(FileChannel ch, long[] bounds) throws IOException, InterruptedException
+    {
+        int chunks = bounds.length-1;
+        List<Future<?>> futures = new ArrayList<>();
+        Chunk[] chunkArr = new Chunk[chunks];
+        for (int ii=0;ii<chunks;ii++)
+        {
+            MappedByteBuffer mbb = ch.map(READ_ONLY, bounds[ii], bounds[ii+1]-bounds[ii]);
+            chunkArr[ii] = new Chunk(mbb);
+            futures.add(executor.submit(chunkArr[ii]));
+        }
+        try
+        {
+            while (true)
+            {
+                Chunk min = null;
+                for (Chunk c : chunkArr)
+                {
+                    if (c.advance() && (min == null || c.time() < min.time()))
+                    {
+                        min = c;
+                    }
+                }
+                if (min == null)
+                {
+                    break;
+                }
+                FrameBatch b = min.current.batch;
+                int idx = min.index++;
+                long time = b.getTime(idx);
+                pacer.pace(time);
+                frame(time, b.getCanId(idx), b.getData(idx));
+                frameCount++;
+            }
+        }
+        finally
+        {
+            futures.forEach((f)->f.cancel(true));
+        }
+        long sum = 0;
+        for (Chunk c : chunkArr)
+        {
+            sum += c.scanner.getSkipped();
+        }
+        skipped = sum;
+    }
+
+    private void deliver(FrameBatch batch)
+    {
+        int size = batch.size();
+        if (!pacer.isPaced())
+        {
+            frames(batch);
+        }
+        else
+        {
+            for (int ii=0;ii<size;ii++)
+            {
+                long time = batch.getTime(ii);
+                pacer.pace(time);
+                frame(time, batch.getCanId(ii), batch.getData(ii));
+            }
+        }
+        frameCount += size;
+    }
+    /**
+     * Returns chunk boundaries. Boundaries are after new-line. Chunk sizes 
+     * leave room for moving boundary to line end. Lines longer than that 
+     * may be split at MAX_MAP_SIZE.
+     * @param ch
+     * @return
+     * @throws IOException
+     */
+    private long[] split(FileChannel ch) throws IOException
+    {
+        long size = ch.size();
+        long maxChunk = MAX_MAP_SIZE-MAX_LINE;
+        int chunks = (int) Math.max(parallelism, (size+maxChunk-1)/maxChunk);
+        chunks = (int) Math.max(1, Math.min(chunks, size/BLOCK_FRAMES));
+        long[] bounds = new long[chunks+1];
+        ByteBuffer bb = ByteBuffer.allocate(256);
+        for (int ii=1;ii<chunks;ii++)
+        {
+            long pos = Math.max(bounds[ii-1], size*ii/chunks);
+            boolean found = false;
+            while (!found && pos < size)
+            {
+                bb.clear();
+                int rc = ch.read(bb, pos);
+                for (int jj=0;jj<rc;jj++)
+                {
+                    if (bb.get(jj) == '\n')
+                    {
+                        pos += jj+1;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found)
+                {
+                    pos += rc;
+                }
+            }
+            bounds[ii] = Math.min(pos, bounds[ii-1]+MAX_MAP_SIZE);
+        }
+        bounds[chunks] = size;
+        return bounds;
+    }
+
+    @Override
+    public void sendRaw(int canId, int length, byte[] data) throws IOException
+    {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    private class Block
+    {
+        private final ByteBuffer data = ByteBuffer.allocate(BLOCK_FRAMES*MAX_FRAME_DATA);
+        private final FrameBatch batch = new FrameBatch(BLOCK_FRAMES);
+        /**
+         * Fills block with max BLOCK_FRAMES frames.
+         * @param scanner
+         * @param mbb
+         * @return false if no frames were found
+         */
+        private boolean fill(CanDumpScanner scanner, MappedByteBuffer mbb)
+        {
+            data.clear();
+            batch.clear(data);
+            while (batch.size() < BLOCK_FRAMES && scanner.next(mbb))
+            {
+                int rawId = scanner.getRawId();
+                if ((rawId & (CAN_RTR_FLAG|CAN_ERR_FLAG)) != 0)
+                {
+                    errorFrames.increment();
+                    continue;
+                }
+                long time = scanner.getTime();
+                int len = scanner.getLength();
+                int off = data.position();
+                data.put(scanner.getData(), 0, len);
+                batch.add(time < 0 ? System.currentTimeMillis() : time, rawToCanId(rawId), off, len);
+            }
+            return !batch.isEmpty();
+        }
+    }
+    /**
+     * Chunk is parsed in its own thread into blocks which are passed to
+     * replay thread. Blocks are recycled. End block is always passed last,
+     * also when parsing fails.
+     */
+    private class Chunk implements Runnable
+    {
+        private final MappedByteBuffer mbb;
+        private final CanDumpScanner scanner = new CanDumpScanner(bus);
+        private final BlockingQueue<Block> full = new ArrayBlockingQueue<>(QUEUE_SIZE+1);
+        private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Block end = new Block();
+        private volatile Throwable failure;
+        private Block current;
+        private int index;
+
+        public Chunk(MappedByteBuffer mbb)
+        {
+            this.mbb = mbb;
+            for (int ii=0;ii<QUEUE_SIZE;ii++)
+            {
+                free.add(new Block());
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    Block block = free.take();
+                    if (block.fill(scanner, mbb))
+                    {
+                        full.put(block);
+                    }
+                    else
+                    {
+                        return;
+                    }
+                }
+            }
+            catch (InterruptedException ex)
+            {
+            }
+            catch (Throwable ex)
+            {
+                failure = ex;
+                throw ex;
+            }
+            finally
+            {
+                full.offer(end);    // full has room for end
+            }
+        }
+        /**
+         * Makes current frame available.
+         * @return false if chunk is exhausted
+         * @throws IOException If parsing failed.
+         * @throws InterruptedException
+         */
+        private boolean advance() throws IOException, InterruptedException
+        {
+            if (current == end)
+            {
+                return false;
+            }
+            if (current != null && index < current.batch.size())
+            {
+                return true;
+            }
+            if (current != null)
+            {
+                free.put(current);
+            }
+            current = full.take();
+            index = 0;
+            if (current == end && failure != null)
+            {
+                throw new IOException("parsing chunk failed", failure);
+            }
+            return current != end;
+        }
+        private long time()
+        {
+            return current.batch.getTime(index);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.candump;
+
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * CanDumpScanner is an allocation-free line scanner for candump logs. It
+ * reads directly from ByteBuffer.
+ * <p>Supported line formats are
+ * <pre>
+ * (1436509053.249713) can0 18FEE6FE#0011223344556677
+ * can0  18FEE6FE   [8]  00 11 22 33 44 55 66 77
+ * &lt;0x18fee6fe&gt; [8] 00 11 22 33 44 55 66 77
+ * </pre>
+ * Other lines are skipped.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class CanDumpScanner
+{
+    private static final int MAX_DATA = 64;
+    private ByteBuffer bb;
+    private int index;
+    private int limit;
+    private long time;
+    private int rawId;
+    private int length;
+    private final byte[] data = new byte[MAX_DATA];
+    private int busStart;
+    private int busLength;
+    private byte[] bus;
+    private long skipped;
+    private long number;    // result of parseDec and parseHex
+    /**
+     * Creates scanner which accepts all buses.
+     */
+    public CanDumpScanner()
+    {
+    }
+    /**
+     * Creates scanner which accepts only given bus. Lines without bus are
+     * always accepted.
+     * @param bus Bus name or null to accept all buses.
+     */
+    public CanDumpScanner(String bus)
+    {
+        setBus(bus);
+    }
+    /**
+     * Sets accepted bus.
+     * @param bus Bus name or null to accept all buses.
+     */
+    public void setBus(String bus)
+    {
+        this.bus = bus != null ? bus.getBytes(US_ASCII) : null;
+    }
+    /**
+     * Scans next frame starting at buffers position. After return buffers
+     * position is after scanned line or at limit.
+     * @param bb
+     * @return true if frame was found. False when there is no more frames.
+     */
+    public boolean next(ByteBuffer bb)
+    {
+        this.bb = bb;
+        this.limit = bb.limit();
+        int start = bb.position();
+        while (start < limit)
+        {
+            int end = lineEnd(start);
+            index = start;
+            boolean ok = parseLine(end);
+            start = end < limit ? end+1 : end;
+            bb.position(start);
+            if (ok)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Returns time in millis or -1 if line didn't have timestamp.
+     * @return
+     */
+    public long getTime()
+    {
+        return time;
+    }
+    /**
+     * Returns canId as it was in log.
+     * @return
+     */
+    public int getRawId()
+    {
+        return rawId;
+    }
+    public int getLength()
+    {
+        return length;
+    }
+    /**
+     * Returns data array. Array is reused.
+     * @return
+     */
+    public byte[] getData()
+    {
+        return data;
+    }
+    /**
+     * Returns number of skipped non-empty lines.
+     * @return
+     */
+    public long getSkipped()
+    {
+        return skipped;
+    }
+
+    private int lineEnd(int start)
+    {
+        for (int ii=start;ii<limit;ii++)
+        {
+            if (bb.get(ii) == '\n')
+            {
+                return ii;
+            }
+        }
+        return limit;
+    }
+    private boolean parseLine(int end)
+    {
+        limit = end;
+        try
+        {
+            skipWs();
+            if (index >= limit || peek() == '#')
+            {
+                return false;
+            }
+            time = -1;
+            busLength = 0;
+            if (peek() == '(')
+            {
+                index++;
+                if (!parseTime() || !expect(')'))
+                {
+                    return skip();
+                }
+                skipWs();
+            }
+            if (peek() == '<')
+            {
+                if (!expect('<') || !expect('0') || !expect('x') || !parseHex() || !expect('>'))
+                {
+                    return skip();
+                }
+                rawId = (int) number;
+            }
+            else
+            {
+                busStart = index;
+                while (index < limit && !isWs(peek()))
+                {
+                    index++;
+                }
+                busLength = index - busStart;
+                skipWs();
+                if (!parseHex())
+                {
+                    return skip();
+                }
+                rawId = (int) number;
+            }
+            if (peek() == '#')
+            {
+                index++;
+                if (peek() == '#')
+                {
+                    return skip();  // CAN FD
+                }
+                if (!parseCompactData())
+                {
+                    return skip();
+                }
+            }
+            else
+            {
+                skipWs();
+                if (!expect('[') || !parseDec())
+                {
+                    return skip();
+                }
+                length = (int) number;
+                if (!expect(']') || !parseSeparatedData())
+                {
+                    return skip();
+                }
+            }
+            return isBusEnabled() || skip();
+        }
+        finally
+        {
+            limit = bb.limit();
+        }
+    }
+    private boolean skip()
+    {
+        skipped++;
+        return false;
+    }
+    private boolean isBusEnabled()
+    {
+        if (bus == null || busLength == 0)
+        {
+            return true;
+        }
+        if (bus.length != busLength)
+        {
+            return false;
+        }
+        for (int ii=0;ii<busLength;ii++)
+        {
+            if (bus[ii] != bb.get(busStart+ii))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    private boolean parseCompactData()
+    {
+        if (peek() == '[')
+        {
+            index++;
+            if (!parseDec() || !expect(']'))
+            {
+                return false;
+            }
+        }
+        int len = 0;
+        while (index+1 < limit && isHex(peek()))
+        {
+            if (len == MAX_DATA)
+            {
+                return false;
+            }
+            data[len++] = (byte) (hex(bb.get(index))<<4 | hex(bb.get(index+1)));
+            index += 2;
+        }
+        length = len;
+        return true;
+    }
+    private boolean parseSeparatedData()
+    {
+        if (length > MAX_DATA)
+        {
+            return false;
+        }
+        for (int ii=0;ii<length;ii++)
+        {
+            skipWs();
+            if (!parseHex())
+            {
+                return false;
+            }
+            data[ii] = (byte) number;
+        }
+        return true;
+    }
+    /**
+     * Parses seconds.fraction to time in millis.
+     * @return false if not time.
+     */
+    private boolean parseTime()
+    {
+        if (!parseDec() || !expect('.'))
+        {
+            return false;
+        }
+        long sec = number;
+        long frac = 0;
+        int mag = 0;
+        while (index < limit && isDigit(peek()))
+        {
+            if (mag < 3)
+            {
+                frac = frac*10 + (peek() - '0');
+            }
+            mag++;
+            index++;
+        }
+        for (int ii=mag;ii<3;ii++)
+        {
+            frac *= 10;
+        }
+        time = sec*1000+frac;
+        return true;
+    }
+    /**
+     * Parses decimal number to number field.
+     * @return false if there were no digits.
+     */
+    private boolean parseDec()
+    {
+        int start = index;
+        long res = 0;
+        while (index < limit && isDigit(peek()))
+        {
+            res = res*10 + (peek() - '0');
+            index++;
+        }
+        number = res;
+        return start != index;
+    }
+    /**
+     * Parses hex number to number field.
+     * @return false if there were no hex digits.
+     */
+    private boolean parseHex()
+    {
+        int start = index;
+        long res = 0;
+        while (index < limit && isHex(peek()))
+        {
+            res = (res<<4) | hex(peek());
+            index++;
+        }
+        number = res;
+        return start != index;
+    }
+    private boolean expect(char cc)
+    {
+        if (index >= limit || peek() != cc)
+        {
+            return false;
+        }
+        index++;
+        return true;
+    }
+    private void skipWs()
+    {
+        while (index < limit && isWs(peek()))
+        {
+            index++;
+        }
+    }
+    private int peek()
+    {
+        return index < limit ? bb.get(index) : -1;
+    }
+    private static boolean isWs(int cc)
+    {
+        return cc == ' ' || cc == '\t' || cc == '\r';
+    }
+    private static boolean isDigit(int cc)
+    {
+        return cc >= '0' && cc <= '9';
+    }
+    private static boolean isHex(int cc)
+    {
+        return (cc >= '0' && cc <= '9') || (cc >= 'a' && cc <= 'f') || (cc >= 'A' && cc <= 'F');
+    }
+    private static int hex(int cc)
+    {
+        if (cc <= '9')
+        {
+            return cc - '0';
+        }
+        if (cc <= 'F')
+        {
+            return cc - 'A' + 10;
+        }
+        return cc - 'a' + 10;
+    }
+}
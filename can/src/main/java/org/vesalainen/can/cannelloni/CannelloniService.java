@@ -31,6 +31,7 @@ import org.vesalainen.can.AbstractCanService;
 import org.vesalainen.can.AbstractMessageFactory;
 import org.vesalainen.can.DataUtil;
 import org.vesalainen.can.DefaultMessageFactory;
+import org.vesalainen.can.FrameBatch;
 import org.vesalainen.can.SignalCompiler;
 import org.vesalainen.can.j1939.PGN;
 import org.vesalainen.nio.PrintBuffer;
@@ -52,6 +53,7 @@ public class CannelloniService extends AbstractCanService
     private AtomicInteger seq = new AtomicInteger();
     private byte nextSeq;
     private int packetCount;
+    private final FrameBatch batch = new FrameBatch();
 
     public CannelloniService(String address, int local, int remote, int bufferSize, CachedScheduledThreadPool executor, SignalCompiler compiler)
     {
@@ -152,19 +154,25 @@ public class CannelloniService extends AbstractCanService
         packetCount++;
         nextSeq = ++seqNo;
         short count = bb.getShort();
+        long time = System.currentTimeMillis();
+        batch.clear(bb);
         for (int ii=0;ii<count;ii++)
         {
-            handleFrame(bb);
+            handleFrame(time, bb);
         }
+        frames(batch);
     }
 
-    private void handleFrame(ByteBuffer bb)
+    private void handleFrame(long time, ByteBuffer bb)
     {
         int canId = bb.getInt();
         finest("ID %s", PGN.toString(canId));
-        byte len = bb.get();
-        long data = DataUtil.asLong(len, bb);
-        frame(System.currentTimeMillis(), canId&CAN_EFF_MASK, len, data);
+        int len = bb.get() & 0xff;
+        if (len > 8)
+        {
+            throw new UnsupportedOperationException(len+" length not supported");
+        }
+        batch.add(time, canId&CAN_EFF_MASK, len);
     }
     
 }
@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.capture;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.nio.ReadBuffer;
+import static org.vesalainen.can.capture.CaptureFormat.*;
+
+/**
+ * CanCaptureReader reads capture files written by CanCaptureWriter.
+ * <p>Seeking by time uses binary search on block index and on fixed-width
+ * records of the block. PGN filter skips whole blocks by their PGN bloom
+ * filter and checks only canId of other records.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.can.capture.CanCaptureWriter
+ */
+public class CanCaptureReader implements AutoCloseable
+{
+    private final FileChannel channel;
+    private final int blockFrames;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private final byte[] blockArray;
+    private final ByteBuffer block;
+    private final byte[] compArray;
+    private final Inflater inflater = new Inflater();
+    private final Data data = new Data();
+    private long[] index;
+    private int blockCount;
+    private int[] pgnFilter;
+    private final long[] bloomFilter = new long[BLOOM_LONGS];
+    private int blockIndex = -1;
+    private int loaded = -1;
+    private int count;
+    private int record;
+
+    public CanCaptureReader(Path path) throws IOException
+    {
+        this.channel = FileChannel.open(path, READ);
+        ByteBuffer bb = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        read(bb, 0);
+        if (bb.getInt() != FILE_MAGIC)
+        {
+            throw new IOException(path+" is not capture file");
+        }
+        short version = bb.getShort();
+        if (version != VERSION)
+        {
+            throw new IOException(version+" version not supported");
+        }
+        bb.getShort();
+        this.blockFrames = bb.getInt();
+        int rawSize = blockFrames*RECORD_SIZE;
+        this.blockArray = new byte[rawSize];
+        this.block = ByteBuffer.wrap(blockArray);
+        this.compArray = new byte[rawSize];
+        if (!readIndex())
+        {
+            scanIndex();
+        }
+    }
+    /**
+     * Returns time of first frame or -1 if empty.
+     * @return
+     */
+    public long getStartTime()
+    {
+        return blockCount > 0 ? index[0] : -1;
+    }
+    /**
+     * Returns time of last frame or -1 if empty.
+     * @return
+     */
+    public long getEndTime()
+    {
+        return blockCount > 0 ? index[(blockCount-1)*INDEX_LONGS+1] : -1;
+    }
+    /**
+     * Returns number of frames in file.
+     * @return
+     */
+    public long getFrameCount()
+    {
+        long sum = 0;
+        for (int ii=0;ii<blockCount;ii++)
+        {
+            sum += index[ii*INDEX_LONGS+3];
+        }
+        return sum;
+    }
+    /**
+     * Sets PGN filter. Only frames with given PGN's are returned.
+     * @param pgns PGN's or none to remove filter.
+     */
+    public void setPgnFilter(int... pgns)
+    {
+        Arrays.fill(bloomFilter, 0);
+        if (pgns == null || pgns.length == 0)
+        {
+            pgnFilter = null;
+        }
+        else
+        {
+            pgnFilter = Arrays.copyOf(pgns, pgns.length);
+            Arrays.sort(pgnFilter);
+            for (int pgn : pgnFilter)
+            {
+                addBloom(bloomFilter, 0, pgn);
+            }
+        }
+    }
+    /**
+     * Positions reader so that next returns first frame having time greater or
+     * equal to given time.
+     * @param time
+     * @throws IOException
+     */
+    public void seek(long time) throws IOException
+    {
+        int lo = 0;
+        int hi = blockCount-1;
+        int blk = blockCount;
+        while (lo <= hi)
+        {
+            int mid = (lo+hi)>>>1;
+            if (index[mid*INDEX_LONGS+1] >= time)
+            {
+                blk = mid;
+                hi = mid-1;
+            }
+            else
+            {
+                lo = mid+1;
+            }
+        }
+        blockIndex = blk;
+        if (blk == blockCount)
+        {
+            record = count;
+            return;
+        }
+        load(blk);
+        lo = 0;
+        hi = count-1;
+        int rec = count;
+        while (lo <= hi)
+        {
+            int mid = (lo+hi)>>>1;
+            if (block.getLong(mid*RECORD_SIZE+TIME_OFFSET) >= time)
+            {
+                rec = mid;
+                hi = mid-1;
+            }
+            else
+            {
+                lo = mid+1;
+            }
+        }
+        record = rec-1;
+    }
+    /**
+     * Rewinds to the start of file.
+     */
+    public void rewind()
+    {
+        blockIndex = -1;
+        record = count;
+    }
+    /**
+     * Advances to next frame accepted by filter.
+     * @return false when there is no more frames.
+     * @throws IOException
+     */
+    public boolean next() throws IOException
+    {
+        while (true)
+        {
+            record++;
+            while (record >= count)
+            {
+                blockIndex++;
+                while (blockIndex < blockCount && pgnFilter != null && !intersects(index, blockIndex*INDEX_LONGS+4, bloomFilter))
+                {
+                    blockIndex++;
+                }
+                if (blockIndex >= blockCount)
+                {
+                    return false;
+                }
+                load(blockIndex);
+                record = 0;
+            }
+            if (pgnFilter == null || Arrays.binarySearch(pgnFilter, PGN.pgn(getCanId())) >= 0)
+            {
+                return true;
+            }
+        }
+    }
+    public long getTime()
+    {
+        return block.getLong(record*RECORD_SIZE+TIME_OFFSET);
+    }
+    public int getCanId()
+    {
+        return block.getInt(record*RECORD_SIZE+CANID_OFFSET);
+    }
+    public int getLength()
+    {
+        return block.get(record*RECORD_SIZE+LENGTH_OFFSET);
+    }
+    /**
+     * Returns data of current frame. Returned ReadBuffer is reused.
+     * @return
+     */
+    public ReadBuffer getData()
+    {
+        int off = record*RECORD_SIZE;
+        data.pos = off+DATA_OFFSET;
+        data.limit = data.pos+block.get(off+LENGTH_OFFSET);
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        inflater.end();
+        channel.close();
+    }
+
+    private void load(int blk) throws IOException
+    {
+        if (loaded == blk)
+        {
+            return;
+        }
+        long offset = index[blk*INDEX_LONGS+2];
+        header.clear();
+        read(header, offset);
+        if (header.getInt() != BLOCK_MAGIC)
+        {
+            throw new IOException("block magic missing at "+offset);
+        }
+        count = header.getInt();
+        int rawLength = header.getInt();
+        int storedLength = header.getInt();
+        if (storedLength < rawLength)
+        {
+            read(ByteBuffer.wrap(compArray, 0, storedLength), offset+BLOCK_HEADER_SIZE);
+            inflater.reset();
+            inflater.setInput(compArray, 0, storedLength);
+            try
+            {
+                int len = inflater.inflate(blockArray, 0, rawLength);
+                if (len != rawLength)
+                {
+                    throw new IOException("block at "+offset+" corrupted");
+                }
+            }
+            catch (DataFormatException ex)
+            {
+                throw new IOException(ex);
+            }
+        }
+        else
+        {
+            read(ByteBuffer.wrap(blockArray, 0, rawLength), offset+BLOCK_HEADER_SIZE);
+        }
+        loaded = blk;
+    }
+
+    private boolean readIndex() throws IOException
+    {
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE+TRAILER_SIZE)
+        {
+            return false;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(TRAILER_SIZE);
+        read(bb, size-TRAILER_SIZE);
+        long indexOffset = bb.getLong();
+        int cnt = bb.getInt();
+        if (bb.getInt() != INDEX_MAGIC || indexOffset+(long)cnt*INDEX_ENTRY_SIZE+TRAILER_SIZE != size)
+        {
+            return false;
+        }
+        bb = ByteBuffer.allocate(cnt*INDEX_ENTRY_SIZE);
+        read(bb, indexOffset);
+        index = new long[cnt*INDEX_LONGS];
+        bb.asLongBuffer().get(index);
+        blockCount = cnt;
+        return true;
+    }
+    /**
+     * Rebuilds index from block headers. Incomplete last block is ignored.
+     * @throws IOException
+     */
+    private void scanIndex() throws IOException
+    {
+        long size = channel.size();
+        index = new long[INDEX_LONGS*64];
+        blockCount = 0;
+        long offset = FILE_HEADER_SIZE;
+        while (offset+BLOCK_HEADER_SIZE <= size)
+        {
+            header.clear();
+            read(header, offset);
+            if (header.getInt() != BLOCK_MAGIC)
+            {
+                break;
+            }
+            int cnt = header.getInt();
+            header.getInt();
+            int storedLength = header.getInt();
+            long next = offset+BLOCK_HEADER_SIZE+storedLength;
+            if (next > size)
+            {
+                break;
+            }
+            if ((blockCount+1)*INDEX_LONGS > index.length)
+            {
+                index = Arrays.copyOf(index, index.length*2);
+            }
+            int idx = blockCount*INDEX_LONGS;
+            index[idx] = header.getLong();
+            index[idx+1] = header.getLong();
+            index[idx+2] = offset;
+            index[idx+3] = cnt;
+            for (int ii=0;ii<BLOOM_LONGS;ii++)
+            {
+                index[idx+4+ii] = header.getLong();
+            }
+            blockCount++;
+            offset = next;
+        }
+    }
+
+    private void read(ByteBuffer bb, long position) throws IOException
+    {
+        while (bb.hasRemaining())
+        {
+            int rc = channel.read(bb, position);
+            if (rc < 0)
+            {
+                throw new EOFException();
+            }
+            position += rc;
+        }
+        bb.flip();
+    }
+
+    private class Data implements ReadBuffer
+    {
+        private int pos;
+        private int limit;
+
+        @Override
+        public int remaining()
+        {
+            return limit - pos;
+        }
+
+        @Override
+        public byte get()
+        {
+            return blockArray[pos++];
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.capture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import static java.util.logging.Level.SEVERE;
+import org.vesalainen.can.AbstractCanService;
+import org.vesalainen.can.AbstractMessageFactory;
+import org.vesalainen.can.DefaultMessageFactory;
+import org.vesalainen.can.ReplayPacer;
+import org.vesalainen.can.SignalCompiler;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ * CanCaptureService replays capture file written by CanCaptureWriter.
+ * <p>Replay can be limited by time range and PGN's. Frames are replayed as
+ * fast as possible or paced by capture timestamps when speed is set.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CanCaptureService extends AbstractCanService
+{
+    private final Path path;
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+    private int[] pgns;
+    private double speed;
+
+    public CanCaptureService(Path path, CachedScheduledThreadPool executor, SignalCompiler compiler)
+    {
+        this(path, executor, new DefaultMessageFactory(compiler));
+    }
+
+    public CanCaptureService(Path path, CachedScheduledThreadPool executor, AbstractMessageFactory messageFactory)
+    {
+        super(executor, messageFactory);
+        this.path = path;
+    }
+    /**
+     * Sets replayed time range.
+     * @param from Inclusive
+     * @param to Exclusive
+     */
+    public void setTimeRange(long from, long to)
+    {
+        this.from = from;
+        this.to = to;
+    }
+    /**
+     * Sets replayed PGN's.
+     * @param pgns PGN's or none for all.
+     */
+    public void setPgnFilter(int... pgns)
+    {
+        this.pgns = pgns;
+    }
+    /**
+     * Sets replay speed. 0 replays as fast as possible, 1 in real time and
+     * N N-times real time.
+     * @param speed
+     */
+    public void setSpeed(double speed)
+    {
+        if (speed < 0)
+        {
+            throw new IllegalArgumentException("negative speed");
+        }
+        this.speed = speed;
+    }
+
+    @Override
+    public void run()
+    {
+        try (CanCaptureReader reader = new CanCaptureReader(path))
+        {
+            started();
+            reader.setPgnFilter(pgns);
+            if (from != Long.MIN_VALUE)
+            {
+                reader.seek(from);
+            }
+            ReplayPacer pacer = new ReplayPacer(speed);
+            while (reader.next())
+            {
+                long time = reader.getTime();
+                if (time >= to)
+                {
+                    break;
+                }
+                pacer.pace(time);
+                frame(time, reader.getCanId(), reader.getData());
+            }
+        }
+        catch (Exception ex)
+        {
+            log(SEVERE, ex, "%s", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void sendRaw(int canId, int length, byte[] data) throws IOException
+    {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+}
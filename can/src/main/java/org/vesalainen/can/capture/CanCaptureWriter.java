@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.capture;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.*;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import org.vesalainen.can.Frame;
+import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.nio.ReadBuffer;
+import static org.vesalainen.can.capture.CaptureFormat.*;
+
+/**
+ * CanCaptureWriter writes frames into compact binary capture file.
+ * <p>Frames are collected into fixed-width record blocks. Blocks are
+ * optionally compressed with Deflater. Index of blocks is written when
+ * writer is closed.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.can.capture.CanCaptureReader
+ */
+public class CanCaptureWriter implements Frame, AutoCloseable
+{
+    private final FileChannel channel;
+    private final int blockFrames;
+    private final boolean compress;
+    private final byte[] blockArray;
+    private final ByteBuffer block;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private final ByteBuffer[] srcs = new ByteBuffer[2];
+    private final Deflater deflater;
+    private final byte[] compArray;
+    private final long[] bloom = new long[BLOOM_LONGS];
+    private long[] index = new long[INDEX_LONGS*64];
+    private int blockCount;
+    private int count;
+    private long firstTime;
+    private long lastTime;
+    private long position;
+
+    public CanCaptureWriter(Path path, boolean compress) throws IOException
+    {
+        this(path, 4096, compress);
+    }
+    /**
+     * Creates new capture file
+     * @param path
+     * @param blockFrames Maximum number of frames in block
+     * @param compress If true blocks are compressed
+     * @throws IOException
+     */
+    public CanCaptureWriter(Path path, int blockFrames, boolean compress) throws IOException
+    {
+        this.channel = FileChannel.open(path, WRITE, CREATE, TRUNCATE_EXISTING);
+        this.blockFrames = blockFrames;
+        this.compress = compress;
+        int rawSize = blockFrames*RECORD_SIZE;
+        this.blockArray = new byte[rawSize];
+        this.block = ByteBuffer.wrap(blockArray);
+        if (compress)
+        {
+            this.deflater = new Deflater(Deflater.BEST_SPEED);
+            this.compArray = new byte[rawSize];
+        }
+        else
+        {
+            this.deflater = null;
+            this.compArray = null;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        bb.putInt(FILE_MAGIC);
+        bb.putShort(VERSION);
+        bb.putShort(compress ? FLAG_COMPRESSED : 0);
+        bb.putInt(blockFrames);
+        bb.putInt(0);
+        bb.flip();
+        write(bb);
+    }
+    /**
+     * Writes frame. Data longer than 8 bytes is not supported.
+     * @param time
+     * @param canId
+     * @param data
+     */
+    @Override
+    public synchronized void frame(long time, int canId, ReadBuffer data)
+    {
+        int len = data.remaining();
+        if (len > MAX_DATA)
+        {
+            throw new IllegalArgumentException(len+" data length not supported");
+        }
+        if (count == blockFrames)
+        {
+            try
+            {
+                writeBlock();
+            }
+            catch (IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        if (count == 0)
+        {
+            firstTime = time;
+        }
+        lastTime = time;
+        block.putLong(time);
+        block.putInt(canId);
+        block.put((byte) len);
+        int pos = block.position();
+        data.get(blockArray, pos, len);
+        Arrays.fill(blockArray, pos+len, pos+MAX_DATA, (byte)0);
+        block.position(pos+MAX_DATA);
+        addBloom(bloom, 0, PGN.pgn(canId));
+        count++;
+    }
+    /**
+     * Writes current partial block to file.
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException
+    {
+        if (count > 0)
+        {
+            writeBlock();
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            if (count > 0)
+            {
+                writeBlock();
+            }
+            long indexOffset = position;
+            ByteBuffer bb = ByteBuffer.allocate(blockCount*INDEX_ENTRY_SIZE+TRAILER_SIZE);
+            for (int ii=0;ii<blockCount*INDEX_LONGS;ii++)
+            {
+                bb.putLong(index[ii]);
+            }
+            bb.putLong(indexOffset);
+            bb.putInt(blockCount);
+            bb.putInt(INDEX_MAGIC);
+            bb.flip();
+            write(bb);
+        }
+        finally
+        {
+            channel.close();
+            if (deflater != null)
+            {
+                deflater.end();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException
+    {
+        int rawLength = block.position();
+        ByteBuffer data;
+        if (compress)
+        {
+            deflater.reset();
+            deflater.setInput(blockArray, 0, rawLength);
+            deflater.finish();
+            int len = deflater.deflate(compArray);
+            if (deflater.finished() && len < rawLength)
+            {
+                data = ByteBuffer.wrap(compArray, 0, len);
+            }
+            else
+            {
+                data = ByteBuffer.wrap(blockArray, 0, rawLength);
+            }
+        }
+        else
+        {
+            data = ByteBuffer.wrap(blockArray, 0, rawLength);
+        }
+        header.clear();
+        header.putInt(BLOCK_MAGIC);
+        header.putInt(count);
+        header.putInt(rawLength);
+        header.putInt(data.remaining());
+        header.putLong(firstTime);
+        header.putLong(lastTime);
+        for (int ii=0;ii<BLOOM_LONGS;ii++)
+        {
+            header.putLong(bloom[ii]);
+        }
+        header.flip();
+        if ((blockCount+1)*INDEX_LONGS > index.length)
+        {
+            index = Arrays.copyOf(index, index.length*2);
+        }
+        int idx = blockCount*INDEX_LONGS;
+        index[idx] = firstTime;
+        index[idx+1] = lastTime;
+        index[idx+2] = position;
+        index[idx+3] = count;
+        System.arraycopy(bloom, 0, index, idx+4, BLOOM_LONGS);
+        blockCount++;
+        srcs[0] = header;
+        srcs[1] = data;
+        while (header.hasRemaining() || data.hasRemaining())
+        {
+            position += channel.write(srcs);
+        }
+        block.clear();
+        Arrays.fill(bloom, 0);
+        count = 0;
+    }
+
+    private void write(ByteBuffer bb) throws IOException
+    {
+        while (bb.hasRemaining())
+        {
+            position += channel.write(bb);
+        }
+    }
+}
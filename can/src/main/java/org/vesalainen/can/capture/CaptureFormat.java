@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.capture;
+
+/**
+ * Binary CAN capture file format.
+ * <pre>
+ * File header (16 bytes)
+ *  int magic, short version, short flags, int blockFrames, int reserved
+ * Blocks
+ *  Block header (64 bytes)
+ *   int magic, int count, int rawLength, int storedLength, 
+ *   long firstTime, long lastTime, long[4] pgn bloom
+ *  Records (raw or deflated if storedLength &lt; rawLength)
+ *   long time, int canId, byte length, byte[8] data
+ * Index
+ *  Entry per block (64 bytes)
+ *   long firstTime, long lastTime, long offset, long count, long[4] pgn bloom
+ * Trailer (16 bytes)
+ *  long indexOffset, int blockCount, int magic
+ * </pre>
+ * If trailer is missing, because writer was not closed, index is rebuilt by
+ * scanning block headers.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+final class CaptureFormat
+{
+    static final int FILE_MAGIC = 0x43414e43;  // CANC
+    static final int BLOCK_MAGIC = 0x424c4b30; // BLK0
+    static final int INDEX_MAGIC = 0x43494458; // CIDX
+    static final short VERSION = 1;
+    static final short FLAG_COMPRESSED = 1;
+    static final int FILE_HEADER_SIZE = 16;
+    static final int BLOCK_HEADER_SIZE = 64;
+    static final int INDEX_ENTRY_SIZE = 64;
+    static final int TRAILER_SIZE = 16;
+    static final int MAX_DATA = 8;
+    static final int RECORD_SIZE = 8+4+1+MAX_DATA;
+    static final int TIME_OFFSET = 0;
+    static final int CANID_OFFSET = 8;
+    static final int LENGTH_OFFSET = 12;
+    static final int DATA_OFFSET = 13;
+    static final int BLOOM_LONGS = 4;
+    static final int INDEX_LONGS = 4+BLOOM_LONGS;
+
+    private CaptureFormat()
+    {
+    }
+    /**
+     * Sets pgn bit in bloom filter.
+     * @param bloom
+     * @param pgn 
+     */
+    static void addBloom(long[] bloom, int offset, int pgn)
+    {
+        int bit = bloomBit(pgn);
+        bloom[offset+(bit>>6)] |= 1L<<(bit & 63);
+    }
+    /**
+     * Returns true if blooms have common bits.
+     * @param bloom
+     * @param offset
+     * @param filter
+     * @return 
+     */
+    static boolean intersects(long[] bloom, int offset, long[] filter)
+    {
+        for (int ii=0;ii<BLOOM_LONGS;ii++)
+        {
+            if ((bloom[offset+ii] & filter[ii]) != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    private static int bloomBit(int pgn)
+    {
+        int h = pgn * 0x9E3779B9;
+        return (h>>>24);
+    }
+}
@@ -16,15 +16,36 @@
  */
 package org.vesalainen.can.dbc;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
 import org.vesalainen.can.AbstractCanService;
 import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.util.HexUtil;
+import org.vesalainen.util.logging.JavaLogging;
 
 /**
- *
+ * DBC holds message classes of added DBC files.
+ * <p>Parsed DBC files are cached as DBCCatalog files in catalog directory.
+ * Catalog is used instead of parsing when source hash matches. Catalogs
+ * are deserialized as trusted classes, so directory must not be writable by
+ * other users. Caching is disabled unless directory is set with system 
+ * property org.vesalainen.can.dbc.catalog or setCatalogDirectory.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.can.dbc.DBCCatalog
  */
 public class DBC
 {
@@ -32,6 +53,8 @@ public class DBC
     protected static final Map<Integer,MessageClass> pgnMap = new HashMap<>();
     private static boolean hasJ1939;
     private static boolean hasN2K;
+    private static Path catalogDirectory = catalogDirectory();
+    private static final JavaLogging log = JavaLogging.getLogger(DBC.class);
     
     public static void addJ1939()
     {
@@ -42,12 +65,41 @@ public class DBC
     {
         if (!hasJ1939)
         {
-            addJ1939();
+            addDBCFiles(
+                    AbstractCanService.class.getResourceAsStream("/j1939.dbc"),
+                    AbstractCanService.class.getResourceAsStream("/n2k.dbc")
+            );
+            DBC.hasJ1939 = true;
+        }
+        else
+        {
+            addDBCFile(AbstractCanService.class.getResourceAsStream("/n2k.dbc"));
         }
-        addDBCFile(AbstractCanService.class.getResourceAsStream("/n2k.dbc"));
         DBC.hasN2K = true;
     }
 
+    private static Path catalogDirectory()
+    {
+        String dir = System.getProperty("org.vesalainen.can.dbc.catalog");
+        return dir != null && !dir.isEmpty() ? Paths.get(dir) : null;
+    }
+    /**
+     * Returns catalog directory or null if catalogs are disabled.
+     * @return 
+     */
+    public static Path getCatalogDirectory()
+    {
+        return catalogDirectory;
+    }
+    /**
+     * Sets directory for catalog files.
+     * @param dir Directory or null to disable catalogs.
+     */
+    public static void setCatalogDirectory(Path dir)
+    {
+        DBC.catalogDirectory = dir;
+    }
+
     public static boolean hasJ1939()
     {
         return hasJ1939;
@@ -67,10 +119,113 @@ public class DBC
         return pgnMap.get(pgn);
     }
     public static <T> void addDBCFile(T path)
+    {
+        register(load(path));
+    }
+    /**
+     * Loads DBC files concurrently and adds them in given order.
+     * @param paths 
+     */
+    public static void addDBCFiles(Object... paths)
+    {
+        List<DBCFile> list = Arrays.stream(paths).parallel().map(DBC::load).collect(Collectors.toList());
+        list.forEach(DBC::register);
+    }
+    /**
+     * Loads DBCFile from catalog or parses it. InputStream, Path, File and URL
+     * sources are cached in catalog. Other sources are always parsed.
+     * @param <T>
+     * @param path
+     * @return 
+     */
+    public static <T> DBCFile load(T path)
+    {
+        Path dir = catalogDirectory;
+        byte[] bytes = readBytes(path);
+        if (dir == null || bytes == null)
+        {
+            return parse(bytes != null ? new ByteArrayInputStream(bytes) : path);
+        }
+        byte[] hash = DBCCatalog.hash(bytes);
+        Path catalog = dir.resolve(HexUtil.toString(Arrays.copyOf(hash, 16))+".dbcc");
+        if (Files.exists(catalog))
+        {
+            try
+            {
+                DBCFile dbcFile = DBCCatalog.read(catalog, hash);
+                if (dbcFile != null)
+                {
+                    log.fine("loaded %s", catalog);
+                    return dbcFile;
+                }
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                log.warning("%s: %s", catalog, ex);
+            }
+        }
+        DBCFile dbcFile = parse(new ByteArrayInputStream(bytes));
+        try
+        {
+            DBCCatalog.write(dbcFile, hash, catalog);
+            log.fine("wrote %s", catalog);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            log.warning("%s: %s", catalog, ex);
+        }
+        return dbcFile;
+    }
+    private static <T> DBCFile parse(T path)
     {
         DBCFile dbcFile = new DBCFile();
         DBCParser parser = DBCParser.getInstance();
         parser.parse(path, dbcFile);
+        return dbcFile;
+    }
+    private static <T> byte[] readBytes(T path)
+    {
+        try
+        {
+            if (path instanceof Path)
+            {
+                return Files.readAllBytes((Path) path);
+            }
+            if (path instanceof File)
+            {
+                return Files.readAllBytes(((File) path).toPath());
+            }
+            if (path instanceof URL)
+            {
+                try (InputStream is = ((URL) path).openStream())
+                {
+                    return readBytes(is);
+                }
+            }
+            if (path instanceof InputStream)
+            {
+                try (InputStream is = (InputStream) path)
+                {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    byte[] buf = new byte[8192];
+                    int rc = is.read(buf);
+                    while (rc != -1)
+                    {
+                        baos.write(buf, 0, rc);
+                        rc = is.read(buf);
+                    }
+                    return baos.toByteArray();
+                }
+            }
+            return null;
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    private static synchronized void register(DBCFile dbcFile)
+    {
         String protocolType = (String)dbcFile.getAttributeValue("ProtocolType");
         if (protocolType == null)
         {
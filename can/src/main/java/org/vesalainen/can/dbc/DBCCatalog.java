@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.dbc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import java.nio.ByteOrder;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardCopyOption.*;
+import static java.nio.file.StandardOpenOption.READ;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.vesalainen.util.IntRange;
+import org.vesalainen.util.SimpleIntRange;
+
+/**
+ * DBCCatalog is a precompiled binary snapshot of DBCFile. Loading catalog
+ * is much faster than parsing DBC file.
+ * <p>Catalog contains hash of the source it was created from. Catalog is
+ * used only if source hash matches.
+ * <p>Catalog is read from memory-mapped file.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class DBCCatalog
+{
+    private static final int MAGIC = 0x44424343;    // DBCC
+    private static final short VERSION = 1;
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+    private static final byte INT_TYPE = 1;
+    private static final byte HEX_TYPE = 2;
+    private static final byte FLOAT_TYPE = 3;
+    private static final byte STRING_TYPE = 4;
+    private static final byte ENUM_TYPE = 5;
+    /**
+     * Returns SHA-256 hash of source.
+     * @param source
+     * @return 
+     */
+    public static byte[] hash(byte[] source)
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return md.digest(source);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+    /**
+     * Writes catalog. Catalog is written to temporary file which is then 
+     * moved to path so that readers never see partial catalog.
+     * @param dbcFile
+     * @param hash Source hash
+     * @param path
+     * @throws IOException 
+     */
+    public static void write(DBCFile dbcFile, byte[] hash, Path path) throws IOException
+    {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeByte(hash.length);
+                out.write(hash);
+                writeString(out, dbcFile.version);
+                writeString(out, dbcFile.getComment());
+                out.writeInt(dbcFile.attributes.size());
+                for (Attribute a : dbcFile.attributes.values())
+                {
+                    out.writeByte(a.getTarget().ordinal());
+                    writeString(out, a.getName());
+                    writeType(out, a.getType());
+                    writeValue(out, a.getDef());
+                }
+                writeAttributes(out, dbcFile);
+                out.writeInt(dbcFile.nodes.size());
+                for (Node n : dbcFile.nodes.values())
+                {
+                    writeString(out, n.getName());
+                    writeString(out, n.getComment());
+                    writeAttributes(out, n);
+                }
+                out.writeInt(dbcFile.valueTables.size());
+                for (Map.Entry<String, List<ValueDescription>> e : dbcFile.valueTables.entrySet())
+                {
+                    writeString(out, e.getKey());
+                    writeValueDescriptions(out, e.getValue());
+                }
+                out.writeInt(dbcFile.messages.size());
+                for (MessageClass mc : dbcFile.messages.values())
+                {
+                    writeMessage(out, mc);
+                }
+                out.writeInt(dbcFile.messageTransmitters.size());
+                for (MessageTransmitter mt : dbcFile.messageTransmitters)
+                {
+                    out.writeInt(mt.getId());
+                    writeStrings(out, mt.getTransmitters());
+                }
+            }
+            Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+    /**
+     * Reads catalog.
+     * @param path
+     * @param hash Expected source hash
+     * @return DBCFile or null if catalog is not for this source or version.
+     * @throws IOException 
+     */
+    public static DBCFile read(Path path, byte[] hash) throws IOException
+    {
+        try (FileChannel ch = FileChannel.open(path, READ))
+        {
+            MappedByteBuffer bb = ch.map(READ_ONLY, 0, ch.size());
+            bb.order(ByteOrder.BIG_ENDIAN);
+            if (bb.remaining() < 7 || bb.getInt() != MAGIC || bb.getShort() != VERSION)
+            {
+                return null;
+            }
+            byte[] h = new byte[bb.get()&0xff];
+            bb.get(h);
+            if (!Arrays.equals(hash, h))
+            {
+                return null;
+            }
+            return read(bb);
+        }
+    }
+    private static DBCFile read(ByteBuffer bb)
+    {
+        DBCFile dbcFile = new DBCFile();
+        dbcFile.setVersion(readString(bb));
+        dbcFile.setComment(readString(bb));
+        int count = bb.getInt();
+        for (int ii=0;ii<count;ii++)
+        {
+            ObjectType target = ObjectType.values()[bb.get()];
+            String name = readString(bb);
+            Attribute attribute = new Attribute(target, name, readType(bb));
+            attribute.setDef(readValue(bb));
+            dbcFile.attributes.put(name, attribute);
+        }
+        readAttributes(bb, dbcFile);
+        count = bb.getInt();
+        for (int ii=0;ii<count;ii++)
+        {
+            String name = readString(bb);
+            dbcFile.addNode(name);
+            Node node = dbcFile.nodes.get(name);
+            node.setComment(readString(bb));
+            readAttributes(bb, node);
+        }
+        count = bb.getInt();
+        for (int ii=0;ii<count;ii++)
+        {
+            String name = readString(bb);
+            dbcFile.addValueTable(name, readValueDescriptions(bb));
+        }
+        count = bb.getInt();
+        for (int ii=0;ii<count;ii++)
+        {
+            readMessage(bb, dbcFile);
+        }
+        count = bb.getInt();
+        if (count > 0)
+        {
+            List<MessageTransmitter> list = new ArrayList<>();
+            for (int ii=0;ii<count;ii++)
+            {
+                int id = bb.getInt();
+                list.add(new MessageTransmitter(id, readStrings(bb)));
+            }
+            dbcFile.setMessageTransmitters(list);
+        }
+        return dbcFile;
+    }
+    private static void writeMessage(DataOutputStream out, MessageClass mc) throws IOException
+    {
+        out.writeInt(mc.getId());
+        writeString(out, mc.getName());
+        out.writeInt(mc.getSize());
+        writeString(out, mc.getTransmitter());
+        writeString(out, mc.getComment());
+        writeAttributes(out, mc);
+        out.writeInt(mc.getSignalCount());
+        for (SignalClass sc : mc.getSignals().values())
+        {
+            writeString(out, sc.getName());
+            ByteOrder byteOrder = sc.getByteOrder();
+            out.writeInt(SignalClass.abnormalizeStartBit(sc.getStartBit(), byteOrder));
+            out.writeInt(sc.getSize());
+            out.writeBoolean(byteOrder == ByteOrder.BIG_ENDIAN);
+            out.writeByte(sc.getValueType().ordinal());
+            out.writeDouble(sc.getFactor());
+            out.writeDouble(sc.getOffset());
+            out.writeDouble(sc.getMin());
+            out.writeDouble(sc.getMax());
+            writeString(out, sc.getUnit());
+            writeStrings(out, sc.getReceivers());
+            writeString(out, sc.getComment());
+            writeAttributes(out, sc);
+            writeValueDescriptions(out, sc.getValueDescriptions());
+            MultiplexerIndicator mi = sc.getMultiplexerIndicator();
+            out.writeBoolean(mi != null);
+            if (mi != null)
+            {
+                out.writeBoolean(mi.isExtended());
+                List<IntRange> ranges = mi.getRanges();
+                out.writeInt(ranges.size());
+                for (IntRange r : ranges)
+                {
+                    out.writeInt(r.getFrom());
+                    out.writeInt(r.getTo());
+                }
+                SignalClass multiplexor = mi.getMultiplexor();
+                writeString(out, multiplexor != null ? multiplexor.getName() : null);
+            }
+        }
+    }
+    private static void readMessage(ByteBuffer bb, DBCFile dbcFile)
+    {
+        int id = bb.getInt();
+        String name = readString(bb);
+        int size = bb.getInt();
+        String transmitter = readString(bb);
+        String comment = readString(bb);
+        DBCBase attrs = new DBCBase(dbcFile);
+        readAttributes(bb, attrs);
+        int count = bb.getInt();
+        List<SignalClass> signals = new ArrayList<>(count);
+        List<DBCBase> signalAttrs = new ArrayList<>(count);
+        List<List<ValueDescription>> valueDescriptions = new ArrayList<>(count);
+        List<String> multiplexors = new ArrayList<>(count);
+        for (int ii=0;ii<count;ii++)
+        {
+            String signalName = readString(bb);
+            int startBit = bb.getInt();
+            int bits = bb.getInt();
+            ByteOrder byteOrder = bb.get() != 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            ValueType valueType = ValueType.values()[bb.get()];
+            double factor = bb.getDouble();
+            double offset = bb.getDouble();
+            double min = bb.getDouble();
+            double max = bb.getDouble();
+            String unit = readString(bb);
+            List<String> receivers = readStrings(bb);
+            String signalComment = readString(bb);
+            DBCBase sa = new DBCBase(dbcFile);
+            readAttributes(bb, sa);
+            List<ValueDescription> vd = readValueDescriptions(bb);
+            MultiplexerIndicator mi = null;
+            String multiplexor = null;
+            if (bb.get() != 0)
+            {
+                boolean extended = bb.get() != 0;
+                int rc = bb.getInt();
+                List<IntRange> ranges = new ArrayList<>(rc);
+                for (int jj=0;jj<rc;jj++)
+                {
+                    ranges.add(new SimpleIntRange(bb.getInt(), bb.getInt()));
+                }
+                mi = new MultiplexerIndicator(ranges, extended);
+                multiplexor = readString(bb);
+            }
+            SignalClass sc = new SignalClass(dbcFile, signalName, mi, startBit, bits, byteOrder, valueType, factor, offset, min, max, unit, receivers);
+            sc.setComment(signalComment);
+            signals.add(sc);
+            signalAttrs.add(sa);
+            valueDescriptions.add(vd);
+            multiplexors.add(multiplexor);
+        }
+        MessageClass mc = new MessageClass(dbcFile, id, name, size, transmitter, signals);
+        mc.setComment(comment);
+        mc.attributeValues.putAll(attrs.attributeValues);
+        dbcFile.addMessage(mc);
+        for (int ii=0;ii<count;ii++)
+        {
+            SignalClass sc = signals.get(ii);
+            sc.attributeValues.putAll(signalAttrs.get(ii).attributeValues);
+            sc.setValueDescription(valueDescriptions.get(ii));
+            String multiplexor = multiplexors.get(ii);
+            if (multiplexor != null)
+            {
+                MultiplexerIndicator mi = sc.getMultiplexerIndicator();
+                mi.setMultiplexor(mc.getSignal(multiplexor), mi.getRanges());
+            }
+        }
+    }
+    private static void writeType(DataOutputStream out, AttributeValueType type) throws IOException
+    {
+        if (type instanceof IntAttributeValueType)
+        {
+            IntAttributeValueType t = (IntAttributeValueType) type;
+            out.writeByte(INT_TYPE);
+            writeValue(out, t.getMin());
+            writeValue(out, t.getMax());
+        }
+        else if (type instanceof HexAttributeValueType)
+        {
+            HexAttributeValueType t = (HexAttributeValueType) type;
+            out.writeByte(HEX_TYPE);
+            writeValue(out, t.getMin());
+            writeValue(out, t.getMax());
+        }
+        else if (type instanceof FloatAttributeValueType)
+        {
+            FloatAttributeValueType t = (FloatAttributeValueType) type;
+            out.writeByte(FLOAT_TYPE);
+            writeValue(out, t.getMin());
+            writeValue(out, t.getMax());
+        }
+        else if (type instanceof StringAttributeValueType)
+        {
+            out.writeByte(STRING_TYPE);
+        }
+        else if (type instanceof EnumAttributeValueType)
+        {
+            EnumAttributeValueType t = (EnumAttributeValueType) type;
+            out.writeByte(ENUM_TYPE);
+            writeStrings(out, t.getTypes());
+        }
+        else
+        {
+            throw new UnsupportedOperationException(type+" not supported");
+        }
+    }
+    private static AttributeValueType readType(ByteBuffer bb)
+    {
+        byte tag = bb.get();
+        switch (tag)
+        {
+            case INT_TYPE:
+                return new IntAttributeValueType((Integer)readValue(bb), (Integer)readValue(bb));
+            case HEX_TYPE:
+                return new HexAttributeValueType((Integer)readValue(bb), (Integer)readValue(bb));
+            case FLOAT_TYPE:
+                return new FloatAttributeValueType((Double)readValue(bb), (Double)readValue(bb));
+            case STRING_TYPE:
+                return StringAttributeValueType.STRING_ATTRIBUTE_VALUE_TYPE;
+            case ENUM_TYPE:
+                return new EnumAttributeValueType(readStrings(bb));
+            default:
+                throw new IllegalArgumentException(tag+" unknown attribute type");
+        }
+    }
+    private static void writeAttributes(DataOutputStream out, DBCBase base) throws IOException
+    {
+        Map<String, Object> values = base.getAttributeValues();
+        out.writeInt(values.size());
+        for (Map.Entry<String, Object> e : values.entrySet())
+        {
+            writeString(out, e.getKey());
+            writeValue(out, e.getValue());
+        }
+    }
+    private static void readAttributes(ByteBuffer bb, DBCBase base)
+    {
+        int count = bb.getInt();
+        for (int ii=0;ii<count;ii++)
+        {
+            String name = readString(bb);
+            base.attributeValues.put(name, readValue(bb));
+        }
+    }
+    private static void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (value instanceof Integer)
+        {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        }
+        else if (value instanceof Double)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (value instanceof String)
+        {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else
+        {
+            throw new UnsupportedOperationException(value.getClass()+" not supported");
+        }
+    }
+    private static Object readValue(ByteBuffer bb)
+    {
+        byte tag = bb.get();
+        switch (tag)
+        {
+            case NULL:
+                return null;
+            case LONG:
+                return bb.getLong();
+            case INTEGER:
+                return bb.getInt();
+            case DOUBLE:
+                return bb.getDouble();
+            case STRING:
+                return readString(bb);
+            default:
+                throw new IllegalArgumentException(tag+" unknown value type");
+        }
+    }
+    private static void writeValueDescriptions(DataOutputStream out, List<ValueDescription> list) throws IOException
+    {
+        if (list == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            out.writeInt(list.size());
+            for (ValueDescription vd : list)
+            {
+                out.writeInt(vd.getValue());
+                writeString(out, vd.getDescription());
+            }
+        }
+    }
+    private static List<ValueDescription> readValueDescriptions(ByteBuffer bb)
+    {
+        int count = bb.getInt();
+        if (count < 0)
+        {
+            return null;
+        }
+        List<ValueDescription> list = new ArrayList<>(count);
+        for (int ii=0;ii<count;ii++)
+        {
+            int value = bb.getInt();
+            list.add(new ValueDescription(value, readString(bb)));
+        }
+        return list;
+    }
+    private static void writeStrings(DataOutputStream out, List<String> list) throws IOException
+    {
+        if (list == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            out.writeInt(list.size());
+            for (String s : list)
+            {
+                writeString(out, s);
+            }
+        }
+    }
+    private static List<String> readStrings(ByteBuffer bb)
+    {
+        int count = bb.getInt();
+        if (count < 0)
+        {
+            return null;
+        }
+        List<String> list = new ArrayList<>(count);
+        for (int ii=0;ii<count;ii++)
+        {
+            list.add(readString(bb));
+        }
+        return list;
+    }
+    private static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        if (str == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = str.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+    private static String readString(ByteBuffer bb)
+    {
+        int len = bb.getInt();
+        if (len < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        bb.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -33,6 +33,11 @@ public class EnumAttributeValueType extends AttributeValueType
         this.types = types;
     }
 
+    List<String> getTypes()
+    {
+        return types;
+    }
+
     @Override
     String getType()
     {
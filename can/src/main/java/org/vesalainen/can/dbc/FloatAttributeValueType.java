@@ -34,6 +34,16 @@ public class FloatAttributeValueType extends AttributeValueType
         this.max = d2;
     }
 
+    Double getMin()
+    {
+        return min;
+    }
+
+    Double getMax()
+    {
+        return max;
+    }
+
     @Override
     String getType()
     {
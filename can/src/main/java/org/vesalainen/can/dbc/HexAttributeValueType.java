@@ -34,6 +34,16 @@ public class HexAttributeValueType extends AttributeValueType
         this.max = i2;
     }
 
+    Integer getMin()
+    {
+        return min;
+    }
+
+    Integer getMax()
+    {
+        return max;
+    }
+
     @Override
     String getType()
     {
@@ -49,6 +49,12 @@ public class MultiplexerIndicator
         this.extended = extended;
     }
 
+    MultiplexerIndicator(List<IntRange> ranges, boolean extended)
+    {
+        this.ranges = ranges;
+        this.extended = extended;
+    }
+
     public SignalClass getMultiplexor()
     {
         return multiplexor;
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.n2k;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import static java.util.logging.Level.WARNING;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import org.vesalainen.can.Frame;
+import org.vesalainen.can.dbc.DBC;
+import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.nio.ReadBuffer;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * FastPacketAssembler reassembles NMEA 2000 fast-packet frames into 
+ * messages which are forwarded to next Frame. Other frames are forwarded
+ * as is.
+ * <p>Transfers are keyed by source address, PGN and sequence id so that
+ * concurrent transfers from different sources don't interfere. Transfer
+ * buffers are preallocated. Assembling doesn't allocate.
+ * <p>Partial transfers older than timeout are dropped.
+ * <p>This class is not thread-safe. Frames must come from one thread.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.can.n2k.FastWriter
+ */
+public class FastPacketAssembler extends JavaLogging implements Frame, FastPacketAssemblerMXBean
+{
+    private static final int MAX_BYTES = 223;
+    private static final int EMPTY = -1;
+    private final Frame forward;
+    private final IntPredicate isFast;
+    private final long timeout;
+    private final int slots;
+    // hash table key -> slot
+    private final int mask;
+    private final int[] keys;
+    private final int[] slotIndex;
+    // slots
+    private final byte[] data;
+    private final int[] canIds;
+    private final long[] times;
+    private final int[] byteMax;
+    private final int[] byteCount;
+    private final int[] nextFrame;
+    private final int[] free;
+    private int freeCount;
+    private final Data buffer = new Data();
+    private long lastSweep;
+    private ObjectName objectName;
+    // stats
+    private long completed;
+    private long fails;
+    private long partialDrops;
+    private long overflows;
+    private int maxInFlight;
+    /**
+     * Creates FastPacketAssembler for fast PGN's in DBC with 64 slots and
+     * 1 second timeout.
+     * @param forward 
+     */
+    public FastPacketAssembler(Frame forward)
+    {
+        this(forward, dbcFastPgns(), 64, 1000);
+    }
+    /**
+     * Creates FastPacketAssembler
+     * @param forward Receiver of assembled messages and other frames
+     * @param isFast Returns true for fast-packet PGN's
+     * @param slots Maximum number of transfers in flight
+     * @param timeout Milliseconds after partial transfer is dropped
+     */
+    public FastPacketAssembler(Frame forward, IntPredicate isFast, int slots, long timeout)
+    {
+        super(FastPacketAssembler.class);
+        if (slots < 1)
+        {
+            throw new IllegalArgumentException("slots < 1");
+        }
+        this.forward = forward;
+        this.isFast = isFast;
+        this.slots = slots;
+        this.timeout = timeout;
+        int cap = Integer.highestOneBit(slots*2-1)<<1;
+        this.mask = cap-1;
+        this.keys = new int[cap];
+        this.slotIndex = new int[cap];
+        Arrays.fill(keys, EMPTY);
+        this.data = new byte[slots*MAX_BYTES];
+        this.canIds = new int[slots];
+        this.times = new long[slots];
+        this.byteMax = new int[slots];
+        this.byteCount = new int[slots];
+        this.nextFrame = new int[slots];
+        this.free = new int[slots];
+        for (int ii=0;ii<slots;ii++)
+        {
+            free[ii] = slots-ii-1;
+        }
+        this.freeCount = slots;
+    }
+    /**
+     * Returns predicate for PGN's having MessageType Fast in DBC.
+     * @return 
+     */
+    public static IntPredicate dbcFastPgns()
+    {
+        BitSet set = new BitSet();
+        DBC.forEachFastMessage(set::set);
+        return set::get;
+    }
+
+    @Override
+    public void frame(long time, int canId, ReadBuffer data)
+    {
+        int pgn = PGN.pgn(canId);
+        if (!isFast.test(pgn))
+        {
+            forward.frame(time, canId, data);
+            return;
+        }
+        if (time - lastSweep > timeout)
+        {
+            sweep(time);
+        }
+        int length = data.remaining();
+        if (length < 2)
+        {
+            fails++;
+            return;
+        }
+        int b = data.get() & 0xff;
+        int frameNo = b & 0x1f;
+        int key = (PGN.sourceAddress(canId)<<21)|(pgn<<3)|(b>>5);
+        int pos = find(key);
+        int slot;
+        if (frameNo == 0)
+        {
+            if (pos != -1)
+            {
+                partialDrops++;
+                slot = slotIndex[pos];
+            }
+            else
+            {
+                if (freeCount == 0)
+                {
+                    overflows++;
+                    return;
+                }
+                slot = free[--freeCount];
+                insert(key, slot);
+                maxInFlight = Math.max(maxInFlight, slots-freeCount);
+            }
+            canIds[slot] = canId;
+            byteMax[slot] = Math.min(data.get() & 0xff, MAX_BYTES);
+            byteCount[slot] = 0;
+            nextFrame[slot] = 1;
+        }
+        else
+        {
+            if (pos == -1)
+            {
+                fails++;
+                return;
+            }
+            slot = slotIndex[pos];
+            if (frameNo != nextFrame[slot])
+            {
+                fails++;
+                remove(pos);
+                return;
+            }
+            nextFrame[slot]++;
+        }
+        times[slot] = time;
+        int off = frameNo == 0 ? 0 : 6 + (frameNo-1)*7;
+        int cnt = Math.min(data.remaining(), byteMax[slot] - off);
+        int base = slot*MAX_BYTES+off;
+        for (int ii=0;ii<cnt;ii++)
+        {
+            this.data[base+ii] = data.get();
+        }
+        byteCount[slot] += cnt;
+        if (byteCount[slot] >= byteMax[slot])
+        {
+            remove(find(key));
+            completed++;
+            buffer.reset(slot*MAX_BYTES, byteMax[slot]);
+            forward.frame(time, canIds[slot], buffer);
+        }
+    }
+    /**
+     * Drops partial transfers older than timeout.
+     * @param time 
+     */
+    public void sweep(long time)
+    {
+        lastSweep = time;
+        int ii = 0;
+        while (ii <= mask)
+        {
+            if (keys[ii] != EMPTY && time - times[slotIndex[ii]] > timeout)
+            {
+                partialDrops++;
+                remove(ii);
+            }
+            else
+            {
+                ii++;
+            }
+        }
+    }
+    public void registerMBean(String name)
+    {
+        try
+        {
+            objectName = new ObjectName("org.vesalainen.can:type=fast,name="+name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        }
+        catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException | NotCompliantMBeanException ex)
+        {
+            log(WARNING, ex, "registerMBean(%s)", name);
+        }
+    }
+    public void unregisterMBean()
+    {
+        if (objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (Exception ex)
+            {
+                log(WARNING, ex, "unregisterMBean(%s)", objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public long getCompleted()
+    {
+        return completed;
+    }
+
+    @Override
+    public long getFails()
+    {
+        return fails;
+    }
+
+    @Override
+    public long getPartialDrops()
+    {
+        return partialDrops;
+    }
+
+    @Override
+    public long getOverflows()
+    {
+        return overflows;
+    }
+
+    @Override
+    public int getInFlight()
+    {
+        return slots-freeCount;
+    }
+
+    @Override
+    public int getMaxInFlight()
+    {
+        return maxInFlight;
+    }
+
+    @Override
+    public int getSlots()
+    {
+        return slots;
+    }
+
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    private int find(int key)
+    {
+        int pos = hash(key) & mask;
+        while (keys[pos] != EMPTY)
+        {
+            if (keys[pos] == key)
+            {
+                return pos;
+            }
+            pos = (pos+1) & mask;
+        }
+        return -1;
+    }
+    private void insert(int key, int slot)
+    {
+        int pos = hash(key) & mask;
+        while (keys[pos] != EMPTY)
+        {
+            pos = (pos+1) & mask;
+        }
+        keys[pos] = key;
+        slotIndex[pos] = slot;
+    }
+    /**
+     * Removes table entry and returns its slot to free list. Following 
+     * entries of the cluster are shifted back so that lookups don't need
+     * tombstones.
+     * @param pos 
+     */
+    private void remove(int pos)
+    {
+        free[freeCount++] = slotIndex[pos];
+        int hole = pos;
+        int ii = (pos+1) & mask;
+        while (keys[ii] != EMPTY)
+        {
+            int home = hash(keys[ii]) & mask;
+            if (((ii - home) & mask) >= ((ii - hole) & mask))
+            {
+                keys[hole] = keys[ii];
+                slotIndex[hole] = slotIndex[ii];
+                hole = ii;
+            }
+            ii = (ii+1) & mask;
+        }
+        keys[hole] = EMPTY;
+    }
+    private class Data implements ReadBuffer
+    {
+        private int index;
+        private int limit;
+
+        private void reset(int offset, int length)
+        {
+            this.index = offset;
+            this.limit = offset+length;
+        }
+
+        @Override
+        public int remaining()
+        {
+            return limit - index;
+        }
+
+        @Override
+        public byte get()
+        {
+            return data[index++];
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.n2k;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public interface FastPacketAssemblerMXBean
+{
+    /**
+     * Returns number of completed messages.
+     * @return 
+     */
+    long getCompleted();
+    /**
+     * Returns number of frames which were out of sequence or without first 
+     * frame.
+     * @return 
+     */
+    long getFails();
+    /**
+     * Returns number of partial messages dropped because of timeout or 
+     * restart.
+     * @return 
+     */
+    long getPartialDrops();
+    /**
+     * Returns number of messages dropped because all slots were in use.
+     * @return 
+     */
+    long getOverflows();
+    int getInFlight();
+    int getMaxInFlight();
+    int getSlots();
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.can.dbc.DBCFile;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+import static org.vesalainen.can.dbc.ValueType.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AbstractMessageTest
+{
+    private int count;
+    
+    public AbstractMessageTest()
+    {
+    }
+
+    @Test
+    public void testChangeDetection()
+    {
+        SingleMessage msg = create();
+        msg.setChangeDetection(true);
+        frame(msg, 0, 0x0000000000001001L);
+        frame(msg, 10, 0x0000000000001001L);
+        assertEquals(1, count);
+        assertEquals(1, msg.getUnchangedCount());
+        // s2 within deadband
+        frame(msg, 20, 0x0000000000001201L);
+        assertEquals(1, count);
+        // s2 outside deadband
+        frame(msg, 30, 0x0000000000001601L);
+        assertEquals(2, count);
+        // s1 change
+        frame(msg, 40, 0x0000000000001602L);
+        assertEquals(3, count);
+        assertEquals(2, msg.getUnchangedCount());
+        msg.setChangeDetection(false);
+        frame(msg, 50, 0x0000000000001602L);
+        assertEquals(4, count);
+    }
+    @Test
+    public void testMinInterval()
+    {
+        SingleMessage msg = create();
+        assertEquals(0, msg.getMinInterval());
+        msg.setMinInterval(100);
+        frame(msg, 1000, 1);
+        frame(msg, 1050, 2);
+        frame(msg, 1099, 3);
+        frame(msg, 1100, 4);
+        assertEquals(2, count);
+        assertEquals(2, msg.getThrottledCount());
+    }
+    @Test
+    public void testDelayTimeAttribute()
+    {
+        DBCFile dbcFile = new DBCFile();
+        MessageClass mc = new MessageClass(dbcFile, 123, "test", 8, "", new ArrayList<>());
+        mc.setAttributeValue(AbstractMessage.DELAY_TIME, 50);
+        SingleMessage msg = new SingleMessage(null, mc, 123, 8, "test");
+        assertEquals(0, msg.getMinInterval());
+        msg.applyDelayTime();
+        assertEquals(50, msg.getMinInterval());
+    }
+    private void frame(SingleMessage msg, long time, long data)
+    {
+        msg.frame(time, 123, new DataUtil.LongBuffer(data, 8));
+    }
+    private SingleMessage create()
+    {
+        DBCFile dbcFile = new DBCFile();
+        List<SignalClass> list = new ArrayList<>();
+        list.add(new SignalClass(dbcFile, "s1", null, 0, 8, LITTLE_ENDIAN, UNSIGNED, 1.0, 0.0, 0.0, 0.0, "", null));
+        SignalClass s2 = new SignalClass(dbcFile, "s2", null, 8, 16, LITTLE_ENDIAN, UNSIGNED, 0.5, 0.0, 0.0, 0.0, "", null);
+        s2.setAttributeValue(ChangeFilter.DEADBAND, 1.0);
+        list.add(s2);
+        MessageClass mc = new MessageClass(dbcFile, 123, "test", 8, "", list);
+        SingleMessage msg = new SingleMessage(null, mc, 123, 8, "test");
+        msg.action = new Transaction(()->count++);
+        return msg;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.nio.ReadBuffer;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class FrameBatchTest
+{
+    
+    public FrameBatchTest()
+    {
+    }
+
+    @Test
+    public void test()
+    {
+        ByteBuffer bb = ByteBuffer.allocate(256);
+        FrameBatch batch = new FrameBatch(1);
+        batch.clear(bb);
+        for (int ii=0;ii<20;ii++)
+        {
+            int pos = bb.position();
+            for (int jj=0;jj<ii%9;jj++)
+            {
+                bb.put((byte) (ii+jj));
+            }
+            bb.position(pos);
+            batch.add(100+ii, ii, ii%9);
+        }
+        assertEquals(20, batch.size());
+        List<String> list = new ArrayList<>();
+        batch.forEach((long time, int canId, ReadBuffer data)->
+        {
+            assertEquals(100+canId, time);
+            assertEquals(canId%9, data.remaining());
+            byte[] arr = new byte[data.remaining()];
+            data.get(arr);
+            for (int jj=0;jj<arr.length;jj++)
+            {
+                assertEquals(canId+jj, arr[jj]);
+            }
+            list.add(""+canId);
+        });
+        assertEquals(20, list.size());
+        batch.clear(bb);
+        assertTrue(batch.isEmpty());
+    }
+    
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.can.dbc.DBCFile;
+import org.vesalainen.can.dbc.MessageClass;
+import org.vesalainen.can.dbc.SignalClass;
+import static org.vesalainen.can.dbc.ValueType.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class SignalDecoderGeneratorTest
+{
+    
+    public SignalDecoderGeneratorTest()
+    {
+    }
+
+    @Test
+    public void testDecode()
+    {
+        MessageClass mc = createMessageClass();
+        SignalDecoderGenerator generator = new SignalDecoderGenerator();
+        SignalDecoder decoder = generator.getDecoder(mc);
+        assertNotNull(decoder);
+        assertSame(decoder, generator.getDecoder(mc));
+        Rec generated = new Rec(mc.getSignalCount());
+        Rec lambda = new Rec(mc.getSignalCount());
+        Comp comp = new Comp(lambda);
+        List<ArrayAction<Object>> actions = new ArrayList<>();
+        mc.forEach((sc)->actions.add(comp.compile(mc, sc, 0)));
+        byte[] buf = new byte[16];
+        CanSource src = new SimpleCanSource(buf);
+        Random random = new Random(12345L);
+        for (int ii=0;ii<1000;ii++)
+        {
+            random.nextBytes(buf);
+            decoder.decode(buf, generated);
+            actions.forEach((a)->a.run(null, src));
+            assertArrayEquals(lambda.ints, generated.ints);
+            assertArrayEquals(lambda.longs, generated.longs);
+            assertArrayEquals(lambda.doubles, generated.doubles, 0);
+        }
+    }
+    @Test
+    public void testAccept()
+    {
+        MessageClass mc = createMessageClass();
+        SignalDecoderGenerator generator = new SignalDecoderGenerator();
+        SignalDecoder decoder = generator.getDecoder(mc, (sc)->sc.getName().equals("s2"));
+        Rec rec = new Rec(mc.getSignalCount());
+        byte[] buf = new byte[16];
+        Arrays.fill(buf, (byte)0xff);
+        decoder.decode(buf, rec);
+        assertEquals(0, rec.ints[0]);
+        assertEquals(-1, rec.ints[1]);
+    }
+    @Test
+    public void testIndexOf()
+    {
+        MessageClass mc = createMessageClass();
+        assertEquals(0, SignalDecoderGenerator.indexOf(mc, mc.getSignal("s1")));
+        assertEquals(4, SignalDecoderGenerator.indexOf(mc, mc.getSignal("s5")));
+    }
+    private MessageClass createMessageClass()
+    {
+        DBCFile dbcFile = new DBCFile();
+        List<SignalClass> list = new ArrayList<>();
+        list.add(new SignalClass(dbcFile, "s1", null, 0, 8, LITTLE_ENDIAN, UNSIGNED, 1.0, 0.0, 0.0, 0.0, "", null));
+        list.add(new SignalClass(dbcFile, "s2", null, 8, 12, LITTLE_ENDIAN, SIGNED, 1.0, 0.0, 0.0, 0.0, "", null));
+        list.add(new SignalClass(dbcFile, "s3", null, 20, 16, LITTLE_ENDIAN, UNSIGNED, 0.01, -40.0, 0.0, 0.0, "", null));
+        list.add(new SignalClass(dbcFile, "s4", null, 39, 13, BIG_ENDIAN, SIGNED, 0.5, 0.0, 0.0, 0.0, "", null));
+        list.add(new SignalClass(dbcFile, "s5", null, 56, 40, LITTLE_ENDIAN, UNSIGNED, 1.0, 0.0, 0.0, 0.0, "", null));
+        return new MessageClass(dbcFile, 123, "test", 16, "", list);
+    }
+    private static class Comp implements SignalCompiler<Object>
+    {
+        private final SignalSink sink;
+
+        public Comp(SignalSink sink)
+        {
+            this.sink = sink;
+        }
+        
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, java.util.function.ToIntFunction<CanSource> toIntFunction)
+        {
+            int index = SignalDecoderGenerator.indexOf(mc, sc);
+            return (ctx, src)->sink.setInt(index, toIntFunction.applyAsInt(src));
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, java.util.function.ToLongFunction<CanSource> toLongFunction)
+        {
+            int index = SignalDecoderGenerator.indexOf(mc, sc);
+            return (ctx, src)->sink.setLong(index, toLongFunction.applyAsLong(src));
+        }
+
+        @Override
+        public ArrayAction<Object> compile(MessageClass mc, SignalClass sc, java.util.function.ToDoubleFunction<CanSource> toDoubleFunction)
+        {
+            int index = SignalDecoderGenerator.indexOf(mc, sc);
+            return (ctx, src)->sink.setDouble(index, toDoubleFunction.applyAsDouble(src));
+        }
+        
+    }
+    private static class Rec implements SignalSink
+    {
+        private final int[] ints;
+        private final long[] longs;
+        private final double[] doubles;
+
+        public Rec(int count)
+        {
+            this.ints = new int[count];
+            this.longs = new long[count];
+            this.doubles = new double[count];
+        }
+
+        @Override
+        public void setInt(int signal, int value)
+        {
+            ints[signal] = value;
+        }
+
+        @Override
+        public void setLong(int signal, long value)
+        {
+            longs[signal] = value;
+        }
+
+        @Override
+        public void setDouble(int signal, double value)
+        {
+            doubles[signal] = value;
+        }
+        
+    }
+}
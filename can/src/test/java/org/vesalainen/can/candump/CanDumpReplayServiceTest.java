@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.candump;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.can.AbstractMessageFactory;
+import org.vesalainen.can.FrameBatch;
+import org.vesalainen.nio.ReadBuffer;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CanDumpReplayServiceTest
+{
+    
+    public CanDumpReplayServiceTest()
+    {
+    }
+
+    @Test
+    public void testFixture() throws IOException
+    {
+        Path path = Files.createTempFile("candump", ".log");
+        try (InputStream is = CanDumpReplayServiceTest.class.getResourceAsStream("/candump.log"))
+        {
+            Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
+            Recorder rec = new Recorder("can0", path);
+            rec.run();
+            assertEquals(4, rec.getFrameCount());
+            assertEquals(1, rec.getErrorFrames());
+            assertEquals(2, rec.getSkipped());   // can1 and garbage
+            assertArrayEquals(new long[]{1436509053000L, 1436509053100L, 1436509053200L, 1436509053300L}, rec.times());
+            assertEquals(0x18FEE6FE, (int)rec.canIds.get(0));
+            assertEquals(0x09F80102, (int)rec.canIds.get(1));
+            assertEquals(0x0CF00400, (int)rec.canIds.get(2));
+            
+            rec = new Recorder("can0", path);
+            rec.setSpeed(1);
+            long start = System.nanoTime();
+            rec.run();
+            long elapsed = (System.nanoTime() - start)/1000000;
+            assertEquals(4, rec.getFrameCount());
+            assertTrue(elapsed+" ms", elapsed >= 290);
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testParallel() throws IOException
+    {
+        Path path = Files.createTempFile("candump", ".log");
+        CachedScheduledThreadPool executor = new CachedScheduledThreadPool();
+        try
+        {
+            try (BufferedWriter w = Files.newBufferedWriter(path))
+            {
+                for (int ii=0;ii<5000;ii++)
+                {
+                    w.write(String.format("(%d.%06d) can0 %08X#%016X\n", 1436509053+ii/1000, (ii%1000)*1000, 0x18FEE600+(ii%256), (long)ii));
+                    if (ii % 1000 == 500)
+                    {
+                        w.write("(1436509053.000000) can0 20000004#0000000000000000\n");
+                    }
+                }
+            }
+            Recorder seq = new Recorder(null, path);
+            seq.run();
+            assertEquals(5000, seq.getFrameCount());
+            assertEquals(5, seq.getErrorFrames());
+            for (int par=2;par<=4;par++)
+            {
+                Recorder rec = new Recorder(null, path, executor);
+                rec.setParallelism(par);
+                rec.run();
+                assertEquals(5000, rec.getFrameCount());
+                assertEquals(5, rec.getErrorFrames());
+                assertEquals(0, rec.getSkipped());
+                assertArrayEquals(seq.times(), rec.times());
+                assertEquals(seq.canIds, rec.canIds);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+    private static class Recorder extends CanDumpReplayService
+    {
+        private final List<Long> times = new ArrayList<>();
+        private final List<Integer> canIds = new ArrayList<>();
+
+        public Recorder(String bus, Path path)
+        {
+            this(bus, path, null);
+        }
+
+        public Recorder(String bus, Path path, CachedScheduledThreadPool executor)
+        {
+            super(bus, path, executor, (AbstractMessageFactory)null);
+        }
+
+        @Override
+        public void frame(long time, int canId, ReadBuffer data)
+        {
+            times.add(time);
+            canIds.add(canId);
+        }
+
+        @Override
+        public void frames(FrameBatch batch)
+        {
+            for (int ii=0;ii<batch.size();ii++)
+            {
+                frame(batch.getTime(ii), batch.getCanId(ii), batch.getData(ii));
+            }
+        }
+        private long[] times()
+        {
+            return times.stream().mapToLong((l)->l).toArray();
+        }
+    }
+}
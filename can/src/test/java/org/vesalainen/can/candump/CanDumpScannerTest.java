@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.candump;
+
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CanDumpScannerTest
+{
+    
+    public CanDumpScannerTest()
+    {
+    }
+
+    @Test
+    public void test()
+    {
+        String log = 
+                "# comment\n"+
+                "(1436509053.249713) can0 18FEE6FE#0011223344556677\n"+
+                "\n"+
+                "(1436509053.25) can1 123#01\r\n"+
+                "  can0  09F80102   [3]  0a 0B ff\n"+
+                "<0x18fee6fe> [2] 01 02\n"+
+                "interface=can0, family=29, type=3, proto=1\n"+
+                "(1436509054.000001) can0 1FF#";
+        ByteBuffer bb = ByteBuffer.wrap(log.getBytes(US_ASCII));
+        CanDumpScanner s = new CanDumpScanner("can0");
+        
+        assertTrue(s.next(bb));
+        assertEquals(1436509053249L, s.getTime());
+        assertEquals(0x18FEE6FE, s.getRawId());
+        assertEquals(8, s.getLength());
+        assertEquals(0x77, s.getData()[7]);
+        
+        assertTrue(s.next(bb));
+        assertEquals(-1, s.getTime());
+        assertEquals(0x09F80102, s.getRawId());
+        assertEquals(3, s.getLength());
+        assertEquals(0x0a, s.getData()[0]);
+        assertEquals((byte)0xff, s.getData()[2]);
+        
+        assertTrue(s.next(bb));
+        assertEquals(0x18FEE6FE, s.getRawId());
+        assertEquals(2, s.getLength());
+        assertEquals(2, s.getData()[1]);
+        
+        assertTrue(s.next(bb));
+        assertEquals(1436509054000L, s.getTime());
+        assertEquals(0x1FF, s.getRawId());
+        assertEquals(0, s.getLength());
+        
+        assertFalse(s.next(bb));
+        assertEquals(2, s.getSkipped());
+        assertFalse(bb.hasRemaining());
+    }
+    
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.capture;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.WRITE;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.can.DataUtil.LongBuffer;
+import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.nio.ReadBuffer;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CanCaptureTest
+{
+    private static final int COUNT = 10000;
+    private static final int PGN1 = 129025;
+    private static final int PGN2 = 127250;
+    
+    public CanCaptureTest()
+    {
+    }
+
+    @Test
+    public void testCompressed() throws IOException
+    {
+        test(true);
+    }
+    @Test
+    public void testUncompressed() throws IOException
+    {
+        test(false);
+    }
+    @Test
+    public void testRecover() throws IOException
+    {
+        Path path = write(false);
+        try (FileChannel ch = FileChannel.open(path, WRITE))
+        {
+            ch.truncate(ch.size()-10);
+        }
+        try (CanCaptureReader reader = new CanCaptureReader(path))
+        {
+            assertEquals(COUNT, reader.getFrameCount());
+            reader.seek(5000);
+            assertTrue(reader.next());
+            assertEquals(5000, reader.getTime());
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    private void test(boolean compress) throws IOException
+    {
+        Path path = write(compress);
+        try (CanCaptureReader reader = new CanCaptureReader(path))
+        {
+            assertEquals(COUNT, reader.getFrameCount());
+            assertEquals(0, reader.getStartTime());
+            assertEquals(COUNT-1, reader.getEndTime());
+            int cnt = 0;
+            while (reader.next())
+            {
+                assertEquals(cnt, reader.getTime());
+                assertEquals(canId(cnt), reader.getCanId());
+                ReadBuffer data = reader.getData();
+                assertEquals(cnt%9, data.remaining());
+                for (int ii=0;ii<cnt%9;ii++)
+                {
+                    assertEquals((byte)(cnt+ii), data.get());
+                }
+                cnt++;
+            }
+            assertEquals(COUNT, cnt);
+            
+            reader.seek(4321);
+            assertTrue(reader.next());
+            assertEquals(4321, reader.getTime());
+            
+            reader.setPgnFilter(PGN2);
+            reader.rewind();
+            cnt = 0;
+            while (reader.next())
+            {
+                assertEquals(PGN2, PGN.pgn(reader.getCanId()));
+                cnt++;
+            }
+            assertEquals(COUNT/10, cnt);
+            
+            reader.setPgnFilter();
+            reader.seek(COUNT);
+            assertFalse(reader.next());
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    private Path write(boolean compress) throws IOException
+    {
+        Path path = Files.createTempFile("capture", ".bin");
+        try (CanCaptureWriter writer = new CanCaptureWriter(path, 1000, compress))
+        {
+            for (int ii=0;ii<COUNT;ii++)
+            {
+                long data = 0;
+                for (int jj=0;jj<ii%9;jj++)
+                {
+                    data |= ((ii+jj)&0xffL)<<(8*jj);
+                }
+                writer.frame(ii, canId(ii), new LongBuffer(data, ii%9));
+            }
+        }
+        return path;
+    }
+    private static int canId(int ii)
+    {
+        return PGN.canId(2, ii%10 == 0 ? PGN2 : PGN1, ii%7);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.dbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.can.AbstractCanService;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DBCCatalogTest
+{
+    
+    public DBCCatalogTest()
+    {
+    }
+
+    @Test
+    public void testExample() throws IOException
+    {
+        test(DBCParser.class.getResourceAsStream("/example.dbc"));
+    }
+    @Test
+    public void testN2K() throws IOException
+    {
+        test(AbstractCanService.class.getResourceAsStream("/n2k.dbc"));
+    }
+    @Test
+    public void testLoad() throws IOException
+    {
+        Path dir = Files.createTempDirectory("catalog");
+        Path old = DBC.getCatalogDirectory();
+        DBC.setCatalogDirectory(dir);
+        try
+        {
+            DBCFile dbcFile1 = DBC.load(DBCParser.class.getResourceAsStream("/example.dbc"));
+            assertEquals(1, Files.list(dir).count());
+            DBCFile dbcFile2 = DBC.load(DBCParser.class.getResourceAsStream("/example.dbc"));
+            StringBuilder sb1 = new StringBuilder();
+            dbcFile1.print(sb1);
+            StringBuilder sb2 = new StringBuilder();
+            dbcFile2.print(sb2);
+            assertEquals(sb1.toString(), sb2.toString());
+        }
+        finally
+        {
+            DBC.setCatalogDirectory(old);
+            Files.list(dir).forEach((p)->p.toFile().delete());
+            Files.delete(dir);
+        }
+    }
+    private void test(InputStream is) throws IOException
+    {
+        byte[] bytes = readAll(is);
+        DBCFile dbcFile1 = new DBCFile();
+        DBCParser parser = DBCParser.getInstance();
+        parser.parse(new ByteArrayInputStream(bytes), dbcFile1);
+        byte[] hash = DBCCatalog.hash(bytes);
+        Path path = Files.createTempFile("test", ".dbcc");
+        try
+        {
+            DBCCatalog.write(dbcFile1, hash, path);
+            DBCFile dbcFile2 = DBCCatalog.read(path, hash);
+            assertNotNull(dbcFile2);
+            StringBuilder sb1 = new StringBuilder();
+            dbcFile1.print(sb1);
+            StringBuilder sb2 = new StringBuilder();
+            dbcFile2.print(sb2);
+            assertEquals(sb1.toString(), sb2.toString());
+            assertNull(DBCCatalog.read(path, DBCCatalog.hash(new byte[]{1})));
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    private byte[] readAll(InputStream is) throws IOException
+    {
+        try (InputStream in = is)
+        {
+            byte[] buf = new byte[4096];
+            int len = 0;
+            int rc = in.read(buf, len, buf.length-len);
+            while (rc != -1)
+            {
+                len += rc;
+                if (len == buf.length)
+                {
+                    buf = java.util.Arrays.copyOf(buf, buf.length*2);
+                }
+                rc = in.read(buf, len, buf.length-len);
+            }
+            return java.util.Arrays.copyOf(buf, len);
+        }
+    }
+}
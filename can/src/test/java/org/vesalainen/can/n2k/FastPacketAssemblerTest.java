@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.can.n2k;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.can.DataUtil;
+import org.vesalainen.can.j1939.PGN;
+import org.vesalainen.nio.ReadBuffer;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class FastPacketAssemblerTest
+{
+    private static final int FAST = 129029;
+    private final List<Integer> ids = new ArrayList<>();
+    private final List<byte[]> msgs = new ArrayList<>();
+    
+    public FastPacketAssemblerTest()
+    {
+    }
+
+    @Test
+    public void testInterleaved()
+    {
+        Random r = new Random(12345678L);
+        byte[] b1 = new byte[43];
+        byte[] b2 = new byte[43];
+        r.nextBytes(b1);
+        r.nextBytes(b2);
+        List<Long> f1 = frames(b1);
+        List<Long> f2 = frames(b2);
+        int id1 = PGN.canId(3, FAST, 10);
+        int id2 = PGN.canId(3, FAST, 20);
+        FastPacketAssembler fpa = create(8);
+        for (int ii=0;ii<f1.size();ii++)
+        {
+            fpa.frame(ii, id1, new DataUtil.LongBuffer(f1.get(ii), 8));
+            fpa.frame(ii, id2, new DataUtil.LongBuffer(f2.get(ii), 8));
+        }
+        fpa.frame(10, PGN.canId(2, 127250, 10), new DataUtil.LongBuffer(1234, 8));
+        assertEquals(3, msgs.size());
+        assertEquals(id1, (int)ids.get(0));
+        assertArrayEquals(b1, msgs.get(0));
+        assertEquals(id2, (int)ids.get(1));
+        assertArrayEquals(b2, msgs.get(1));
+        assertEquals(8, msgs.get(2).length);
+        assertEquals(2, fpa.getCompleted());
+        assertEquals(2, fpa.getMaxInFlight());
+        assertEquals(0, fpa.getInFlight());
+        assertEquals(0, fpa.getFails());
+    }
+    @Test
+    public void testErrors()
+    {
+        byte[] b1 = new byte[43];
+        List<Long> f1 = frames(b1);
+        int id1 = PGN.canId(3, FAST, 10);
+        FastPacketAssembler fpa = create(1);
+        // missing first
+        fpa.frame(0, id1, new DataUtil.LongBuffer(f1.get(1), 8));
+        assertEquals(1, fpa.getFails());
+        // out of sequence
+        fpa.frame(0, id1, new DataUtil.LongBuffer(f1.get(0), 8));
+        fpa.frame(0, id1, new DataUtil.LongBuffer(f1.get(2), 8));
+        assertEquals(2, fpa.getFails());
+        assertEquals(0, fpa.getInFlight());
+        // overflow
+        fpa.frame(0, id1, new DataUtil.LongBuffer(f1.get(0), 8));
+        fpa.frame(0, PGN.canId(3, FAST, 11), new DataUtil.LongBuffer(f1.get(0), 8));
+        assertEquals(1, fpa.getOverflows());
+        // restart
+        fpa.frame(0, id1, new DataUtil.LongBuffer(f1.get(0), 8));
+        assertEquals(1, fpa.getPartialDrops());
+        // timeout
+        fpa.frame(2000, id1, new DataUtil.LongBuffer(f1.get(1), 8));
+        assertEquals(2, fpa.getPartialDrops());
+        assertEquals(3, fpa.getFails());
+        assertEquals(0, fpa.getInFlight());
+        assertTrue(msgs.isEmpty());
+    }
+    private FastPacketAssembler create(int slots)
+    {
+        return new FastPacketAssembler(this::frame, (p)->p==FAST, slots, 1000);
+    }
+    private void frame(long time, int canId, ReadBuffer data)
+    {
+        byte[] buf = new byte[data.remaining()];
+        data.get(buf, 0, buf.length);
+        ids.add(canId);
+        msgs.add(buf);
+    }
+    private static List<Long> frames(byte[] buf)
+    {
+        List<Long> list = new ArrayList<>();
+        FastWriter writer = new FastWriter();
+        writer.write(buf.length, buf, list::add);
+        return list;
+    }
+}
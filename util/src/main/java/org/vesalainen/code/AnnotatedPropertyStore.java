@@ -38,6 +38,7 @@ import java.nio.file.Path;
 import static java.nio.file.StandardOpenOption.*;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -101,6 +102,7 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     private Map<String,C> cMap;
     private String[] properties;
     private Map<String, MethodHandle> unmodifiableSetters;
+    private PropertyStoreAccessor<AnnotatedPropertyStore> accessor;
 
     public AnnotatedPropertyStore(AnnotatedPropertyStore aps)
     {
@@ -242,6 +244,7 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
                         c.copier = copier;
                     }
                 }
+                accessor = createAccessor(cls);
                 INNERS.put(cls, new Inner(this));
             }
             catch (IllegalAccessException ex)
@@ -487,6 +490,17 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
             throw new IllegalArgumentException(property+" doesn't have a getter");
         }
     }
+    /**
+     * Returns IntPropertySetter which invokes setters directly by id. All
+     * properties and aliases of this are registered in registry.
+     * @param registry
+     * @return 
+     */
+    @Override
+    public IntPropertySetter getIntPropertySetter(PropertyRegistry registry)
+    {
+        return new IdSetter(registry);
+    }
     @Override
     public String[] getProperties()
     {
@@ -509,6 +523,24 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     {
         return cMap.containsKey(property);
     }
+    /**
+     * Returns true if property has getter.
+     * @param property
+     * @return 
+     */
+    public boolean isReadable(String property)
+    {
+        return c(property).getter != null;
+    }
+    /**
+     * Returns true if property has setter.
+     * @param property
+     * @return 
+     */
+    public boolean isWritable(String property)
+    {
+        return c(property).setter != null;
+    }
     /**
      * Returns type of property
      * @param property
@@ -579,6 +611,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
         {
             throw new IllegalArgumentException("can't copy from "+from);
         }
+        if (accessor != null)
+        {
+            accessor.copy(from, this);
+            return;
+        }
         cMap.entrySet().forEach((entry) ->
         {
             MethodHandle copier = entry.getValue().copier;
@@ -831,6 +868,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final boolean getBoolean(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getBoolean(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -852,6 +894,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final byte getByte(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getByte(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -873,6 +920,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final char getChar(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getChar(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -894,6 +946,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final short getShort(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getShort(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -915,6 +972,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final int getInt(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getInt(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -936,6 +998,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final long getLong(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getLong(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -957,6 +1024,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final float getFloat(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getFloat(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -978,6 +1050,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final double getDouble(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return accessor.getDouble(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -999,6 +1076,11 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final <T> T getObject(String property)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            return (T) accessor.getObject(this, id);
+        }
         C c = cMap.get(property);
         if (c != null && c.getter != null)
         {
@@ -1020,6 +1102,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, boolean arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1041,6 +1129,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, byte arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1062,6 +1156,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, char arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1083,6 +1183,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, short arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1104,6 +1210,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, int arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1125,6 +1237,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, long arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1146,6 +1264,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, float arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1167,6 +1291,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, double arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1188,6 +1318,12 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     @Override
     public final void set(String property, Object arg)
     {
+        int id = id(property);
+        if (id >= 0)
+        {
+            accessor.set(this, id, arg);
+            return;
+        }
         C c = cMap.get(property);
         if (c != null && c.setter != null)
         {
@@ -1247,6 +1383,37 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
     {
     }
 
+    /**
+     * Returns generated accessor id of property or -1.
+     * @param property
+     * @return 
+     */
+    private int id(String property)
+    {
+        return accessor != null ? accessor.getId(property) : -1;
+    }
+    /**
+     * Returns generated accessor if class is annotated with 
+     * @PropertyStoreAccessorClass.
+     * @param cls
+     * @return 
+     */
+    private static PropertyStoreAccessor<AnnotatedPropertyStore> createAccessor(Class<? extends AnnotatedPropertyStore> cls)
+    {
+        if (cls.isAnnotationPresent(PropertyStoreAccessorClass.class))
+        {
+            try
+            {
+                Class<?> ac = Class.forName(cls.getName()+"Accessor", true, cls.getClassLoader());
+                return (PropertyStoreAccessor<AnnotatedPropertyStore>) ac.newInstance();
+            }
+            catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex)
+            {
+                throw new IllegalArgumentException(cls+" accessor not generated", ex);
+            }
+        }
+        return null;
+    }
     protected C c(String property)
     {
         C c = cMap.get(property);
@@ -1256,21 +1423,188 @@ public class AnnotatedPropertyStore extends JavaLogging implements PropertyGette
         }
         return c;
     }
+    private class IdSetter implements IntPropertySetter
+    {
+        private final PropertyRegistry registry;
+        private C[] cs = new C[0];
+
+        public IdSetter(PropertyRegistry registry)
+        {
+            this.registry = registry;
+            cMap.forEach((p, c)->
+            {
+                int id = registry.register(p);
+                if (id >= cs.length)
+                {
+                    cs = Arrays.copyOf(cs, Math.max(id+1, registry.size()));
+                }
+                cs[id] = c;
+            });
+        }
+
+        @Override
+        public PropertyRegistry getRegistry()
+        {
+            return registry;
+        }
+        
+        private C c(int id)
+        {
+            if (id >= 0 && id < cs.length)
+            {
+                C c = cs[id];
+                if (c != null && c.setter != null)
+                {
+                    return c;
+                }
+            }
+            throw new IllegalArgumentException(registry.getName(id)+" has no method handler");
+        }
+
+        @Override
+        public void set(int id, boolean arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, byte arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, char arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, short arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, int arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, long arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, float arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public void set(int id, double arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invokeExact(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+
+        @Override
+        public <T> void set(int id, T arg)
+        {
+            C c = c(id);
+            try
+            {
+                c.setter.invoke(AnnotatedPropertyStore.this, arg);
+            }
+            catch (Throwable ex)
+            {
+                throw new IllegalArgumentException("with "+registry.getName(id), ex);
+            }
+        }
+    }
     private static class Inner
     {
         private Map<String,C> cMap;
         private String[] properties;
+        private PropertyStoreAccessor<AnnotatedPropertyStore> accessor;
 
         public Inner(AnnotatedPropertyStore aps)
         {
             this.cMap = aps.cMap;
             this.properties = aps.properties;
+            this.accessor = aps.accessor;
         }
         
         private void populate(AnnotatedPropertyStore aps)
         {
             aps.cMap = this.cMap;
             aps.properties = this.properties;
+            aps.accessor = this.accessor;
         }
     }
     protected static class C
@@ -16,8 +16,12 @@
  */
 package org.vesalainen.code;
 
+import org.vesalainen.code.PropertyBuffer.OverflowPolicy;
+import org.vesalainen.code.PropertyBuffer.WaitStrategy;
+
 /**
- *
+ * BackgroundPropertySetterDispatcher dispatches property settings to 
+ * observers in background thread through PropertyBuffer.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
 public class BackgroundPropertySetterDispatcher implements PropertySetterDispatcher
@@ -26,9 +30,14 @@ public class BackgroundPropertySetterDispatcher implements PropertySetterDispatc
     private final PropertyBuffer buffer;
 
     public BackgroundPropertySetterDispatcher(int capacity)
+    {
+        this(capacity, OverflowPolicy.FAIL, WaitStrategy.PARK);
+    }
+
+    public BackgroundPropertySetterDispatcher(int capacity, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy)
     {
         dispatcher = new SimplePropertySetterDispatcher();
-        buffer = new PropertyBuffer(dispatcher, capacity);
+        buffer = new PropertyBuffer(dispatcher, capacity, overflowPolicy, waitStrategy);
     }
 
     public void start()
@@ -40,6 +49,19 @@ public class BackgroundPropertySetterDispatcher implements PropertySetterDispatc
     {
         buffer.stop();
     }
+    /**
+     * Registers buffers MXBean
+     * @param name 
+     */
+    public void registerMBean(String name)
+    {
+        buffer.registerMBean(name);
+    }
+
+    public void unregisterMBean()
+    {
+        buffer.unregisterMBean();
+    }
 
     @Override
     public void set(String property, boolean arg)
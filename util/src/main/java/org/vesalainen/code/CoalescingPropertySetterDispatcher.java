@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import static java.util.logging.Level.SEVERE;
+import org.vesalainen.util.Transactional;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * CoalescingPropertySetterDispatcher keeps only the latest value of each 
+ * observed property and delivers changed properties to observers in 
+ * executor thread at fixed rate and after commit.
+ * <p>Values are stored in slot table indexed by property id. Setting a 
+ * property writes the slot and marks it dirty. Producer never blocks and 
+ * slow observers never cause queue growth. Settings of properties which 
+ * doesn't have observers are ignored.
+ * <p>Each property should always be set with the same type.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.code.BackgroundPropertySetterDispatcher
+ */
+// PropertySetterDispatcher is the interface TimeoutStatsService and other
+// users still take, so this builds on it until they move to InterfaceDispatcher.
+@SuppressWarnings("deprecation")
+public class CoalescingPropertySetterDispatcher extends JavaLogging implements PropertySetterDispatcher, IntPropertySetter, Transactional
+{
+    private final PropertyRegistry registry = new PropertyRegistry();
+    private final SimplePropertySetterDispatcher dispatcher = new SimplePropertySetterDispatcher(registry);
+    private final ScheduledExecutorService executor;
+    private final long period;
+    private final TimeUnit unit;
+    private final int capacity;
+    private final JavaType[] types;
+    private final AtomicLongArray values;
+    private final Object[] objects;
+    private final AtomicLongArray dirty;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final LongAdder sets = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private ScheduledFuture<?> future;
+    /**
+     * Creates dispatcher for max 256 observed properties.
+     * @param executor
+     * @param period Delivery period. If 0 delivery happens only at commit.
+     * @param unit 
+     */
+    public CoalescingPropertySetterDispatcher(ScheduledExecutorService executor, long period, TimeUnit unit)
+    {
+        this(256, executor, period, unit);
+    }
+    /**
+     * Creates dispatcher
+     * @param capacity Max number of observed properties
+     * @param executor
+     * @param period Delivery period. If 0 delivery happens only at commit.
+     * @param unit 
+     */
+    public CoalescingPropertySetterDispatcher(int capacity, ScheduledExecutorService executor, long period, TimeUnit unit)
+    {
+        super(CoalescingPropertySetterDispatcher.class);
+        if (period < 0)
+        {
+            throw new IllegalArgumentException("negative period");
+        }
+        this.capacity = capacity;
+        this.executor = executor;
+        this.period = period;
+        this.unit = unit;
+        this.types = new JavaType[capacity];
+        this.values = new AtomicLongArray(capacity);
+        this.objects = new Object[capacity];
+        this.dirty = new AtomicLongArray((capacity+63)/64);
+    }
+    /**
+     * Starts periodic delivery.
+     */
+    public synchronized void start()
+    {
+        if (period > 0 && future == null)
+        {
+            future = executor.scheduleAtFixedRate(this::flush, period, period, unit);
+        }
+    }
+    /**
+     * Stops periodic delivery. Pending changes are not delivered.
+     */
+    public synchronized void stop()
+    {
+        if (future != null)
+        {
+            future.cancel(false);
+            future = null;
+        }
+    }
+    /**
+     * Requests delivery of changed properties in executor thread. Several 
+     * commits before delivery cause only one delivery.
+     * @param reason 
+     */
+    @Override
+    public void commit(String reason)
+    {
+        if (flushRequested.compareAndSet(false, true))
+        {
+            executor.execute(this::flush);
+        }
+    }
+    /**
+     * Delivers changed properties to observers in calling thread. Properties 
+     * are delivered in id order.
+     */
+    public synchronized void flush()
+    {
+        flushRequested.set(false);
+        int words = dirty.length();
+        for (int ww=0;ww<words;ww++)
+        {
+            long bits = dirty.getAndSet(ww, 0);
+            while (bits != 0)
+            {
+                int bit = Long.numberOfTrailingZeros(bits);
+                bits &= bits-1;
+                int id = ww*64+bit;
+                try
+                {
+                    deliver(id);
+                }
+                catch (RuntimeException ex)
+                {
+                    log(SEVERE, ex, "delivering %s", registry.getName(id));
+                }
+            }
+        }
+    }
+    /**
+     * Returns number of set calls of observed properties.
+     * @return 
+     */
+    public long getSets()
+    {
+        return sets.sum();
+    }
+    /**
+     * Returns number of delivered properties.
+     * @return 
+     */
+    public long getDelivered()
+    {
+        return delivered.sum();
+    }
+
+    @Override
+    public PropertyRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    @Override
+    public IntPropertySetter getIntPropertySetter(PropertyRegistry registry)
+    {
+        if (this.registry == registry)
+        {
+            return this;
+        }
+        return PropertySetterDispatcher.super.getIntPropertySetter(registry);
+    }
+
+    @Override
+    public void set(String property, boolean arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, byte arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, char arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, short arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, int arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, long arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, float arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, double arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(String property, Object arg)
+    {
+        set(registry.getId(property), arg);
+    }
+
+    @Override
+    public void set(int id, boolean arg)
+    {
+        put(id, JavaType.BOOLEAN, arg ? 1 : 0, null);
+    }
+
+    @Override
+    public void set(int id, byte arg)
+    {
+        put(id, JavaType.BYTE, arg, null);
+    }
+
+    @Override
+    public void set(int id, char arg)
+    {
+        put(id, JavaType.CHAR, arg, null);
+    }
+
+    @Override
+    public void set(int id, short arg)
+    {
+        put(id, JavaType.SHORT, arg, null);
+    }
+
+    @Override
+    public void set(int id, int arg)
+    {
+        put(id, JavaType.INT, arg, null);
+    }
+
+    @Override
+    public void set(int id, long arg)
+    {
+        put(id, JavaType.LONG, arg, null);
+    }
+
+    @Override
+    public void set(int id, float arg)
+    {
+        put(id, JavaType.FLOAT, Float.floatToRawIntBits(arg), null);
+    }
+
+    @Override
+    public void set(int id, double arg)
+    {
+        put(id, JavaType.DOUBLE, Double.doubleToRawLongBits(arg), null);
+    }
+
+    @Override
+    public <T> void set(int id, T arg)
+    {
+        put(id, JavaType.DECLARED, 0, arg);
+    }
+
+    @Override
+    public String[] getPrefixes()
+    {
+        return dispatcher.getPrefixes();
+    }
+    /**
+     * Adds observer.
+     * @param key
+     * @param ps 
+     * @throws IllegalStateException if capacity is exceeded.
+     */
+    @Override
+    public synchronized void addObserver(String key, PropertySetter ps)
+    {
+        if (registry.getId(key) < 0 && registry.size() >= capacity)
+        {
+            throw new IllegalStateException("capacity "+capacity+" exceeded by "+key);
+        }
+        registry.register(key);
+        dispatcher.addObserver(key, ps);
+    }
+
+    @Override
+    public void removeObserver(String key, PropertySetter ps)
+    {
+        dispatcher.removeObserver(key, ps);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return dispatcher.isEmpty();
+    }
+
+    @Override
+    public boolean containsProperty(String property)
+    {
+        return dispatcher.containsProperty(property);
+    }
+
+    private void put(int id, JavaType type, long value, Object obj)
+    {
+        if (id < 0 || id >= capacity)
+        {
+            return;
+        }
+        types[id] = type;
+        objects[id] = obj;
+        values.set(id, value);
+        int ww = id>>6;
+        long mask = 1L<<id;
+        long old = dirty.get(ww);
+        while ((old & mask) == 0 && !dirty.compareAndSet(ww, old, old | mask))
+        {
+            old = dirty.get(ww);
+        }
+        sets.increment();
+    }
+    
+    private void deliver(int id)
+    {
+        long value = values.get(id);
+        switch (types[id])
+        {
+            case BOOLEAN:
+                dispatcher.set(id, value != 0);
+                break;
+            case BYTE:
+                dispatcher.set(id, (byte) value);
+                break;
+            case CHAR:
+                dispatcher.set(id, (char) value);
+                break;
+            case SHORT:
+                dispatcher.set(id, (short) value);
+                break;
+            case INT:
+                dispatcher.set(id, (int) value);
+                break;
+            case LONG:
+                dispatcher.set(id, value);
+                break;
+            case FLOAT:
+                dispatcher.set(id, Float.intBitsToFloat((int) value));
+                break;
+            case DOUBLE:
+                dispatcher.set(id, Double.longBitsToDouble(value));
+                break;
+            case DECLARED:
+                dispatcher.set(id, objects[id]);
+                break;
+            default:
+                assert(false);
+        }
+        delivered.increment();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+/**
+ * IntPropertySetter is a PropertySetter counterpart which identifies 
+ * properties by id's of PropertyRegistry.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.code.PropertyRegistry
+ * @see org.vesalainen.code.PropertySetter#getIntPropertySetter(org.vesalainen.code.PropertyRegistry) 
+ */
+public interface IntPropertySetter
+{
+    /**
+     * Returns registry which id's are used.
+     * @return 
+     */
+    PropertyRegistry getRegistry();
+    
+    default void set(int id, boolean arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, byte arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, char arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, short arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, int arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, long arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, float arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default void set(int id, double arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+    default <T> void set(int id, T arg)
+    {
+        throw new UnsupportedOperationException("Not supported for property '"+getRegistry().getName(id)+"'");
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.util.Arrays;
+import org.vesalainen.code.setter.BooleanSetter;
+import org.vesalainen.code.setter.ByteSetter;
+import org.vesalainen.code.setter.CharSetter;
+import org.vesalainen.code.setter.DoubleSetter;
+import org.vesalainen.code.setter.FloatSetter;
+import org.vesalainen.code.setter.IntSetter;
+import org.vesalainen.code.setter.LongSetter;
+import org.vesalainen.code.setter.ObjectSetter;
+import org.vesalainen.code.setter.ShortSetter;
+
+/**
+ * IntPropertySetterAdapter adapts PropertySetter to IntPropertySetter. 
+ * Typed setters are resolved from PropertySetter once per property and type 
+ * and kept in array indexed by id.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class IntPropertySetterAdapter implements IntPropertySetter
+{
+    private final PropertyRegistry registry;
+    private final PropertySetter setter;
+    private volatile Entry[] entries = new Entry[0];
+
+    public IntPropertySetterAdapter(PropertyRegistry registry, PropertySetter setter)
+    {
+        this.registry = registry;
+        this.setter = setter;
+    }
+
+    @Override
+    public PropertyRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    @Override
+    public void set(int id, boolean arg)
+    {
+        Entry e = entry(id);
+        BooleanSetter s = e.booleanSetter;
+        if (s == null)
+        {
+            s = setter.getBooleanSetter(e.property);
+            e.booleanSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, byte arg)
+    {
+        Entry e = entry(id);
+        ByteSetter s = e.byteSetter;
+        if (s == null)
+        {
+            s = setter.getByteSetter(e.property);
+            e.byteSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, char arg)
+    {
+        Entry e = entry(id);
+        CharSetter s = e.charSetter;
+        if (s == null)
+        {
+            s = setter.getCharSetter(e.property);
+            e.charSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, short arg)
+    {
+        Entry e = entry(id);
+        ShortSetter s = e.shortSetter;
+        if (s == null)
+        {
+            s = setter.getShortSetter(e.property);
+            e.shortSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, int arg)
+    {
+        Entry e = entry(id);
+        IntSetter s = e.intSetter;
+        if (s == null)
+        {
+            s = setter.getIntSetter(e.property);
+            e.intSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, long arg)
+    {
+        Entry e = entry(id);
+        LongSetter s = e.longSetter;
+        if (s == null)
+        {
+            s = setter.getLongSetter(e.property);
+            e.longSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, float arg)
+    {
+        Entry e = entry(id);
+        FloatSetter s = e.floatSetter;
+        if (s == null)
+        {
+            s = setter.getFloatSetter(e.property);
+            e.floatSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public void set(int id, double arg)
+    {
+        Entry e = entry(id);
+        DoubleSetter s = e.doubleSetter;
+        if (s == null)
+        {
+            s = setter.getDoubleSetter(e.property);
+            e.doubleSetter = s;
+        }
+        s.set(arg);
+    }
+
+    @Override
+    public <T> void set(int id, T arg)
+    {
+        Entry e = entry(id);
+        ObjectSetter<Object> s = e.objectSetter;
+        if (s == null)
+        {
+            s = setter.getObjectSetter(e.property);
+            e.objectSetter = s;
+        }
+        s.set(arg);
+    }
+    
+    private Entry entry(int id)
+    {
+        Entry[] arr = entries;
+        if (id >= 0 && id < arr.length)
+        {
+            Entry e = arr[id];
+            if (e != null)
+            {
+                return e;
+            }
+        }
+        return resolve(id);
+    }
+    private synchronized Entry resolve(int id)
+    {
+        String property = registry.getName(id);
+        Entry[] arr = entries;
+        if (id >= arr.length)
+        {
+            arr = Arrays.copyOf(arr, Math.max(id+1, registry.size()));
+        }
+        Entry e = arr[id];
+        if (e == null)
+        {
+            e = new Entry(property);
+            arr[id] = e;
+        }
+        entries = arr;
+        return e;
+    }
+    private static class Entry
+    {
+        private final String property;
+        private BooleanSetter booleanSetter;
+        private ByteSetter byteSetter;
+        private CharSetter charSetter;
+        private ShortSetter shortSetter;
+        private IntSetter intSetter;
+        private LongSetter longSetter;
+        private FloatSetter floatSetter;
+        private DoubleSetter doubleSetter;
+        private ObjectSetter<Object> objectSetter;
+
+        public Entry(String property)
+        {
+            this.property = property;
+        }
+        
+    }
+}
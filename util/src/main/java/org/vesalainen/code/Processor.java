@@ -23,7 +23,9 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -50,6 +52,7 @@ import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
+import org.vesalainen.bean.BeanHelper;
 import org.vesalainen.util.CharSequences;
 import org.vesalainen.util.Transactional;
 
@@ -61,7 +64,8 @@ import org.vesalainen.util.Transactional;
     "org.vesalainen.code.BeanProxyClass",
     "org.vesalainen.code.TransactionalSetterClass",
     "org.vesalainen.code.PropertyDispatcherClass",
-    "org.vesalainen.code.InterfaceDispatcherAnnotation"
+    "org.vesalainen.code.InterfaceDispatcherAnnotation",
+    "org.vesalainen.code.PropertyStoreAccessorClass"
 })
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class Processor extends AbstractProcessor
@@ -106,6 +110,9 @@ public class Processor extends AbstractProcessor
                         case "org.vesalainen.code.InterfaceDispatcherAnnotation":
                             generateInterfaceDispatcher(type, processingEnv);
                             break;
+                        case "org.vesalainen.code.PropertyStoreAccessorClass":
+                            generatePropertyStoreAccessor(type, processingEnv);
+                            break;
                         default:
                             throw new UnsupportedOperationException(te.getQualifiedName().toString()+" not supported");
                     }
@@ -696,6 +703,210 @@ public class Processor extends AbstractProcessor
             cp.flush();
         }
     }
+    private void generatePropertyStoreAccessor(TypeElement cls, ProcessingEnvironment processingEnv) throws IOException
+    {
+        PropertyStoreAccessorClass annotation = cls.getAnnotation(PropertyStoreAccessorClass.class);
+        if (annotation == null)
+        {
+            throw new IllegalArgumentException("@"+PropertyStoreAccessorClass.class.getSimpleName()+" missing in cls");
+        }
+        Map<String,StoreProperty> map = new LinkedHashMap<>();
+        for (Element e : cls.getEnclosedElements())
+        {
+            Property property = e.getAnnotation(Property.class);
+            if (property == null)
+            {
+                continue;
+            }
+            if (e.getModifiers().contains(PRIVATE))
+            {
+                throw new IllegalArgumentException(e+" is private");
+            }
+            String name = property.value();
+            switch (e.getKind())
+            {
+                case FIELD:
+                    if (name.isEmpty())
+                    {
+                        name = e.getSimpleName().toString();
+                    }
+                    StoreProperty fp = storeProperty(map, name, property);
+                    fp.type = e.asType();
+                    fp.getter = "store."+e.getSimpleName();
+                    fp.setter = "store."+e.getSimpleName()+" = %s;";
+                    break;
+                case METHOD:
+                    ExecutableElement m = (ExecutableElement) e;
+                    String methodName = m.getSimpleName().toString();
+                    if (name.isEmpty())
+                    {
+                        name = BeanHelper.property(methodName);
+                    }
+                    StoreProperty mp = storeProperty(map, name, property);
+                    if ((methodName.startsWith("get") || methodName.startsWith("is")) && m.getParameters().isEmpty())
+                    {
+                        mp.type = m.getReturnType();
+                        mp.getter = "store."+methodName+"()";
+                    }
+                    else
+                    {
+                        if (methodName.startsWith("set") && m.getParameters().size() == 1)
+                        {
+                            mp.type = m.getParameters().get(0).asType();
+                            mp.setter = "store."+methodName+"(%s);";
+                        }
+                        else
+                        {
+                            throw new IllegalArgumentException(m+" has @Property but is not either setter or getter");
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(e+" not supported");
+            }
+        }
+        List<StoreProperty> props = new ArrayList<>(map.values());
+        props.sort((p1, p2)->p1.ordinal-p2.ordinal);
+        Name qualifiedName = cls.getQualifiedName();
+        String value = qualifiedName.toString()+"Accessor";
+        Filer filer = processingEnv.getFiler();
+        JavaFileObject sourceFile = filer.createSourceFile(value);
+        try (Writer writer = sourceFile.openWriter())
+        {
+            CodePrinter mp = new CodePrinter(writer);
+            int idx = value.lastIndexOf('.');
+            String classname = value.substring(idx+1);
+            String pgk = value.substring(0, idx);
+            String store = cls.getSimpleName().toString();
+
+            mp.println("package "+pgk+";");
+            mp.println("import javax.annotation.Generated;");
+            mp.println("import org.vesalainen.code.PropertyStoreAccessor;");
+            mp.println("@Generated(");
+            mp.println("\tvalue=\""+Processor.class.getCanonicalName()+"\"");
+            mp.println("\t, comments=\"Generated for "+cls+"\"");
+            Date date = new Date();
+            mp.println("\t, date=\""+date+"\"");
+            mp.println(")");
+            mp.println("public final class "+classname+" implements PropertyStoreAccessor<"+store+">");
+            mp.println("{");
+            CodePrinter cp = mp.createSub("}");
+            cp.print("private static final String[] PROPERTIES = {");
+            List<String> quoted = new ArrayList<>();
+            props.forEach((p)->quoted.add("\""+p.name+"\""));
+            cp.print(", ", quoted);
+            cp.println("};");
+            cp.println("@Override");
+            cp.println("public int getId(String property)");
+            cp.println("{");
+            CodePrinter cm = cp.createSub("}");
+            cm.println("switch (property)");
+            cm.println("{");
+            CodePrinter cs = cm.createSub("}");
+            for (int ii=0;ii<props.size();ii++)
+            {
+                StoreProperty p = props.get(ii);
+                cs.println("case \""+p.name+"\":");
+                for (String alias : p.aliases)
+                {
+                    cs.println("case \""+alias+"\":");
+                }
+                cs.println("    return "+ii+";");
+            }
+            cs.println("default:");
+            cs.println("    return -1;");
+            cs.flush();
+            cm.flush();
+            String[] typenames = new String[]{"Boolean", "Byte", "Char", "Short", "Int", "Long", "Float", "Double", "Object"};
+            for (String typename : typenames)
+            {
+                String type = "Char".equals(typename) ? "char" : "Int".equals(typename) ? "int" : "Object".equals(typename) ? "Object" : typename.toLowerCase();
+                cp.println("@Override");
+                cp.println("public void set("+store+" store, int id, "+type+" arg)");
+                cp.println("{");
+                cm = cp.createSub("}");
+                cm.println("switch (id)");
+                cm.println("{");
+                cs = cm.createSub("}");
+                for (int ii=0;ii<props.size();ii++)
+                {
+                    StoreProperty p = props.get(ii);
+                    if (p.setter != null)
+                    {
+                        TypeKind kind = p.type.getKind();
+                        boolean object = "Object".equals(typename);
+                        if (object || typename.equals(getTypename(kind)))
+                        {
+                            String arg = "arg";
+                            if (object)
+                            {
+                                arg = "("+(kind.isPrimitive() ? types.boxedClass(types.getPrimitiveType(kind)).getQualifiedName() : types.erasure(p.type))+") arg";
+                            }
+                            cs.println("case "+ii+":");
+                            cs.println("    "+String.format(p.setter, arg));
+                            cs.println("    break;");
+                        }
+                    }
+                }
+                cs.println("default:");
+                cs.println("    throw new IllegalArgumentException(name(id)+\" has no "+type+" setter\");");
+                cs.flush();
+                cm.flush();
+                cp.println("@Override");
+                cp.println("public "+type+" get"+typename+"("+store+" store, int id)");
+                cp.println("{");
+                cm = cp.createSub("}");
+                cm.println("switch (id)");
+                cm.println("{");
+                cs = cm.createSub("}");
+                for (int ii=0;ii<props.size();ii++)
+                {
+                    StoreProperty p = props.get(ii);
+                    if (p.getter != null && ("Object".equals(typename) || typename.equals(getTypename(p.type.getKind()))))
+                    {
+                        cs.println("case "+ii+":");
+                        cs.println("    return "+p.getter+";");
+                    }
+                }
+                cs.println("default:");
+                cs.println("    throw new IllegalArgumentException(name(id)+\" has no "+type+" getter\");");
+                cs.flush();
+                cm.flush();
+            }
+            cp.println("@Override");
+            cp.println("public void copy("+store+" from, "+store+" store)");
+            cp.println("{");
+            cm = cp.createSub("}");
+            for (StoreProperty p : props)
+            {
+                if (p.getter != null && p.setter != null)
+                {
+                    cm.println(String.format(p.setter, p.getter.replace("store.", "from.")));
+                }
+            }
+            cm.flush();
+            cp.println("private static String name(int id)");
+            cp.println("{");
+            cm = cp.createSub("}");
+            cm.println("return id >= 0 && id < PROPERTIES.length ? PROPERTIES[id] : \"id \"+id;");
+            cm.flush();
+            cp.flush();
+        }
+    }
+    private StoreProperty storeProperty(Map<String,StoreProperty> map, String name, Property property)
+    {
+        StoreProperty p = map.get(name);
+        if (p == null)
+        {
+            p = new StoreProperty();
+            p.name = name;
+            p.ordinal = property.ordinal();
+            p.aliases = property.aliases();
+            map.put(name, p);
+        }
+        return p;
+    }
+
     private void generateBeanProxy(TypeElement cls, ProcessingEnvironment processingEnv) throws IOException
     {
         BeanProxyClass annotation = cls.getAnnotation(BeanProxyClass.class);
@@ -915,4 +1126,13 @@ public class Processor extends AbstractProcessor
         }
     }
 
+    private static class StoreProperty
+    {
+        private String name;
+        private int ordinal;
+        private String[] aliases;
+        private TypeMirror type;
+        private String getter;
+        private String setter;
+    }
 }
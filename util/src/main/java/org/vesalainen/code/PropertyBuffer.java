@@ -16,40 +16,116 @@
  */
 package org.vesalainen.code;
 
-import java.util.concurrent.Semaphore;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import static java.util.logging.Level.WARNING;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import org.vesalainen.util.logging.JavaLogging;
 
 /**
- *
+ * PropertyBuffer passes property settings from several producer threads to
+ * observer in consumer thread.
+ * <p>Settings are stored in multi-producer/single-consumer ring. Producers
+ * claim sequence with CAS and publish slot by writing the sequence to it.
+ * Primitive values are stored as raw bits in one long array. Consumer is 
+ * woken only when it has announced sleeping, so that batch of settings costs
+ * at most one wakeup.
+ * <p>When ring is full the OverflowPolicy decides what happens. 
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-public class PropertyBuffer implements PropertySetter, Runnable
+public class PropertyBuffer extends JavaLogging implements PropertySetter, Runnable, PropertyBufferMXBean
 {
-    protected Semaphore semaphore = new Semaphore(0);
-    protected Thread thread;
-    protected PropertySetter observer;
-    protected int capacity;
-    protected AtomicInteger count = new AtomicInteger();
-    protected int index;
-    protected JavaType[] typeArr;
-    protected String[] propertyArr;
-    protected boolean[] booleanArr;
-    protected byte[] byteArr;
-    protected char[] charArr;
-    protected short[] shortArr;
-    protected int[] intArr;
-    protected long[] longArr;
-    protected float[] floatArr;
-    protected double[] doubleArr;
-    protected Object[] objectArr;
+    /**
+     * What producer does when ring is full.
+     */
+    public enum OverflowPolicy 
+    {
+        /**
+         * Throws IllegalStateException
+         */
+        FAIL, 
+        /**
+         * Waits until there is room
+         */
+        BLOCK, 
+        /**
+         * Drops the oldest setting
+         */
+        DROP_OLDEST, 
+        /**
+         * Stores setting in side table where newer setting of the same 
+         * property replaces older. While side table has settings also new
+         * settings go there so that older setting is never dispatched after
+         * newer.
+         */
+        COALESCE
+    };
+    /**
+     * How consumer waits for settings and blocked producer for room.
+     */
+    public enum WaitStrategy {SPIN, YIELD, PARK};
+    private static final long PARK_NANOS = 1000000;
+    private static final long PRODUCER_PARK_NANOS = 100000;
+    protected final PropertySetter observer;
+    protected final int capacity;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final WaitStrategy waitStrategy;
+    private final String[] propertyArr;
+    private final JavaType[] typeArr;
+    private final long[] valueArr;
+    private final Object[] objectArr;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Map<String,Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private volatile int maxOccupancy;
+    private volatile boolean sleeping;
+    protected volatile Thread thread;
+    private ObjectName objectName;
 
     public PropertyBuffer(PropertySetter observer, int capacity)
     {
+        this(observer, capacity, OverflowPolicy.FAIL, WaitStrategy.PARK);
+    }
+    /**
+     * Creates PropertyBuffer
+     * @param observer
+     * @param capacity Ring capacity. Rounded up to power of 2.
+     * @param overflowPolicy
+     * @param waitStrategy 
+     */
+    public PropertyBuffer(PropertySetter observer, int capacity, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy)
+    {
+        super(PropertyBuffer.class);
         this.observer = observer;
-        this.capacity = capacity;
-        this.count.set(capacity);
-        typeArr = new JavaType[capacity];
-        propertyArr = new String[capacity];
+        this.capacity = Math.max(2, Integer.highestOneBit(Math.max(1, capacity-1))<<1);
+        this.mask = this.capacity-1;
+        this.overflowPolicy = overflowPolicy;
+        this.waitStrategy = waitStrategy;
+        this.propertyArr = new String[this.capacity];
+        this.typeArr = new JavaType[this.capacity];
+        this.valueArr = new long[this.capacity];
+        this.objectArr = new Object[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+        for (int ii=0;ii<this.capacity;ii++)
+        {
+            published.set(ii, -1);
+        }
     }
     
     public void start()
@@ -72,200 +148,396 @@ public class PropertyBuffer implements PropertySetter, Runnable
     @Override
     public void set(String property, boolean arg)
     {
-        setType(property, JavaType.BOOLEAN);
-        booleanArr[index] = arg;
-        next();
+        put(property, JavaType.BOOLEAN, arg ? 1 : 0, null);
     }
 
     @Override
     public void set(String property, byte arg)
     {
-        setType(property, JavaType.BYTE);
-        byteArr[index] = arg;
-        next();
+        put(property, JavaType.BYTE, arg, null);
     }
 
     @Override
     public void set(String property, char arg)
     {
-        setType(property, JavaType.CHAR);
-        charArr[index] = arg;
-        next();
+        put(property, JavaType.CHAR, arg, null);
     }
 
     @Override
     public void set(String property, short arg)
     {
-        setType(property, JavaType.SHORT);
-        shortArr[index] = arg;
-        next();
+        put(property, JavaType.SHORT, arg, null);
     }
 
     @Override
     public void set(String property, int arg)
     {
-        setType(property, JavaType.INT);
-        intArr[index] = arg;
-        next();
+        put(property, JavaType.INT, arg, null);
     }
 
     @Override
     public void set(String property, long arg)
     {
-        setType(property, JavaType.LONG);
-        longArr[index] = arg;
-        next();
+        put(property, JavaType.LONG, arg, null);
     }
 
     @Override
     public void set(String property, float arg)
     {
-        setType(property, JavaType.FLOAT);
-        floatArr[index] = arg;
-        next();
+        put(property, JavaType.FLOAT, Float.floatToRawIntBits(arg), null);
     }
 
     @Override
     public void set(String property, double arg)
     {
-        setType(property, JavaType.DOUBLE);
-        doubleArr[index] = arg;
-        next();
+        put(property, JavaType.DOUBLE, Double.doubleToRawLongBits(arg), null);
     }
 
     @Override
     public void set(String property, Object arg)
     {
-        setType(property, JavaType.DECLARED);
-        objectArr[index] = arg;
-        next();
+        put(property, JavaType.DECLARED, 0, arg);
     }
 
     @Override
     public void run()
     {
-        int idx = 0;
-        while (true)
+        Thread current = Thread.currentThread();
+        while (!current.isInterrupted())
+        {
+            long seq = consumed.get();
+            int idx = (int) seq & mask;
+            if (published.get(idx) == seq)
+            {
+                String property = propertyArr[idx];
+                JavaType type = typeArr[idx];
+                long value = valueArr[idx];
+                Object obj = objectArr[idx];
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST)
+                {
+                    if (!consumed.compareAndSet(seq, seq+1))
+                    {
+                        continue;   // dropped by producer while reading
+                    }
+                }
+                else
+                {
+                    consumed.lazySet(seq+1);
+                }
+                int occupancy = (int) (claimed.get() - seq);
+                if (occupancy > maxOccupancy)
+                {
+                    maxOccupancy = occupancy;
+                }
+                dispatch(property, type, value, obj);
+            }
+            else
+            {
+                if (pendingCount.get() > 0)
+                {
+                    drainPending();
+                }
+                else
+                {
+                    await();
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int getOccupancy()
+    {
+        long occupancy = claimed.get() - consumed.get();
+        return (int) Math.max(0, Math.min(capacity, occupancy));
+    }
+
+    @Override
+    public int getMaxOccupancy()
+    {
+        return maxOccupancy;
+    }
+
+    @Override
+    public long getDrops()
+    {
+        return drops.sum();
+    }
+
+    @Override
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @Override
+    public long getWaits()
+    {
+        return waits.sum();
+    }
+
+    @Override
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    @Override
+    public WaitStrategy getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+    
+    public void registerMBean(String name)
+    {
+        try
+        {
+            objectName = new ObjectName("org.vesalainen.code:type=PropertyBuffer,name="+name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        }
+        catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException | NotCompliantMBeanException ex)
+        {
+            log(WARNING, ex, "registerMBean(%s)", name);
+        }
+    }
+    public void unregisterMBean()
+    {
+        if (objectName != null)
         {
             try
             {
-                semaphore.acquire();
-                switch (typeArr[idx])
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (Exception ex)
+            {
+                log(WARNING, ex, "unregisterMBean(%s)", objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    private void put(String property, JavaType type, long value, Object obj)
+    {
+        if (overflowPolicy == OverflowPolicy.COALESCE && pendingCount.get() > 0)
+        {
+            coalesce(property, type, value, obj);
+            return;
+        }
+        long seq;
+        while (true)
+        {
+            seq = claimed.get();
+            long con = consumed.get();
+            if (seq - con < capacity)
+            {
+                if (claimed.compareAndSet(seq, seq+1))
                 {
-                    case BOOLEAN:
-                        observer.set(propertyArr[idx], booleanArr[idx]);
-                        break;
-                    case BYTE:
-                        observer.set(propertyArr[idx], byteArr[idx]);
-                        break;
-                    case CHAR:
-                        observer.set(propertyArr[idx], charArr[idx]);
-                        break;
-                    case SHORT:
-                        observer.set(propertyArr[idx], shortArr[idx]);
-                        break;
-                    case INT:
-                        observer.set(propertyArr[idx], intArr[idx]);
-                        break;
-                    case LONG:
-                        observer.set(propertyArr[idx], longArr[idx]);
-                        break;
-                    case FLOAT:
-                        observer.set(propertyArr[idx], floatArr[idx]);
-                        break;
-                    case DOUBLE:
-                        observer.set(propertyArr[idx], doubleArr[idx]);
-                        break;
-                    case DECLARED:
-                        observer.set(propertyArr[idx], objectArr[idx]);
-                        break;
+                    break;
                 }
-                idx++;
-                idx %= capacity;
-                count.incrementAndGet();
             }
-            catch (InterruptedException ex)
+            else
             {
-                return; // stopped
+                if (!overflow(property, type, value, obj, con))
+                {
+                    return;
+                }
             }
         }
+        int idx = (int) seq & mask;
+        propertyArr[idx] = property;
+        typeArr[idx] = type;
+        valueArr[idx] = value;
+        objectArr[idx] = obj;
+        published.set(idx, seq);
+        if (sleeping)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+    /**
+     * Handles full ring.
+     * @return true if put should be retried
+     */
+    private boolean overflow(String property, JavaType type, long value, Object obj, long con)
+    {
+        switch (overflowPolicy)
+        {
+            case FAIL:
+                throw new IllegalStateException("capacity reached");
+            case BLOCK:
+                waits.increment();
+                pause();
+                return true;
+            case DROP_OLDEST:
+                if (published.get((int) con & mask) == con && consumed.compareAndSet(con, con+1))
+                {
+                    drops.increment();
+                }
+                else
+                {
+                    Thread.yield();
+                }
+                return true;
+            case COALESCE:
+                coalesce(property, type, value, obj);
+                return false;
+            default:
+                throw new UnsupportedOperationException(overflowPolicy+" not supported");
+        }
     }
 
-    private void setType(String property, JavaType javaType)
+    /**
+     * Stores setting in pending slot of property. Slots are created once per
+     * property and reused.
+     */
+    private void coalesce(String property, JavaType type, long value, Object obj)
     {
-        if (count.get() <= 0)
+        Pending p = pending.get(property);
+        if (p == null)
         {
-            throw new IllegalStateException("capacity reached");
+            p = pending.computeIfAbsent(property, Pending::new);
         }
-        propertyArr[index] = property;
-        switch (javaType)
+        synchronized(p)
         {
-            case BOOLEAN:
-                if (booleanArr == null)
+            if (p.full)
+            {
+                coalesced.increment();
+            }
+            else
+            {
+                p.full = true;
+                pendingCount.incrementAndGet();
+            }
+            p.type = type;
+            p.value = value;
+            p.obj = obj;
+        }
+        if (sleeping)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+    /**
+     * Dispatches pending settings. Slot is emptied before dispatch, so that
+     * producers setting after that use ring which is consumed after this.
+     */
+    private void drainPending()
+    {
+        for (Pending p : pending.values())
+        {
+            JavaType type;
+            long value;
+            Object obj;
+            synchronized(p)
+            {
+                if (!p.full)
                 {
-                    booleanArr = new boolean[capacity];
+                    continue;
                 }
+                type = p.type;
+                value = p.value;
+                obj = p.obj;
+                p.obj = null;
+                p.full = false;
+                pendingCount.decrementAndGet();
+            }
+            dispatch(p.property, type, value, obj);
+        }
+    }
+    
+    private void dispatch(String property, JavaType type, long value, Object obj)
+    {
+        switch (type)
+        {
+            case BOOLEAN:
+                observer.set(property, value != 0);
                 break;
             case BYTE:
-                if (byteArr == null)
-                {
-                    byteArr = new byte[capacity];
-                }
+                observer.set(property, (byte) value);
                 break;
             case CHAR:
-                if (charArr == null)
-                {
-                    charArr = new char[capacity];
-                }
+                observer.set(property, (char) value);
                 break;
             case SHORT:
-                if (shortArr == null)
-                {
-                    shortArr = new short[capacity];
-                }
+                observer.set(property, (short) value);
                 break;
             case INT:
-                if (intArr == null)
-                {
-                    intArr = new int[capacity];
-                }
+                observer.set(property, (int) value);
                 break;
             case LONG:
-                if (longArr == null)
-                {
-                    longArr = new long[capacity];
-                }
+                observer.set(property, value);
                 break;
             case FLOAT:
-                if (floatArr == null)
-                {
-                    floatArr = new float[capacity];
-                }
+                observer.set(property, Float.intBitsToFloat((int) value));
                 break;
             case DOUBLE:
-                if (doubleArr == null)
-                {
-                    doubleArr = new double[capacity];
-                }
+                observer.set(property, Double.longBitsToDouble(value));
                 break;
             case DECLARED:
-                if (objectArr == null)
-                {
-                    objectArr = new Object[capacity];
-                }
+                observer.set(property, obj);
                 break;
             default:
                 assert(false);
         }
-        typeArr[index] = javaType;
+    }
+    
+    private void await()
+    {
+        switch (waitStrategy)
+        {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            case PARK:
+                sleeping = true;
+                long seq = consumed.get();
+                if (published.get((int) seq & mask) != seq && pendingCount.get() == 0)
+                {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                sleeping = false;
+                break;
+        }
     }
 
-    private void next()
+    /**
+     * Blocked producer never busy-spins without yielding because consumer
+     * might need the cpu.
+     */
+    private void pause()
     {
-        index++;
-        index %= capacity;
-        count.decrementAndGet();
-        semaphore.release();
+        switch (waitStrategy)
+        {
+            case SPIN:
+            case YIELD:
+                Thread.yield();
+                break;
+            case PARK:
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+                break;
+        }
     }
     
+    private static class Pending
+    {
+        private final String property;
+        private boolean full;
+        private JavaType type;
+        private long value;
+        private Object obj;
+
+        public Pending(String property)
+        {
+            this.property = property;
+        }
+        
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import org.vesalainen.code.PropertyBuffer.OverflowPolicy;
+import org.vesalainen.code.PropertyBuffer.WaitStrategy;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public interface PropertyBufferMXBean
+{
+    int getCapacity();
+    /**
+     * Returns number of settings in ring.
+     * @return 
+     */
+    int getOccupancy();
+    /**
+     * Returns maximum occupancy seen by consumer.
+     * @return 
+     */
+    int getMaxOccupancy();
+    /**
+     * Returns number of settings dropped by DROP_OLDEST policy.
+     * @return 
+     */
+    long getDrops();
+    /**
+     * Returns number of settings replaced by newer ones in COALESCE policy.
+     * @return 
+     */
+    long getCoalesced();
+    /**
+     * Returns number of times producers waited for room in BLOCK policy.
+     * @return 
+     */
+    long getWaits();
+    OverflowPolicy getOverflowPolicy();
+    WaitStrategy getWaitStrategy();
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PropertyRegistry interns property names and assigns them dense int id's.
+ * Id's are assigned at registration and never change, so that property 
+ * dispatch can index arrays instead of hashing names.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.code.IntPropertySetter
+ */
+public class PropertyRegistry
+{
+    private static final PropertyRegistry DEFAULT = new PropertyRegistry();
+    private final Map<String,Integer> map = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private volatile int size;
+    /**
+     * Returns default registry.
+     * @return 
+     */
+    public static PropertyRegistry getDefault()
+    {
+        return DEFAULT;
+    }
+    /**
+     * Returns id of property. Property is registered if it is not already.
+     * @param property
+     * @return 
+     */
+    public int register(String property)
+    {
+        Integer id = map.get(property);
+        if (id != null)
+        {
+            return id;
+        }
+        synchronized (this)
+        {
+            id = map.get(property);
+            if (id != null)
+            {
+                return id;
+            }
+            int next = size;
+            String[] arr = names;
+            if (next == arr.length)
+            {
+                arr = Arrays.copyOf(arr, 2*arr.length);
+            }
+            arr[next] = property;
+            names = arr;
+            size = next+1;
+            map.put(property, next);
+            return next;
+        }
+    }
+    /**
+     * Returns id of property or -1 if property is not registered.
+     * @param property
+     * @return 
+     */
+    public int getId(String property)
+    {
+        Integer id = map.get(property);
+        return id != null ? id : -1;
+    }
+    /**
+     * Returns name of property
+     * @param id
+     * @return 
+     */
+    public String getName(int id)
+    {
+        if (id < 0 || id >= size)
+        {
+            throw new IllegalArgumentException(id+" not registered");
+        }
+        return names[id];
+    }
+    /**
+     * Returns number of registered properties. Id's are less than size.
+     * @return 
+     */
+    public int size()
+    {
+        return size;
+    }
+    
+}
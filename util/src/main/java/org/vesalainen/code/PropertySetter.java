@@ -180,5 +180,15 @@ public interface PropertySetter
     {
         return (v)->set(property, v);
     }
+    /**
+     * Returns IntPropertySetter which sets properties of this by registry
+     * id's. Default implementation adapts typed setters of this.
+     * @param registry
+     * @return 
+     */
+    default IntPropertySetter getIntPropertySetter(PropertyRegistry registry)
+    {
+        return new IntPropertySetterAdapter(registry, this);
+    }
 
 }
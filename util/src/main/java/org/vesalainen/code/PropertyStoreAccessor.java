@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+/**
+ * PropertyStoreAccessor accesses properties of AnnotatedPropertyStore directly
+ * without MethodHandles. Implementations are generated by annotation processor
+ * for classes annotated with @PropertyStoreAccessorClass.
+ * <p>Property id's are indexes of properties in ordinal order. Aliases have
+ * the same id as the property. Methods throw IllegalArgumentException if
+ * property with id doesn't have given type.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @param <T>
+ * @see org.vesalainen.code.PropertyStoreAccessorClass
+ */
+public interface PropertyStoreAccessor<T extends AnnotatedPropertyStore>
+{
+    /**
+     * Returns id of property or alias or -1 if not found.
+     * @param property
+     * @return 
+     */
+    int getId(String property);
+    void set(T store, int id, boolean arg);
+    void set(T store, int id, byte arg);
+    void set(T store, int id, char arg);
+    void set(T store, int id, short arg);
+    void set(T store, int id, int arg);
+    void set(T store, int id, long arg);
+    void set(T store, int id, float arg);
+    void set(T store, int id, double arg);
+    /**
+     * Sets property of any type. Primitive properties are unboxed.
+     * @param store
+     * @param id
+     * @param arg 
+     */
+    void set(T store, int id, Object arg);
+    boolean getBoolean(T store, int id);
+    byte getByte(T store, int id);
+    char getChar(T store, int id);
+    short getShort(T store, int id);
+    int getInt(T store, int id);
+    long getLong(T store, int id);
+    float getFloat(T store, int id);
+    double getDouble(T store, int id);
+    /**
+     * Returns property of any type. Primitive properties are boxed.
+     * @param store
+     * @param id
+     * @return 
+     */
+    Object getObject(T store, int id);
+    /**
+     * Copies all properties having both getter and setter.
+     * @param from
+     * @param to 
+     */
+    void copy(T from, T to);
+}
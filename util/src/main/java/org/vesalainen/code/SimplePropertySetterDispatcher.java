@@ -16,6 +16,9 @@
  */
 package org.vesalainen.code;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
@@ -27,11 +30,17 @@ import org.vesalainen.util.MapSet;
  * @deprecated InterfaceDispatcher implements same functionality but faster.
  * SimplePropertySetterDispatcher is a PropertySetter which can dispatch property
  settings to several PropertySetters acting as observers.
+ * <p>As IntPropertySetter it dispatches by registry id's. Observers are kept
+ * in array indexed by id and are called through their IntPropertySetter.
+ * IntPropertySetter of observer is created once and shared by all keys.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-public class SimplePropertySetterDispatcher implements PropertySetterDispatcher
+public class SimplePropertySetterDispatcher implements PropertySetterDispatcher, IntPropertySetter
 {
     private final MapSet<String,PropertySetter> mapSet;
+    private final PropertyRegistry registry;
+    private volatile IntPropertySetter[][] targets = new IntPropertySetter[0][];
+    private final Map<PropertySetter,Adapter> adapters = new IdentityHashMap<>();
     private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
     private final ReadLock readLock = rwLock.readLock();
     private final WriteLock writeLock = rwLock.writeLock();
@@ -41,9 +50,36 @@ public class SimplePropertySetterDispatcher implements PropertySetterDispatcher
         this(new HashMapSet<>());
     }
 
+    public SimplePropertySetterDispatcher(PropertyRegistry registry)
+    {
+        this(new HashMapSet<>(), registry);
+    }
+
     public SimplePropertySetterDispatcher(MapSet<String, PropertySetter> mapSet)
+    {
+        this(mapSet, PropertyRegistry.getDefault());
+    }
+
+    public SimplePropertySetterDispatcher(MapSet<String, PropertySetter> mapSet, PropertyRegistry registry)
     {
         this.mapSet = mapSet;
+        this.registry = registry;
+    }
+
+    @Override
+    public PropertyRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    @Override
+    public IntPropertySetter getIntPropertySetter(PropertyRegistry registry)
+    {
+        if (this.registry == registry)
+        {
+            return this;
+        }
+        return PropertySetterDispatcher.super.getIntPropertySetter(registry);
     }
     
     @Override
@@ -59,7 +95,12 @@ public class SimplePropertySetterDispatcher implements PropertySetterDispatcher
         writeLock.lock();
         try
         {
-            mapSet.add(key, ps);
+            if (!mapSet.contains(key, ps))
+            {
+                mapSet.add(key, ps);
+                adapter(ps).count++;
+            }
+            update(key);
         }
         finally
         {
@@ -73,7 +114,15 @@ public class SimplePropertySetterDispatcher implements PropertySetterDispatcher
         writeLock.lock();
         try
         {
-            mapSet.removeItem(key, ps);
+            if (mapSet.removeItem(key, ps))
+            {
+                Adapter adapter = adapters.get(ps);
+                if (adapter != null && --adapter.count <= 0)
+                {
+                    adapters.remove(ps);
+                }
+            }
+            update(key);
         }
         finally
         {
@@ -234,6 +283,157 @@ public class SimplePropertySetterDispatcher implements PropertySetterDispatcher
         }
     }
 
+    @Override
+    public void set(int id, boolean arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, byte arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, char arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, short arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, int arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, long arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, float arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public void set(int id, double arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    @Override
+    public <T> void set(int id, T arg)
+    {
+        IntPropertySetter[][] t = targets;
+        if (id >= 0 && id < t.length && t[id] != null)
+        {
+            for (IntPropertySetter ips : t[id])
+            {
+                ips.set(id, arg);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds id indexed observers of key. Called with write lock held.
+     * @param key 
+     */
+    private void update(String key)
+    {
+        int id = registry.register(key);
+        Set<PropertySetter> set = mapSet.get(key);
+        IntPropertySetter[] arr = null;
+        if (!set.isEmpty())
+        {
+            arr = new IntPropertySetter[set.size()];
+            int idx = 0;
+            for (PropertySetter ps : set)
+            {
+                arr[idx++] = adapter(ps).setter;
+            }
+        }
+        IntPropertySetter[][] t = Arrays.copyOf(targets, Math.max(targets.length, id+1));
+        t[id] = arr;
+        targets = t;
+    }
+
+    private Adapter adapter(PropertySetter ps)
+    {
+        Adapter adapter = adapters.get(ps);
+        if (adapter == null)
+        {
+            adapter = new Adapter(ps.getIntPropertySetter(registry));
+            adapters.put(ps, adapter);
+        }
+        return adapter;
+    }
+
     @Override
     public boolean isEmpty()
     {
@@ -245,4 +445,18 @@ public class SimplePropertySetterDispatcher implements PropertySetterDispatcher
     {
         return mapSet.containsKey(property);
     }
+    /**
+     * IntPropertySetter of observer and number of keys it is observing.
+     */
+    private static class Adapter
+    {
+        private final IntPropertySetter setter;
+        private int count;
+
+        public Adapter(IntPropertySetter setter)
+        {
+            this.setter = setter;
+        }
+        
+    }
 }
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Version 2 compressed format. Records are grouped into blocks where each 
+ * property is stored as a column.
+ * <pre>
+ * File header
+ *  int magic, short version, short flags, int length, 
+ *  length bytes: UTF source, short count, count * (UTF name, UTF type), 
+ *  UTF time property, long uuidMost, long uuidLeast
+ * Blocks
+ *  Block header (28 bytes)
+ *   int magic, int rows, int length, long firstTime, long lastTime
+ *  Column directory
+ *   count * (int rawLength, int storedLength)
+ *  Columns (raw or deflated if storedLength &lt; rawLength)
+ * Index
+ *  Entry per block (32 bytes)
+ *   long firstTime, long lastTime, long offset, long rows
+ * Trailer (16 bytes)
+ *  long indexOffset, int blockCount, int magic
+ * </pre>
+ * Integral columns are delta encoded zigzag varints. Float and double 
+ * columns are XOR encoded as in Facebook Gorilla.
+ * <p>If trailer is missing, because writer was not closed, index is rebuilt
+ * by scanning block headers.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+final class BlockCompressedFormat
+{
+    static final int FILE_MAGIC = 0x43505232;  // CPR2
+    static final int BLOCK_MAGIC = 0x43424c4b; // CBLK
+    static final int INDEX_MAGIC = 0x43494458; // CIDX
+    static final short VERSION = 2;
+    static final int FILE_HEADER_SIZE = 12;
+    static final int BLOCK_HEADER_SIZE = 28;
+    static final int INDEX_ENTRY_SIZE = 32;
+    static final int INDEX_LONGS = 4;
+    static final int TRAILER_SIZE = 16;
+
+    private BlockCompressedFormat()
+    {
+    }
+    /**
+     * Returns property value from buffer as raw bits.
+     * @param bb
+     * @param type
+     * @param offset
+     * @return 
+     */
+    static long getRaw(ByteBuffer bb, String type, int offset)
+    {
+        switch (type)
+        {
+            case "boolean":
+            case "byte":
+                return bb.get(offset);
+            case "char":
+                return bb.getChar(offset);
+            case "short":
+                return bb.getShort(offset);
+            case "int":
+            case "float":
+                return bb.getInt(offset);
+            case "long":
+            case "double":
+                return bb.getLong(offset);
+            default:
+                throw new IllegalArgumentException(type + " not allowed");
+        }
+    }
+    /**
+     * Puts raw bits to buffer.
+     * @param bb
+     * @param type
+     * @param offset
+     * @param raw 
+     */
+    static void putRaw(ByteBuffer bb, String type, int offset, long raw)
+    {
+        switch (type)
+        {
+            case "boolean":
+            case "byte":
+                bb.put(offset, (byte) raw);
+                break;
+            case "char":
+                bb.putChar(offset, (char) raw);
+                break;
+            case "short":
+                bb.putShort(offset, (short) raw);
+                break;
+            case "int":
+            case "float":
+                bb.putInt(offset, (int) raw);
+                break;
+            case "long":
+            case "double":
+                bb.putLong(offset, raw);
+                break;
+            default:
+                throw new IllegalArgumentException(type + " not allowed");
+        }
+    }
+    /**
+     * Returns XOR width for float types or 0 for integral types.
+     * @param type
+     * @return 
+     */
+    static int xorWidth(String type)
+    {
+        switch (type)
+        {
+            case "float":
+                return 32;
+            case "double":
+                return 64;
+            default:
+                return 0;
+        }
+    }
+    /**
+     * Encodes column
+     * @param width XOR width or 0 for delta encoding
+     * @param values
+     * @param count
+     * @param out 
+     */
+    static void encode(int width, long[] values, int count, Bits out)
+    {
+        out.clear();
+        if (width == 0)
+        {
+            long prev = 0;
+            for (int ii=0;ii<count;ii++)
+            {
+                long d = values[ii] - prev;
+                prev = values[ii];
+                long zz = (d << 1) ^ (d >> 63);
+                while ((zz & ~0x7fL) != 0)
+                {
+                    out.writeByte((int) ((zz & 0x7f) | 0x80));
+                    zz >>>= 7;
+                }
+                out.writeByte((int) zz);
+            }
+        }
+        else
+        {
+            if (count == 0)
+            {
+                return;
+            }
+            long mask = width == 64 ? -1L : 0xffffffffL;
+            long prev = values[0] & mask;
+            out.writeBits(prev, width);
+            int prevLeading = -1;
+            int prevTrailing = 0;
+            for (int ii=1;ii<count;ii++)
+            {
+                long v = values[ii] & mask;
+                long x = v ^ prev;
+                prev = v;
+                if (x == 0)
+                {
+                    out.writeBits(0, 1);
+                }
+                else
+                {
+                    int leading = Math.min(31, Long.numberOfLeadingZeros(x) - (64 - width));
+                    int trailing = Long.numberOfTrailingZeros(x);
+                    if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing)
+                    {
+                        out.writeBits(2, 2);
+                        out.writeBits(x >>> prevTrailing, width - prevLeading - prevTrailing);
+                    }
+                    else
+                    {
+                        int meaningful = width - leading - trailing;
+                        out.writeBits(3, 2);
+                        out.writeBits(leading, 5);
+                        out.writeBits(meaningful - 1, 6);
+                        out.writeBits(x >>> trailing, meaningful);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                }
+            }
+        }
+    }
+    /**
+     * Decodes column
+     * @param width XOR width or 0 for delta encoding
+     * @param in
+     * @param values
+     * @param count 
+     */
+    static void decode(int width, Bits in, long[] values, int count)
+    {
+        if (width == 0)
+        {
+            long prev = 0;
+            for (int ii=0;ii<count;ii++)
+            {
+                long zz = 0;
+                int shift = 0;
+                int b;
+                do
+                {
+                    b = in.readByte();
+                    zz |= (long)(b & 0x7f) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                prev += (zz >>> 1) ^ -(zz & 1);
+                values[ii] = prev;
+            }
+        }
+        else
+        {
+            if (count == 0)
+            {
+                return;
+            }
+            long prev = in.readBits(width);
+            values[0] = extend(width, prev);
+            int leading = 0;
+            int trailing = 0;
+            for (int ii=1;ii<count;ii++)
+            {
+                if (in.readBits(1) != 0)
+                {
+                    if (in.readBits(1) != 0)
+                    {
+                        leading = (int) in.readBits(5);
+                        int meaningful = (int) in.readBits(6) + 1;
+                        trailing = width - leading - meaningful;
+                    }
+                    prev ^= in.readBits(width - leading - trailing) << trailing;
+                }
+                values[ii] = extend(width, prev);
+            }
+        }
+    }
+    private static long extend(int width, long v)
+    {
+        return width == 32 ? (int) v : v;
+    }
+    /**
+     * Growable bit and byte buffer.
+     */
+    static class Bits
+    {
+        private byte[] array;
+        private int length;
+        private int position;
+        private int bit;
+
+        Bits(int capacity)
+        {
+            array = new byte[Math.max(16, capacity)];
+        }
+        /**
+         * Sets content for reading
+         * @param array
+         * @param length 
+         */
+        void wrap(byte[] array, int length)
+        {
+            this.array = array;
+            this.length = length;
+            this.position = 0;
+            this.bit = 0;
+        }
+        void clear()
+        {
+            length = 0;
+            position = 0;
+            bit = 0;
+        }
+        byte[] array()
+        {
+            return array;
+        }
+        int length()
+        {
+            return length;
+        }
+        void writeByte(int b)
+        {
+            ensure(length+1);
+            array[length++] = (byte) b;
+        }
+        void writeBits(long value, int count)
+        {
+            while (count > 0)
+            {
+                if (bit == 0)
+                {
+                    ensure(length+1);
+                    array[length++] = 0;
+                }
+                int free = 8 - bit;
+                int n = Math.min(free, count);
+                int b = (int) (value >>> (count - n)) & ((1 << n) - 1);
+                array[length-1] |= b << (free - n);
+                bit = (bit + n) & 7;
+                count -= n;
+            }
+        }
+        int readByte()
+        {
+            if (position >= length)
+            {
+                throw new IllegalArgumentException("column underflow");
+            }
+            return array[position++] & 0xff;
+        }
+        long readBits(int count)
+        {
+            long res = 0;
+            while (count > 0)
+            {
+                if (position >= length)
+                {
+                    throw new IllegalArgumentException("column underflow");
+                }
+                int free = 8 - bit;
+                int n = Math.min(free, count);
+                int b = ((array[position] & 0xff) >>> (free - n)) & ((1 << n) - 1);
+                res = (res << n) | b;
+                bit += n;
+                if (bit == 8)
+                {
+                    bit = 0;
+                    position++;
+                }
+                count -= n;
+            }
+            return res;
+        }
+        private void ensure(int size)
+        {
+            if (size > array.length)
+            {
+                array = Arrays.copyOf(array, Math.max(size, array.length*2));
+            }
+        }
+    }
+}
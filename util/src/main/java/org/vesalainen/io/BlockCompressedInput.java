@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.vesalainen.code.PropertySetter;
+import org.vesalainen.util.CollectionHelp;
+import org.vesalainen.util.Transactional;
+import static org.vesalainen.io.BlockCompressedFormat.*;
+
+/**
+ * BlockCompressedInput reads version 2 compressed format written by 
+ * BlockCompressedOutput.
+ * <p>Seeking by time uses binary search on block index and on time column 
+ * of the block. Only needed property columns are read and decompressed.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.io.BlockCompressedOutput
+ */
+public class BlockCompressedInput extends CompressedIO
+{
+    private final FileChannel channel;
+    private final Property[] props;
+    private final String timeProperty;
+    private final int timeColumn;
+    private final boolean[] needed;
+    private final long[][] columns;
+    private final int[] dir;
+    private final Bits bits = new Bits(1024);
+    private final Inflater inflater = new Inflater();
+    private byte[] rawArray = new byte[1024];
+    private byte[] compArray = new byte[1024];
+    private final Set<String> modified = new HashSet<>();
+    private long[] index;
+    private int blockCount;
+    private int blockIndex = -1;
+    private int loaded = -1;
+    private int rows;
+    private int row;
+    private boolean reset = true;
+
+    public BlockCompressedInput(Path path) throws IOException
+    {
+        this(path, null);
+    }
+    
+    public BlockCompressedInput(Path path, String source) throws IOException
+    {
+        super(source);
+        this.channel = FileChannel.open(path, READ);
+        ByteBuffer bb = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        read(bb, 0);
+        if (bb.getInt() != FILE_MAGIC)
+        {
+            throw new IOException(path+" is not version 2 compressed file");
+        }
+        short version = bb.getShort();
+        if (version != VERSION)
+        {
+            throw new IOException(version+" version not supported");
+        }
+        bb.getShort();
+        int length = bb.getInt();
+        bb = ByteBuffer.allocate(length);
+        read(bb, FILE_HEADER_SIZE);
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bb.array()));
+        String src = dis.readUTF();
+        if (source != null && !source.equals(src))
+        {
+            throw new IllegalArgumentException("file is not "+source);
+        }
+        this.source = src;
+        int count = Short.toUnsignedInt(dis.readShort());
+        props = new Property[count];
+        for (int ii=0;ii<count;ii++)
+        {
+            String name = dis.readUTF();
+            String type = dis.readUTF();
+            Property prop = new Property(name, type, bytes);
+            properties.put(name, prop);
+            props[ii] = prop;
+            bytes += prop.getSize();
+        }
+        timeProperty = dis.readUTF();
+        long mostSigBits = dis.readLong();
+        long leastSigBits = dis.readLong();
+        uuid = new UUID(mostSigBits, leastSigBits);
+        bb1 = ByteBuffer.allocate(bytes).order(ByteOrder.BIG_ENDIAN);
+        timeColumn = Arrays.asList(props).indexOf(properties.get(timeProperty));
+        needed = new boolean[count];
+        Arrays.fill(needed, true);
+        columns = new long[count][];
+        dir = new int[2*count];
+        if (!readIndex())
+        {
+            scanIndex(FILE_HEADER_SIZE+length);
+        }
+    }
+    /**
+     * Returns name of time property
+     * @return 
+     */
+    public String getTimeProperty()
+    {
+        return timeProperty;
+    }
+    /**
+     * Returns time of first record or -1 if empty.
+     * @return
+     */
+    public long getStartTime()
+    {
+        return blockCount > 0 ? index[0] : -1;
+    }
+    /**
+     * Returns time of last record or -1 if empty.
+     * @return
+     */
+    public long getEndTime()
+    {
+        return blockCount > 0 ? index[(blockCount-1)*INDEX_LONGS+1] : -1;
+    }
+    /**
+     * Returns number of records in file.
+     * @return
+     */
+    public long getRecordCount()
+    {
+        long sum = 0;
+        for (int ii=0;ii<blockCount;ii++)
+        {
+            sum += index[ii*INDEX_LONGS+3];
+        }
+        return sum;
+    }
+    /**
+     * Sets properties which are read. Time property is always read. Values of
+     * other properties are undefined. If input is positioned inside a block,
+     * the block is reloaded so that next record has all needed properties.
+     * @param names Property names or null for all.
+     * @throws IOException 
+     */
+    public void setNeeded(Collection<String> names) throws IOException
+    {
+        for (int ii=0;ii<props.length;ii++)
+        {
+            needed[ii] = names == null || ii == timeColumn || names.contains(props[ii].getName());
+        }
+        loaded = -1;
+        reset = true;
+        if (blockIndex >= 0 && blockIndex < blockCount)
+        {
+            load(blockIndex);
+        }
+    }
+    /**
+     * Positions input so that next returns first record having time greater 
+     * or equal to given time.
+     * @param time
+     * @throws IOException 
+     */
+    public void seek(long time) throws IOException
+    {
+        int lo = 0;
+        int hi = blockCount-1;
+        int blk = blockCount;
+        while (lo <= hi)
+        {
+            int mid = (lo+hi)>>>1;
+            if (index[mid*INDEX_LONGS+1] >= time)
+            {
+                blk = mid;
+                hi = mid-1;
+            }
+            else
+            {
+                lo = mid+1;
+            }
+        }
+        blockIndex = blk;
+        reset = true;
+        if (blk == blockCount)
+        {
+            row = rows;
+            return;
+        }
+        load(blk);
+        long[] times = columns[timeColumn];
+        lo = 0;
+        hi = rows-1;
+        int r = rows;
+        while (lo <= hi)
+        {
+            int mid = (lo+hi)>>>1;
+            if (times[mid] >= time)
+            {
+                r = mid;
+                hi = mid-1;
+            }
+            else
+            {
+                lo = mid+1;
+            }
+        }
+        row = r-1;
+    }
+    /**
+     * Rewinds to the start of file.
+     */
+    public void rewind()
+    {
+        blockIndex = -1;
+        row = rows;
+        reset = true;
+    }
+    /**
+     * Advances to next record. Needed properties are available with get 
+     * methods.
+     * @return false when there is no more records.
+     * @throws IOException 
+     */
+    public boolean next() throws IOException
+    {
+        row++;
+        while (row >= rows)
+        {
+            blockIndex++;
+            if (blockIndex >= blockCount)
+            {
+                return false;
+            }
+            load(blockIndex);
+            row = 0;
+        }
+        modified.clear();
+        for (int ii=0;ii<props.length;ii++)
+        {
+            if (needed[ii])
+            {
+                Property p = props[ii];
+                long raw = columns[ii][row];
+                if (reset || row == 0 || raw != columns[ii][row-1])
+                {
+                    modified.add(p.getName());
+                }
+                putRaw(bb1, p.getType(), p.getOffset(), raw);
+            }
+        }
+        reset = false;
+        return true;
+    }
+    /**
+     * Returns time of current record.
+     * @return 
+     */
+    public long getTime()
+    {
+        return columns[timeColumn][row];
+    }
+    /**
+     * Returns names of properties changed in last next call. First record of
+     * block and first record after seek, rewind or setNeeded report all 
+     * needed properties.
+     * @return 
+     */
+    public Set<String> getModified()
+    {
+        return modified;
+    }
+    public void readAll(PropertySetter setter) throws IOException
+    {
+        Set<String> set = new HashSet<>(CollectionHelp.create(setter.getProperties()));
+        setNeeded(set);
+        while (next())
+        {
+            setModified(setter, set);
+        }
+    }
+    public <T extends PropertySetter & Transactional> void readTransactional(T setter) throws IOException
+    {
+        Set<String> set = new HashSet<>(CollectionHelp.create(setter.getProperties()));
+        setNeeded(set);
+        while (next())
+        {
+            setter.begin(source);
+            setModified(setter, set);
+            setter.commit(source, modified);
+        }
+    }
+    public void setModified(PropertySetter setter, Collection<String> needed)
+    {
+        modified.forEach((name) ->
+        {
+            if (needed.contains(name))
+            {
+                Property property = properties.get(name);
+                property.set(setter);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        inflater.end();
+        channel.close();
+    }
+
+    private void load(int blk) throws IOException
+    {
+        if (loaded == blk)
+        {
+            return;
+        }
+        long offset = index[blk*INDEX_LONGS+2];
+        ByteBuffer bb = ByteBuffer.allocate(BLOCK_HEADER_SIZE+dir.length*4);
+        read(bb, offset);
+        if (bb.getInt() != BLOCK_MAGIC)
+        {
+            throw new IOException("block magic missing at "+offset);
+        }
+        rows = bb.getInt();
+        bb.getInt();
+        bb.getLong();
+        bb.getLong();
+        for (int ii=0;ii<dir.length;ii++)
+        {
+            dir[ii] = bb.getInt();
+        }
+        long pos = offset+bb.capacity();
+        for (int ii=0;ii<props.length;ii++)
+        {
+            int rawLength = dir[2*ii];
+            int storedLength = dir[2*ii+1];
+            if (needed[ii])
+            {
+                if (columns[ii] == null || columns[ii].length < rows)
+                {
+                    columns[ii] = new long[rows];
+                }
+                if (rawArray.length < rawLength)
+                {
+                    rawArray = new byte[rawLength];
+                    compArray = new byte[rawLength];
+                }
+                if (storedLength < rawLength)
+                {
+                    read(ByteBuffer.wrap(compArray, 0, storedLength), pos);
+                    inflater.reset();
+                    inflater.setInput(compArray, 0, storedLength);
+                    try
+                    {
+                        if (inflater.inflate(rawArray, 0, rawLength) != rawLength)
+                        {
+                            throw new IOException("block at "+offset+" corrupted");
+                        }
+                    }
+                    catch (DataFormatException ex)
+                    {
+                        throw new IOException(ex);
+                    }
+                }
+                else
+                {
+                    read(ByteBuffer.wrap(rawArray, 0, rawLength), pos);
+                }
+                bits.wrap(rawArray, rawLength);
+                decode(xorWidth(props[ii].getType()), bits, columns[ii], rows);
+            }
+            pos += storedLength;
+        }
+        loaded = blk;
+    }
+
+    private boolean readIndex() throws IOException
+    {
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE+TRAILER_SIZE)
+        {
+            return false;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(TRAILER_SIZE);
+        read(bb, size-TRAILER_SIZE);
+        long indexOffset = bb.getLong();
+        int cnt = bb.getInt();
+        if (bb.getInt() != INDEX_MAGIC || indexOffset+(long)cnt*INDEX_ENTRY_SIZE+TRAILER_SIZE != size)
+        {
+            return false;
+        }
+        bb = ByteBuffer.allocate(cnt*INDEX_ENTRY_SIZE);
+        read(bb, indexOffset);
+        index = new long[cnt*INDEX_LONGS];
+        bb.asLongBuffer().get(index);
+        blockCount = cnt;
+        return true;
+    }
+    /**
+     * Rebuilds index from block headers. Incomplete last block is ignored.
+     * @throws IOException
+     */
+    private void scanIndex(long offset) throws IOException
+    {
+        long size = channel.size();
+        index = new long[INDEX_LONGS*64];
+        blockCount = 0;
+        ByteBuffer bb = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        while (offset+BLOCK_HEADER_SIZE <= size)
+        {
+            bb.clear();
+            read(bb, offset);
+            if (bb.getInt() != BLOCK_MAGIC)
+            {
+                break;
+            }
+            int cnt = bb.getInt();
+            int length = bb.getInt();
+            long next = offset+BLOCK_HEADER_SIZE+length;
+            if (next > size)
+            {
+                break;
+            }
+            if ((blockCount+1)*INDEX_LONGS > index.length)
+            {
+                index = Arrays.copyOf(index, index.length*2);
+            }
+            int idx = blockCount*INDEX_LONGS;
+            index[idx] = bb.getLong();
+            index[idx+1] = bb.getLong();
+            index[idx+2] = offset;
+            index[idx+3] = cnt;
+            blockCount++;
+            offset = next;
+        }
+    }
+
+    private void read(ByteBuffer bb, long position) throws IOException
+    {
+        while (bb.hasRemaining())
+        {
+            int rc = channel.read(bb, position);
+            if (rc < 0)
+            {
+                throw new EOFException();
+            }
+            position += rc;
+        }
+        bb.flip();
+    }
+}
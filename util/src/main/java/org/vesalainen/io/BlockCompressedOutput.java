@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import static org.vesalainen.io.BlockCompressedFormat.*;
+
+/**
+ * BlockCompressedOutput writes version 2 compressed format. Records are 
+ * collected into blocks where each property is a separately compressed 
+ * column. Block index by time is written when output is closed.
+ * <p>Time property must be long and non-decreasing.
+ * <p>Read with BlockCompressedInput.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.io.BlockCompressedFormat
+ * @see org.vesalainen.io.BlockCompressedInput
+ */
+public class BlockCompressedOutput extends CompressedOutput
+{
+    private final String timeProperty;
+    private final int blockRows;
+    private final boolean compress;
+    private Property[] props;
+    private int timeColumn;
+    private long[][] columns;
+    private int rows;
+    private final Bits bits = new Bits(1024);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compArray = new byte[1024];
+    private final ByteArrayOutputStream blockOut = new ByteArrayOutputStream();
+    private long[] index = new long[INDEX_LONGS*64];
+    private int blockCount;
+    private long position;
+    private boolean headerWritten;
+
+    public BlockCompressedOutput(Path path, String source, String timeProperty) throws IOException
+    {
+        this(IO.buffer(Files.newOutputStream(path)), source, timeProperty, 4096, true);
+    }
+    /**
+     * Creates BlockCompressedOutput
+     * @param out
+     * @param source
+     * @param timeProperty Name of long time property
+     * @param blockRows Maximum number of records in block
+     * @param compress If true columns are deflated
+     */
+    public BlockCompressedOutput(OutputStream out, String source, String timeProperty, int blockRows, boolean compress)
+    {
+        super(out, source);
+        this.timeProperty = timeProperty;
+        this.blockRows = blockRows;
+        this.compress = compress;
+    }
+
+    @Override
+    public void ready()
+    {
+        Property tp = properties.get(timeProperty);
+        if (tp == null || !"long".equals(tp.getType()))
+        {
+            throw new IllegalArgumentException(timeProperty+" long time property missing");
+        }
+        super.ready();
+        List<Property> list = new ArrayList<>(properties.values());
+        list.sort(null);
+        props = list.toArray(new Property[list.size()]);
+        timeColumn = list.indexOf(tp);
+        columns = new long[props.length][blockRows];
+    }
+    /**
+     * Adds current values as a record if self important properties have
+     * changed.
+     * @return Rate of changed bytes or 0 if record was not added.
+     * @throws IOException 
+     */
+    @Override
+    public float write() throws IOException
+    {
+        bitArray.setAll(false);
+        for (int ii=0;ii<bytes;ii++)
+        {
+            bitArray.set(ii, bb1.get(ii) != bb2.get(ii));
+        }
+        if (!bitArray.any())
+        {
+            return 0;
+        }
+        if (!bitArray.and(selfImportantArray))
+        {
+            return 0;
+        }
+        if (!headerWritten)
+        {
+            writeHeader();
+        }
+        if (rows == blockRows)
+        {
+            writeBlock();
+        }
+        int cnt = 0;
+        for (int ii=0;ii<bytes;ii++)
+        {
+            if (bitArray.isSet(ii))
+            {
+                cnt++;
+            }
+        }
+        System.arraycopy(bb2.array(), 0, bb1.array(), 0, bytes);
+        for (int ii=0;ii<props.length;ii++)
+        {
+            Property p = props[ii];
+            columns[ii][rows] = getRaw(bb2, p.getType(), p.getOffset());
+        }
+        rows++;
+        return (float)cnt/(float)bytes;
+    }
+    /**
+     * Returns true if records have been written.
+     * @return 
+     */
+    @Override
+    public boolean hasData()
+    {
+        return blockCount > 0 || rows > 0;
+    }
+    /**
+     * Writes current partial block.
+     * @throws IOException 
+     */
+    public void flush() throws IOException
+    {
+        if (rows > 0)
+        {
+            writeBlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes last block and index and closes output. If ready was not called
+     * nothing is written.
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if (props != null)
+            {
+                if (!headerWritten)
+                {
+                    writeHeader();
+                }
+                if (rows > 0)
+                {
+                    writeBlock();
+                }
+                ByteBuffer bb = ByteBuffer.allocate(blockCount*INDEX_ENTRY_SIZE+TRAILER_SIZE);
+                for (int ii=0;ii<blockCount*INDEX_LONGS;ii++)
+                {
+                    bb.putLong(index[ii]);
+                }
+                bb.putLong(position);
+                bb.putInt(blockCount);
+                bb.putInt(INDEX_MAGIC);
+                write(bb.array(), bb.position());
+            }
+        }
+        finally
+        {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeHeader() throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeUTF(source);
+        dos.writeShort(props.length);
+        for (Property prop : props)
+        {
+            dos.writeUTF(prop.getName());
+            dos.writeUTF(prop.getType());
+        }
+        dos.writeUTF(timeProperty);
+        dos.writeLong(uuid.getMostSignificantBits());
+        dos.writeLong(uuid.getLeastSignificantBits());
+        ByteBuffer bb = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        bb.putInt(FILE_MAGIC);
+        bb.putShort(VERSION);
+        bb.putShort((short)0);
+        bb.putInt(baos.size());
+        write(bb.array(), FILE_HEADER_SIZE);
+        write(baos.toByteArray(), baos.size());
+        headerWritten = true;
+    }
+    
+    private void writeBlock() throws IOException
+    {
+        blockOut.reset();
+        int[] dir = new int[2*props.length];
+        for (int ii=0;ii<props.length;ii++)
+        {
+            encode(xorWidth(props[ii].getType()), columns[ii], rows, bits);
+            int rawLength = bits.length();
+            dir[2*ii] = rawLength;
+            int len = rawLength;
+            if (compress)
+            {
+                if (compArray.length < rawLength)
+                {
+                    compArray = new byte[rawLength];
+                }
+                deflater.reset();
+                deflater.setInput(bits.array(), 0, rawLength);
+                deflater.finish();
+                len = deflater.deflate(compArray, 0, rawLength);
+                if (!deflater.finished() || len >= rawLength)
+                {
+                    len = rawLength;
+                }
+            }
+            dir[2*ii+1] = len;
+            blockOut.write(len < rawLength ? compArray : bits.array(), 0, len);
+        }
+        long firstTime = columns[timeColumn][0];
+        long lastTime = columns[timeColumn][rows-1];
+        ByteBuffer bb = ByteBuffer.allocate(BLOCK_HEADER_SIZE+dir.length*4);
+        bb.putInt(BLOCK_MAGIC);
+        bb.putInt(rows);
+        bb.putInt(dir.length*4+blockOut.size());
+        bb.putLong(firstTime);
+        bb.putLong(lastTime);
+        for (int d : dir)
+        {
+            bb.putInt(d);
+        }
+        if ((blockCount+1)*INDEX_LONGS > index.length)
+        {
+            index = Arrays.copyOf(index, index.length*2);
+        }
+        int idx = blockCount*INDEX_LONGS;
+        index[idx] = firstTime;
+        index[idx+1] = lastTime;
+        index[idx+2] = position;
+        index[idx+3] = rows;
+        blockCount++;
+        write(bb.array(), bb.position());
+        blockOut.writeTo(out);
+        position += blockOut.size();
+        rows = 0;
+    }
+
+    private void write(byte[] buf, int len) throws IOException
+    {
+        out.write(buf, 0, len);
+        position += len;
+    }
+}
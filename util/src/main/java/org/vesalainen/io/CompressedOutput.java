@@ -35,9 +35,9 @@ import org.vesalainen.util.BitArray;
  */
 public class CompressedOutput extends CompressedIO
 {
-    private OutputStream out;
-    private ByteBuffer bb2;
-    private BitArray selfImportantArray;
+    protected OutputStream out;
+    protected ByteBuffer bb2;
+    protected BitArray selfImportantArray;
     private boolean ready;
     private int writeCount;
     private int writeBytes;
@@ -0,0 +1,544 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+
+/**
+ * AbstractConcurrentTimeoutSliding keeps samples of given timeout for one 
+ * writer and many readers.
+ * <p>Values and times are stored once in ring arrays. Min and max are kept
+ * in monotonic deques of sample indexes so that accept and eviction are
+ * amortized O(1) regardless of window length. Indexes are absolute and 
+ * array sizes powers of 2.
+ * <p>Readers don't lock. They use StampedLock optimistic reads and retry 
+ * with read lock only if writer intervened. Subclasses maintain derived
+ * values in added and removed and read them in calc.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.math.sliding.ConcurrentTimeoutSlidingStats
+ * @see org.vesalainen.math.sliding.DoubleTimeoutSlidingExtremes
+ */
+public abstract class AbstractConcurrentTimeoutSliding implements TimeoutStats
+{
+    protected static final int COUNT = 0;
+    protected static final int FAST = 1;
+    protected static final int MIN = 2;
+    protected static final int MAX = 3;
+    protected static final int LAST = 4;
+    protected static final int PREVIOUS = 5;
+    protected static final int FIRST_TIME = 6;
+    protected static final int LAST_TIME = 7;
+    protected static final int PREVIOUS_TIME = 8;
+    protected final StampedLock lock = new StampedLock();
+    protected final long timeout;
+    protected LongSupplier clock;
+    protected double[] ring;
+    protected long[] times;
+    protected int begin;
+    protected int end;
+    protected double sum;
+    // deques of sample indexes. Values are increasing in minQ and decreasing
+    // in maxQ.
+    protected int[] minQ;
+    protected int minBegin;
+    protected int minEnd;
+    protected int[] maxQ;
+    protected int maxBegin;
+    protected int maxEnd;
+
+    /**
+     * Creates AbstractConcurrentTimeoutSliding
+     * @param clock
+     * @param initialSize Initial size of ring buffer. Rounded up to power of 2.
+     * @param timeout Sample timeout
+     */
+    protected AbstractConcurrentTimeoutSliding(LongSupplier clock, int initialSize, long timeout)
+    {
+        int size = Math.max(2, Integer.highestOneBit(Math.max(1, initialSize-1))<<1);
+        this.clock = clock;
+        this.timeout = timeout;
+        this.ring = new double[size];
+        this.times = new long[size];
+        this.minQ = new int[size];
+        this.maxQ = new int[size];
+    }
+
+    @Override
+    public void accept(double value)
+    {
+        accept(value, clock.getAsLong());
+    }
+    /**
+     * Adds sample. Samples older than timeout are removed.
+     * @param value
+     * @param time 
+     */
+    @Override
+    public void accept(double value, long time)
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            eliminate(clock.getAsLong());
+            append(value, time);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Removes all samples.
+     */
+    public void clear()
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            begin = end;
+            minBegin = minEnd;
+            maxBegin = maxEnd;
+            sum = 0;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Returns number of samples.
+     * @return 
+     */
+    public int count()
+    {
+        return (int) read(COUNT);
+    }
+    /**
+     * Returns average.
+     * @return 
+     */
+    public double fast()
+    {
+        return read(FAST);
+    }
+    /**
+     * Returns minimum value or NaN if empty.
+     * @return 
+     */
+    public double getMin()
+    {
+        return read(MIN);
+    }
+    /**
+     * Returns maximum value or NaN if empty.
+     * @return 
+     */
+    public double getMax()
+    {
+        return read(MAX);
+    }
+
+    @Override
+    public double last()
+    {
+        return read(LAST);
+    }
+
+    @Override
+    public double previous()
+    {
+        return read(PREVIOUS);
+    }
+
+    @Override
+    public long firstTime()
+    {
+        return readTime(FIRST_TIME);
+    }
+
+    @Override
+    public long lastTime()
+    {
+        return readTime(LAST_TIME);
+    }
+
+    @Override
+    public long previousTime()
+    {
+        return readTime(PREVIOUS_TIME);
+    }
+
+    @Override
+    public long maxDuration()
+    {
+        return timeout;
+    }
+
+    @Override
+    public long getTimeout()
+    {
+        return timeout;
+    }
+    
+    public LongSupplier clock()
+    {
+        return clock;
+    }
+
+    public void clock(LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+    /**
+     * Returns values as array. Returned array is independent.
+     * @return 
+     */
+    public double[] toArray()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            int mask = ring.length-1;
+            double[] arr = new double[end-begin];
+            for (int ii=begin;ii!=end;ii++)
+            {
+                arr[ii-begin] = ring[ii & mask];
+            }
+            return arr;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Returns time values as array. Returned array is independent.
+     * @return 
+     */
+    public long[] toTimeArray()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            int mask = times.length-1;
+            long[] arr = new long[end-begin];
+            for (int ii=begin;ii!=end;ii++)
+            {
+                arr[ii-begin] = times[ii & mask];
+            }
+            return arr;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Passes samples having time greater than given time in the same order 
+     * as entered.
+     * @param time
+     * @param act 
+     */
+    @Override
+    public void forEachAfter(long time, TimeValueConsumer act)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            int mask = ring.length-1;
+            int start = end;
+            while (start != begin && times[(start-1) & mask] > time)
+            {
+                start--;
+            }
+            for (int ii=start;ii!=end;ii++)
+            {
+                act.accept(times[ii & mask], ring[ii & mask]);
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public DoubleStream stream()
+    {
+        return Arrays.stream(toArray());
+    }
+
+    @Override
+    public LongStream timeStream()
+    {
+        return Arrays.stream(toTimeArray());
+    }
+    /**
+     * Called with write lock after sample is stored but before it is counted.
+     * begin == end if window was empty.
+     * @param value
+     * @param time 
+     */
+    protected void added(double value, long time)
+    {
+    }
+    /**
+     * Called with write lock before expired sample is removed.
+     * @param value
+     * @param time 
+     */
+    protected void removed(double value, long time)
+    {
+    }
+    /**
+     * Called with write lock after expired samples are removed.
+     */
+    protected void eliminated()
+    {
+    }
+    /**
+     * Appends sample. Must be called with write lock.
+     * @param value
+     * @param time 
+     */
+    protected void append(double value, long time)
+    {
+        if (end - begin == ring.length)
+        {
+            grow();
+        }
+        int mask = ring.length-1;
+        ring[end & mask] = value;
+        times[end & mask] = time;
+        sum += value;
+        added(value, time);
+        while (minEnd != minBegin && ring[minQ[(minEnd-1) & mask] & mask] >= value)
+        {
+            minEnd--;
+        }
+        minQ[minEnd++ & mask] = end;
+        while (maxEnd != maxBegin && ring[maxQ[(maxEnd-1) & mask] & mask] <= value)
+        {
+            maxEnd--;
+        }
+        maxQ[maxEnd++ & mask] = end;
+        end++;
+    }
+    /**
+     * Removes samples older than timeout. Must be called with write lock.
+     * @param now 
+     */
+    protected void eliminate(long now)
+    {
+        int mask = ring.length-1;
+        while (begin != end && now - times[begin & mask] > timeout)
+        {
+            double v = ring[begin & mask];
+            sum -= v;
+            removed(v, times[begin & mask]);
+            if (minQ[minBegin & mask] == begin)
+            {
+                minBegin++;
+            }
+            if (maxQ[maxBegin & mask] == begin)
+            {
+                maxBegin++;
+            }
+            begin++;
+        }
+        if (begin == end)
+        {
+            sum = 0;
+        }
+        eliminated();
+    }
+    /**
+     * Doubles arrays. Indexes are absolute so that entries keep their
+     * places modulo new size.
+     */
+    private void grow()
+    {
+        int mask = ring.length-1;
+        int len = 2*ring.length;
+        int newMask = len-1;
+        double[] r = new double[len];
+        long[] t = new long[len];
+        int[] mi = new int[len];
+        int[] ma = new int[len];
+        for (int ii=begin;ii!=end;ii++)
+        {
+            r[ii & newMask] = ring[ii & mask];
+            t[ii & newMask] = times[ii & mask];
+        }
+        for (int ii=minBegin;ii!=minEnd;ii++)
+        {
+            mi[ii & newMask] = minQ[ii & mask];
+        }
+        for (int ii=maxBegin;ii!=maxEnd;ii++)
+        {
+            ma[ii & newMask] = maxQ[ii & mask];
+        }
+        ring = r;
+        times = t;
+        minQ = mi;
+        maxQ = ma;
+    }
+    protected double read(int op)
+    {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            try
+            {
+                double res = calc(op);
+                if (lock.validate(stamp))
+                {
+                    return res;
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                if (lock.validate(stamp))
+                {
+                    throw ex;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try
+        {
+            return calc(op);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    private long readTime(int op)
+    {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            try
+            {
+                long res = calcTime(op);
+                if (lock.validate(stamp))
+                {
+                    return res;
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                if (lock.validate(stamp))
+                {
+                    throw ex;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try
+        {
+            return calcTime(op);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Calculates value. Called by read either optimistically or with read 
+     * lock. Subclasses handle their own ops and pass the rest to super.
+     * @param op
+     * @return 
+     */
+    protected double calc(int op)
+    {
+        double[] r = ring;
+        int mask = r.length-1;
+        int b = begin;
+        int e = end;
+        int count = e - b;
+        checkRange(count, mask);
+        switch (op)
+        {
+            case COUNT:
+                return count;
+            case FAST:
+                return sum/count;
+            case MIN:
+                return count > 0 ? r[minQ[minBegin & mask] & mask] : Double.NaN;
+            case MAX:
+                return count > 0 ? r[maxQ[maxBegin & mask] & mask] : Double.NaN;
+            case LAST:
+                check(count, 1);
+                return r[(e-1) & mask];
+            case PREVIOUS:
+                check(count, 2);
+                return r[(e-2) & mask];
+            default:
+                throw new UnsupportedOperationException(op+" not supported");
+        }
+    }
+    private long calcTime(int op)
+    {
+        long[] t = times;
+        int mask = t.length-1;
+        int b = begin;
+        int e = end;
+        int count = e - b;
+        checkRange(count, mask);
+        switch (op)
+        {
+            case FIRST_TIME:
+                check(count, 1);
+                return t[b & mask];
+            case LAST_TIME:
+                check(count, 1);
+                return t[(e-1) & mask];
+            case PREVIOUS_TIME:
+                check(count, 2);
+                return t[(e-2) & mask];
+            default:
+                throw new UnsupportedOperationException(op+" not supported");
+        }
+    }
+    /**
+     * Optimistic read may see begin and end of different moments.
+     * @param count
+     * @param mask 
+     */
+    protected static void checkRange(int count, int mask)
+    {
+        if (count < 0 || count > mask+1)
+        {
+            throw new ConcurrentModificationException();
+        }
+    }
+    private static void check(int count, int min)
+    {
+        if (count < min)
+        {
+            throw new IllegalStateException("count() < "+min);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.time.Clock;
+import java.util.function.LongSupplier;
+
+/**
+ * ConcurrentTimeoutSlidingStats calculates average, min, max and slope for
+ * given timeout. It is a drop-in replacement for DoubleTimeoutSlidingStats
+ * when one thread writes and many threads read.
+ * <p>Readers don't lock. Writer keeps min and max in monotonic deques and 
+ * least squares sums incrementally, so that every reader is O(1). Use 
+ * snapshot to get all of them consistently.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.math.sliding.DoubleTimeoutSlidingStats
+ * @see org.vesalainen.math.sliding.AbstractConcurrentTimeoutSliding
+ */
+public class ConcurrentTimeoutSlidingStats extends AbstractConcurrentTimeoutSliding
+{
+    private static final int SLOPE = 9;
+    // least squares sums with x = time - base
+    private long base;
+    private double sx;
+    private double sxy;
+    private double sxx;
+
+    public ConcurrentTimeoutSlidingStats(int size, long timeout)
+    {
+        this(System::currentTimeMillis, size, timeout);
+    }
+    public ConcurrentTimeoutSlidingStats(Clock clock, int initialSize, long timeout)
+    {
+        this(clock::millis, initialSize, timeout);
+    }
+    /**
+     * Creates ConcurrentTimeoutSlidingStats
+     * @param clock
+     * @param initialSize Initial size of ring buffer. Rounded up to power of 2.
+     * @param timeout Sample timeout
+     */
+    public ConcurrentTimeoutSlidingStats(LongSupplier clock, int initialSize, long timeout)
+    {
+        super(clock, initialSize, timeout);
+    }
+    /**
+     * Returns slope of least squares line in value per time unit.
+     * @return 
+     */
+    public double slope()
+    {
+        return read(SLOPE);
+    }
+    /**
+     * Fills snapshot with consistent values.
+     * @param snapshot
+     * @return snapshot
+     */
+    public Snapshot snapshot(Snapshot snapshot)
+    {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            try
+            {
+                scan(snapshot);
+                if (lock.validate(stamp))
+                {
+                    return snapshot;
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                if (lock.validate(stamp))
+                {
+                    throw ex;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try
+        {
+            scan(snapshot);
+            return snapshot;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    @Override
+    protected double calc(int op)
+    {
+        if (op == SLOPE)
+        {
+            int count = end - begin;
+            checkRange(count, ring.length-1);
+            return slope(count);
+        }
+        return super.calc(op);
+    }
+    private void scan(Snapshot s)
+    {
+        double[] r = ring;
+        long[] t = times;
+        int mask = r.length-1;
+        int b = begin;
+        int e = end;
+        int count = e - b;
+        checkRange(count, mask);
+        s.count = count;
+        s.min = count > 0 ? r[minQ[minBegin & mask] & mask] : Double.NaN;
+        s.max = count > 0 ? r[maxQ[maxBegin & mask] & mask] : Double.NaN;
+        s.average = sum/count;
+        s.slope = slope(count);
+        s.firstTime = count > 0 ? t[b & mask] : 0;
+        s.lastTime = count > 0 ? t[(e-1) & mask] : 0;
+    }
+    private double slope(int count)
+    {
+        return (count*sxy - sx*sum)/(count*sxx - sx*sx);
+    }
+
+    @Override
+    protected void added(double value, long time)
+    {
+        if (begin == end)
+        {
+            base = time;
+            sx = 0;
+            sxy = 0;
+            sxx = 0;
+        }
+        double x = time - base;
+        sx += x;
+        sxy += x*value;
+        sxx += x*x;
+    }
+
+    @Override
+    protected void removed(double value, long time)
+    {
+        double x = time - base;
+        sx -= x;
+        sxy -= x*value;
+        sxx -= x*x;
+    }
+
+    @Override
+    protected void eliminated()
+    {
+        if (begin != end && times[begin & (times.length-1)] - base > timeout)
+        {
+            rebase();
+        }
+    }
+    /**
+     * Recalculates sums relative to first sample time. This keeps x small 
+     * and drops rounding errors of subtractions. Called at most once per 
+     * timeout, so cost is amortized O(1) per sample.
+     */
+    private void rebase()
+    {
+        int mask = ring.length-1;
+        base = times[begin & mask];
+        sum = 0;
+        sx = 0;
+        sxy = 0;
+        sxx = 0;
+        for (int ii=begin;ii!=end;ii++)
+        {
+            double v = ring[ii & mask];
+            double x = times[ii & mask] - base;
+            sum += v;
+            sx += x;
+            sxy += x*v;
+            sxx += x*x;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        Snapshot s = snapshot(new Snapshot());
+        return "ConcurrentTimeoutSlidingStats{ave=" + s.average + ", min=" + s.min + ", max=" + s.max + '}';
+    }
+    /**
+     * Consistent values of one moment.
+     */
+    public static class Snapshot
+    {
+        private int count;
+        private double average;
+        private double min;
+        private double max;
+        private double slope;
+        private long firstTime;
+        private long lastTime;
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public double getAverage()
+        {
+            return average;
+        }
+
+        public double getMin()
+        {
+            return min;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+        /**
+         * Returns slope of least squares line in value per time unit.
+         * @return 
+         */
+        public double getSlope()
+        {
+            return slope;
+        }
+
+        public long getFirstTime()
+        {
+            return firstTime;
+        }
+
+        public long getLastTime()
+        {
+            return lastTime;
+        }
+        
+    }
+}
@@ -214,6 +214,28 @@ public class DoubleTimeoutSlidingAverage extends DoubleAbstractSlidingAverage im
         this.clock = clock;
     }
     
+    public void forEachAfter(long time, TimeValueConsumer act)
+    {
+        readLock.lock();
+        try
+        {
+            int start = end;
+            while (start != begin && times[Math.floorMod(start-1, size)] > time)
+            {
+                start--;
+            }
+            for (int ii=start;ii!=end;ii++)
+            {
+                int mod = Math.floorMod(ii, size);
+                act.accept(times[mod], ring[mod]);
+            }
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+    
     public void forEach(TimeValueConsumer act)
     {
         PrimitiveIterator.OfInt mi = modIterator();
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.time.Clock;
+import java.util.function.LongSupplier;
+
+/**
+ * DoubleTimeoutSlidingExtremes calculates min, max and average for given 
+ * timeout.
+ * <p>Min and max are kept in monotonic deques so that accept and eviction 
+ * are amortized O(1) regardless of window length. Readers use StampedLock 
+ * optimistic reads.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.math.sliding.AbstractConcurrentTimeoutSliding
+ */
+public class DoubleTimeoutSlidingExtremes extends AbstractConcurrentTimeoutSliding
+{
+
+    public DoubleTimeoutSlidingExtremes(int size, long timeout)
+    {
+        this(System::currentTimeMillis, size, timeout);
+    }
+    public DoubleTimeoutSlidingExtremes(Clock clock, int initialSize, long timeout)
+    {
+        this(clock::millis, initialSize, timeout);
+    }
+    /**
+     * Creates DoubleTimeoutSlidingExtremes
+     * @param clock
+     * @param initialSize Initial size of ring buffer. Rounded up to power of 2.
+     * @param timeout Sample timeout
+     */
+    public DoubleTimeoutSlidingExtremes(LongSupplier clock, int initialSize, long timeout)
+    {
+        super(clock, initialSize, timeout);
+    }
+    /**
+     * Adds samples. Samples older than timeout are removed.
+     * @param values
+     * @param times Sample times in ascending order
+     */
+    public void accept(double[] values, long[] times)
+    {
+        accept(values, times, 0, values.length);
+    }
+    /**
+     * Adds samples. Samples older than timeout are removed.
+     * @param values
+     * @param times Sample times in ascending order
+     * @param offset
+     * @param length 
+     */
+    public void accept(double[] values, long[] times, int offset, int length)
+    {
+        if (offset < 0 || length < 0 || offset+length > values.length || offset+length > times.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        long stamp = lock.writeLock();
+        try
+        {
+            long now = clock.getAsLong();
+            eliminate(now);
+            for (int ii=0;ii<length;ii++)
+            {
+                if (end - begin == ring.length)
+                {
+                    eliminate(now);
+                }
+                append(values[offset+ii], times[offset+ii]);
+            }
+            eliminate(now);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DoubleTimeoutSlidingExtremes{ave=" + fast() + ", min=" + getMin() + ", max=" + getMax() + '}';
+    }
+    
+}
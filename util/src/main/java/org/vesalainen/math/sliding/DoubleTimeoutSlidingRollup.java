@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.time.Clock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * DoubleTimeoutSlidingRollup is a multi-resolution window for long timeouts.
+ * <p>Samples younger than raw span are kept as they are. Older samples are
+ * folded into fixed time buckets which keep count, sum, sum of squares, min,
+ * max and sin/cos sums. Memory is bounded by timeout/bucket duration and 
+ * sample rate times raw span.
+ * <p>Statistics can be asked for any window up to timeout. Windows longer 
+ * than raw span are resolved with bucket duration accuracy. Bucket which 
+ * overlaps window start is included as a whole.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DoubleTimeoutSlidingRollup implements DoubleConsumer
+{
+    private static final int COUNT = 0;
+    private static final int AVERAGE = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    private static final int STDDEV = 4;
+    private static final int ANGLE = 5;
+    private final StampedLock lock = new StampedLock();
+    private final long timeout;
+    private final long rawSpan;
+    private final long bucketDuration;
+    private LongSupplier clock;
+    private double[] ring;
+    private long[] times;
+    private int begin;
+    private int end;
+    private final int buckets;
+    private final long[] bStart;
+    private final int[] bCount;
+    private final double[] bSum;
+    private final double[] bSumSq;
+    private final double[] bMin;
+    private final double[] bMax;
+    private final double[] bSin;
+    private final double[] bCos;
+
+    public DoubleTimeoutSlidingRollup(long timeout, long rawSpan, long bucketDuration)
+    {
+        this(System::currentTimeMillis, timeout, rawSpan, bucketDuration);
+    }
+    public DoubleTimeoutSlidingRollup(Clock clock, long timeout, long rawSpan, long bucketDuration)
+    {
+        this(clock::millis, timeout, rawSpan, bucketDuration);
+    }
+    /**
+     * Creates DoubleTimeoutSlidingRollup
+     * @param clock
+     * @param timeout Sample timeout
+     * @param rawSpan Time samples are kept unfolded
+     * @param bucketDuration Time span of one bucket
+     */
+    public DoubleTimeoutSlidingRollup(LongSupplier clock, long timeout, long rawSpan, long bucketDuration)
+    {
+        if (bucketDuration <= 0 || rawSpan < 0 || rawSpan > timeout)
+        {
+            throw new IllegalArgumentException("illegal durations");
+        }
+        this.clock = clock;
+        this.timeout = timeout;
+        this.rawSpan = rawSpan;
+        this.bucketDuration = bucketDuration;
+        this.ring = new double[16];
+        this.times = new long[16];
+        this.buckets = (int) (timeout/bucketDuration)+2;
+        this.bStart = new long[buckets];
+        this.bCount = new int[buckets];
+        this.bSum = new double[buckets];
+        this.bSumSq = new double[buckets];
+        this.bMin = new double[buckets];
+        this.bMax = new double[buckets];
+        this.bSin = new double[buckets];
+        this.bCos = new double[buckets];
+    }
+
+    @Override
+    public void accept(double value)
+    {
+        accept(value, clock.getAsLong());
+    }
+    /**
+     * Adds sample. Samples older than raw span are folded into buckets.
+     * @param value
+     * @param time 
+     */
+    public void accept(double value, long time)
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            long limit = clock.getAsLong()-rawSpan;
+            int mask = ring.length-1;
+            while (begin != end && times[begin & mask] <= limit)
+            {
+                fold(times[begin & mask], ring[begin & mask]);
+                begin++;
+            }
+            if (end - begin == ring.length)
+            {
+                grow();
+                mask = ring.length-1;
+            }
+            ring[end & mask] = value;
+            times[end & mask] = time;
+            end++;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Removes all samples.
+     */
+    public void clear()
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            begin = end;
+            for (int ii=0;ii<buckets;ii++)
+            {
+                bCount[ii] = 0;
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Returns number of samples in timeout.
+     * @return 
+     */
+    public int count()
+    {
+        return count(timeout);
+    }
+    /**
+     * Returns number of samples in window.
+     * @param window
+     * @return 
+     */
+    public int count(long window)
+    {
+        return (int) calc(COUNT, window);
+    }
+    /**
+     * Returns average of samples in timeout.
+     * @return 
+     */
+    public double average()
+    {
+        return average(timeout);
+    }
+    /**
+     * Returns average of samples in window.
+     * @param window
+     * @return 
+     */
+    public double average(long window)
+    {
+        return calc(AVERAGE, window);
+    }
+    /**
+     * Returns minimum of samples in timeout.
+     * @return 
+     */
+    public double getMin()
+    {
+        return getMin(timeout);
+    }
+    /**
+     * Returns minimum of samples in window.
+     * @param window
+     * @return 
+     */
+    public double getMin(long window)
+    {
+        return calc(MIN, window);
+    }
+    /**
+     * Returns maximum of samples in timeout.
+     * @return 
+     */
+    public double getMax()
+    {
+        return getMax(timeout);
+    }
+    /**
+     * Returns maximum of samples in window.
+     * @param window
+     * @return 
+     */
+    public double getMax(long window)
+    {
+        return calc(MAX, window);
+    }
+    /**
+     * Returns population standard deviation of samples in window.
+     * @param window
+     * @return 
+     */
+    public double standardDeviation(long window)
+    {
+        return calc(STDDEV, window);
+    }
+    /**
+     * Returns angle average of samples in window. Samples are assumed to be
+     * degrees.
+     * @param window
+     * @return In degrees 0 - 360
+     */
+    public double angleAverage(long window)
+    {
+        return calc(ANGLE, window);
+    }
+    /**
+     * Returns number of unfolded samples
+     * @return 
+     */
+    public int getRawCount()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return end - begin;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    public long getRawSpan()
+    {
+        return rawSpan;
+    }
+
+    public long getBucketDuration()
+    {
+        return bucketDuration;
+    }
+
+    public LongSupplier clock()
+    {
+        return clock;
+    }
+
+    public void clock(LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+    
+    private double calc(int op, long window)
+    {
+        if (window > timeout)
+        {
+            throw new IllegalArgumentException(window+" > timeout");
+        }
+        long stamp = lock.readLock();
+        try
+        {
+            long limit = clock.getAsLong()-window;
+            int count = 0;
+            double sum = 0;
+            double sumSq = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sin = 0;
+            double cos = 0;
+            int mask = ring.length-1;
+            for (int ii=begin;ii!=end;ii++)
+            {
+                if (times[ii & mask] > limit)
+                {
+                    double v = ring[ii & mask];
+                    count++;
+                    sum += v;
+                    sumSq += v*v;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                    if (op == ANGLE)
+                    {
+                        double rad = Math.toRadians(v);
+                        sin += Math.sin(rad);
+                        cos += Math.cos(rad);
+                    }
+                }
+            }
+            for (int ii=0;ii<buckets;ii++)
+            {
+                if (bCount[ii] > 0 && bStart[ii]+bucketDuration > limit)
+                {
+                    count += bCount[ii];
+                    sum += bSum[ii];
+                    sumSq += bSumSq[ii];
+                    min = Math.min(min, bMin[ii]);
+                    max = Math.max(max, bMax[ii]);
+                    sin += bSin[ii];
+                    cos += bCos[ii];
+                }
+            }
+            switch (op)
+            {
+                case COUNT:
+                    return count;
+                case AVERAGE:
+                    return sum/count;
+                case MIN:
+                    return count > 0 ? min : Double.NaN;
+                case MAX:
+                    return count > 0 ? max : Double.NaN;
+                case STDDEV:
+                    double mean = sum/count;
+                    return Math.sqrt(Math.max(0, sumSq/count-mean*mean));
+                case ANGLE:
+                    double deg = Math.toDegrees(Math.atan2(sin, cos));
+                    return deg < 0 ? deg+360 : deg;
+                default:
+                    throw new UnsupportedOperationException(op+" not supported");
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    private void fold(long time, double value)
+    {
+        long k = Math.floorDiv(time, bucketDuration);
+        long start = k*bucketDuration;
+        int idx = (int) Math.floorMod(k, (long)buckets);
+        if (bCount[idx] == 0 || bStart[idx] < start)
+        {
+            bStart[idx] = start;
+            bCount[idx] = 0;
+            bSum[idx] = 0;
+            bSumSq[idx] = 0;
+            bMin[idx] = value;
+            bMax[idx] = value;
+            bSin[idx] = 0;
+            bCos[idx] = 0;
+        }
+        else
+        {
+            if (bStart[idx] > start)
+            {
+                return;     // older than timeout
+            }
+        }
+        double rad = Math.toRadians(value);
+        bCount[idx]++;
+        bSum[idx] += value;
+        bSumSq[idx] += value*value;
+        bMin[idx] = Math.min(bMin[idx], value);
+        bMax[idx] = Math.max(bMax[idx], value);
+        bSin[idx] += Math.sin(rad);
+        bCos[idx] += Math.cos(rad);
+    }
+
+    private void grow()
+    {
+        int oldMask = ring.length-1;
+        int len = ring.length*2;
+        int mask = len-1;
+        double[] r = new double[len];
+        long[] t = new long[len];
+        for (int ii=begin;ii!=end;ii++)
+        {
+            r[ii & mask] = ring[ii & oldMask];
+            t[ii & mask] = times[ii & oldMask];
+        }
+        ring = r;
+        times = t;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DoubleTimeoutSlidingRollup{ave=" + average() + ", min=" + getMin() + ", max=" + getMax() + '}';
+    }
+    
+}
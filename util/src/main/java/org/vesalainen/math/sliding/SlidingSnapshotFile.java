@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * SlidingSnapshotFile saves sliding windows into memory-mapped file and 
+ * restores them after restart.
+ * <p>File has fixed number of slots. Each slot is a ring of capacity 
+ * time/value records of one window. Snapshot writes only samples added 
+ * after previous snapshot, so that I/O of one snapshot is at most size of 
+ * the file and usually much less. Records are written before slots record 
+ * count, so that crash during snapshot loses at most the samples of that 
+ * snapshot.
+ * <p>When window is registered its earlier samples are restored. Expired
+ * samples are discarded.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.math.sliding.TimeValueWindow
+ */
+public class SlidingSnapshotFile extends JavaLogging implements AutoCloseable
+{
+    private static final int MAGIC = 0x534c5753;    // SLWS
+    private static final short VERSION = 1;
+    private static final int SLOT_MAGIC = 0x534c4f54;   // SLOT
+    private static final int HEADER_SIZE = 32;
+    private static final int MAX_KEY = 64;
+    private static final int KEY_LENGTH_OFFSET = 4;
+    private static final int KEY_OFFSET = 8;
+    private static final int TIMEOUT_OFFSET = KEY_OFFSET+MAX_KEY;
+    private static final int WRITTEN_OFFSET = TIMEOUT_OFFSET+8;
+    private static final int SLOT_HEADER_SIZE = WRITTEN_OFFSET+8;
+    private static final int RECORD_SIZE = 16;
+    private final FileChannel channel;
+    private final MappedByteBuffer mbb;
+    private final LongSupplier clock;
+    private final int slots;
+    private final int capacity;
+    private final int slotSize;
+    private final Map<String,Integer> stored = new HashMap<>();
+    private final Map<String,Slot> registered = new HashMap<>();
+    private final boolean[] used;
+
+    public SlidingSnapshotFile(Path path, int slots, int capacity) throws IOException
+    {
+        this(System::currentTimeMillis, path, slots, capacity);
+    }
+    /**
+     * Opens or creates snapshot file. Existing file with different slots or
+     * capacity is cleared.
+     * @param clock
+     * @param path
+     * @param slots Maximum number of windows.
+     * @param capacity Maximum number of samples stored for window.
+     * @throws IOException 
+     */
+    public SlidingSnapshotFile(LongSupplier clock, Path path, int slots, int capacity) throws IOException
+    {
+        super(SlidingSnapshotFile.class);
+        this.clock = clock;
+        this.slots = slots;
+        this.capacity = capacity;
+        this.slotSize = SLOT_HEADER_SIZE+capacity*RECORD_SIZE;
+        long size = HEADER_SIZE+(long)slots*slotSize;
+        if (slots < 1 || capacity < 1 || size > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("illegal slots="+slots+" capacity="+capacity);
+        }
+        this.used = new boolean[slots];
+        this.channel = FileChannel.open(path, READ, WRITE, CREATE);
+        boolean existing = channel.size() == size;
+        this.mbb = channel.map(READ_WRITE, 0, size);
+        if (existing 
+                && mbb.getInt(0) == MAGIC 
+                && mbb.getShort(4) == VERSION 
+                && mbb.getInt(8) == slots 
+                && mbb.getInt(12) == capacity)
+        {
+            scan();
+        }
+        else
+        {
+            if (channel.size() > size)
+            {
+                channel.truncate(size);
+            }
+            if (existing)
+            {
+                warning("%s not compatible, cleared", path);
+            }
+            for (int ii=0;ii<slots;ii++)
+            {
+                mbb.putInt(HEADER_SIZE+ii*slotSize, 0);
+            }
+            mbb.putShort(4, VERSION);
+            mbb.putInt(8, slots);
+            mbb.putInt(12, capacity);
+            mbb.putInt(0, MAGIC);
+            mbb.force();
+        }
+    }
+    /**
+     * Registers window with key. Window gets samples stored earlier with
+     * the same key which have not expired. After that new samples of window 
+     * are stored in every snapshot.
+     * @param key Unique key. Max 64 bytes in UTF-8.
+     * @param window
+     * @return false if there were no free slots.
+     */
+    public synchronized boolean register(String key, TimeValueWindow window)
+    {
+        byte[] bytes = key.getBytes(UTF_8);
+        if (bytes.length > MAX_KEY)
+        {
+            throw new IllegalArgumentException(key+" too long");
+        }
+        if (registered.containsKey(key))
+        {
+            throw new IllegalArgumentException(key+" already registered");
+        }
+        Integer index = stored.get(key);
+        Slot slot;
+        if (index != null)
+        {
+            slot = new Slot(index, window);
+            slot.restore();
+        }
+        else
+        {
+            index = freeSlot();
+            if (index < 0)
+            {
+                warning("no free slots for %s", key);
+                return false;
+            }
+            slot = new Slot(index, window);
+            slot.init(bytes);
+            stored.put(key, index);
+        }
+        used[index] = true;
+        registered.put(key, slot);
+        return true;
+    }
+    /**
+     * Returns true if key fits in slot.
+     * @param key
+     * @return 
+     */
+    public static boolean isValidKey(String key)
+    {
+        return key.getBytes(UTF_8).length <= MAX_KEY;
+    }
+    /**
+     * Unregisters window and frees its slot.
+     * @param key 
+     */
+    public synchronized void unregister(String key)
+    {
+        Slot slot = registered.remove(key);
+        if (slot != null)
+        {
+            mbb.putInt(slot.base, 0);
+            stored.remove(key);
+            used[slot.index] = false;
+        }
+    }
+    /**
+     * Writes samples added after previous snapshot and forces changes to
+     * storage.
+     */
+    public synchronized void snapshot()
+    {
+        for (Slot slot : registered.values())
+        {
+            slot.write();
+        }
+        mbb.force();
+    }
+    /**
+     * Schedules periodic snapshots.
+     * @param executor
+     * @param period
+     * @param unit
+     * @return 
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit)
+    {
+        return executor.scheduleAtFixedRate(this::snapshot, period, period, unit);
+    }
+    /**
+     * Takes final snapshot and closes file.
+     * @throws IOException 
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        snapshot();
+        channel.close();
+    }
+
+    private void scan()
+    {
+        for (int ii=0;ii<slots;ii++)
+        {
+            int base = HEADER_SIZE+ii*slotSize;
+            if (mbb.getInt(base) == SLOT_MAGIC)
+            {
+                int len = mbb.getInt(base+KEY_LENGTH_OFFSET);
+                if (len >= 0 && len <= MAX_KEY)
+                {
+                    byte[] bytes = new byte[len];
+                    for (int jj=0;jj<len;jj++)
+                    {
+                        bytes[jj] = mbb.get(base+KEY_OFFSET+jj);
+                    }
+                    stored.put(new String(bytes, UTF_8), ii);
+                }
+            }
+        }
+    }
+    /**
+     * Returns empty slot or slot of window not registered in this run.
+     * @return -1 if all slots are registered.
+     */
+    private int freeSlot()
+    {
+        int stale = -1;
+        for (int ii=0;ii<slots;ii++)
+        {
+            if (!used[ii])
+            {
+                if (mbb.getInt(HEADER_SIZE+ii*slotSize) != SLOT_MAGIC)
+                {
+                    return ii;
+                }
+                if (stale < 0)
+                {
+                    stale = ii;
+                }
+            }
+        }
+        if (stale >= 0)
+        {
+            stored.values().remove(stale);
+        }
+        return stale;
+    }
+    
+    private class Slot implements TimeValueConsumer
+    {
+        private final int index;
+        private final int base;
+        private final int records;
+        private final TimeValueWindow window;
+        private long written;
+        private long lastTime = Long.MIN_VALUE;
+        private int lastCount;  // records written with lastTime
+        private int skip;
+
+        public Slot(int index, TimeValueWindow window)
+        {
+            this.index = index;
+            this.base = HEADER_SIZE+index*slotSize;
+            this.records = base+SLOT_HEADER_SIZE;
+            this.window = window;
+        }
+
+        private void init(byte[] key)
+        {
+            mbb.putInt(base, 0);
+            mbb.putInt(base+KEY_LENGTH_OFFSET, key.length);
+            for (int ii=0;ii<key.length;ii++)
+            {
+                mbb.put(base+KEY_OFFSET+ii, key[ii]);
+            }
+            mbb.putLong(base+TIMEOUT_OFFSET, window.getTimeout());
+            mbb.putLong(base+WRITTEN_OFFSET, 0);
+            mbb.putInt(base, SLOT_MAGIC);
+        }
+        /**
+         * Passes stored samples that have not expired to window. Records of
+         * interrupted snapshot have overwritten the oldest records. They are
+         * recognized by being newer than the last committed record and are
+         * skipped.
+         */
+        private void restore()
+        {
+            written = Math.max(mbb.getLong(base+WRITTEN_OFFSET), 0);
+            mbb.putLong(base+TIMEOUT_OFFSET, window.getTimeout());
+            int cnt = (int) Math.min(written, capacity);
+            if (cnt == 0)
+            {
+                return;
+            }
+            long lastCommitted = mbb.getLong(position(written-1));
+            long limit = clock.getAsLong()-window.getTimeout();
+            int restored = 0;
+            for (long ii=written-cnt;ii<written;ii++)
+            {
+                int pos = position(ii);
+                long time = mbb.getLong(pos);
+                if (time >= limit && time <= lastCommitted && time >= lastTime)
+                {
+                    window.accept(mbb.getDouble(pos+8), time);
+                    lastCount = time == lastTime ? lastCount+1 : 1;
+                    lastTime = time;
+                    restored++;
+                }
+            }
+            fine("restored %d/%d samples", restored, cnt);
+        }
+        
+        private int position(long record)
+        {
+            return records+(int)(record % capacity)*RECORD_SIZE;
+        }
+        
+        /**
+         * Writes samples not written yet. Samples can share the same time, 
+         * so samples at lastTime are passed again and the already written 
+         * ones skipped.
+         */
+        private void write()
+        {
+            skip = lastCount;
+            window.forEachAfter(lastTime == Long.MIN_VALUE ? lastTime : lastTime-1, this);
+            mbb.putLong(base+WRITTEN_OFFSET, written);
+        }
+
+        @Override
+        public void accept(long time, double value)
+        {
+            if (time == lastTime && skip > 0)
+            {
+                skip--;
+                return;
+            }
+            int pos = position(written);
+            mbb.putLong(pos, time);
+            mbb.putDouble(pos+8, value);
+            written++;
+            lastCount = time == lastTime ? lastCount+1 : 1;
+            lastTime = time;
+        }
+        
+    }
+}
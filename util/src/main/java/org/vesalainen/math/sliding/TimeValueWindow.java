@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+/**
+ * TimeValueWindow is a timeout window of timed samples. Its content can be 
+ * read incrementally and restored by adding samples with original times.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.math.sliding.SlidingSnapshotFile
+ */
+public interface TimeValueWindow
+{
+    /**
+     * Returns sample timeout
+     * @return 
+     */
+    long getTimeout();
+    /**
+     * Adds sample with given time
+     * @param value
+     * @param time 
+     */
+    void accept(double value, long time);
+    /**
+     * Passes samples having time greater than given time in the same order 
+     * as entered.
+     * @param time
+     * @param act 
+     */
+    void forEachAfter(long time, TimeValueConsumer act);
+}
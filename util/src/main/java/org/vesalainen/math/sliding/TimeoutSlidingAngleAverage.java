@@ -79,12 +79,79 @@ public class TimeoutSlidingAngleAverage extends AbstractSlidingAngleAverage impl
         size = newSize;
     }
 
+    /**
+     * Adds angle with given time
+     * @param value In degrees
+     * @param time 
+     */
+    public void accept(double value, long time)
+    {
+        if (value < 0 || value > 360)
+        {
+            throw new IllegalArgumentException(value + " not degree");
+        }
+        writeLock.lock();
+        try
+        {
+            eliminate();
+            if (count() >= size)
+            {
+                grow();
+            }
+            int index = endMod();
+            assign(index, value);
+            times[index] = time;
+            endIncr();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
     @Override
     protected void assign(int index, double value)
     {
         super.assign(index, value);
         times[index] = clock.getAsLong();
     }
+    /**
+     * Passes angles having time greater than given time in the same order 
+     * as entered.
+     * @param time
+     * @param act 
+     */
+    public void forEachAfter(long time, TimeValueConsumer act)
+    {
+        readLock.lock();
+        try
+        {
+            int start = end;
+            while (start != begin && times[Math.floorMod(start-1, size)] > time)
+            {
+                start--;
+            }
+            for (int ii=start;ii!=end;ii++)
+            {
+                int mod = Math.floorMod(ii, size);
+                act.accept(times[mod], angle(mod));
+            }
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+    /**
+     * Returns angle at index in degrees
+     * @param index Mod index
+     * @return 
+     */
+    protected double angle(int index)
+    {
+        double deg = Math.toDegrees(Math.atan2(sin[index], cos[index]));
+        return deg < 0 ? deg + 360 : deg;
+    }
     /**
      * Returns time values as array. Returned array is independent.
      * @return 
@@ -140,6 +207,11 @@ public class TimeoutSlidingAngleAverage extends AbstractSlidingAngleAverage impl
         return times[(endMod()+size-2) % size];
     }
     
+    public long getTimeout()
+    {
+        return timeout;
+    }
+    
     public LongSupplier clock()
     {
         return clock;
@@ -103,6 +103,12 @@ public class TimeoutSlidingAngleStats extends TimeoutSlidingAngleAverage impleme
         updated = true;
     }
 
+    @Override
+    protected double angle(int index)
+    {
+        return angles[index];
+    }
+
     @Override
     protected void grow()
     {
@@ -16,32 +16,42 @@
  */
 package org.vesalainen.math.sliding;
 
-import java.time.Clock;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.DoubleConsumer;
 import java.util.function.LongSupplier;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import org.vesalainen.code.PropertySetter;
 import org.vesalainen.code.PropertySetterDispatcher;
+import org.vesalainen.code.setter.DoubleSetter;
+import org.vesalainen.code.setter.FloatSetter;
+import org.vesalainen.code.setter.IntSetter;
+import org.vesalainen.code.setter.LongSetter;
 import org.vesalainen.util.HashMapList;
 import org.vesalainen.util.MapList;
 
 /**
- *
+ * TimeoutStatsService maintains sliding window statistics for properties.
+ * <p>Property is resolved only once to Handle. Samples fed through Handle or
+ * submit methods are passed to windows and observers without map lookups
+ * or locking. Registrations are published to handles as immutable arrays.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
 public class TimeoutStatsService implements PropertySetter
 {
+    private static final Window[] EMPTY = new Window[0];
+    private static final StatsObserver[] NO_OBSERVERS = new StatsObserver[0];
     private LongSupplier clock;
     private final PropertySetterDispatcher dispatcher;
-    private final Map<String,Map<Integer,TimeoutStats>> map = new HashMap<>();
+    private final Map<String,Handle> map = new ConcurrentHashMap<>();
     private final MapList<TimeArray,StatsObserver> observerMap = new HashMapList<>();
     private Preferences preferences;
+    private final SlidingSnapshotFile snapshotFile;
     private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
-    private final ReentrantReadWriteLock.ReadLock readLock = rwLock.readLock();
     private final ReentrantReadWriteLock.WriteLock writeLock = rwLock.writeLock();
 
     public TimeoutStatsService(PropertySetterDispatcher dispatcher)
@@ -55,9 +65,23 @@ public class TimeoutStatsService implements PropertySetter
     }
     
     public TimeoutStatsService(LongSupplier clock, PropertySetterDispatcher dispatcher, String preferencePath)
+    {
+        this(clock, dispatcher, preferencePath, null);
+    }
+    /**
+     * Creates TimeoutStatsService
+     * @param clock
+     * @param dispatcher
+     * @param preferencePath If not null, windows are stored in preferences 
+     * and recreated at start.
+     * @param snapshotFile If not null, samples of windows are stored in 
+     * snapshot file and restored when window is created.
+     */
+    public TimeoutStatsService(LongSupplier clock, PropertySetterDispatcher dispatcher, String preferencePath, SlidingSnapshotFile snapshotFile)
     {
         this.clock = clock;
         this.dispatcher = dispatcher;
+        this.snapshotFile = snapshotFile;
         if (preferencePath != null)
         {
             try 
@@ -93,14 +117,17 @@ public class TimeoutStatsService implements PropertySetter
                 throw new IllegalArgumentException(compositeProp+" not starting with <propertyname> ':' <seconds>");
             }
             String prop = sp[0];
-            Map<Integer, TimeoutStats> statsMap = map.get(prop);
-            if (statsMap == null)
+            int seconds = Integer.parseUnsignedInt(sp[1]);
+            if (snapshotFile != null && !SlidingSnapshotFile.isValidKey(prop+':'+seconds))
+            {
+                throw new IllegalArgumentException(compositeProp+" too long for snapshot key");
+            }
+            Handle handle = getHandle(prop);
+            Map<Integer, TimeoutStats> statsMap = handle.statsMap;
+            if (statsMap.isEmpty())
             {
-                statsMap = new HashMap<>();
-                map.put(prop, statsMap);
                 dispatcher.addObserver(prop, this);
             }
-            int seconds = Integer.parseUnsignedInt(sp[1]);
             TimeoutStats ts = statsMap.get(seconds);
             if (ts == null)
             {
@@ -112,6 +139,10 @@ public class TimeoutStatsService implements PropertySetter
                 {
                     ts = new DoubleTimeoutSlidingStats(clock, seconds, seconds*1000);
                 }
+                if (snapshotFile != null)
+                {
+                    snapshotFile.register(prop+':'+seconds, ts);
+                }
                 statsMap.put(seconds, ts);
             }
             if (observer != null)
@@ -122,6 +153,7 @@ public class TimeoutStatsService implements PropertySetter
                     preferences.putBoolean(compositeProp, isAngle);
                 }
             }
+            handle.publish();
         }
         finally
         {
@@ -139,9 +171,10 @@ public class TimeoutStatsService implements PropertySetter
                 throw new IllegalArgumentException(compositeProp+" not starting with <propertyname> ':' <seconds>");
             }
             String prop = sp[0];
-            Map<Integer, TimeoutStats> statsMap = map.get(prop);
-            if (statsMap != null)
+            Handle handle = map.get(prop);
+            if (handle != null)
             {
+                Map<Integer, TimeoutStats> statsMap = handle.statsMap;
                 int seconds = Integer.parseUnsignedInt(sp[1]);
                 TimeArray ts = statsMap.get(seconds);
                 if (ts != null)
@@ -154,13 +187,17 @@ public class TimeoutStatsService implements PropertySetter
                         {
                             observerMap.remove(ts);
                             statsMap.remove(seconds);
+                            if (snapshotFile != null)
+                            {
+                                snapshotFile.unregister(prop+':'+seconds);
+                            }
                             if (statsMap.isEmpty())
                             {
-                                map.remove(prop);
                                 dispatcher.removeObserver(prop, this);
                             }
                         }
                     }
+                    handle.publish();
                 }
             }
         }
@@ -170,30 +207,81 @@ public class TimeoutStatsService implements PropertySetter
         }
     }
     
-    private void fire(String property, double value)
+    /**
+     * Returns handle for property. Handle is created if it doesn't exist.
+     * Same handle is returned for property for the lifetime of service.
+     * Handle can be resolved before any window is added.
+     * @param property
+     * @return 
+     */
+    public Handle getHandle(String property)
     {
-        readLock.lock();
-        try
+        return map.computeIfAbsent(property, Handle::new);
+    }
+    /**
+     * Submits samples of several properties. values[offset+i] is passed to
+     * handles[i].
+     * @param handles
+     * @param values
+     * @param offset
+     * @param length 
+     */
+    public void submit(Handle[] handles, double[] values, int offset, int length)
+    {
+        for (int ii=0;ii<length;ii++)
         {
-            Map<Integer, TimeoutStats> statsMap = map.get(property);
-            if (statsMap != null)
-            {
-                statsMap.values().stream().forEach((ts) ->
-                {
-                    ts.accept(value);
-                    observerMap.get(ts).stream().forEach((so) ->
-                    {
-                        so.changed(ts);
-                    });
-                });
-            }
+            handles[ii].accept(values[offset+ii]);
         }
-        finally
+    }
+    /**
+     * Submits several samples of one property. Observers are notified once
+     * after all samples are accepted.
+     * @param handle
+     * @param values
+     * @param offset
+     * @param length 
+     */
+    public void submit(Handle handle, double[] values, int offset, int length)
+    {
+        handle.accept(values, offset, length);
+    }
+    
+    private void fire(String property, double value)
+    {
+        Handle handle = map.get(property);
+        if (handle != null)
         {
-            readLock.unlock();
+            handle.accept(value);
         }
     }
     
+    @Override
+    public IntSetter getIntSetter(String property)
+    {
+        Handle handle = getHandle(property);
+        return (v)->handle.accept(v);
+    }
+
+    @Override
+    public LongSetter getLongSetter(String property)
+    {
+        Handle handle = getHandle(property);
+        return (v)->handle.accept(v);
+    }
+
+    @Override
+    public FloatSetter getFloatSetter(String property)
+    {
+        Handle handle = getHandle(property);
+        return (v)->handle.accept(v);
+    }
+
+    @Override
+    public DoubleSetter getDoubleSetter(String property)
+    {
+        return getHandle(property);
+    }
+
     @Override
     public String[] getPrefixes()
     {
@@ -258,4 +346,87 @@ public class TimeoutStatsService implements PropertySetter
     {
         void changed(TimeoutStats stats);
     }
+    /**
+     * Handle is resolved property. It passes samples to all windows of 
+     * property and notifies their observers.
+     */
+    public final class Handle implements DoubleConsumer, DoubleSetter
+    {
+        private final String property;
+        private final Map<Integer,TimeoutStats> statsMap = new HashMap<>();
+        private volatile Window[] windows = EMPTY;
+
+        private Handle(String property)
+        {
+            this.property = property;
+        }
+
+        public String getProperty()
+        {
+            return property;
+        }
+
+        @Override
+        public void accept(double value)
+        {
+            for (Window w : windows)
+            {
+                w.stats.accept(value);
+                for (StatsObserver so : w.observers)
+                {
+                    so.changed(w.stats);
+                }
+            }
+        }
+
+        @Override
+        public void set(double v)
+        {
+            accept(v);
+        }
+        
+        private void accept(double[] values, int offset, int length)
+        {
+            if (length > 0)
+            {
+                for (Window w : windows)
+                {
+                    for (int ii=0;ii<length;ii++)
+                    {
+                        w.stats.accept(values[offset+ii]);
+                    }
+                    for (StatsObserver so : w.observers)
+                    {
+                        so.changed(w.stats);
+                    }
+                }
+            }
+        }
+        /**
+         * Rebuilds windows array. Called with write lock held.
+         */
+        private void publish()
+        {
+            Window[] arr = new Window[statsMap.size()];
+            int idx = 0;
+            for (TimeoutStats ts : statsMap.values())
+            {
+                List<StatsObserver> list = observerMap.get(ts);
+                StatsObserver[] obs = list != null && !list.isEmpty() ? list.toArray(NO_OBSERVERS) : NO_OBSERVERS;
+                arr[idx++] = new Window(ts, obs);
+            }
+            windows = arr.length > 0 ? arr : EMPTY;
+        }
+    }
+    private static final class Window
+    {
+        private final TimeoutStats stats;
+        private final StatsObserver[] observers;
+
+        private Window(TimeoutStats stats, StatsObserver[] observers)
+        {
+            this.stats = stats;
+            this.observers = observers;
+        }
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import static java.nio.channels.SelectionKey.*;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * InetConnection is a non-blocking connection of InetServer in selector mode.
+ * It has its own read and write buffers. Buffers grow when needed up to 
+ * maximum size.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class InetConnection implements AutoCloseable
+{
+    private final SocketChannel channel;
+    private final SelectorLoop loop;
+    private final int maxBufferSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private ByteBuffer in;
+    private ByteBuffer out;
+    private SelectionKey key;
+    private InetProtocol protocol;
+    private boolean writeInterest;
+    private Object attachment;
+
+    InetConnection(SocketChannel channel, SelectorLoop loop, int bufferSize, int maxBufferSize)
+    {
+        this.channel = channel;
+        this.loop = loop;
+        this.maxBufferSize = maxBufferSize;
+        this.in = ByteBuffer.allocate(bufferSize);
+        this.out = ByteBuffer.allocate(bufferSize);
+    }
+
+    public SocketChannel getChannel()
+    {
+        return channel;
+    }
+
+    public SocketAddress getRemoteAddress() throws IOException
+    {
+        return channel.getRemoteAddress();
+    }
+
+    public boolean isOpen()
+    {
+        return !closed.get();
+    }
+
+    public void attach(Object attachment)
+    {
+        this.attachment = attachment;
+    }
+
+    public Object attachment()
+    {
+        return attachment;
+    }
+    /**
+     * Writes bytes. Bytes which cannot be written immediately are copied to 
+     * write buffer and written when channel is writable. This method can be
+     * called from any thread.
+     * @param bb
+     * @throws IOException If connection is closed or write buffer overflows.
+     */
+    public void write(ByteBuffer bb) throws IOException
+    {
+        lock.lock();
+        try
+        {
+            if (closed.get())
+            {
+                throw new ClosedChannelException();
+            }
+            if (out.position() == 0)
+            {
+                while (bb.hasRemaining() && channel.write(bb) > 0);
+                if (!bb.hasRemaining())
+                {
+                    return;
+                }
+            }
+            if (out.remaining() < bb.remaining())
+            {
+                out = grow(out, out.position()+bb.remaining());
+            }
+            out.put(bb);
+            if (!writeInterest)
+            {
+                writeInterest = true;
+                loop.execute(this::updateInterest);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Closes connection. Unwritten bytes are discarded. This method can be
+     * called from any thread.
+     */
+    @Override
+    public void close()
+    {
+        if (closed.compareAndSet(false, true))
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException ex)
+            {
+                loop.connectionError(ex, "closing %s", this);
+            }
+            if (protocol != null)
+            {
+                protocol.closed(this);
+            }
+        }
+    }
+
+    void setKey(SelectionKey key)
+    {
+        this.key = key;
+    }
+
+    void setProtocol(InetProtocol protocol)
+    {
+        this.protocol = protocol;
+    }
+    /**
+     * Called in selector thread when channel is ready.
+     */
+    void ready()
+    {
+        if (!key.isValid())
+        {
+            return;
+        }
+        try
+        {
+            if (key.isWritable())
+            {
+                flush();
+            }
+            if (key.isValid() && key.isReadable())
+            {
+                read();
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            loop.connectionError(ex, "%s %s", this, ex.getMessage());
+            close();
+        }
+    }
+
+    private void read() throws IOException
+    {
+        int rc = channel.read(in);
+        if (rc == -1)
+        {
+            close();
+            return;
+        }
+        in.flip();
+        protocol.read(this, in);
+        in.compact();
+        if (!in.hasRemaining())
+        {
+            in = grow(in, in.capacity()+1);
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        lock.lock();
+        try
+        {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            if (out.position() == 0)
+            {
+                writeInterest = false;
+                key.interestOps(OP_READ);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void updateInterest()
+    {
+        lock.lock();
+        try
+        {
+            if (key.isValid())
+            {
+                key.interestOps(writeInterest ? OP_READ|OP_WRITE : OP_READ);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer grow(ByteBuffer bb, int min) throws IOException
+    {
+        int size = bb.capacity();
+        while (size < min)
+        {
+            size *= 2;
+        }
+        if (size > maxBufferSize)
+        {
+            throw new IOException(this+" buffer size "+min+" exceeds "+maxBufferSize);
+        }
+        ByteBuffer nb = ByteBuffer.allocate(size);
+        bb.flip();
+        nb.put(bb);
+        return nb;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InetConnection{" + channel + '}';
+    }
+
+}
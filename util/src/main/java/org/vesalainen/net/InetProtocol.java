@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * InetProtocol handles one connection of InetServer in selector mode. 
+ * Methods are called in selector thread and must not block.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.net.InetServer#createProtocol(org.vesalainen.net.InetConnection) 
+ */
+public interface InetProtocol
+{
+    /**
+     * Called when bytes are read. Buffer is in read mode. Bytes not consumed
+     * are kept in buffer and passed again in next call.
+     * @param connection
+     * @param in
+     * @throws IOException Connection is closed.
+     */
+    void read(InetConnection connection, ByteBuffer in) throws IOException;
+    /**
+     * Called once when connection is closed.
+     * @param connection 
+     */
+    default void closed(InetConnection connection)
+    {
+    }
+}
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
@@ -28,17 +30,61 @@ import java.util.logging.Logger;
 import org.vesalainen.util.AbstractServer;
 
 /**
- *
+ * InetServer accepts tcp connections.
+ * <p>In blocking mode each connection is handled by handle method in its own
+ * executor thread.
+ * <p>In selector mode connections are multiplexed over few selector threads.
+ * Each connection has own read and write buffers and InetProtocol created
+ * with createProtocol method.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
 public abstract class InetServer extends AbstractServer
 {
     protected final int port;
-
+    private final int selectors;
+    private final int bufferSize;
+    private final int maxBufferSize;
+    /**
+     * Creates InetServer in blocking mode.
+     * @param port
+     * @param me
+     * @param executor 
+     */
     protected InetServer(int port, Class<? extends AbstractServer> me, ExecutorService executor)
+    {
+        this(port, me, executor, 0, 0, 0);
+    }
+    /**
+     * Creates InetServer in selector mode. Executor must be able to run
+     * selectors + 1 threads.
+     * @param port
+     * @param me
+     * @param executor
+     * @param selectors Number of selector threads. 0 means blocking mode.
+     * @param bufferSize Initial size of connections read and write buffers.
+     * @param maxBufferSize Maximum size of connections read and write buffers.
+     * @throws IllegalArgumentException If handle is not overridden in blocking
+     * mode or createProtocol in selector mode.
+     */
+    protected InetServer(int port, Class<? extends AbstractServer> me, ExecutorService executor, int selectors, int bufferSize, int maxBufferSize)
     {
         super(me, executor);
+        if (selectors < 0 || (selectors > 0 && (bufferSize < 1 || maxBufferSize < bufferSize)))
+        {
+            throw new IllegalArgumentException("illegal selector mode parameters");
+        }
+        if (selectors == 0 && !overrides("handle", SocketChannel.class))
+        {
+            throw new IllegalArgumentException(getClass()+" blocking mode needs handle");
+        }
+        if (selectors > 0 && !overrides("createProtocol", InetConnection.class))
+        {
+            throw new IllegalArgumentException(getClass()+" selector mode needs createProtocol");
+        }
         this.port = port;
+        this.selectors = selectors;
+        this.bufferSize = bufferSize;
+        this.maxBufferSize = maxBufferSize;
     }
 
     @Override
@@ -48,13 +94,46 @@ public abstract class InetServer extends AbstractServer
         try (ServerSocketChannel ssc = ServerSocketChannel.open())
         {
             ssc.bind(address);
+            if (selectors > 0)
+            {
+                runSelectors(ssc);
+            }
+            else
+            {
+                running();
+                while (true)
+                {
+                    SocketChannel sc = ssc.accept();
+                    executor.submit(()->hndl(sc));
+                }
+            }
+        }
+    }
+
+    private void runSelectors(ServerSocketChannel ssc) throws IOException
+    {
+        List<Future<?>> futures = new ArrayList<>();
+        try
+        {
+            SelectorLoop[] loops = new SelectorLoop[selectors];
+            for (int ii=0;ii<selectors;ii++)
+            {
+                loops[ii] = new SelectorLoop(this, bufferSize, maxBufferSize);
+                futures.add(executor.submit(loops[ii]));
+            }
             running();
+            int next = 0;
             while (true)
             {
                 SocketChannel sc = ssc.accept();
-                executor.submit(()->hndl(sc));
+                loops[next].add(sc);
+                next = (next+1) % selectors;
             }
         }
+        finally
+        {
+            futures.forEach((f)->f.cancel(true));
+        }
     }
 
     private void hndl(SocketChannel sc)
@@ -63,7 +142,7 @@ public abstract class InetServer extends AbstractServer
         {
             handle(sc);
         }
-        catch (IOException ex)
+        catch (IOException | RuntimeException ex)
         {
             log(SEVERE, ex, "%s:%s %s", name, sc, ex.getMessage());
         }
@@ -79,7 +158,40 @@ public abstract class InetServer extends AbstractServer
             }
         }
     }
-    protected abstract void handle(SocketChannel sc) throws IOException;
+    /**
+     * Handles connection in blocking mode. Channel is closed after return.
+     * @param sc
+     * @throws IOException 
+     */
+    protected void handle(SocketChannel sc) throws IOException
+    {
+        throw new UnsupportedOperationException(name+" blocking mode not supported");
+    }
+    /**
+     * Creates protocol for connection in selector mode. Called in selector
+     * thread.
+     * @param connection
+     * @return 
+     */
+    protected InetProtocol createProtocol(InetConnection connection)
+    {
+        throw new UnsupportedOperationException(name+" selector mode not supported");
+    }
+    private boolean overrides(String method, Class<?>... params)
+    {
+        for (Class<?> cls = getClass();cls != InetServer.class;cls = cls.getSuperclass())
+        {
+            try
+            {
+                cls.getDeclaredMethod(method, params);
+                return true;
+            }
+            catch (NoSuchMethodException ex)
+            {
+            }
+        }
+        return false;
+    }
 
     
 }
@@ -16,24 +16,33 @@
  */
 package org.vesalainen.net;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.Channels;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import org.vesalainen.code.AnnotatedPropertyStore;
+import static org.vesalainen.net.ObjectServer.*;
 import org.vesalainen.net.ObjectServer.Request;
 import org.vesalainen.net.ObjectServer.Response;
 
 /**
- *
+ * ObjectClient gets named objects from ObjectServer. Objects are got either
+ * with java serialization (get) or with snapshot protocol (update). Same
+ * connection cannot use both.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.net.ObjectServer
  */
 public class ObjectClient extends InetClient
 {
@@ -41,6 +50,8 @@ public class ObjectClient extends InetClient
     private ObjectOutputStream oos;
     private InputStream is;
     private ObjectInputStream ois;
+    private ByteBuffer buffer;
+    private final Map<String,Version> versions = new HashMap<>();
 
     private ObjectClient(NetworkChannel sc, OutputStream os, InputStream is)
     {
@@ -58,6 +69,10 @@ public class ObjectClient extends InetClient
     }
     public <T> T get(String target) throws IOException
     {
+        if (buffer != null)
+        {
+            throw new IllegalStateException("connection uses snapshot protocol");
+        }
         try
         {
             Request request = new Request(target);
@@ -79,13 +94,109 @@ public class ObjectClient extends InetClient
         }
     }
 
+    /**
+     * Updates store from AnnotatedPropertyStore target using snapshot 
+     * protocol. Only properties changed after last update of the same store
+     * instance are transferred. Store is synchronized while properties are
+     * set.
+     * @param <T>
+     * @param target
+     * @param store
+     * @return store or null if target was not found.
+     * @throws IOException If target is not AnnotatedPropertyStore or has
+     * different properties.
+     */
+    public <T extends AnnotatedPropertyStore> T update(String target, T store) throws IOException
+    {
+        if (oos != null)
+        {
+            throw new IllegalStateException("connection uses serialization");
+        }
+        ByteChannel ch = (ByteChannel) sc;
+        if (buffer == null)
+        {
+            buffer = ByteBuffer.allocate(MAX_REQUEST);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.flip();
+            writeFully(ch, buffer);
+        }
+        SnapshotSchema schema = SnapshotSchema.get(store);
+        Version last = versions.get(target);
+        buffer.clear();
+        buffer.putInt(0);
+        SnapshotSchema.putString(buffer, target);
+        buffer.putLong(schema.getFingerprint());
+        buffer.putLong(last != null && last.store == store ? last.version : -1);
+        buffer.putInt(0, buffer.position()-4);
+        buffer.flip();
+        writeFully(ch, buffer);
+        buffer.clear();
+        buffer.limit(4);
+        if (!readFully(ch, buffer))
+        {
+            throw new EOFException();
+        }
+        int length = buffer.getInt(0);
+        if (length > buffer.capacity())
+        {
+            buffer = ByteBuffer.allocate(length);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        if (!readFully(ch, buffer))
+        {
+            throw new EOFException();
+        }
+        buffer.flip();
+        Status status = Status.values()[buffer.get()];
+        switch (status)
+        {
+            case OK:
+                break;
+            case NOT_FOUND:
+                return null;
+            default:
+                throw new IOException(target+" "+status);
+        }
+        long version = buffer.getLong();
+        int count = buffer.getShort() & 0xffff;
+        synchronized(store)
+        {
+            for (int ii=0;ii<count;ii++)
+            {
+                schema.apply(buffer, store);
+            }
+        }
+        versions.put(target, new Version(store, version));
+        return store;
+    }
+
     @Override
     public void close() throws IOException
     {
-        ois.close();
+        if (ois != null)
+        {
+            ois.close();
+        }
         is.close();
-        oos.close();
+        if (oos != null)
+        {
+            oos.close();
+        }
         os.close();
         super.close();
     }
+    
+    private static class Version
+    {
+        private final AnnotatedPropertyStore store;
+        private final long version;
+
+        public Version(AnnotatedPropertyStore store, long version)
+        {
+            this.store = store;
+            this.version = version;
+        }
+        
+    }
 }
@@ -16,30 +16,47 @@
  */
 package org.vesalainen.net;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import org.vesalainen.code.AnnotatedPropertyStore;
 import static org.vesalainen.net.ObjectServer.Status.*;
 
 /**
- *
+ * ObjectServer serves named objects to ObjectClient.
+ * <p>Connection uses either java serialization or snapshot protocol. 
+ * Protocol is detected from first bytes sent by client. Snapshot protocol
+ * is supported only for AnnotatedPropertyStore targets. It transfers 
+ * declared properties as primitives and only properties changed since
+ * clients last version.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.net.ObjectClient#update(java.lang.String, org.vesalainen.code.AnnotatedPropertyStore) 
  */
 public class ObjectServer extends InetServer
 {
-    public enum Status {OK, NOT_FOUND}
+    public enum Status {OK, NOT_FOUND, NOT_SUPPORTED, MISMATCH}
+    static final int SNAPSHOT_MAGIC = 0x41505331;
+    static final int MAX_REQUEST = 4096;
     
     private Map<String,Object> map = new HashMap<>();
+    private Map<String,StoreSnapshot> snapshots = new ConcurrentHashMap<>();
     
     ObjectServer(int port)
     {
@@ -52,7 +69,8 @@ public class ObjectServer extends InetServer
     }
     /**
      * Puts mapping from name to target.
-     * <p>Note! Target is synchronized while serialized to net.
+     * <p>Note! Target is synchronized while serialized to net. In snapshot
+     * protocol target is synchronized only while properties are copied.
      * @param <T>
      * @param name
      * @param target 
@@ -60,11 +78,30 @@ public class ObjectServer extends InetServer
     public <T> void put(String name, T target)
     {
         map.put(name, target);
+        snapshots.remove(name);
     }
     @Override
     protected void handle(SocketChannel sc) throws IOException
     {
-        try (InputStream is = Channels.newInputStream(sc);
+        ByteBuffer bb = ByteBuffer.allocate(MAX_REQUEST);
+        bb.limit(4);
+        if (!readFully(sc, bb))
+        {
+            return;
+        }
+        if (bb.getInt(0) == SNAPSHOT_MAGIC)
+        {
+            handleSnapshots(sc, bb);
+        }
+        else
+        {
+            InputStream head = new ByteArrayInputStream(bb.array(), 0, 4);
+            handleObjects(sc, new SequenceInputStream(head, Channels.newInputStream(sc)));
+        }
+    }
+    private void handleObjects(SocketChannel sc, InputStream in) throws IOException
+    {
+        try (InputStream is = in;
             ObjectInputStream ois = new ObjectInputStream(is);
             OutputStream os = Channels.newOutputStream(sc);
             ObjectOutputStream oos = new ObjectOutputStream(os))
@@ -73,18 +110,16 @@ public class ObjectServer extends InetServer
             {
                 Request request = (Request) ois.readObject();
                 Object target = map.get(request.name);
-                Response response;
                 if (target != null)
                 {
-                    response = new Response(OK, target);
+                    synchronized(target)
+                    {
+                        oos.writeObject(new Response(OK, target));
+                    }
                 }
                 else
                 {
-                    response = new Response(NOT_FOUND);
-                }
-                synchronized(target)
-                {
-                    oos.writeObject(response);
+                    oos.writeObject(new Response(NOT_FOUND));
                 }
             }
         }
@@ -97,6 +132,112 @@ public class ObjectServer extends InetServer
             throw new IOException(ex);
         }
     }
+    /**
+     * Request: length, name, fingerprint, version. Response: length, status
+     * and if OK version, count and changed properties.
+     * @param sc
+     * @param in
+     * @throws IOException 
+     */
+    private void handleSnapshots(SocketChannel sc, ByteBuffer in) throws IOException
+    {
+        ByteBuffer out = ByteBuffer.allocate(MAX_REQUEST);
+        while (true)
+        {
+            in.clear();
+            in.limit(4);
+            if (!readFully(sc, in))
+            {
+                return;
+            }
+            int length = in.getInt(0);
+            if (length < 0 || length > in.capacity())
+            {
+                throw new IOException(length+" illegal request length");
+            }
+            in.clear();
+            in.limit(length);
+            if (!readFully(sc, in))
+            {
+                throw new EOFException();
+            }
+            in.flip();
+            String name = SnapshotSchema.getString(in);
+            long fingerprint = in.getLong();
+            long version = in.getLong();
+            while (true)
+            {
+                try
+                {
+                    out.clear();
+                    out.putInt(0);
+                    writeSnapshot(out, name, fingerprint, version);
+                    out.putInt(0, out.position()-4);
+                    break;
+                }
+                catch (BufferOverflowException ex)
+                {
+                    out = ByteBuffer.allocate(2*out.capacity());
+                }
+            }
+            out.flip();
+            writeFully(sc, out);
+        }
+    }
+    private void writeSnapshot(ByteBuffer bb, String name, long fingerprint, long version)
+    {
+        Object target = map.get(name);
+        if (target == null)
+        {
+            bb.put((byte) NOT_FOUND.ordinal());
+            return;
+        }
+        if (!(target instanceof AnnotatedPropertyStore))
+        {
+            bb.put((byte) NOT_SUPPORTED.ordinal());
+            return;
+        }
+        StoreSnapshot snapshot = snapshots.computeIfAbsent(name, (n)->new StoreSnapshot((AnnotatedPropertyStore) target));
+        if (snapshot.getFingerprint() != fingerprint)
+        {
+            bb.put((byte) MISMATCH.ordinal());
+            return;
+        }
+        bb.put((byte) OK.ordinal());
+        snapshot.write(bb, version);
+    }
+    /**
+     * Reads until buffer is full.
+     * @param ch
+     * @param bb
+     * @return false if end of stream was reached before any byte was read.
+     * @throws IOException 
+     */
+    static boolean readFully(ReadableByteChannel ch, ByteBuffer bb) throws IOException
+    {
+        boolean first = true;
+        while (bb.hasRemaining())
+        {
+            int rc = ch.read(bb);
+            if (rc == -1)
+            {
+                if (first)
+                {
+                    return false;
+                }
+                throw new EOFException();
+            }
+            first = false;
+        }
+        return true;
+    }
+    static void writeFully(WritableByteChannel ch, ByteBuffer bb) throws IOException
+    {
+        while (bb.hasRemaining())
+        {
+            ch.write(bb);
+        }
+    }
     
     public static class Message implements Serializable
     {
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import static java.nio.channels.SelectionKey.OP_READ;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import static java.util.logging.Level.*;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * SelectorLoop multiplexes connections of InetServer in one thread.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+class SelectorLoop extends JavaLogging implements Runnable
+{
+    private final InetServer server;
+    private final int bufferSize;
+    private final int maxBufferSize;
+    private final Selector selector;
+    private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile Thread thread;
+
+    SelectorLoop(InetServer server, int bufferSize, int maxBufferSize) throws IOException
+    {
+        super(SelectorLoop.class);
+        this.server = server;
+        this.bufferSize = bufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.selector = Selector.open();
+    }
+    /**
+     * Passes accepted channel to this loop.
+     * @param sc 
+     */
+    void add(SocketChannel sc)
+    {
+        accepted.add(sc);
+        selector.wakeup();
+    }
+    /**
+     * Runs task in selector thread.
+     * @param task 
+     */
+    void execute(Runnable task)
+    {
+        if (Thread.currentThread() == thread)
+        {
+            task.run();
+        }
+        else
+        {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    void connectionError(Throwable ex, String format, Object... args)
+    {
+        logBrokenConnection(FINE, ex, format, args);
+    }
+
+    @Override
+    public void run()
+    {
+        thread = Thread.currentThread();
+        try
+        {
+            while (!thread.isInterrupted())
+            {
+                selector.select();
+                register();
+                Runnable task = tasks.poll();
+                while (task != null)
+                {
+                    task.run();
+                    task = tasks.poll();
+                }
+                for (SelectionKey key : selector.selectedKeys())
+                {
+                    InetConnection connection = (InetConnection) key.attachment();
+                    connection.ready();
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+        catch (IOException ex)
+        {
+            log(SEVERE, ex, "%s", ex.getMessage());
+        }
+        finally
+        {
+            for (SelectionKey key : selector.keys())
+            {
+                ((InetConnection) key.attachment()).close();
+            }
+            SocketChannel sc = accepted.poll();
+            while (sc != null)
+            {
+                close(sc);
+                sc = accepted.poll();
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException ex)
+            {
+                log(SEVERE, ex, "%s", ex.getMessage());
+            }
+        }
+    }
+
+    private void register()
+    {
+        SocketChannel sc = accepted.poll();
+        while (sc != null)
+        {
+            InetConnection connection = new InetConnection(sc, this, bufferSize, maxBufferSize);
+            try
+            {
+                sc.configureBlocking(false);
+                connection.setKey(sc.register(selector, OP_READ, connection));
+                connection.setProtocol(server.createProtocol(connection));
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                log(SEVERE, ex, "register %s %s", sc, ex.getMessage());
+                connection.close();
+            }
+            sc = accepted.poll();
+        }
+    }
+
+    private void close(SocketChannel sc)
+    {
+        try
+        {
+            sc.close();
+        }
+        catch (IOException ex)
+        {
+            log(SEVERE, ex, "closing %s %s", sc, ex.getMessage());
+        }
+    }
+}
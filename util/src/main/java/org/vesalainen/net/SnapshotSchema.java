@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net;
+
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.vesalainen.code.AnnotatedPropertyStore;
+
+/**
+ * SnapshotSchema describes properties of AnnotatedPropertyStore class which
+ * are transferred by snapshot protocol. Property id is index in 
+ * getProperties order.
+ * <p>Properties having both getter and setter and primitive, String or enum
+ * type are included. Other properties are ignored.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+final class SnapshotSchema
+{
+    private static final byte BOOLEAN = 0;
+    private static final byte BYTE = 1;
+    private static final byte CHAR = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte STRING = 8;
+    private static final byte ENUM = 9;
+    private static final Map<Class<?>,SnapshotSchema> SCHEMAS = new WeakHashMap<>();
+    
+    private final String[] names;
+    private final Class<?>[] types;
+    private final byte[] kinds;
+    private final long fingerprint;
+
+    private SnapshotSchema(AnnotatedPropertyStore store)
+    {
+        List<String> nameList = new ArrayList<>();
+        List<Class<?>> typeList = new ArrayList<>();
+        long fp = 17;
+        for (String property : store.getProperties())
+        {
+            if (store.isReadable(property) && store.isWritable(property))
+            {
+                Class<?> type = store.getType(property);
+                int kind = kind(type);
+                if (kind >= 0)
+                {
+                    nameList.add(property);
+                    typeList.add(type);
+                    fp = 31*fp + property.hashCode();
+                    fp = 31*fp + kind;
+                }
+            }
+        }
+        this.names = nameList.toArray(new String[nameList.size()]);
+        this.types = typeList.toArray(new Class<?>[typeList.size()]);
+        this.kinds = new byte[names.length];
+        for (int ii=0;ii<kinds.length;ii++)
+        {
+            kinds[ii] = (byte) kind(types[ii]);
+        }
+        this.fingerprint = fp;
+    }
+    /**
+     * Returns cached schema for stores class.
+     * @param store
+     * @return 
+     */
+    static SnapshotSchema get(AnnotatedPropertyStore store)
+    {
+        synchronized(SCHEMAS)
+        {
+            return SCHEMAS.computeIfAbsent(store.getClass(), (c)->new SnapshotSchema(store));
+        }
+    }
+    /**
+     * Returns number of properties
+     * @return 
+     */
+    int size()
+    {
+        return names.length;
+    }
+    /**
+     * Returns hash of property names and types. Client and server must have
+     * same fingerprint.
+     * @return 
+     */
+    long getFingerprint()
+    {
+        return fingerprint;
+    }
+    /**
+     * Copies property values. Primitives are stored as raw bits into bits
+     * and objects into objs. Caller is responsible for locking store.
+     * @param store
+     * @param bits
+     * @param objs 
+     */
+    void read(AnnotatedPropertyStore store, long[] bits, Object[] objs)
+    {
+        for (int ii=0;ii<names.length;ii++)
+        {
+            String name = names[ii];
+            switch (kinds[ii])
+            {
+                case BOOLEAN:
+                    bits[ii] = store.getBoolean(name) ? 1 : 0;
+                    break;
+                case BYTE:
+                    bits[ii] = store.getByte(name);
+                    break;
+                case CHAR:
+                    bits[ii] = store.getChar(name);
+                    break;
+                case SHORT:
+                    bits[ii] = store.getShort(name);
+                    break;
+                case INT:
+                    bits[ii] = store.getInt(name);
+                    break;
+                case LONG:
+                    bits[ii] = store.getLong(name);
+                    break;
+                case FLOAT:
+                    bits[ii] = Float.floatToRawIntBits(store.getFloat(name));
+                    break;
+                case DOUBLE:
+                    bits[ii] = Double.doubleToRawLongBits(store.getDouble(name));
+                    break;
+                default:
+                    objs[ii] = store.getObject(name);
+                    break;
+            }
+        }
+    }
+    /**
+     * Writes id and value of property.
+     * @param bb
+     * @param id
+     * @param bits
+     * @param objs 
+     */
+    void write(ByteBuffer bb, int id, long[] bits, Object[] objs)
+    {
+        bb.putShort((short) id);
+        long v = bits[id];
+        switch (kinds[id])
+        {
+            case BOOLEAN:
+            case BYTE:
+                bb.put((byte) v);
+                break;
+            case CHAR:
+            case SHORT:
+                bb.putShort((short) v);
+                break;
+            case INT:
+            case FLOAT:
+                bb.putInt((int) v);
+                break;
+            case LONG:
+            case DOUBLE:
+                bb.putLong(v);
+                break;
+            case STRING:
+                putString(bb, (String) objs[id]);
+                break;
+            case ENUM:
+                Enum<?> e = (Enum<?>) objs[id];
+                putString(bb, e != null ? e.name() : null);
+                break;
+            default:
+                throw new UnsupportedOperationException(kinds[id]+" not supported");
+        }
+    }
+    /**
+     * Reads id and value of property and sets it to store.
+     * @param bb
+     * @param store 
+     */
+    void apply(ByteBuffer bb, AnnotatedPropertyStore store)
+    {
+        int id = bb.getShort();
+        if (id < 0 || id >= names.length)
+        {
+            throw new IllegalArgumentException(id+" illegal property id");
+        }
+        String name = names[id];
+        switch (kinds[id])
+        {
+            case BOOLEAN:
+                store.set(name, bb.get() != 0);
+                break;
+            case BYTE:
+                store.set(name, bb.get());
+                break;
+            case CHAR:
+                store.set(name, bb.getChar());
+                break;
+            case SHORT:
+                store.set(name, bb.getShort());
+                break;
+            case INT:
+                store.set(name, bb.getInt());
+                break;
+            case LONG:
+                store.set(name, bb.getLong());
+                break;
+            case FLOAT:
+                store.set(name, Float.intBitsToFloat(bb.getInt()));
+                break;
+            case DOUBLE:
+                store.set(name, Double.longBitsToDouble(bb.getLong()));
+                break;
+            case STRING:
+                store.set(name, (Object)getString(bb));
+                break;
+            case ENUM:
+                String str = getString(bb);
+                store.set(name, str != null ? Enum.valueOf((Class)types[id], str) : null);
+                break;
+            default:
+                throw new UnsupportedOperationException(kinds[id]+" not supported");
+        }
+    }
+    static void putString(ByteBuffer bb, String str)
+    {
+        if (str == null)
+        {
+            bb.putInt(-1);
+        }
+        else
+        {
+            byte[] bytes = str.getBytes(UTF_8);
+            bb.putInt(bytes.length);
+            bb.put(bytes);
+        }
+    }
+    static String getString(ByteBuffer bb)
+    {
+        int len = bb.getInt();
+        if (len < 0)
+        {
+            return null;
+        }
+        String str = new String(bb.array(), bb.arrayOffset()+bb.position(), len, UTF_8);
+        bb.position(bb.position()+len);
+        return str;
+    }
+    private static int kind(Class<?> type)
+    {
+        if (type.isPrimitive())
+        {
+            switch (type.getName())
+            {
+                case "boolean":
+                    return BOOLEAN;
+                case "byte":
+                    return BYTE;
+                case "char":
+                    return CHAR;
+                case "short":
+                    return SHORT;
+                case "int":
+                    return INT;
+                case "long":
+                    return LONG;
+                case "float":
+                    return FLOAT;
+                case "double":
+                    return DOUBLE;
+            }
+        }
+        if (String.class.equals(type))
+        {
+            return STRING;
+        }
+        if (type.isEnum())
+        {
+            return ENUM;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import org.vesalainen.code.AnnotatedPropertyStore;
+
+/**
+ * StoreSnapshot keeps last copied values of shared AnnotatedPropertyStore
+ * and version in which each property was changed.
+ * <p>Store is synchronized only while values are copied. Encoding and
+ * network I/O happens without holding store lock.
+ * <p>Versions start from current time in microseconds so that versions of
+ * restarted server are greater than those of previous run. Client having
+ * unknown version gets all properties.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+final class StoreSnapshot
+{
+    private final AnnotatedPropertyStore store;
+    private final SnapshotSchema schema;
+    private long[] bits;
+    private Object[] objs;
+    private long[] newBits;
+    private Object[] newObjs;
+    private final long[] changed;
+    private long version;
+
+    StoreSnapshot(AnnotatedPropertyStore store)
+    {
+        this.store = store;
+        this.schema = SnapshotSchema.get(store);
+        int size = schema.size();
+        this.bits = new long[size];
+        this.objs = new Object[size];
+        this.newBits = new long[size];
+        this.newObjs = new Object[size];
+        this.changed = new long[size];
+        this.version = System.currentTimeMillis()*1000;
+        Arrays.fill(changed, version);
+        synchronized(store)
+        {
+            schema.read(store, bits, objs);
+        }
+    }
+
+    long getFingerprint()
+    {
+        return schema.getFingerprint();
+    }
+    /**
+     * Refreshes snapshot and writes version, count and properties changed 
+     * after clientVersion.
+     * @param bb
+     * @param clientVersion
+     * @throws java.nio.BufferOverflowException If bb is too small.
+     */
+    synchronized void write(ByteBuffer bb, long clientVersion)
+    {
+        refresh();
+        if (clientVersion > version)
+        {
+            clientVersion = -1;
+        }
+        bb.putLong(version);
+        int countPos = bb.position();
+        bb.putShort((short) 0);
+        int count = 0;
+        for (int ii=0;ii<changed.length;ii++)
+        {
+            if (changed[ii] > clientVersion)
+            {
+                schema.write(bb, ii, bits, objs);
+                count++;
+            }
+        }
+        bb.putShort(countPos, (short) count);
+    }
+    private void refresh()
+    {
+        synchronized(store)
+        {
+            schema.read(store, newBits, newObjs);
+        }
+        boolean modified = false;
+        for (int ii=0;ii<changed.length;ii++)
+        {
+            if (bits[ii] != newBits[ii] || !Objects.equals(objs[ii], newObjs[ii]))
+            {
+                if (!modified)
+                {
+                    version++;
+                    modified = true;
+                }
+                changed[ii] = version;
+            }
+        }
+        long[] tb = bits;
+        bits = newBits;
+        newBits = tb;
+        Object[] to = objs;
+        objs = newObjs;
+        newObjs = to;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net.sntp;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log2Histogram counts values in power of 2 buckets. Bucket 0 counts zeroes
+ * and bucket n values 2^(n-1) &lt;= value &lt; 2^n. Adding is lock-free.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+final class Log2Histogram
+{
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    
+    void add(long value)
+    {
+        buckets.incrementAndGet(64-Long.numberOfLeadingZeros(Math.max(0, value)));
+    }
+    /**
+     * Returns bucket counts up to last non-zero bucket.
+     * @return 
+     */
+    long[] get()
+    {
+        long[] arr = new long[buckets.length()];
+        int len = 0;
+        for (int ii=0;ii<arr.length;ii++)
+        {
+            arr[ii] = buckets.get(ii);
+            if (arr[ii] != 0)
+            {
+                len = ii+1;
+            }
+        }
+        return Arrays.copyOf(arr, len);
+    }
+    void reset()
+    {
+        for (int ii=0;ii<buckets.length();ii++)
+        {
+            buckets.set(ii, 0);
+        }
+    }
+}
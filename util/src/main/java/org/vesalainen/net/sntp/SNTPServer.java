@@ -17,14 +17,22 @@
 package org.vesalainen.net.sntp;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import java.time.Clock;
 import java.time.Instant;
 import static java.time.temporal.ChronoUnit.NANOS;
@@ -34,8 +42,10 @@ import java.util.List;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import static java.util.concurrent.TimeUnit.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import static java.util.logging.Level.*;
+import javax.management.ObjectName;
 import org.vesalainen.math.MoreMath;
 import static org.vesalainen.net.sntp.NtpV4Packet.Mode.*;
 import static org.vesalainen.net.sntp.ReferenceClock.*;
@@ -46,10 +56,17 @@ import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
 import org.vesalainen.util.logging.JavaLogging;
 
 /**
- *
+ * SNTPServer answers SNTP client requests and optionally synchronizes its
+ * clock from another NTP server.
+ * <p>In high-rate mode (receivers &gt; 0) requests are received by blocking
+ * receiver threads. Each receiver owns direct buffer where response is 
+ * encoded in place over the request. Timestamps are computed from 
+ * System.nanoTime and NTP timestamp which is taken from clock once a second.
+ * If platform supports SO_REUSEPORT each receiver has its own socket, 
+ * otherwise receivers share one socket.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-public class SNTPServer extends JavaLogging implements Runnable
+public class SNTPServer extends JavaLogging implements Runnable, SNTPServerMXBean
 {
     private static final int PORT = 123;    // NTP port number                  |
     private static final int VERSION = 4;    // NTP version number                   |
@@ -64,6 +81,8 @@ public class SNTPServer extends JavaLogging implements Runnable
     private static final int SERVER_TIMEOUT_MINUTES = 10;
     private static final long SERVER_TIMEOUT = MILLISECONDS.convert(SERVER_TIMEOUT_MINUTES, MINUTES);
     private static final long B16 = 65536;
+    private static final long REBASE_NANOS = 1000000000L;
+    private static final int MAX_PACKET = 512;
     private final AdjustableClock clock;
     private final CachedScheduledThreadPool executor;
     private Future<?> future;
@@ -76,6 +95,16 @@ public class SNTPServer extends JavaLogging implements Runnable
     private UnconnectedDatagramChannel channel4;
     private UnconnectedDatagramChannel channel6;
     private List<InetAddress> ownAddresses = new ArrayList<>();
+    private int port = PORT;
+    private int receivers;
+    private volatile DatagramChannel[] channels;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final Log2Histogram rateHistogram = new Log2Histogram();
+    private final Log2Histogram latencyHistogram = new Log2Histogram();
+    private long lastRequests;
+    private volatile long requestRate;
+    private ObjectName objectName;
 
     public SNTPServer()
     {
@@ -174,6 +203,103 @@ public class SNTPServer extends JavaLogging implements Runnable
         future = null;
     }
 
+    public int getPort()
+    {
+        return port;
+    }
+    /**
+     * Sets listening port. Default is 123.
+     * @param port 
+     */
+    public void setPort(int port)
+    {
+        this.port = port;
+    }
+
+    @Override
+    public int getReceivers()
+    {
+        return receivers;
+    }
+    /**
+     * Sets number of receiver threads of high-rate mode. 0 (default) uses
+     * selector with separate IPv4 and IPv6 channels.
+     * @param receivers 
+     */
+    public void setReceivers(int receivers)
+    {
+        if (receivers < 0)
+        {
+            throw new IllegalArgumentException("receivers < 0");
+        }
+        this.receivers = receivers;
+    }
+
+    @Override
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    @Override
+    public long getRequestRate()
+    {
+        return requestRate;
+    }
+
+    @Override
+    public long getMalformed()
+    {
+        return malformed.sum();
+    }
+
+    @Override
+    public long[] getRateHistogram()
+    {
+        return rateHistogram.get();
+    }
+
+    @Override
+    public long[] getLatencyHistogram()
+    {
+        return latencyHistogram.get();
+    }
+
+    @Override
+    public void resetHistograms()
+    {
+        rateHistogram.reset();
+        latencyHistogram.reset();
+    }
+    
+    public void registerMBean(String name)
+    {
+        try
+        {
+            objectName = new ObjectName("org.vesalainen.net.sntp:type=SNTPServer,name="+name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        }
+        catch (Exception ex)
+        {
+            log(WARNING, ex, "registerMBean(%s)", name);
+        }
+    }
+    public void unregisterMBean()
+    {
+        if (objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (Exception ex)
+            {
+                log(WARNING, ex, "unregisterMBean(%s)", objectName);
+            }
+            objectName = null;
+        }
+    }
+
     public void setServer(String host)
     {
         try
@@ -222,11 +348,16 @@ public class SNTPServer extends JavaLogging implements Runnable
                     }
                 }
             }
-            channel4 = UnconnectedDatagramChannel.open("0.0.0.0", 123, 64, true, true);
+            if (receivers > 0)
+            {
+                runHighRate();
+                return;
+            }
+            channel4 = UnconnectedDatagramChannel.open("0.0.0.0", port, 64, true, true);
             channel4.configureBlocking(false);
             config("SNTP listening %s", channel4);
             
-            channel6 = UnconnectedDatagramChannel.open("::", 123, 64, true, true);
+            channel6 = UnconnectedDatagramChannel.open("::", port, 64, true, true);
             channel6.configureBlocking(false);
             config("SNTP listening %s", channel6);
             
@@ -259,6 +390,80 @@ public class SNTPServer extends JavaLogging implements Runnable
             future = null;
         }
     }
+    private void runHighRate() throws IOException
+    {
+        SocketOption<Boolean> reusePort = reusePort();
+        channels = new DatagramChannel[receivers];
+        List<Future<?>> futures = new ArrayList<>();
+        ScheduledFuture<?> sampler = executor.scheduleAtFixedRate(this::sampleRate, 1, 1, SECONDS);
+        try
+        {
+            for (int ii=0;ii<receivers;ii++)
+            {
+                if (ii == 0 || reusePort != null)
+                {
+                    DatagramChannel ch = DatagramChannel.open();
+                    if (reusePort != null)
+                    {
+                        ch.setOption(reusePort, true);
+                    }
+                    ch.bind(new InetSocketAddress(port));
+                    config("SNTP listening %s", ch);
+                    channels[ii] = ch;
+                }
+                else
+                {
+                    channels[ii] = channels[0];
+                }
+            }
+            for (int ii=1;ii<receivers;ii++)
+            {
+                futures.add(executor.submit(new Receiver(channels[ii])));
+            }
+            new Receiver(channels[0]).run();
+        }
+        finally
+        {
+            sampler.cancel(false);
+            futures.forEach((f)->f.cancel(true));
+            DatagramChannel[] chs = channels;
+            channels = null;
+            for (DatagramChannel ch : chs)
+            {
+                if (ch != null)
+                {
+                    ch.close();
+                }
+            }
+        }
+    }
+    private void sampleRate()
+    {
+        long sum = requests.sum();
+        long rate = sum - lastRequests;
+        lastRequests = sum;
+        requestRate = rate;
+        rateHistogram.add(rate);
+    }
+    /**
+     * Returns SO_REUSEPORT option if running platform supports it.
+     * @return 
+     */
+    private static SocketOption<Boolean> reusePort()
+    {
+        try
+        {
+            SocketOption<Boolean> option = (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+            try (DatagramChannel ch = DatagramChannel.open())
+            {
+                return ch.supportedOptions().contains(option) ? option : null;
+            }
+        }
+        catch (ReflectiveOperationException | IOException ex)
+        {
+            return null;
+        }
+    }
 
     protected void handlePacket(UnconnectedDatagramChannel channel, ByteBuffer bb, Instant rcvTime) throws IOException
     {
@@ -281,7 +486,7 @@ public class SNTPServer extends JavaLogging implements Runnable
     private void handleServer(Instant t3, NtpV4Packet message, InetSocketAddress address) throws IOException
     {
         long originateTime = message.getOriginateTime();
-        if (originateTime == request && !message.referenceEquals(ownAddresses))
+        if (server != null && originateTime == request && !message.referenceEquals(ownAddresses))
         {
             server.set(message, t3);
         }
@@ -327,7 +532,12 @@ public class SNTPServer extends JavaLogging implements Runnable
 
         ByteBuffer buffer = request.getBuffer();
         buffer.clear();
-        if (address.getAddress() instanceof Inet6Address)
+        DatagramChannel[] chs = channels;
+        if (chs != null)
+        {
+            chs[0].send(buffer, address);
+        }
+        else if (address.getAddress() instanceof Inet6Address)
         {
             channel6.send(buffer, address);
         }
@@ -337,6 +547,118 @@ public class SNTPServer extends JavaLogging implements Runnable
         }
         return request.getTransmitTime();
     }
+    /**
+     * Receiver answers client requests in place in its own buffer.
+     */
+    private class Receiver implements Runnable
+    {
+        private final DatagramChannel channel;
+        private final ByteBuffer bb = ByteBuffer.allocateDirect(MAX_PACKET).order(BIG_ENDIAN);
+        private long baseNanos;
+        private long baseTime;
+        private long referenceTime;
+        private int referenceId;
+
+        public Receiver(DatagramChannel channel)
+        {
+            this.channel = channel;
+            rebase();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    bb.clear();
+                    SocketAddress from = channel.receive(bb);
+                    long rcvNanos = System.nanoTime();
+                    if (bb.position() < 48)
+                    {
+                        malformed.increment();
+                        continue;
+                    }
+                    try
+                    {
+                        if (rcvNanos - baseNanos >= REBASE_NANOS)
+                        {
+                            rebase();
+                        }
+                        int mode = bb.get(0) & 7;
+                        if (mode == CLIENT.ordinal())
+                        {
+                            long originate = bb.getLong(40);
+                            bb.put(0, (byte) (VERSION<<3 | SERVER.ordinal()));
+                            bb.put(1, (byte) 1);
+                            bb.put(2, (byte) poll);
+                            bb.put(3, (byte) precision);
+                            bb.putInt(4, 0);
+                            bb.putInt(8, 0);
+                            bb.putInt(12, referenceId);
+                            bb.putLong(16, referenceTime);
+                            bb.putLong(24, originate);
+                            bb.putLong(32, ntpTime(rcvNanos));
+                            bb.putLong(40, ntpTime(System.nanoTime()));
+                            bb.limit(48).position(0);
+                            requests.increment();
+                            channel.send(bb, from);
+                            latencyHistogram.add(System.nanoTime()-rcvNanos);
+                        }
+                        else
+                        {
+                            if (mode == SERVER.ordinal())
+                            {
+                                bb.flip();
+                                handleServer(instant(), new NtpV4Packet(bb), (InetSocketAddress) from);
+                            }
+                            else
+                            {
+                                fine("NTP packet mode %d from %s", mode, from);
+                            }
+                        }
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        malformed.increment();
+                        log(FINE, ex, "malformed packet from %s", from);
+                    }
+                }
+            }
+            catch (ClosedChannelException ex)
+            {
+                // stopped. Channel can be closed before or during receive.
+            }
+            catch (IOException ex)
+            {
+                log(SEVERE, ex, "%s", ex.getMessage());
+            }
+        }
+        private void rebase()
+        {
+            referenceTime = NtpV4Packet.instant2NtpTimestamp(reference());
+            byte[] refId = referenceClock.name().getBytes(US_ASCII);
+            int id = 0;
+            for (int ii=0;ii<4;ii++)
+            {
+                id = id<<8 | (ii < refId.length ? refId[ii] & 0xff : 0);
+            }
+            referenceId = id;
+            baseTime = NtpV4Packet.instant2NtpTimestamp(instant());
+            baseNanos = System.nanoTime();
+        }
+        /**
+         * Returns NTP timestamp of nanoTime. Nanos must be within 2 seconds
+         * from base.
+         * @param nanos
+         * @return 
+         */
+        private long ntpTime(long nanos)
+        {
+            return baseTime + ((nanos - baseNanos)<<32)/1000000000L;
+        }
+    }
     private class Server
     {
         private InetSocketAddress address;
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net.sntp;
+
+/**
+ * Statistics of high-rate mode. Histograms are in power of 2 buckets. Bucket
+ * 0 counts zeroes and bucket n values 2^(n-1) &lt;= value &lt; 2^n.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public interface SNTPServerMXBean
+{
+    int getReceivers();
+    /**
+     * Returns number of answered client requests.
+     * @return 
+     */
+    long getRequests();
+    /**
+     * Returns number of client requests answered during last second.
+     * @return 
+     */
+    long getRequestRate();
+    /**
+     * Returns number of too short packets.
+     * @return 
+     */
+    long getMalformed();
+    /**
+     * Returns histogram of requests per second.
+     * @return 
+     */
+    long[] getRateHistogram();
+    /**
+     * Returns histogram of nanoseconds from receive to send of response.
+     * @return 
+     */
+    long[] getLatencyHistogram();
+    void resetHistograms();
+}
@@ -17,6 +17,7 @@
 package org.vesalainen.nio.channels;
 
 import java.io.IOException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.AbstractSelectableChannel;
@@ -30,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -49,7 +51,7 @@ import org.vesalainen.util.logging.JavaLogging;
  */
 public class MultiProviderSelector extends AbstractSelector
 {
-    private Map<SelectorProvider,Selector> map = new HashMap<>();
+    private Map<SelectorProvider,Selector> map = new ConcurrentHashMap<>();
     private Set<SelectionKey> keys = new ConcurrentArraySet<>();
     private final Set<SelectionKey> unmodifiableKeys = Collections.unmodifiableSet(keys);
     private Set<SelectionKey> selectedKeys = new ConcurrentArraySet<>();
@@ -89,6 +91,23 @@ public class MultiProviderSelector extends AbstractSelector
         selectedKeys = null;
     }
 
+    /**
+     * Registers channel with this selector. Channel must be in non-blocking
+     * mode.
+     * @param ch
+     * @param ops
+     * @param att
+     * @return 
+     */
+    public SelectionKey register(SelectableChannel ch, int ops, Object att)
+    {
+        if (!(ch instanceof AbstractSelectableChannel))
+        {
+            throw new IllegalArgumentException(ch+" not AbstractSelectableChannel");
+        }
+        return register((AbstractSelectableChannel)ch, ops, att);
+    }
+
     @Override
     protected SelectionKey register(AbstractSelectableChannel ch, int ops, Object att)
     {
@@ -210,6 +229,10 @@ public class MultiProviderSelector extends AbstractSelector
             {
                 lock.unlock();
             }
+            if (callables.isEmpty())
+            {
+                return 0;
+            }
             log.fine("selector: invoking %d selectors", callables.size());
             Selector selector = executor.invokeAny(callables, timeout, TimeUnit.MILLISECONDS);
             log.fine("selector: %s success with %d keys", selector, selector.selectedKeys().size());
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nio.channels.vc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import static java.util.logging.Level.SEVERE;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * PooledVirtualCircuit is a VirtualCircuit run by VirtualCircuitEngine.
+ * <p>Counts transferred bytes of both directions and latency from read to
+ * completed write. Latency is not measured for zero-copy transfers.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nio.channels.vc.VirtualCircuitEngine
+ */
+public class PooledVirtualCircuit extends JavaLogging implements VirtualCircuit, AutoCloseable
+{
+    private final VirtualCircuitEngine engine;
+    final Side[] sides;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    PooledVirtualCircuit(VirtualCircuitEngine engine, ByteChannel ch1, ByteChannel ch2)
+    {
+        super(PooledVirtualCircuit.class);
+        this.engine = engine;
+        Side s1 = new Side(ch1);
+        Side s2 = new Side(ch2);
+        s1.peer = s2;
+        s2.peer = s1;
+        this.sides = new Side[] {s1, s2};
+    }
+    /**
+     * Starts circuit in engine. Executor factory is not used.
+     * @param executorFactory
+     * @throws IOException 
+     */
+    @Override
+    public void start(Supplier<ExecutorService> executorFactory) throws IOException
+    {
+        if (!started.compareAndSet(false, true))
+        {
+            throw new IllegalStateException("already started");
+        }
+        engine.start(this);
+    }
+    /**
+     * Starts circuit in engine and waits until it finishes. Executor factory 
+     * is not used.
+     * @param executorFactory
+     * @throws IOException 
+     */
+    @Override
+    public void join(Supplier<ExecutorService> executorFactory) throws IOException
+    {
+        start(executorFactory);
+        waitForFinish();
+    }
+
+    @Override
+    public void waitForFinish() throws IOException
+    {
+        if (!started.get())
+        {
+            throw new IllegalStateException("not started");
+        }
+        try
+        {
+            finished.await();
+        }
+        catch (InterruptedException ex)
+        {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void stop() throws IOException
+    {
+        if (!started.get())
+        {
+            throw new IllegalStateException("not started");
+        }
+        close();
+    }
+    /**
+     * Closes both channels.
+     */
+    @Override
+    public void close()
+    {
+        if (closed.compareAndSet(false, true))
+        {
+            engine.stop(this);
+            for (Side side : sides)
+            {
+                if (side.reader != null)
+                {
+                    side.reader.cancel(true);
+                }
+                try
+                {
+                    side.channel.close();
+                }
+                catch (IOException ex)
+                {
+                    log(SEVERE, ex, "closing %s %s", side.channel, ex.getMessage());
+                }
+            }
+            fine("VC end: up=%d down=%d %s", getUpBytes(), getDownBytes(), this);
+            finished.countDown();
+        }
+    }
+
+    public boolean isClosed()
+    {
+        return closed.get();
+    }
+    /**
+     * Returns bytes transferred from first channel to second.
+     * @return 
+     */
+    public long getUpBytes()
+    {
+        return sides[0].bytes.sum();
+    }
+    /**
+     * Returns bytes transferred from second channel to first.
+     * @return 
+     */
+    public long getDownBytes()
+    {
+        return sides[1].bytes.sum();
+    }
+    /**
+     * Returns average latency in nanoseconds from first channel to second.
+     * @return 
+     */
+    public long getUpAverageLatency()
+    {
+        return sides[0].averageLatency();
+    }
+    /**
+     * Returns average latency in nanoseconds from second channel to first.
+     * @return 
+     */
+    public long getDownAverageLatency()
+    {
+        return sides[1].averageLatency();
+    }
+    /**
+     * Returns maximum latency in nanoseconds from first channel to second.
+     * @return 
+     */
+    public long getUpMaxLatency()
+    {
+        return sides[0].maxLatency.get();
+    }
+    /**
+     * Returns maximum latency in nanoseconds from second channel to first.
+     * @return 
+     */
+    public long getDownMaxLatency()
+    {
+        return sides[1].maxLatency.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PooledVirtualCircuit{" + sides[0].channel + " / " + sides[1].channel + '}';
+    }
+    /**
+     * One side of circuit. Bytes and latencies are counted for reading side.
+     */
+    final class Side
+    {
+        final ByteChannel channel;
+        final SelectableChannel selectable;
+        final PooledVirtualCircuit circuit = PooledVirtualCircuit.this;
+        final LongAdder bytes = new LongAdder();
+        final LongAdder latencySum = new LongAdder();
+        final LongAdder latencyCount = new LongAdder();
+        final AtomicLong maxLatency = new AtomicLong();
+        Side peer;
+        SelectionKey key;
+        ByteBuffer pending;
+        long readNanos;
+        Future<?> reader;
+        boolean fileSource;
+
+        private Side(ByteChannel channel)
+        {
+            this.channel = channel;
+            if (channel instanceof SelectableChannel)
+            {
+                this.selectable = (SelectableChannel) channel;
+            }
+            else
+            {
+                if (channel instanceof SelectableBySelector)
+                {
+                    this.selectable = ((SelectableBySelector) channel).getSelector();
+                }
+                else
+                {
+                    this.selectable = null;
+                }
+            }
+        }
+
+        void transferred(long count)
+        {
+            bytes.add(count);
+        }
+
+        void transferred(long count, long latency)
+        {
+            bytes.add(count);
+            latencySum.add(latency);
+            latencyCount.increment();
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+
+        long averageLatency()
+        {
+            long count = latencyCount.sum();
+            return count > 0 ? latencySum.sum()/count : 0;
+        }
+    }
+}
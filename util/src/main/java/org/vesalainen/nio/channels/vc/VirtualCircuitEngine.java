@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nio.channels.vc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import static java.nio.channels.SelectionKey.*;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import static java.util.logging.Level.SEVERE;
+import org.vesalainen.nio.channels.MultiProviderSelector;
+import org.vesalainen.nio.channels.vc.PooledVirtualCircuit.Side;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * VirtualCircuitEngine runs many virtual circuits with few threads.
+ * <p>Selectable sides, SelectableChannel or SelectableBySelector, of all
+ * circuits are driven by one thread using shared MultiProviderSelector. Only
+ * sides which are not selectable get a dedicated reader thread from executor.
+ * <p>Direct buffers are taken from pool for each read and returned when 
+ * data is written. Buffer is kept only while target is not able to take all
+ * data. Reading of that side is paused until target is writable.
+ * <p>FileChannel side is either source or sink. Readable file having data
+ * after its position is source. It is read in reader thread and circuit is
+ * closed at end of file. Data coming to source file is discarded. Otherwise
+ * file is sink and only written. When other side is SocketChannel, source
+ * is read with transferTo and sink written with transferFrom.
+ * <p>Write to non-selectable channel blocks the selector thread.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nio.channels.vc.PooledVirtualCircuit
+ */
+public class VirtualCircuitEngine extends JavaLogging implements Runnable, AutoCloseable
+{
+    private static final long SELECT_TIMEOUT = 1000;
+    private static final long WRITE_PARK_NANOS = 100000;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private final int capacity;
+    private final ExecutorService executor;
+    private final MultiProviderSelector selector = new MultiProviderSelector();
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final Set<PooledVirtualCircuit> circuits = new CopyOnWriteArraySet<>();
+    private volatile boolean closed;
+    private volatile Thread thread;
+    /**
+     * Creates engine and starts selector thread.
+     * @param capacity Size of pooled direct buffers
+     * @param executor Runs selector thread and readers of non-selectable 
+     * channels.
+     */
+    public VirtualCircuitEngine(int capacity, ExecutorService executor)
+    {
+        super(VirtualCircuitEngine.class);
+        this.capacity = capacity;
+        this.executor = executor;
+        executor.submit(this);
+    }
+    /**
+     * Creates circuit between channels. Circuit is started with start method.
+     * @param ch1
+     * @param ch2
+     * @return 
+     */
+    public PooledVirtualCircuit create(ByteChannel ch1, ByteChannel ch2)
+    {
+        return new PooledVirtualCircuit(this, ch1, ch2);
+    }
+    /**
+     * Returns number of running circuits.
+     * @return 
+     */
+    public int getCircuitCount()
+    {
+        return circuits.size();
+    }
+    /**
+     * Returns number of free buffers in pool.
+     * @return 
+     */
+    public int getPooledBuffers()
+    {
+        return pool.size();
+    }
+    /**
+     * Stops all circuits and selector thread.
+     */
+    @Override
+    public void close()
+    {
+        for (PooledVirtualCircuit vc : circuits)
+        {
+            vc.close();
+        }
+        closed = true;
+        execute(()->{});
+    }
+
+    @Override
+    public void run()
+    {
+        thread = Thread.currentThread();
+        try
+        {
+            while (!closed)
+            {
+                if (selector.keys().isEmpty())
+                {
+                    Runnable task = tasks.poll(SELECT_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (task != null)
+                    {
+                        task.run();
+                    }
+                    runTasks();
+                    continue;
+                }
+                selector.select(SELECT_TIMEOUT);
+                runTasks();
+                for (SelectionKey key : selector.selectedKeys())
+                {
+                    ready(key);
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            fine("interrupted");
+        }
+        catch (Exception ex)
+        {
+            log(SEVERE, ex, "%s", ex.getMessage());
+        }
+        finally
+        {
+            closed = true;
+            for (PooledVirtualCircuit vc : circuits)
+            {
+                vc.close();
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException ex)
+            {
+                log(SEVERE, ex, "%s", ex.getMessage());
+            }
+            thread = null;
+        }
+    }
+
+    void start(PooledVirtualCircuit vc)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("engine closed");
+        }
+        circuits.add(vc);
+        execute(()->register(vc));
+    }
+
+    void stop(PooledVirtualCircuit vc)
+    {
+        circuits.remove(vc);
+        execute(()->unregister(vc));
+    }
+
+    private void execute(Runnable task)
+    {
+        tasks.add(task);
+        if (!closed && !selector.keys().isEmpty())
+        {
+            selector.wakeup();
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task = tasks.poll();
+        while (task != null)
+        {
+            task.run();
+            task = tasks.poll();
+        }
+    }
+
+    private void register(PooledVirtualCircuit vc)
+    {
+        try
+        {
+            for (Side side : vc.sides)
+            {
+                if (vc.isClosed())
+                {
+                    return;
+                }
+                if (side.selectable != null)
+                {
+                    side.selectable.configureBlocking(false);
+                    side.key = selector.register(side.selectable, OP_READ, side);
+                }
+                else
+                {
+                    if (side.channel instanceof FileChannel)
+                    {
+                        side.fileSource = isSource((FileChannel) side.channel);
+                        if (!side.fileSource)
+                        {
+                            continue;
+                        }
+                    }
+                    side.reader = executor.submit(()->readBlocking(side));
+                }
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            log(SEVERE, ex, "register %s %s", vc, ex.getMessage());
+            vc.close();
+        }
+    }
+
+    private static boolean isSource(FileChannel fc) throws IOException
+    {
+        try
+        {
+            long position = fc.position();
+            fc.read(EMPTY, position);
+            return position < fc.size();
+        }
+        catch (NonReadableChannelException ex)
+        {
+            return false;
+        }
+    }
+
+    private void unregister(PooledVirtualCircuit vc)
+    {
+        for (Side side : vc.sides)
+        {
+            if (side.key != null)
+            {
+                side.key.cancel();
+                side.key = null;
+            }
+            if (side.pending != null)
+            {
+                release(side.pending);
+                side.pending = null;
+            }
+        }
+    }
+    /**
+     * Handles ready key in selector thread.
+     * @param key 
+     */
+    private void ready(SelectionKey key)
+    {
+        Side side = (Side) key.attachment();
+        PooledVirtualCircuit vc = side.circuit;
+        try
+        {
+            if (!key.isValid())
+            {
+                return;
+            }
+            if (key.isWritable())
+            {
+                Side source = side.peer;
+                if (source.pending != null && writeNonBlocking(source, source.pending))
+                {
+                    source.pending = null;
+                    key.interestOps(key.interestOps() & ~OP_WRITE);
+                    source.key.interestOps(source.key.interestOps() | OP_READ);
+                }
+            }
+            if (key.isValid() && key.isReadable())
+            {
+                read(side);
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            logBrokenConnection(SEVERE, ex, "%s %s", vc, ex.getMessage());
+            vc.close();
+        }
+    }
+
+    private void read(Side side) throws IOException
+    {
+        Side target = side.peer;
+        if (target.fileSource)
+        {
+            ByteBuffer bb = take();
+            int rc = side.channel.read(bb);
+            release(bb);
+            if (rc == -1)
+            {
+                side.circuit.close();
+            }
+            return;
+        }
+        if (side.channel instanceof SocketChannel && target.channel instanceof FileChannel)
+        {
+            FileChannel fc = (FileChannel) target.channel;
+            long count = fc.transferFrom((SocketChannel)side.channel, fc.position(), capacity);
+            if (count > 0)
+            {
+                fc.position(fc.position()+count);
+                side.transferred(count);
+                return;
+            }
+        }
+        ByteBuffer bb = take();
+        int rc = side.channel.read(bb);
+        if (rc == -1)
+        {
+            release(bb);
+            side.circuit.close();
+            return;
+        }
+        if (rc == 0)
+        {
+            release(bb);
+            return;
+        }
+        long start = System.nanoTime();
+        bb.flip();
+        if (target.key != null && (target.selectable.validOps() & OP_WRITE) != 0)
+        {
+            side.readNanos = start;
+            if (!writeNonBlocking(side, bb))
+            {
+                side.pending = bb;
+                side.key.interestOps(side.key.interestOps() & ~OP_READ);
+                target.key.interestOps(target.key.interestOps() | OP_WRITE);
+                return;
+            }
+        }
+        else
+        {
+            writeFully(target.channel, bb);
+            side.transferred(rc, System.nanoTime()-start);
+            release(bb);
+        }
+    }
+    /**
+     * Writes as much as target takes.
+     * @param source
+     * @param bb
+     * @return true if all was written and buffer released.
+     * @throws IOException 
+     */
+    private boolean writeNonBlocking(Side source, ByteBuffer bb) throws IOException
+    {
+        WritableByteChannel target = source.peer.channel;
+        int count = 0;
+        while (bb.hasRemaining())
+        {
+            int wr = target.write(bb);
+            if (wr == 0)
+            {
+                break;
+            }
+            count += wr;
+        }
+        if (bb.hasRemaining())
+        {
+            source.transferred(count);
+            return false;
+        }
+        source.transferred(count, System.nanoTime()-source.readNanos);
+        release(bb);
+        return true;
+    }
+
+    private void readBlocking(Side side)
+    {
+        Side target = side.peer;
+        try
+        {
+            if (side.channel instanceof FileChannel && target.channel instanceof SocketChannel)
+            {
+                FileChannel fc = (FileChannel) side.channel;
+                long position = fc.position();
+                while (position < fc.size())
+                {
+                    long count = fc.transferTo(position, capacity, target.channel);
+                    if (count > 0)
+                    {
+                        position += count;
+                        side.transferred(count);
+                    }
+                    else
+                    {
+                        LockSupport.parkNanos(WRITE_PARK_NANOS);
+                    }
+                }
+            }
+            else
+            {
+                while (true)
+                {
+                    ByteBuffer bb = take();
+                    int rc = side.channel.read(bb);
+                    if (rc == -1)
+                    {
+                        release(bb);
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    bb.flip();
+                    writeFully(target.channel, bb);
+                    side.transferred(rc, System.nanoTime()-start);
+                    release(bb);
+                }
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            if (!side.circuit.isClosed())
+            {
+                logBrokenConnection(SEVERE, ex, "%s %s", side.circuit, ex.getMessage());
+            }
+        }
+        finally
+        {
+            side.circuit.close();
+        }
+    }
+    /**
+     * Writes all. If target is in non-blocking mode parks between writes.
+     * @param target
+     * @param bb
+     * @throws IOException 
+     */
+    private void writeFully(WritableByteChannel target, ByteBuffer bb) throws IOException
+    {
+        while (bb.hasRemaining())
+        {
+            if (target.write(bb) == 0)
+            {
+                LockSupport.parkNanos(WRITE_PARK_NANOS);
+            }
+        }
+    }
+
+    private ByteBuffer take()
+    {
+        ByteBuffer bb = pool.poll();
+        if (bb == null)
+        {
+            bb = ByteBuffer.allocateDirect(capacity);
+        }
+        return bb;
+    }
+
+    private void release(ByteBuffer bb)
+    {
+        bb.clear();
+        pool.offer(bb);
+    }
+}
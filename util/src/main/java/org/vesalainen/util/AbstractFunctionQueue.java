@@ -19,7 +19,9 @@ package org.vesalainen.util;
 import static java.lang.Math.max;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import org.vesalainen.util.logging.JavaLogging;
 
@@ -32,6 +34,10 @@ import org.vesalainen.util.logging.JavaLogging;
  * <p>Important! Implementing class must create matching put and get methods. Put method 
  * must call hasMoreData() after putting all data. Get method must call
  * hasMoreRoom() after getting corresponding data from buffer.
+ * <p>In single producer/consumer mode queue is lock-free. Only one thread may
+ * put and only one thread may get. Put data is published only when
+ * hasMoreData() is called and room is released only when hasMoreRoom() is
+ * called, so several records can be written or read with one publication.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  * @see org.vesalainen.util.AbstractFunctionQueue#hasMoreData() 
  * @see org.vesalainen.util.AbstractFunctionQueue#hasMoreRoom() 
@@ -46,105 +52,433 @@ public abstract class AbstractFunctionQueue extends JavaLogging
     private final Condition hasData;
     private AtomicInteger writable;
     private int maxQueue;
+    // single producer/consumer mode
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 1000000;
+    private final boolean spsc;
+    private final int mask;
+    private final PaddedLong head;
+    private final PaddedLong tail;
+    private long writePos;
+    private long writeLimit;
+    private long readPos;
+    private long readLimit;
+    private volatile Thread producerWaiter;
+    private volatile Thread consumerWaiter;
+    private volatile long producerStalls;
     
     public AbstractFunctionQueue(int size)
+    {
+        this(size, false, false);
+    }
+    /**
+     * Creates AbstractFunctionQueue
+     * @param size Buffer size. In single producer/consumer mode size is 
+     * rounded up to power of 2.
+     * @param spsc If true queue is in lock-free single producer/consumer mode.
+     * @param direct If true buffer is allocated outside of heap.
+     */
+    public AbstractFunctionQueue(int size, boolean spsc, boolean direct)
     {
         super(AbstractFunctionQueue.class);
+        if (size < 1 || (spsc && size > 1<<30))
+        {
+            throw new IllegalArgumentException("illegal size "+size);
+        }
+        this.spsc = spsc;
+        if (spsc && size > 1)
+        {
+            size = Integer.highestOneBit(size-1)<<1;
+        }
         this.size = size;
-        this.writeBuf = ByteBuffer.allocate(size);
+        this.mask = size-1;
+        this.writeBuf = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
         this.readBuf = (ByteBuffer) writeBuf.asReadOnlyBuffer();
         this.lock = new ReentrantLock();
         this.hasData = lock.newCondition();
         this.hasRoom = lock.newCondition();
         this.writable = new AtomicInteger(size);
+        this.head = new PaddedLong();
+        this.tail = new PaddedLong();
+        this.writeLimit = size;
+    }
+    /**
+     * Returns true if queue is in single producer/consumer mode.
+     * @return 
+     */
+    public boolean isSingleProducerConsumer()
+    {
+        return spsc;
+    }
+    /**
+     * Makes sure that length bytes can be put without waiting. In single
+     * producer/consumer mode this allows writing a whole record with one
+     * room check. In other modes this does nothing.
+     * @param length
+     * @throws InterruptedException 
+     */
+    protected void reserve(int length) throws InterruptedException
+    {
+        if (spsc)
+        {
+            if (length > size)
+            {
+                throw new IllegalArgumentException(length+" > "+size);
+            }
+            if (writePos + length > writeLimit)
+            {
+                awaitRoom(length);
+            }
+        }
+    }
+    /**
+     * Returns true if there is data to be read. In single producer/consumer
+     * mode this doesn't block. In other modes it returns false, because
+     * get methods block until there is data.
+     * @return 
+     */
+    protected boolean hasData()
+    {
+        if (spsc)
+        {
+            if (readPos < readLimit)
+            {
+                return true;
+            }
+            readLimit = tail.get();
+            return readPos < readLimit;
+        }
+        return false;
+    }
+    /**
+     * Waits until there is data to be read. In other modes than single
+     * producer/consumer this does nothing.
+     * @throws InterruptedException 
+     */
+    protected void awaitData() throws InterruptedException
+    {
+        if (spsc && readPos >= readLimit)
+        {
+            awaitData(1);
+        }
     }
     protected AbstractFunctionQueue put(byte b) throws InterruptedException
     {
+        if (spsc)
+        {
+            writeBuf.put(writeIndex(1), b);
+            return this;
+        }
         needToWrite(1);
         writeBuf.put(b);
         return this;
     }
     protected AbstractFunctionQueue putShort(short s) throws InterruptedException
     {
+        if (spsc)
+        {
+            write(s, 2);
+            return this;
+        }
         needToWrite(2);
         writeBuf.putShort(s);
         return this;
     }
     protected AbstractFunctionQueue putChar(char c) throws InterruptedException
     {
+        if (spsc)
+        {
+            write(c, 2);
+            return this;
+        }
         needToWrite(2);
         writeBuf.putChar(c);
         return this;
     }
     protected AbstractFunctionQueue putInt(int i) throws InterruptedException
     {
+        if (spsc)
+        {
+            write(i, 4);
+            return this;
+        }
         needToWrite(4);
         writeBuf.putInt(i);
         return this;
     }
     protected AbstractFunctionQueue putFloat(float f) throws InterruptedException
     {
+        if (spsc)
+        {
+            write(Float.floatToRawIntBits(f), 4);
+            return this;
+        }
         needToWrite(4);
         writeBuf.putFloat(f);
         return this;
     }
     protected AbstractFunctionQueue putLong(long l) throws InterruptedException
     {
+        if (spsc)
+        {
+            write(l, 8);
+            return this;
+        }
         needToWrite(8);
         writeBuf.putLong(l);
         return this;
     }
     protected AbstractFunctionQueue putDouble(double d) throws InterruptedException
     {
+        if (spsc)
+        {
+            write(Double.doubleToRawLongBits(d), 8);
+            return this;
+        }
         needToWrite(8);
         writeBuf.putDouble(d);
         return this;
     }
     protected AbstractFunctionQueue putString(double d) throws InterruptedException
     {
-        needToWrite(8);
-        writeBuf.putDouble(d);
-        return this;
+        return putDouble(d);
     }
     protected byte getByte() throws InterruptedException
     {
+        if (spsc)
+        {
+            return readBuf.get(readIndex(1));
+        }
         needToRead(1);
         return readBuf.get();
     }
     protected short getShort() throws InterruptedException
     {
+        if (spsc)
+        {
+            return (short) read(2);
+        }
         needToRead(2);
         return readBuf.getShort();
     }
     protected char getChar() throws InterruptedException
     {
+        if (spsc)
+        {
+            return (char) read(2);
+        }
         needToRead(2);
         return readBuf.getChar();
     }
     protected int getInt() throws InterruptedException
     {
+        if (spsc)
+        {
+            return (int) read(4);
+        }
         needToRead(4);
         return readBuf.getInt();
     }
     protected float getFloat() throws InterruptedException
     {
+        if (spsc)
+        {
+            return Float.intBitsToFloat((int) read(4));
+        }
         needToRead(4);
         return readBuf.getFloat();
     }
     protected long getLong() throws InterruptedException
     {
+        if (spsc)
+        {
+            return read(8);
+        }
         needToRead(8);
         return readBuf.getLong();
     }
     protected double getDouble() throws InterruptedException
     {
+        if (spsc)
+        {
+            return Double.longBitsToDouble(read(8));
+        }
         needToRead(8);
         return readBuf.getDouble();
     }
     private int readable()
     {
+        if (spsc)
+        {
+            return (int) (tail.get() - head.get());
+        }
         return size - writable.get();
     }
+    private void write(long value, int length) throws InterruptedException
+    {
+        int idx = writeIndex(length);
+        if (idx + length <= size)
+        {
+            switch (length)
+            {
+                case 2:
+                    writeBuf.putShort(idx, (short) value);
+                    break;
+                case 4:
+                    writeBuf.putInt(idx, (int) value);
+                    break;
+                case 8:
+                    writeBuf.putLong(idx, value);
+                    break;
+                default:
+                    throw new UnsupportedOperationException(length+" not supported");
+            }
+        }
+        else
+        {
+            for (int ii=length-1;ii>=0;ii--)
+            {
+                writeBuf.put(idx, (byte) (value>>(8*ii)));
+                idx = (idx+1) & mask;
+            }
+        }
+    }
+    private long read(int length) throws InterruptedException
+    {
+        int idx = readIndex(length);
+        if (idx + length <= size)
+        {
+            switch (length)
+            {
+                case 2:
+                    return readBuf.getShort(idx);
+                case 4:
+                    return readBuf.getInt(idx);
+                case 8:
+                    return readBuf.getLong(idx);
+                default:
+                    throw new UnsupportedOperationException(length+" not supported");
+            }
+        }
+        else
+        {
+            long value = 0;
+            for (int ii=0;ii<length;ii++)
+            {
+                value = (value<<8) | (readBuf.get(idx) & 0xff);
+                idx = (idx+1) & mask;
+            }
+            return value;
+        }
+    }
+    private int writeIndex(int length) throws InterruptedException
+    {
+        if (writePos + length > writeLimit)
+        {
+            awaitRoom(length);
+        }
+        int idx = (int) (writePos & mask);
+        writePos += length;
+        return idx;
+    }
+    private int readIndex(int length) throws InterruptedException
+    {
+        if (readPos + length > readLimit)
+        {
+            awaitData(length);
+        }
+        int idx = (int) (readPos & mask);
+        readPos += length;
+        return idx;
+    }
+    private void awaitRoom(int length) throws InterruptedException
+    {
+        long need = writePos + length - size;
+        long h = head.get();
+        if (h < need)
+        {
+            producerStalls++;
+            int count = 0;
+            while (h < need)
+            {
+                if (count < SPINS + YIELDS)
+                {
+                    if (count >= SPINS)
+                    {
+                        Thread.yield();
+                    }
+                    count++;
+                }
+                else
+                {
+                    producerWaiter = Thread.currentThread();
+                    if (head.get() < need)
+                    {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    producerWaiter = null;
+                }
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+                h = head.get();
+            }
+        }
+        writeLimit = h + size;
+    }
+    private void awaitData(int length) throws InterruptedException
+    {
+        long need = readPos + length;
+        long t = tail.get();
+        int count = 0;
+        while (t < need)
+        {
+            if (count < SPINS + YIELDS)
+            {
+                if (count >= SPINS)
+                {
+                    Thread.yield();
+                }
+                count++;
+            }
+            else
+            {
+                consumerWaiter = Thread.currentThread();
+                if (tail.get() < need)
+                {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                consumerWaiter = null;
+            }
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+            t = tail.get();
+        }
+        readLimit = t;
+    }
+    private void commit()
+    {
+        tail.lazySet(writePos);
+        maxQueue = max((int) (writePos - head.get()), maxQueue);
+        Thread waiter = consumerWaiter;
+        if (waiter != null)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
+    private void release()
+    {
+        head.lazySet(readPos);
+        Thread waiter = producerWaiter;
+        if (waiter != null)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
     private void needToWrite(int length) throws InterruptedException
     {
         while (writable.get() < length)
@@ -183,11 +517,25 @@ public abstract class AbstractFunctionQueue extends JavaLogging
 
     protected void hasMoreData()
     {
-        signal(hasData);
+        if (spsc)
+        {
+            commit();
+        }
+        else
+        {
+            signal(hasData);
+        }
     }
     protected void hasMoreRoom()
     {
-        signal(hasRoom);
+        if (spsc)
+        {
+            release();
+        }
+        else
+        {
+            signal(hasRoom);
+        }
     }
     private void await(Condition condition) throws InterruptedException
     {
@@ -224,6 +572,22 @@ public abstract class AbstractFunctionQueue extends JavaLogging
     {
         return maxQueue;
     }
-
+    /**
+     * Returns number of times producer had to wait for room in single 
+     * producer/consumer mode.
+     * @return 
+     */
+    public long getProducerStalls()
+    {
+        return producerStalls;
+    }
+    /**
+     * AtomicLong padded to avoid false sharing between head and tail.
+     */
+    private static final class PaddedLong extends AtomicLong
+    {
+        private static final long serialVersionUID = 1L;
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
 
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util;
+
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * CopyOnWriteIntMap is a map from primitive int to object.
+ * <p>It is meant for read-mostly usage like dispatch tables. Lookups are
+ * lock-free and allocation-free. They use open-addressing over immutable
+ * snapshot arrays. Modifications are synchronized and create a new snapshot.
+ * <p>Null values are not allowed.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @param <V>
+ */
+public class CopyOnWriteIntMap<V>
+{
+    private static final int MIN_CAPACITY = 16;
+    private volatile Table table;
+    /**
+     * Creates empty CopyOnWriteIntMap
+     */
+    public CopyOnWriteIntMap()
+    {
+        this(MIN_CAPACITY);
+    }
+    /**
+     * Creates empty CopyOnWriteIntMap with initial capacity.
+     * @param initialCapacity
+     */
+    public CopyOnWriteIntMap(int initialCapacity)
+    {
+        this.table = new Table(tableSize(initialCapacity));
+    }
+    /**
+     * Returns value mapped to key or null.
+     * @param key
+     * @return
+     */
+    public V get(int key)
+    {
+        return (V) table.get(key);
+    }
+    /**
+     * Returns true if key is mapped.
+     * @param key
+     * @return
+     */
+    public boolean containsKey(int key)
+    {
+        return table.get(key) != null;
+    }
+    /**
+     * Associates value to key.
+     * @param key
+     * @param value Not null
+     * @return Previous value or null
+     */
+    public synchronized V put(int key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("null values not allowed");
+        }
+        Table t = table;
+        Object old = t.get(key);
+        int size = old == null ? t.size+1 : t.size;
+        Table n = new Table(tableSize(size));
+        n.copy(t, key);
+        n.insert(key, value);
+        table = n;
+        return (V) old;
+    }
+    /**
+     * Returns value mapped to key. If key is not mapped, value is created
+     * with function and put. Function is called at most once per missing key
+     * even in concurrent use.
+     * @param key
+     * @param func
+     * @return
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> func)
+    {
+        V value = get(key);
+        if (value != null)
+        {
+            return value;
+        }
+        synchronized(this)
+        {
+            value = get(key);
+            if (value == null)
+            {
+                value = func.apply(key);
+                if (value != null)
+                {
+                    put(key, value);
+                }
+            }
+            return value;
+        }
+    }
+    /**
+     * Removes mapping.
+     * @param key
+     * @return Removed value or null
+     */
+    public synchronized V remove(int key)
+    {
+        Table t = table;
+        Object old = t.get(key);
+        if (old != null)
+        {
+            Table n = new Table(tableSize(t.size-1));
+            n.copy(t, key);
+            table = n;
+        }
+        return (V) old;
+    }
+    /**
+     * Removes all mappings.
+     */
+    public synchronized void clear()
+    {
+        table = new Table(tableSize(MIN_CAPACITY));
+    }
+    /**
+     * Calls consumer for each value/key pair in current snapshot.
+     * @param consumer
+     */
+    public void forEach(ObjIntConsumer<? super V> consumer)
+    {
+        Table t = table;
+        Object[] values = t.values;
+        int[] keys = t.keys;
+        for (int ii=0;ii<values.length;ii++)
+        {
+            if (values[ii] != null)
+            {
+                consumer.accept((V) values[ii], keys[ii]);
+            }
+        }
+    }
+    public int size()
+    {
+        return table.size;
+    }
+    public boolean isEmpty()
+    {
+        return table.size == 0;
+    }
+    /**
+     * Returns power of 2 size which keeps load factor under 0.5
+     * @param size
+     * @return
+     */
+    private static int tableSize(int size)
+    {
+        int s = Math.max(MIN_CAPACITY, size*2);
+        return Integer.highestOneBit(s-1)<<1;
+    }
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h>>>16);
+    }
+    private static final class Table
+    {
+        private final int[] keys;
+        private final Object[] values;
+        private final int mask;
+        private int size;
+
+        private Table(int capacity)
+        {
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity-1;
+        }
+        private Object get(int key)
+        {
+            int idx = hash(key) & mask;
+            while (true)
+            {
+                Object v = values[idx];
+                if (v == null)
+                {
+                    return null;
+                }
+                if (keys[idx] == key)
+                {
+                    return v;
+                }
+                idx = (idx+1) & mask;
+            }
+        }
+        private void insert(int key, Object value)
+        {
+            int idx = hash(key) & mask;
+            while (values[idx] != null)
+            {
+                if (keys[idx] == key)
+                {
+                    values[idx] = value;
+                    return;
+                }
+                idx = (idx+1) & mask;
+            }
+            keys[idx] = key;
+            values[idx] = value;
+            size++;
+        }
+        private void copy(Table t, int except)
+        {
+            for (int ii=0;ii<t.values.length;ii++)
+            {
+                Object v = t.values[ii];
+                if (v != null && t.keys[ii] != except)
+                {
+                    insert(t.keys[ii], v);
+                }
+            }
+        }
+    }
+}
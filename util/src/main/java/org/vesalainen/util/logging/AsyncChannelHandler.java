@@ -0,0 +1,896 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util.logging;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import javax.management.ObjectName;
+
+/**
+ * AsyncChannelHandler writes logs to channel in background thread.
+ * <p>Callers store level, time, format string reference and arguments into
+ * preallocated multi-producer/single-consumer ring. Primitive arguments of
+ * log methods are stored as raw bits without boxing. Writer thread formats
+ * into reusable StringBuilder, encodes into reusable ByteBuffers and writes
+ * the batch with one gathering write if channel is GatheringByteChannel.
+ * <p>Conversions %d, %x, %s, %% and %n are formatted without 
+ * java.util.Formatter. Other formats use reusable Formatter in writer 
+ * thread. Format errors are written to log instead of throwing to caller.
+ * <p>Output is the same as MinimalFormatter output. Formatter of Handler is
+ * not used. 
+ * <p>When ring is full the OverflowPolicy decides what happens.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.util.logging.JavaLogging#setAsyncHandler(org.vesalainen.util.logging.AsyncChannelHandler) 
+ */
+public class AsyncChannelHandler extends Handler implements Runnable, AsyncChannelHandlerMXBean
+{
+    /**
+     * What caller does when ring is full.
+     */
+    public enum OverflowPolicy 
+    {
+        /**
+         * Drops the new log
+         */
+        DROP, 
+        /**
+         * Waits until there is room
+         */
+        BLOCK
+    };
+    private static final int MAX_PRIMITIVES = 3;
+    private static final int OBJECTS = -1;
+    private static final int LITERAL = -2;
+    private static final int MESSAGE = -3;
+    private static final long PARK_NANOS = 1000000;
+    private static final long PRODUCER_PARK_NANOS = 100000;
+    private static final long DAY = 86400000L;
+    private final WritableByteChannel channel;
+    private final GatheringByteChannel gathering;
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final Level[] levelArr;
+    private final long[] timeArr;
+    private final int[] threadArr;
+    private final String[] formatArr;
+    private final Throwable[] thrownArr;
+    private final Object[][] argsArr;
+    private final int[] countArr;
+    private final int[] kindArr;
+    private final long[] primArr;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private volatile long written;
+    private volatile long bytes;
+    private volatile long writes;
+    private volatile long flushed;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    private volatile Charset charset = Charset.defaultCharset();
+    private final Thread thread;
+    private ObjectName objectName;
+    // writer thread state
+    private final StringBuilder sb = new StringBuilder(256);
+    private final Formatter formatter = new Formatter(sb);
+    private final ByteBuffer[] buffers;
+    private int current;
+    private char[] chars = new char[256];
+    private CharBuffer cb = CharBuffer.wrap(chars);
+    private CharsetEncoder encoder;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long validFrom = 1;
+    private long validTo;
+    private long offsetMillis;
+    private long localDayStart;
+    private String datePrefix;
+
+    public AsyncChannelHandler(WritableByteChannel channel)
+    {
+        this(channel, 1024, OverflowPolicy.DROP, 8, 4096);
+    }
+    /**
+     * Creates AsyncChannelHandler and starts writer thread. Channel is not 
+     * closed by handler.
+     * @param channel
+     * @param capacity Ring capacity. Rounded up to power of 2.
+     * @param overflowPolicy
+     * @param bufferCount Number of buffers in one gathering write.
+     * @param bufferSize Size of one buffer.
+     */
+    public AsyncChannelHandler(WritableByteChannel channel, int capacity, OverflowPolicy overflowPolicy, int bufferCount, int bufferSize)
+    {
+        if (bufferCount < 1 || bufferSize < 16)
+        {
+            throw new IllegalArgumentException("buffers too small");
+        }
+        this.channel = channel;
+        this.gathering = channel instanceof GatheringByteChannel ? (GatheringByteChannel) channel : null;
+        this.capacity = Math.max(2, Integer.highestOneBit(Math.max(1, capacity-1))<<1);
+        this.mask = this.capacity-1;
+        this.overflowPolicy = overflowPolicy;
+        this.levelArr = new Level[this.capacity];
+        this.timeArr = new long[this.capacity];
+        this.threadArr = new int[this.capacity];
+        this.formatArr = new String[this.capacity];
+        this.thrownArr = new Throwable[this.capacity];
+        this.argsArr = new Object[this.capacity][];
+        this.countArr = new int[this.capacity];
+        this.kindArr = new int[this.capacity];
+        this.primArr = new long[this.capacity*MAX_PRIMITIVES];
+        this.published = new AtomicLongArray(this.capacity);
+        for (int ii=0;ii<this.capacity;ii++)
+        {
+            published.set(ii, -1);
+        }
+        this.buffers = new ByteBuffer[bufferCount];
+        for (int ii=0;ii<bufferCount;ii++)
+        {
+            buffers[ii] = ByteBuffer.allocateDirect(bufferSize);
+        }
+        this.encoder = newEncoder(charset);
+        this.thread = new Thread(this, AsyncChannelHandler.class.getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * Returns true if level is not filtered by handlers level.
+     * @param level
+     * @return 
+     */
+    public boolean isLoggable(Level level)
+    {
+        int lev = getLevel().intValue();
+        return level.intValue() >= lev && lev != Level.OFF.intValue();
+    }
+
+    public void log(Level level, String format)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                commit(fill(seq, level, null, format, null, 0, 0), seq);
+            }
+        }
+    }
+
+    public void log(Level level, String format, long arg)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                int idx = fill(seq, level, null, format, null, 1, 0);
+                primArr[idx*MAX_PRIMITIVES] = arg;
+                commit(idx, seq);
+            }
+        }
+    }
+
+    public void log(Level level, String format, long arg1, long arg2)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                int idx = fill(seq, level, null, format, null, 2, 0);
+                int base = idx*MAX_PRIMITIVES;
+                primArr[base] = arg1;
+                primArr[base+1] = arg2;
+                commit(idx, seq);
+            }
+        }
+    }
+
+    public void log(Level level, String format, long arg1, long arg2, long arg3)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                int idx = fill(seq, level, null, format, null, 3, 0);
+                int base = idx*MAX_PRIMITIVES;
+                primArr[base] = arg1;
+                primArr[base+1] = arg2;
+                primArr[base+2] = arg3;
+                commit(idx, seq);
+            }
+        }
+    }
+
+    public void log(Level level, String format, double arg)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                int idx = fill(seq, level, null, format, null, 1, 0b1);
+                primArr[idx*MAX_PRIMITIVES] = Double.doubleToRawLongBits(arg);
+                commit(idx, seq);
+            }
+        }
+    }
+
+    public void log(Level level, String format, double arg1, double arg2)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                int idx = fill(seq, level, null, format, null, 2, 0b11);
+                int base = idx*MAX_PRIMITIVES;
+                primArr[base] = Double.doubleToRawLongBits(arg1);
+                primArr[base+1] = Double.doubleToRawLongBits(arg2);
+                commit(idx, seq);
+            }
+        }
+    }
+    /**
+     * Stores log with object arguments. Args array is referenced until log 
+     * is written and must not be modified by caller.
+     * @param level
+     * @param thrown Can be null
+     * @param format
+     * @param args 
+     */
+    public void publish(Level level, Throwable thrown, String format, Object[] args)
+    {
+        if (isLoggable(level))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                if (args != null && args.length > 0)
+                {
+                    commit(fill(seq, level, thrown, format, args, OBJECTS, 0), seq);
+                }
+                else
+                {
+                    commit(fill(seq, level, thrown, format, null, 0, 0), seq);
+                }
+            }
+        }
+    }
+    /**
+     * Stores LogRecord. Message is not formatted with java.util.Formatter. If 
+     * record has parameters it is formatted with java.text.MessageFormat.
+     * @param record 
+     */
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (isLoggable(record))
+        {
+            long seq = claim();
+            if (seq >= 0)
+            {
+                Object[] params = record.getParameters();
+                int idx;
+                if (params != null && params.length > 0)
+                {
+                    idx = fill(seq, record.getLevel(), record.getThrown(), record.getMessage(), params, MESSAGE, 0);
+                }
+                else
+                {
+                    idx = fill(seq, record.getLevel(), record.getThrown(), record.getMessage(), null, LITERAL, 0);
+                }
+                timeArr[idx] = record.getMillis();
+                threadArr[idx] = record.getThreadID();
+                commit(idx, seq);
+            }
+        }
+    }
+    /**
+     * Waits until logs stored before this call are written to channel.
+     */
+    @Override
+    public void flush()
+    {
+        long target = claimed.get();
+        while (flushed < target && thread.isAlive())
+        {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+        }
+    }
+    /**
+     * Writes stored logs and stops writer thread. Logs stored after close 
+     * are dropped. Channel is not closed.
+     * @throws SecurityException 
+     */
+    @Override
+    public void close() throws SecurityException
+    {
+        closed = true;
+        LockSupport.unpark(thread);
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        unregisterMBean();
+    }
+
+    @Override
+    public synchronized void setEncoding(String encoding) throws SecurityException, UnsupportedEncodingException
+    {
+        super.setEncoding(encoding);
+        charset = encoding != null ? Charset.forName(encoding) : Charset.defaultCharset();
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            long seq = consumed.get();
+            int idx = (int) seq & mask;
+            if (published.get(idx) == seq)
+            {
+                boolean formatted = false;
+                try
+                {
+                    format(idx);
+                    formatted = true;
+                }
+                catch (RuntimeException ex)
+                {
+                    reportError(null, ex, ErrorManager.FORMAT_FAILURE);
+                }
+                finally
+                {
+                    formatArr[idx] = null;
+                    thrownArr[idx] = null;
+                    argsArr[idx] = null;
+                    consumed.lazySet(seq+1);
+                }
+                if (formatted)
+                {
+                    encode();
+                    written++;
+                }
+            }
+            else
+            {
+                if (current > 0 || buffers[0].position() > 0)
+                {
+                    write();
+                }
+                flushed = seq;
+                if (closed)
+                {
+                    return;
+                }
+                await();
+            }
+        }
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int getOccupancy()
+    {
+        long occupancy = claimed.get() - consumed.get();
+        return (int) Math.max(0, Math.min(capacity, occupancy));
+    }
+
+    @Override
+    public long getDrops()
+    {
+        return drops.sum();
+    }
+
+    @Override
+    public long getWaits()
+    {
+        return waits.sum();
+    }
+
+    @Override
+    public long getWritten()
+    {
+        return written;
+    }
+
+    @Override
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    @Override
+    public long getWrites()
+    {
+        return writes;
+    }
+
+    @Override
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+    
+    public void registerMBean(String name)
+    {
+        try
+        {
+            objectName = new ObjectName("org.vesalainen.util.logging:type=AsyncChannelHandler,name="+name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        }
+        catch (Exception ex)
+        {
+            reportError("registerMBean("+name+")", ex, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+    public void unregisterMBean()
+    {
+        if (objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (Exception ex)
+            {
+                reportError("unregisterMBean("+objectName+")", ex, ErrorManager.GENERIC_FAILURE);
+            }
+            objectName = null;
+        }
+    }
+    /**
+     * Claims sequence for log
+     * @return Sequence or -1 if log is dropped.
+     */
+    private long claim()
+    {
+        while (true)
+        {
+            if (closed)
+            {
+                drops.increment();
+                return -1;
+            }
+            long seq = claimed.get();
+            if (seq - consumed.get() < capacity)
+            {
+                if (claimed.compareAndSet(seq, seq+1))
+                {
+                    return seq;
+                }
+            }
+            else
+            {
+                switch (overflowPolicy)
+                {
+                    case DROP:
+                        drops.increment();
+                        return -1;
+                    case BLOCK:
+                        waits.increment();
+                        LockSupport.unpark(thread);
+                        LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+                        break;
+                    default:
+                        throw new UnsupportedOperationException(overflowPolicy+" not supported");
+                }
+            }
+        }
+    }
+    private int fill(long seq, Level level, Throwable thrown, String format, Object[] args, int count, int kinds)
+    {
+        int idx = (int) seq & mask;
+        levelArr[idx] = level;
+        timeArr[idx] = System.currentTimeMillis();
+        threadArr[idx] = (int) Thread.currentThread().getId();
+        formatArr[idx] = format;
+        thrownArr[idx] = thrown;
+        argsArr[idx] = args;
+        countArr[idx] = count;
+        kindArr[idx] = kinds;
+        return idx;
+    }
+    private void commit(int idx, long seq)
+    {
+        published.set(idx, seq);
+        if (sleeping)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+    private void await()
+    {
+        sleeping = true;
+        long seq = consumed.get();
+        if (published.get((int) seq & mask) != seq && !closed)
+        {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        sleeping = false;
+    }
+    private void format(int idx)
+    {
+        sb.setLength(0);
+        appendTime(timeArr[idx]);
+        sb.append(' ');
+        sb.append(MinimalFormatter.levelId(levelArr[idx]));
+        sb.append(' ');
+        sb.append(threadArr[idx]);
+        sb.append(' ');
+        String format = formatArr[idx];
+        switch (countArr[idx])
+        {
+            case LITERAL:
+                sb.append(format);
+                break;
+            case MESSAGE:
+                try
+                {
+                    sb.append(MessageFormat.format(format, argsArr[idx]));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    sb.append(format);
+                }
+                break;
+            default:
+                if (format != null)
+                {
+                    appendFormat(idx, format);
+                }
+                else
+                {
+                    sb.append(levelArr[idx]).append(" format == null");
+                }
+                break;
+        }
+        sb.append("\r\n");
+        Throwable thrown = thrownArr[idx];
+        if (thrown != null)
+        {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            thrown.printStackTrace(pw);
+            pw.flush();
+            sb.append(sw.getBuffer());
+            sb.append("\n\n");
+        }
+    }
+    private void appendFormat(int idx, String format)
+    {
+        int mark = sb.length();
+        Object[] args = argsArr[idx];
+        int argc = args != null ? args.length : countArr[idx];
+        int next = 0;
+        int len = format.length();
+        for (int ii=0;ii<len;ii++)
+        {
+            char cc = format.charAt(ii);
+            if (cc != '%')
+            {
+                sb.append(cc);
+                continue;
+            }
+            boolean ok = false;
+            if (ii+1 < len)
+            {
+                cc = format.charAt(++ii);
+                switch (cc)
+                {
+                    case '%':
+                        sb.append('%');
+                        ok = true;
+                        break;
+                    case 'n':
+                        sb.append(System.lineSeparator());
+                        ok = true;
+                        break;
+                    case 'd':
+                    case 'x':
+                    case 's':
+                        ok = next < argc && appendArg(idx, next++, cc);
+                        break;
+                }
+            }
+            if (!ok)
+            {
+                sb.setLength(mark);
+                formatFallback(idx, format, argc);
+                return;
+            }
+        }
+    }
+    private boolean appendArg(int idx, int index, char conversion)
+    {
+        Object[] args = argsArr[idx];
+        if (args != null)
+        {
+            Object arg = args[index];
+            switch (conversion)
+            {
+                case 's':
+                    if (arg instanceof Formattable)
+                    {
+                        return false;
+                    }
+                    sb.append(arg);
+                    return true;
+                case 'd':
+                    if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte)
+                    {
+                        sb.append(((Number)arg).longValue());
+                        return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+        else
+        {
+            long bits = primArr[idx*MAX_PRIMITIVES+index];
+            boolean dbl = (kindArr[idx] & (1<<index)) != 0;
+            switch (conversion)
+            {
+                case 's':
+                    if (dbl)
+                    {
+                        sb.append(Double.longBitsToDouble(bits));
+                    }
+                    else
+                    {
+                        sb.append(bits);
+                    }
+                    return true;
+                case 'd':
+                    if (dbl)
+                    {
+                        return false;
+                    }
+                    sb.append(bits);
+                    return true;
+                case 'x':
+                    if (dbl)
+                    {
+                        return false;
+                    }
+                    appendHex(bits);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+    private void formatFallback(int idx, String format, int argc)
+    {
+        Object[] args = argsArr[idx];
+        if (args == null)
+        {
+            args = new Object[argc];
+            int base = idx*MAX_PRIMITIVES;
+            for (int ii=0;ii<argc;ii++)
+            {
+                long bits = primArr[base+ii];
+                if ((kindArr[idx] & (1<<ii)) != 0)
+                {
+                    args[ii] = Double.longBitsToDouble(bits);
+                }
+                else
+                {
+                    args[ii] = bits;
+                }
+            }
+        }
+        try
+        {
+            formatter.format(format, args);
+        }
+        catch (IllegalFormatException ex)
+        {
+            sb.append(format).append(' ').append(ex);
+        }
+    }
+    private void appendHex(long value)
+    {
+        int shift = Math.max(0, (63 - Long.numberOfLeadingZeros(value)) & ~3);
+        for (;shift>=0;shift-=4)
+        {
+            sb.append(Character.forDigit((int) (value>>>shift) & 0xf, 16));
+        }
+    }
+    private void appendTime(long millis)
+    {
+        if (millis < validFrom || millis >= validTo)
+        {
+            updateZone(millis);
+        }
+        int ms = (int) (millis + offsetMillis - localDayStart);
+        sb.append(datePrefix);
+        append(ms/3600000, 2);
+        sb.append(':');
+        append(ms/60000%60, 2);
+        sb.append(':');
+        append(ms/1000%60, 2);
+        sb.append('.');
+        append(ms%1000, 3);
+    }
+    private void append(int value, int digits)
+    {
+        if (digits == 3 && value < 100)
+        {
+            sb.append('0');
+        }
+        if (value < 10)
+        {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+    /**
+     * Updates date prefix and time range where it and zone offset are valid.
+     * @param millis 
+     */
+    private void updateZone(long millis)
+    {
+        Instant instant = Instant.ofEpochMilli(millis);
+        ZoneRules rules = zone.getRules();
+        offsetMillis = rules.getOffset(instant).getTotalSeconds()*1000L;
+        localDayStart = Math.floorDiv(millis+offsetMillis, DAY)*DAY;
+        validFrom = localDayStart - offsetMillis;
+        validTo = validFrom + DAY;
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        if (next != null)
+        {
+            validTo = Math.min(validTo, next.toEpochSecond()*1000);
+        }
+        ZoneOffsetTransition prev = rules.previousTransition(instant);
+        if (prev != null)
+        {
+            validFrom = Math.max(validFrom, prev.toEpochSecond()*1000);
+        }
+        datePrefix = LocalDate.ofEpochDay(localDayStart/DAY).toString()+'T';
+    }
+    private void encode()
+    {
+        Charset cs = charset;
+        if (!encoder.charset().equals(cs))
+        {
+            encoder = newEncoder(cs);
+        }
+        int len = sb.length();
+        if (len > chars.length)
+        {
+            chars = new char[Math.max(len, chars.length*2)];
+            cb = CharBuffer.wrap(chars);
+        }
+        sb.getChars(0, len, chars, 0);
+        cb.clear();
+        cb.limit(len);
+        encoder.reset();
+        while (encoder.encode(cb, buffers[current], true).isOverflow())
+        {
+            nextBuffer();
+        }
+        while (encoder.flush(buffers[current]).isOverflow())
+        {
+            nextBuffer();
+        }
+    }
+    private void nextBuffer()
+    {
+        if (current+1 < buffers.length)
+        {
+            current++;
+        }
+        else
+        {
+            write();
+        }
+    }
+    private void write()
+    {
+        int count = current+1;
+        try
+        {
+            for (int ii=0;ii<count;ii++)
+            {
+                buffers[ii].flip();
+            }
+            if (gathering != null)
+            {
+                while (buffers[current].hasRemaining())
+                {
+                    bytes += gathering.write(buffers, 0, count);
+                    writes++;
+                }
+            }
+            else
+            {
+                for (int ii=0;ii<count;ii++)
+                {
+                    while (buffers[ii].hasRemaining())
+                    {
+                        bytes += channel.write(buffers[ii]);
+                        writes++;
+                    }
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            reportError("write failed", ex, ErrorManager.WRITE_FAILURE);
+        }
+        finally
+        {
+            for (int ii=0;ii<count;ii++)
+            {
+                buffers[ii].clear();
+            }
+            current = 0;
+        }
+    }
+    private static CharsetEncoder newEncoder(Charset charset)
+    {
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
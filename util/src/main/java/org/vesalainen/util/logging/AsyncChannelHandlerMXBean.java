@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util.logging;
+
+import org.vesalainen.util.logging.AsyncChannelHandler.OverflowPolicy;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public interface AsyncChannelHandlerMXBean
+{
+    int getCapacity();
+    /**
+     * Returns number of logs in ring.
+     * @return 
+     */
+    int getOccupancy();
+    /**
+     * Returns number of logs dropped by DROP policy.
+     * @return 
+     */
+    long getDrops();
+    /**
+     * Returns number of times callers waited for room in BLOCK policy.
+     * @return 
+     */
+    long getWaits();
+    /**
+     * Returns number of written logs.
+     * @return 
+     */
+    long getWritten();
+    /**
+     * Returns number of written bytes.
+     * @return 
+     */
+    long getBytes();
+    /**
+     * Returns number of channel writes.
+     * @return 
+     */
+    long getWrites();
+    OverflowPolicy getOverflowPolicy();
+}
@@ -51,7 +51,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(SEVERE))
         {
-            logIt(SEVERE, String.format(format, args));
+            logFormat(SEVERE, null, format, args);
         }
     }
     /**
@@ -112,7 +112,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(INFO))
         {
-            logIt(INFO, String.format(format, args));
+            logFormat(INFO, null, format, args);
         }
     }
     /**
@@ -137,7 +137,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(CONFIG))
         {
-            logIt(CONFIG, String.format(format, args));
+            logFormat(CONFIG, null, format, args);
         }
     }
     /**
@@ -162,7 +162,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(FINE))
         {
-            logIt(FINE, String.format(format, args));
+            logFormat(FINE, null, format, args);
         }
     }
     /**
@@ -187,7 +187,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(FINER))
         {
-            logIt(FINER, String.format(format, args));
+            logFormat(FINER, null, format, args);
         }
     }
     /**
@@ -212,7 +212,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(FINEST))
         {
-            logIt(FINEST, String.format(format, args));
+            logFormat(FINEST, null, format, args);
         }
     }
     /**
@@ -237,7 +237,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(VERBOSE))
         {
-            logIt(VERBOSE, String.format(format, args));
+            logFormat(VERBOSE, null, format, args);
         }
     }
     /**
@@ -262,7 +262,7 @@ public abstract class BaseLogging
     {
         if (isLoggable(DEBUG))
         {
-            logIt(DEBUG, String.format(format, args));
+            logFormat(DEBUG, null, format, args);
         }
     }
     /**
@@ -290,7 +290,7 @@ public abstract class BaseLogging
         {
             if (format != null)
             {
-                logIt(level, String.format(format, args));
+                logFormat(level, null, format, args);
             }
             else
             {
@@ -344,7 +344,7 @@ public abstract class BaseLogging
         {
             if (format != null)
             {
-                logIt(level, String.format(format, args), thrown);
+                logFormat(level, thrown, format, args);
             }
             else
             {
@@ -352,6 +352,25 @@ public abstract class BaseLogging
             }
         }
     }
+    /**
+     * Formats and writes to log. Subclasses can override this to defer 
+     * formatting.
+     * @param level
+     * @param thrown Can be null
+     * @param format
+     * @param args 
+     */
+    protected void logFormat(Level level, Throwable thrown, String format, Object[] args)
+    {
+        if (thrown == null)
+        {
+            logIt(level, String.format(format, args));
+        }
+        else
+        {
+            logIt(level, String.format(format, args), thrown);
+        }
+    }
     public abstract List<String> getLoggerNames();
     public abstract boolean isLoggable(Level level);
     protected abstract void logIt(Level level, Supplier<String> msgSupplier);
@@ -64,6 +64,7 @@ public class JavaLogging extends BaseLogging
     private static Supplier<Clock> clockSupplier = () -> {return Clock.systemDefaultZone();};
 
     private Logger logger;
+    private AsyncChannelHandler asyncHandler;
 
     public JavaLogging()
     {
@@ -162,6 +163,42 @@ public class JavaLogging extends BaseLogging
     {
         logger.log(level, msg, thrown);
     }
+    /**
+     * Passes unformatted log to async handler if set.
+     * @param level
+     * @param thrown
+     * @param format
+     * @param args 
+     */
+    @Override
+    protected void logFormat(Level level, Throwable thrown, String format, Object[] args)
+    {
+        AsyncChannelHandler handler = asyncHandler;
+        if (handler != null)
+        {
+            handler.publish(level, thrown, format, args);
+        }
+        else
+        {
+            super.logFormat(level, thrown, format, args);
+        }
+    }
+    /**
+     * Sets handler which gets format string and arguments directly. Formatting
+     * is done in handlers thread. Loggers handlers and filter are bypassed
+     * for these logs. Warnings are still formatted by caller because of 
+     * repeat suppression.
+     * @param asyncHandler Handler or null to restore normal logging.
+     */
+    public void setAsyncHandler(AsyncChannelHandler asyncHandler)
+    {
+        this.asyncHandler = asyncHandler;
+    }
+
+    public AsyncChannelHandler getAsyncHandler()
+    {
+        return asyncHandler;
+    }
 
     public static void setClockSupplier(Supplier<Clock> clockSupplier)
     {
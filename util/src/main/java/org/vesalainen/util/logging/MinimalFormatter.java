@@ -22,6 +22,7 @@ import java.time.Clock;
 import java.time.ZoneOffset;
 import java.util.function.Supplier;
 import java.util.logging.Formatter;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
 /**
@@ -50,41 +51,7 @@ public class MinimalFormatter extends Formatter
     @Override
     public String format(LogRecord record)
     {
-        String levelId;
-        switch (record.getLevel().getName())
-        {
-            case "SEVERE":
-                levelId = "SE";
-                break;
-            case "WARNING":
-                levelId = "WA";
-                break;
-            case "INFO":
-                levelId = "IN";
-                break;
-            case "CONFIG":
-                levelId = "CO";
-                break;
-            case "FINE":
-                levelId = "F1";
-                break;
-            case "FINER":
-                levelId = "F2";
-                break;
-            case "FINEST":
-                levelId = "F3";
-                break;
-            case "VERBOSE":
-                levelId = "VE";
-                break;
-            case "DEBUG":
-                levelId = "DE";
-                break;
-            default:
-                levelId = "LEVEL("+record.getLevel().intValue()+")";
-                break;
-                
-        }
+        String levelId = levelId(record.getLevel());
         int threadID = record.getThreadID();
         Throwable thrown = record.getThrown();
         if (thrown == null)
@@ -112,6 +79,38 @@ public class MinimalFormatter extends Formatter
         }
     }
     
+    /**
+     * Returns two character level id.
+     * @param level
+     * @return 
+     */
+    static String levelId(Level level)
+    {
+        switch (level.getName())
+        {
+            case "SEVERE":
+                return "SE";
+            case "WARNING":
+                return "WA";
+            case "INFO":
+                return "IN";
+            case "CONFIG":
+                return "CO";
+            case "FINE":
+                return "F1";
+            case "FINER":
+                return "F2";
+            case "FINEST":
+                return "F3";
+            case "VERBOSE":
+                return "VE";
+            case "DEBUG":
+                return "DE";
+            default:
+                return "LEVEL("+level.intValue()+")";
+        }
+    }
+    
     private long getMillis(LogRecord record)
     {
         if (clockFactory != null)
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@PropertyStoreAccessorClass
+public class APS3 extends AnnotatedPropertyStore
+{
+    enum E {A1, B2, C3 }; 
+    @Property(value = "enum", ordinal = 0)
+    protected E e;
+    @Property(value = "string", ordinal = 1, aliases = {"str"})
+    protected String s;
+    @Property(ordinal = 2)
+    protected boolean b;
+    @Property(ordinal = 3)
+    protected char cc;
+    @Property(value = "double", ordinal = 4)
+    protected double db;
+    @Property(ordinal = 5)
+    protected float foo;
+    protected int i;
+
+    public APS3()
+    {
+        super(MethodHandles.lookup());
+    }
+
+    public APS3(AnnotatedPropertyStore aps)
+    {
+        super(aps);
+    }
+
+    @Property(ordinal = 6)
+    public void setGoo(int i)
+    {
+        this.i = i;
+    }
+
+    @Property(ordinal = 6)
+    public int getGoo()
+    {
+        return i;
+    }
+
+}
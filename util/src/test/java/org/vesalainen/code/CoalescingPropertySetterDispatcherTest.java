@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CoalescingPropertySetterDispatcherTest
+{
+    
+    public CoalescingPropertySetterDispatcherTest()
+    {
+    }
+
+    @Test
+    public void testFlush()
+    {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            CoalescingPropertySetterDispatcher cpsd = new CoalescingPropertySetterDispatcher(executor, 0, TimeUnit.MILLISECONDS);
+            List<String> list = new ArrayList<>();
+            cpsd.addObserver("lat", new PropertySetter()
+            {
+                @Override
+                public void set(String property, double arg)
+                {
+                    list.add(property+"="+arg);
+                }
+            });
+            cpsd.addObserver("name", new PropertySetter()
+            {
+                @Override
+                public void set(String property, Object arg)
+                {
+                    list.add(property+"="+arg);
+                }
+            });
+            for (int ii=0;ii<100;ii++)
+            {
+                cpsd.set("lat", (double)ii);
+                cpsd.set("lon", (double)ii);
+            }
+            cpsd.set("name", (Object)"foo");
+            cpsd.set("name", (Object)"bar");
+            cpsd.flush();
+            assertEquals("[lat=99.0, name=bar]", list.toString());
+            assertEquals(102, cpsd.getSets());
+            assertEquals(2, cpsd.getDelivered());
+            list.clear();
+            cpsd.flush();
+            assertTrue(list.isEmpty());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    @Test
+    public void testCapacity()
+    {
+        CoalescingPropertySetterDispatcher cpsd = new CoalescingPropertySetterDispatcher(1, null, 0, TimeUnit.MILLISECONDS);
+        PropertySetter ps = new PropertySetter()
+        {
+            @Override
+            public void set(String property, double arg)
+            {
+            }
+        };
+        cpsd.addObserver("lat", ps);
+        try
+        {
+            cpsd.addObserver("lon", ps);
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+        }
+        assertEquals(-1, cpsd.getRegistry().getId("lon"));
+        assertEquals(1, cpsd.getRegistry().size());
+        cpsd.addObserver("lat", ps);
+    }
+    @Test
+    public void testCommit() throws InterruptedException
+    {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            CoalescingPropertySetterDispatcher cpsd = new CoalescingPropertySetterDispatcher(executor, 0, TimeUnit.MILLISECONDS);
+            CountDownLatch latch = new CountDownLatch(1);
+            int[] value = new int[1];
+            cpsd.addObserver("cnt", new PropertySetter()
+            {
+                @Override
+                public void set(String property, int arg)
+                {
+                    value[0] = arg;
+                    latch.countDown();
+                }
+            });
+            for (int ii=1;ii<=1000;ii++)
+            {
+                cpsd.set("cnt", ii);
+            }
+            cpsd.commit("test");
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(1000, value[0]);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    @Test
+    public void testPeriodic() throws InterruptedException
+    {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            CoalescingPropertySetterDispatcher cpsd = new CoalescingPropertySetterDispatcher(executor, 10, TimeUnit.MILLISECONDS);
+            CountDownLatch latch = new CountDownLatch(2);
+            cpsd.addObserver("b", new PropertySetter()
+            {
+                @Override
+                public void set(String property, boolean arg)
+                {
+                    latch.countDown();
+                }
+            });
+            cpsd.start();
+            cpsd.set("b", true);
+            Thread.sleep(100);
+            cpsd.set("b", false);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            cpsd.stop();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.vesalainen.code.APS.E.C3;
+import org.vesalainen.math.sliding.TimeoutStatsService;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class IntPropertySetterTest
+{
+    private double last;
+    
+    public IntPropertySetterTest()
+    {
+    }
+
+    @Test
+    public void testRegistry()
+    {
+        PropertyRegistry registry = new PropertyRegistry();
+        for (int ii=0;ii<100;ii++)
+        {
+            assertEquals(ii, registry.register("p"+ii));
+        }
+        assertEquals(100, registry.size());
+        assertEquals(42, registry.register("p42"));
+        assertEquals(42, registry.getId("p42"));
+        assertEquals(-1, registry.getId("x"));
+        assertEquals("p99", registry.getName(99));
+    }
+    @Test
+    public void testStore()
+    {
+        PropertyRegistry registry = new PropertyRegistry();
+        APS aps = new APS();
+        IntPropertySetter ips = aps.getIntPropertySetter(registry);
+        ips.set(registry.getId("double"), 1.5);
+        assertEquals(1.5, aps.getDouble("double"), 1e-10);
+        ips.set(registry.getId("goo"), 123);
+        assertEquals(123, aps.getInt("goo"));
+        ips.set(registry.getId("enum"), C3);
+        assertEquals(C3, aps.getObject("enum"));
+        ips.set(registry.getId("bar"), 2.5F);
+        assertEquals(2.5F, aps.getFloat("bar"), 1e-10);
+        try
+        {
+            ips.set(registry.getId("goo"), 2000);
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+        try
+        {
+            ips.set(registry.register("unknown"), 1.0);
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+    }
+    @Test
+    public void testDispatcher()
+    {
+        PropertyRegistry registry = new PropertyRegistry();
+        SimplePropertySetterDispatcher dispatcher = new SimplePropertySetterDispatcher(registry);
+        APS aps = new APS();
+        dispatcher.addObserver("double", aps);
+        TimeoutStatsService service = new TimeoutStatsService(dispatcher);
+        service.addObserver("double:10", (ts)->last = ts.last());
+        int id = registry.getId("double");
+        dispatcher.set(id, 3.5);
+        assertEquals(3.5, aps.getDouble("double"), 1e-10);
+        assertEquals(3.5, last, 1e-10);
+        dispatcher.set(registry.register("nobody"), 1.0);
+        PropertySetter ps = new PropertySetter()
+        {
+            @Override
+            public void set(String property, double arg)
+            {
+                last = -arg;
+            }
+        };
+        dispatcher.addObserver("other", ps);
+        dispatcher.set(registry.getId("other"), 4.5);
+        assertEquals(-4.5, last, 1e-10);
+        dispatcher.removeObserver("other", ps);
+        dispatcher.set(registry.getId("other"), 5.5);
+        assertEquals(-4.5, last, 1e-10);
+        assertSame(dispatcher, dispatcher.getIntPropertySetter(registry));
+    }
+    
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.code.PropertyBuffer.OverflowPolicy;
+import org.vesalainen.code.PropertyBuffer.WaitStrategy;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class PropertyBufferTest
+{
+    private static final int PRODUCERS = 4;
+    private static final int COUNT = 5000;
+    
+    public PropertyBufferTest()
+    {
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException
+    {
+        for (WaitStrategy ws : WaitStrategy.values())
+        {
+            CountDownLatch latch = new CountDownLatch(PRODUCERS*COUNT);
+            int[] last = new int[PRODUCERS];
+            boolean[] order = new boolean[]{true};
+            PropertySetter observer = new PropertySetter()
+            {
+                @Override
+                public void set(String property, int arg)
+                {
+                    int p = property.charAt(1)-'0';
+                    if (arg != last[p]+1)
+                    {
+                        order[0] = false;
+                    }
+                    last[p] = arg;
+                    latch.countDown();
+                }
+            };
+            PropertyBuffer buffer = new PropertyBuffer(observer, 64, OverflowPolicy.BLOCK, ws);
+            buffer.start();
+            try
+            {
+                for (int ii=0;ii<PRODUCERS;ii++)
+                {
+                    String property = "p"+ii;
+                    new Thread(()->
+                    {
+                        for (int jj=1;jj<=COUNT;jj++)
+                        {
+                            buffer.set(property, jj);
+                        }
+                    }).start();
+                }
+                assertTrue(ws.toString(), latch.await(30, TimeUnit.SECONDS));
+                assertTrue(ws.toString(), order[0]);
+                assertEquals(0, buffer.getOccupancy());
+                assertTrue(buffer.getMaxOccupancy() <= 64);
+            }
+            finally
+            {
+                buffer.stop();
+            }
+        }
+    }
+    @Test
+    public void testTypes() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(3);
+        Map<String,Object> map = new HashMap<>();
+        PropertySetter observer = new PropertySetter()
+        {
+            @Override
+            public void set(String property, double arg)
+            {
+                map.put(property, arg);
+                latch.countDown();
+            }
+            @Override
+            public void set(String property, float arg)
+            {
+                map.put(property, arg);
+                latch.countDown();
+            }
+            @Override
+            public void set(String property, Object arg)
+            {
+                map.put(property, arg);
+                latch.countDown();
+            }
+        };
+        PropertyBuffer buffer = new PropertyBuffer(observer, 8);
+        buffer.set("d", -1.25);
+        buffer.set("f", 3.5F);
+        buffer.set("o", (Object)"str");
+        buffer.start();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(-1.25, map.get("d"));
+        assertEquals(3.5F, map.get("f"));
+        assertEquals("str", map.get("o"));
+        buffer.stop();
+    }
+    @Test
+    public void testOverflow() throws InterruptedException
+    {
+        PropertyBuffer fail = new PropertyBuffer(new PropertySetter(){}, 2);
+        fail.set("a", 1);
+        fail.set("a", 2);
+        try
+        {
+            fail.set("a", 3);
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+        }
+        CountDownLatch latch1 = new CountDownLatch(4);
+        StringBuilder sb = new StringBuilder();
+        PropertySetter observer = new PropertySetter()
+        {
+            @Override
+            public void set(String property, int arg)
+            {
+                sb.append(property).append(arg);
+                latch1.countDown();
+            }
+        };
+        PropertyBuffer drop = new PropertyBuffer(observer, 4, OverflowPolicy.DROP_OLDEST, WaitStrategy.PARK);
+        for (int ii=0;ii<10;ii++)
+        {
+            drop.set("a", ii);
+        }
+        assertEquals(6, drop.getDrops());
+        assertEquals(4, drop.getOccupancy());
+        drop.start();
+        assertTrue(latch1.await(5, TimeUnit.SECONDS));
+        assertEquals("a6a7a8a9", sb.toString());
+        drop.stop();
+        
+        CountDownLatch latch2 = new CountDownLatch(4);
+        Map<String,Integer> map = new HashMap<>();
+        PropertyBuffer coalesce = new PropertyBuffer(new PropertySetter()
+        {
+            @Override
+            public void set(String property, int arg)
+            {
+                map.put(property, arg);
+                latch2.countDown();
+            }
+        }, 2, OverflowPolicy.COALESCE, WaitStrategy.YIELD);
+        coalesce.set("a", 1);
+        coalesce.set("b", 2);
+        coalesce.set("c", 3);
+        coalesce.set("c", 4);
+        coalesce.set("a", 5);
+        assertEquals(1, coalesce.getCoalesced());
+        coalesce.start();
+        assertTrue(latch2.await(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(5), map.get("a"));
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertEquals(Integer.valueOf(4), map.get("c"));
+        coalesce.stop();
+        
+        CountDownLatch latch3 = new CountDownLatch(1);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String,Integer> last = new HashMap<>();
+        PropertyBuffer order = new PropertyBuffer(new PropertySetter()
+        {
+            @Override
+            public void set(String property, int arg)
+            {
+                if (entered.getCount() > 0)
+                {
+                    entered.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                    }
+                }
+                last.put(property, arg);
+                if (arg == -1)
+                {
+                    latch3.countDown();
+                }
+            }
+        }, 2, OverflowPolicy.COALESCE, WaitStrategy.YIELD);
+        order.set("b", 0);
+        order.set("b", 0);
+        order.set("a", 1);  // overflows to pending
+        order.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        order.set("a", 2);  // ring has room but pending is not empty
+        order.set("end", -1);
+        release.countDown();
+        assertTrue(latch3.await(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), last.get("a"));
+        order.stop();
+    }
+    
+}
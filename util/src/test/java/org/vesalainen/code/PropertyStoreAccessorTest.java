@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.code;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class PropertyStoreAccessorTest
+{
+    
+    public PropertyStoreAccessorTest()
+    {
+    }
+
+    @Test
+    public void testAccessor()
+    {
+        APS3Accessor accessor = new APS3Accessor();
+        assertEquals(0, accessor.getId("enum"));
+        assertEquals(1, accessor.getId("string"));
+        assertEquals(1, accessor.getId("str"));
+        assertEquals(6, accessor.getId("goo"));
+        assertEquals(-1, accessor.getId("i"));
+        APS3 aps = new APS3();
+        accessor.set(aps, 4, 1.5);
+        assertEquals(1.5, aps.db, 1e-10);
+        accessor.set(aps, 6, (Object)123);
+        assertEquals(123, accessor.getInt(aps, 6));
+        try
+        {
+            accessor.set(aps, 4, 1);
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+    }
+    @Test
+    public void testStore()
+    {
+        APS3 aps = new APS3();
+        aps.set("enum", APS3.E.B2);
+        aps.set("str", "foo");
+        aps.set("b", true);
+        aps.set("cc", 'x');
+        aps.set("double", 2.5);
+        aps.set("foo", 1.25F);
+        aps.set("goo", 42);
+        assertEquals(APS3.E.B2, aps.getObject("enum"));
+        assertEquals("foo", aps.getObject("string"));
+        assertTrue(aps.getBoolean("b"));
+        assertEquals('x', aps.getChar("cc"));
+        assertEquals(2.5, aps.getDouble("double"), 1e-10);
+        assertEquals(1.25F, aps.getFloat("foo"), 1e-10);
+        assertEquals(42, aps.getInt("goo"));
+        assertEquals(Double.valueOf(2.5), aps.getObject("double"));
+        APS3 copy = new APS3(aps);
+        assertEquals(aps, copy);
+        try
+        {
+            aps.set("missing", 1);
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+    }
+    
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class BlockCompressedOutputTest
+{
+    static final double Epsilon = 1e-10;
+    private static final int COUNT = 10000;
+
+    public BlockCompressedOutputTest()
+    {
+    }
+
+    @Test
+    public void testReadAll() throws IOException
+    {
+        Path path = Files.createTempFile("block", ".cpr");
+        try
+        {
+            write(path, true);
+            try (BlockCompressedInput ci = new BlockCompressedInput(path, "test"))
+            {
+                assertEquals(COUNT, ci.getRecordCount());
+                assertEquals(1000, ci.getStartTime());
+                assertEquals(1000+(COUNT-1)*100, ci.getEndTime());
+                assertEquals("time", ci.getTimeProperty());
+                Random random = new Random(123456L);
+                double lat = 60;
+                float speed = 5;
+                int cnt = 0;
+                while (ci.next())
+                {
+                    lat += random.nextGaussian()*1e-5;
+                    speed += random.nextFloat();
+                    assertEquals(1000+cnt*100, ci.getLong("time"));
+                    assertEquals(lat, ci.getDouble("latitude"), Epsilon);
+                    assertEquals(speed, ci.getFloat("speed"), Epsilon);
+                    assertEquals(cnt/10, ci.getInt("depth"));
+                    assertEquals(cnt%3==0, ci.getBoolean("anchored"));
+                    assertEquals((short)-cnt, ci.getShort("temp"));
+                    cnt++;
+                }
+                assertEquals(COUNT, cnt);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testSeek() throws IOException
+    {
+        Path path = Files.createTempFile("block", ".cpr");
+        try
+        {
+            write(path, true);
+            try (BlockCompressedInput ci = new BlockCompressedInput(path))
+            {
+                ci.setNeeded(Arrays.asList("depth"));
+                ci.seek(1000+5555*100-50);
+                assertTrue(ci.next());
+                assertEquals(1000+5555*100, ci.getTime());
+                assertEquals(555, ci.getInt("depth"));
+                assertTrue(ci.getModified().contains("depth"));
+                ci.seek(1000+5555*100);
+                ci.setNeeded(Arrays.asList("temp"));
+                assertTrue(ci.next());
+                assertEquals(1000+5555*100, ci.getTime());
+                assertEquals(-5555, ci.getShort("temp"));
+                assertTrue(ci.getModified().contains("temp"));
+                assertTrue(ci.next());
+                assertEquals(-5556, ci.getShort("temp"));
+                ci.seek(0);
+                assertTrue(ci.next());
+                assertEquals(1000, ci.getTime());
+                ci.seek(Long.MAX_VALUE);
+                assertFalse(ci.next());
+                ci.rewind();
+                assertTrue(ci.next());
+                assertEquals(1000, ci.getTime());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testNotClosed() throws IOException
+    {
+        Path path = Files.createTempFile("block", ".cpr");
+        try
+        {
+            BlockCompressedOutput co = write(path, false);
+            try (BlockCompressedInput ci = new BlockCompressedInput(path))
+            {
+                assertEquals(COUNT, ci.getRecordCount());
+                ci.seek(1000+(COUNT-1)*100);
+                assertTrue(ci.next());
+                assertEquals(-(COUNT-1), ci.getShort("temp"));
+            }
+            co.close();
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testCloseBeforeReady() throws IOException
+    {
+        Path path = Files.createTempFile("block", ".cpr");
+        try
+        {
+            BlockCompressedOutput co = new BlockCompressedOutput(path, "test", "time");
+            co.addLong("time");
+            co.close();
+            assertEquals(0, Files.size(path));
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    private BlockCompressedOutput write(Path path, boolean close) throws IOException
+    {
+        BlockCompressedOutput co = new BlockCompressedOutput(IO.buffer(Files.newOutputStream(path)), "test", "time", 1000, true);
+        co.addLong("time");
+        co.addDouble("latitude");
+        co.addFloat("speed");
+        co.addInt("depth");
+        co.addBoolean("anchored");
+        co.add("temp", "short", true);
+        co.ready();
+        assertFalse(co.hasData());
+        Random random = new Random(123456L);
+        double lat = 60;
+        float speed = 5;
+        for (int ii=0;ii<COUNT;ii++)
+        {
+            lat += random.nextGaussian()*1e-5;
+            speed += random.nextFloat();
+            co.setLong("time", 1000+ii*100);
+            co.setDouble("latitude", lat);
+            co.setFloat("speed", speed);
+            co.setInt("depth", ii/10);
+            co.setBoolean("anchored", ii%3==0);
+            co.setShort("temp", (short)-ii);
+            assertTrue(co.write() > 0);
+        }
+        assertTrue(co.hasData());
+        if (close)
+        {
+            co.close();
+        }
+        else
+        {
+            co.flush();
+        }
+        return co;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class ConcurrentTimeoutSlidingStatsTest
+{
+    private static final double Epsilon = 1e-8;
+    private long time;
+    
+    public ConcurrentTimeoutSlidingStatsTest()
+    {
+    }
+
+    @Test
+    public void testCompare()
+    {
+        Random random = new Random(123456L);
+        DoubleTimeoutSlidingStats exp = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+        DoubleTimeoutSlidingSlope slope = new DoubleTimeoutSlidingSlope(()->time, 4, 1000, (l)->l);
+        ConcurrentTimeoutSlidingStats got = new ConcurrentTimeoutSlidingStats(()->time, 4, 1000);
+        ConcurrentTimeoutSlidingStats.Snapshot snapshot = new ConcurrentTimeoutSlidingStats.Snapshot();
+        for (int ii=0;ii<2000;ii++)
+        {
+            time += random.nextInt(50);
+            double v = random.nextGaussian();
+            exp.accept(v, time);
+            slope.accept(v, time);
+            got.accept(v, time);
+            assertEquals(exp.count(), got.count());
+            assertEquals(exp.fast(), got.fast(), Epsilon);
+            assertEquals(exp.getMin(), got.getMin(), 0);
+            assertEquals(exp.getMax(), got.getMax(), 0);
+            assertEquals(exp.last(), got.last(), 0);
+            assertEquals(exp.firstTime(), got.firstTime());
+            assertEquals(exp.lastTime(), got.lastTime());
+            DoubleStream.Builder values = DoubleStream.builder();
+            LongStream.Builder times = LongStream.builder();
+            exp.forEach((tt, vv)->{times.add(tt); values.add(vv);});
+            assertArrayEquals(values.build().toArray(), got.stream().toArray(), 0);
+            assertArrayEquals(times.build().toArray(), got.timeStream().toArray());
+            got.snapshot(snapshot);
+            assertEquals(exp.count(), snapshot.getCount());
+            assertEquals(exp.fast(), snapshot.getAverage(), Epsilon);
+            assertEquals(exp.getMin(), snapshot.getMin(), 0);
+            assertEquals(exp.getMax(), snapshot.getMax(), 0);
+            if (exp.count() > 2 && exp.lastTime() != exp.firstTime())
+            {
+                assertEquals(slope.slope(), got.slope(), Epsilon);
+                assertEquals(slope.slope(), snapshot.getSlope(), Epsilon);
+            }
+            if (exp.count() > 1)
+            {
+                assertEquals(exp.previous(), got.previous(), 0);
+                assertEquals(exp.previousTime(), got.previousTime());
+            }
+        }
+    }
+    @Test
+    public void testConcurrent() throws InterruptedException
+    {
+        ConcurrentTimeoutSlidingStats stats = new ConcurrentTimeoutSlidingStats(()->time, 2, 100);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int ii=0;ii<readers.length;ii++)
+        {
+            readers[ii] = new Thread(()->
+            {
+                ConcurrentTimeoutSlidingStats.Snapshot s = new ConcurrentTimeoutSlidingStats.Snapshot();
+                try
+                {
+                    while (!Thread.currentThread().isInterrupted())
+                    {
+                        stats.snapshot(s);
+                        if (s.getCount() > 0)
+                        {
+                            assertTrue(s.getMin() <= s.getAverage()+Epsilon);
+                            assertTrue(s.getAverage() <= s.getMax()+Epsilon);
+                            assertTrue(s.getFirstTime() <= s.getLastTime());
+                        }
+                    }
+                }
+                catch (Throwable ex)
+                {
+                    failure.set(ex);
+                }
+            });
+            readers[ii].start();
+        }
+        Random random = new Random(123456L);
+        for (int ii=0;ii<200000;ii++)
+        {
+            time++;
+            stats.accept(random.nextDouble(), time);
+        }
+        for (Thread t : readers)
+        {
+            t.interrupt();
+            t.join();
+        }
+        assertNull(failure.get());
+        assertEquals(101, stats.count());
+    }
+    @Test
+    public void testTimePrecision()
+    {
+        long t0 = (1L<<60)+1;
+        ConcurrentTimeoutSlidingStats stats = new ConcurrentTimeoutSlidingStats(()->t0, 4, 1000);
+        stats.accept(1, t0);
+        stats.accept(2, t0+1);
+        assertEquals(t0, stats.firstTime());
+        assertEquals(t0, stats.previousTime());
+        assertEquals(t0+1, stats.lastTime());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DoubleTimeoutSlidingExtremesTest
+{
+    private static final double Epsilon = 1e-8;
+    private long time;
+    
+    public DoubleTimeoutSlidingExtremesTest()
+    {
+    }
+
+    @Test
+    public void testCompare()
+    {
+        Random random = new Random(123456L);
+        DoubleTimeoutSlidingStats exp = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+        DoubleTimeoutSlidingExtremes got = new DoubleTimeoutSlidingExtremes(()->time, 4, 1000);
+        assertTrue(Double.isNaN(got.getMin()));
+        for (int ii=0;ii<5000;ii++)
+        {
+            time += random.nextInt(ii < 2500 ? 10 : 100);
+            double v = random.nextInt(20);
+            exp.accept(v, time);
+            got.accept(v, time);
+            assertEquals(exp.count(), got.count());
+            assertEquals(exp.fast(), got.fast(), Epsilon);
+            assertEquals(exp.getMin(), got.getMin(), 0);
+            assertEquals(exp.getMax(), got.getMax(), 0);
+            assertEquals(exp.last(), got.last(), 0);
+            assertEquals(exp.firstTime(), got.firstTime());
+            assertEquals(exp.lastTime(), got.lastTime());
+        }
+    }
+    @Test
+    public void testBulk()
+    {
+        Random random = new Random(123456L);
+        DoubleTimeoutSlidingExtremes exp = new DoubleTimeoutSlidingExtremes(()->time, 4, 1000);
+        DoubleTimeoutSlidingExtremes got = new DoubleTimeoutSlidingExtremes(()->time, 4, 1000);
+        double[] values = new double[37];
+        long[] times = new long[37];
+        for (int ii=0;ii<100;ii++)
+        {
+            for (int jj=0;jj<values.length;jj++)
+            {
+                time += random.nextInt(20);
+                values[jj] = random.nextGaussian();
+                times[jj] = time;
+                exp.accept(values[jj], time);
+            }
+            got.accept(values, times);
+            assertEquals(exp.count(), got.count());
+            assertEquals(exp.fast(), got.fast(), Epsilon);
+            assertEquals(exp.getMin(), got.getMin(), 0);
+            assertEquals(exp.getMax(), got.getMax(), 0);
+            assertArrayEquals(exp.toArray(), got.toArray(), 0);
+            assertArrayEquals(exp.toTimeArray(), got.toTimeArray());
+        }
+    }
+    @Test
+    public void testTimePrecision()
+    {
+        long t0 = (1L<<60)+1;
+        DoubleTimeoutSlidingExtremes stats = new DoubleTimeoutSlidingExtremes(()->t0, 4, 1000);
+        stats.accept(1, t0);
+        stats.accept(2, t0+1);
+        assertEquals(t0, stats.firstTime());
+        assertEquals(t0, stats.previousTime());
+        assertEquals(t0+1, stats.lastTime());
+    }
+}
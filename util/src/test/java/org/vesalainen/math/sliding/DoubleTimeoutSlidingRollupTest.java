@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DoubleTimeoutSlidingRollupTest
+{
+    private static final double Epsilon = 1e-8;
+    private long time;
+    
+    public DoubleTimeoutSlidingRollupTest()
+    {
+    }
+
+    @Test
+    public void testCompare()
+    {
+        DoubleTimeoutSlidingRollup rollup = new DoubleTimeoutSlidingRollup(()->time, 10000, 1000, 500);
+        int n = 200;
+        double[] values = new double[n];
+        long[] times = new long[n];
+        for (int ii=0;ii<n;ii++)
+        {
+            time = 50+100*ii;
+            values[ii] = Math.sin(ii/7.0)*10+ii%13;
+            times[ii] = time;
+            rollup.accept(values[ii]);
+        }
+        time = 20000;
+        assertTrue(rollup.getRawCount() <= 11);
+        for (long window=500;window<=10000;window+=500)
+        {
+            long limit = time-window;
+            int count = 0;
+            double sum = 0;
+            double sumSq = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int ii=0;ii<n;ii++)
+            {
+                if (times[ii] > limit)
+                {
+                    double v = values[ii];
+                    count++;
+                    sum += v;
+                    sumSq += v*v;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+            double mean = sum/count;
+            assertEquals(count, rollup.count(window));
+            assertEquals(mean, rollup.average(window), Epsilon);
+            assertEquals(min, rollup.getMin(window), Epsilon);
+            assertEquals(max, rollup.getMax(window), Epsilon);
+            assertEquals(Math.sqrt(sumSq/count-mean*mean), rollup.standardDeviation(window), Epsilon);
+        }
+        assertEquals(100, rollup.count());
+    }
+    @Test
+    public void testAngle()
+    {
+        DoubleTimeoutSlidingRollup rollup = new DoubleTimeoutSlidingRollup(()->time, 10000, 1000, 1000);
+        for (int ii=0;ii<100;ii++)
+        {
+            time = 100*ii;
+            rollup.accept(ii % 2 == 0 ? 350 : 20);
+        }
+        assertEquals(5, rollup.angleAverage(5000), Epsilon);
+        assertEquals(350, rollup.getMax(5000), Epsilon);
+        rollup.clear();
+        assertEquals(0, rollup.count());
+    }
+    
+}
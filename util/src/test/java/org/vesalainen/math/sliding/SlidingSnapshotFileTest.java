@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class SlidingSnapshotFileTest
+{
+    private static final double Epsilon = 1e-10;
+    private long time = 100000;
+    
+    public SlidingSnapshotFileTest()
+    {
+    }
+
+    @Test
+    public void testRestore() throws IOException
+    {
+        Path path = Files.createTempFile("sliding", ".snap");
+        try
+        {
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 4, 8))
+            {
+                DoubleTimeoutSlidingStats stats = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+                ConcurrentTimeoutSlidingStats conc = new ConcurrentTimeoutSlidingStats(()->time, 4, 1000);
+                assertTrue(file.register("stats", stats));
+                assertTrue(file.register("conc", conc));
+                for (int ii=0;ii<5;ii++)
+                {
+                    stats.accept(ii, time);
+                    conc.accept(ii, time);
+                    time += 100;
+                }
+                file.snapshot();
+                for (int ii=5;ii<20;ii++)
+                {
+                    stats.accept(ii, time);
+                    conc.accept(ii, time);
+                    time += 100;
+                }
+            }
+            time += 400;
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 4, 8))
+            {
+                DoubleTimeoutSlidingStats stats = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+                ConcurrentTimeoutSlidingStats conc = new ConcurrentTimeoutSlidingStats(()->time, 4, 1000);
+                assertTrue(file.register("stats", stats));
+                assertTrue(file.register("conc", conc));
+                // capacity keeps 12..19, timeout drops 12 and 13
+                assertEquals(6, stats.count());
+                assertEquals(14, stats.getMin(), Epsilon);
+                assertEquals(19, stats.getMax(), Epsilon);
+                assertEquals(16.5, stats.fast(), Epsilon);
+                assertEquals(6, conc.count());
+                assertEquals(14, conc.getMin(), Epsilon);
+                assertEquals(time-500, conc.lastTime());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testSlots() throws IOException
+    {
+        Path path = Files.createTempFile("sliding", ".snap");
+        try
+        {
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 2, 8))
+            {
+                TimeoutSlidingAngleStats angle = new TimeoutSlidingAngleStats(()->time, 4, 1000);
+                assertTrue(file.register("angle", angle));
+                assertTrue(file.register("b", new DoubleTimeoutSlidingExtremes(()->time, 4, 1000)));
+                assertFalse(file.register("c", new DoubleTimeoutSlidingExtremes(()->time, 4, 1000)));
+                angle.accept(350, time);
+                angle.accept(10, time+1);
+                file.unregister("b");
+                assertTrue(file.register("c", new DoubleTimeoutSlidingExtremes(()->time, 4, 1000)));
+            }
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 2, 8))
+            {
+                TimeoutSlidingAngleStats angle = new TimeoutSlidingAngleStats(()->time, 4, 1000);
+                assertTrue(file.register("angle", angle));
+                assertEquals(2, angle.count());
+                assertEquals(350, angle.getMin(), 1e-8);
+                assertEquals(10, angle.getMax(), 1e-8);
+                assertEquals(time+1, angle.lastTime());
+            }
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 2, 16))
+            {
+                TimeoutSlidingAngleStats angle = new TimeoutSlidingAngleStats(()->time, 4, 1000);
+                assertTrue(file.register("angle", angle));
+                assertEquals(0, angle.count());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testSameTime() throws IOException
+    {
+        Path path = Files.createTempFile("sliding", ".snap");
+        try
+        {
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 1, 16))
+            {
+                DoubleTimeoutSlidingStats stats = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+                assertTrue(file.register("stats", stats));
+                stats.accept(1, time);
+                stats.accept(2, time);
+                file.snapshot();
+                stats.accept(3, time);
+                stats.accept(4, time);
+                file.snapshot();
+                file.snapshot();
+                stats.accept(5, time+1);
+            }
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 1, 16))
+            {
+                DoubleTimeoutSlidingStats stats = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+                assertTrue(file.register("stats", stats));
+                assertEquals(5, stats.count());
+                assertEquals(3, stats.fast(), Epsilon);
+                stats.accept(6, time+1);
+            }
+            try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 1, 16))
+            {
+                DoubleTimeoutSlidingStats stats = new DoubleTimeoutSlidingStats(()->time, 4, 1000);
+                assertTrue(file.register("stats", stats));
+                assertEquals(6, stats.count());
+                assertEquals(3.5, stats.fast(), Epsilon);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test(expected=IllegalArgumentException.class)
+    public void testKeyLength() throws IOException
+    {
+        Path path = Files.createTempFile("sliding", ".snap");
+        try (SlidingSnapshotFile file = new SlidingSnapshotFile(()->time, path, 1, 16))
+        {
+            String key = "12345678901234567890123456789012345678901234567890123456789012345";
+            assertFalse(SlidingSnapshotFile.isValidKey(key));
+            assertTrue(SlidingSnapshotFile.isValidKey(key.substring(1)));
+            file.register(key, new DoubleTimeoutSlidingStats(()->time, 4, 1000));
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.math.sliding;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.code.SimplePropertySetterDispatcher;
+import org.vesalainen.math.sliding.TimeoutStatsService.Handle;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class TimeoutStatsServiceTest
+{
+    private static final double Epsilon = 1e-10;
+    private long time = 1000;
+    private int changes;
+    private double last;
+    
+    public TimeoutStatsServiceTest()
+    {
+    }
+
+    @Test
+    public void testHandle()
+    {
+        SimplePropertySetterDispatcher dispatcher = new SimplePropertySetterDispatcher();
+        TimeoutStatsService service = new TimeoutStatsService(()->time, dispatcher, null);
+        Handle handle = service.getHandle("a");
+        assertEquals("a", handle.getProperty());
+        handle.accept(1);
+        assertEquals(0, changes);
+        TimeoutStatsService.StatsObserver observer = (ts)->
+        {
+            changes++;
+            last = ts.last();
+        };
+        service.addObserver("a:10", observer);
+        handle.accept(2);
+        assertEquals(1, changes);
+        assertEquals(2, last, Epsilon);
+        time++;
+        service.set("a", 3.0);
+        assertEquals(2, changes);
+        assertEquals(3, last, Epsilon);
+        assertSame(handle, service.getDoubleSetter("a"));
+        service.getIntSetter("a").set(4);
+        assertEquals(4, last, Epsilon);
+        service.removeObserver("a:10", observer);
+        handle.accept(5);
+        assertEquals(3, changes);
+        assertSame(handle, service.getHandle("a"));
+    }
+    @Test
+    public void testSubmit()
+    {
+        SimplePropertySetterDispatcher dispatcher = new SimplePropertySetterDispatcher();
+        TimeoutStatsService service = new TimeoutStatsService(()->time, dispatcher, null);
+        DoubleTimeoutSlidingStats[] stats = new DoubleTimeoutSlidingStats[1];
+        service.addObserver("a:10", (ts)->
+        {
+            changes++;
+            stats[0] = (DoubleTimeoutSlidingStats) ts;
+        });
+        service.addObserver("b:10", (ts)->last = ts.last());
+        Handle a = service.getHandle("a");
+        Handle b = service.getHandle("b");
+        service.submit(a, new double[]{0, 1, 2, 3}, 1, 3);
+        assertEquals(1, changes);
+        assertEquals(3, stats[0].count());
+        assertEquals(2, stats[0].fast(), Epsilon);
+        service.submit(new Handle[]{a, b}, new double[]{0, 4, 5}, 1, 2);
+        assertEquals(2, changes);
+        assertEquals(4, stats[0].last(), Epsilon);
+        assertEquals(5, last, Epsilon);
+    }
+    
+}
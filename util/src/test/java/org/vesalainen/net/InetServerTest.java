@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class InetServerTest
+{
+    
+    public InetServerTest()
+    {
+    }
+
+    @Test
+    public void testSelector() throws IOException, InterruptedException
+    {
+        test(12346, 2);
+    }
+
+    @Test
+    public void testBlocking() throws IOException, InterruptedException
+    {
+        test(12347, 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMissingHandle()
+    {
+        new InetServer(12348, InetServer.class, null)
+        {
+            @Override
+            protected InetProtocol createProtocol(InetConnection connection)
+            {
+                return (c, in)->c.write(in);
+            }
+        };
+    }
+
+    private void test(int port, int selectors) throws IOException, InterruptedException
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        EchoServer server = new EchoServer(port, executor, selectors);
+        server.start();
+        server.waitUntilRunning(10, TimeUnit.SECONDS);
+        SocketChannel[] clients = new SocketChannel[20];
+        try
+        {
+            for (int ii=0;ii<clients.length;ii++)
+            {
+                clients[ii] = SocketChannel.open(new InetSocketAddress("localhost", port));
+            }
+            ByteBuffer bb = ByteBuffer.allocate(100);
+            byte[] large = new byte[100000];
+            for (int ii=0;ii<large.length;ii++)
+            {
+                large[ii] = (byte) ii;
+            }
+            for (int round=0;round<3;round++)
+            {
+                for (int ii=0;ii<clients.length;ii++)
+                {
+                    String msg = "hello "+ii+" "+round;
+                    clients[ii].write(ByteBuffer.wrap(msg.getBytes()));
+                    bb.clear();
+                    bb.limit(msg.length());
+                    while (bb.hasRemaining())
+                    {
+                        assertTrue(clients[ii].read(bb) >= 0);
+                    }
+                    assertEquals(msg, new String(bb.array(), 0, bb.position()));
+                }
+            }
+            ByteBuffer src = ByteBuffer.wrap(large);
+            ByteBuffer dst = ByteBuffer.allocate(large.length);
+            while (src.hasRemaining() || dst.hasRemaining())
+            {
+                if (src.hasRemaining())
+                {
+                    clients[0].write(src);
+                }
+                assertTrue(clients[0].read(dst) >= 0);
+            }
+            assertArrayEquals(large, dst.array());
+        }
+        finally
+        {
+            for (SocketChannel sc : clients)
+            {
+                if (sc != null)
+                {
+                    sc.close();
+                }
+            }
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    private static class EchoServer extends InetServer
+    {
+
+        public EchoServer(int port, ExecutorService executor, int selectors)
+        {
+            super(port, EchoServer.class, executor, selectors, 64, 4096);
+        }
+
+        @Override
+        protected void handle(SocketChannel sc) throws IOException
+        {
+            ByteBuffer bb = ByteBuffer.allocate(64);
+            while (sc.read(bb) != -1)
+            {
+                bb.flip();
+                while (bb.hasRemaining())
+                {
+                    sc.write(bb);
+                }
+                bb.clear();
+            }
+        }
+
+        @Override
+        protected InetProtocol createProtocol(InetConnection connection)
+        {
+            return (c, in)->c.write(in);
+        }
+        
+    }
+}
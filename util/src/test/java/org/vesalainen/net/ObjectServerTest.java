@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import org.vesalainen.code.APS;
 import org.vesalainen.io.IO;
 import org.vesalainen.navi.AnchorWatch;
 import org.vesalainen.ui.Plotter;
@@ -83,5 +84,54 @@ public class ObjectServerTest
         }
         os.stop();
     }
+    @Test
+    public void testSnapshot() throws IOException, InterruptedException
+    {
+        int port = 12348;
+        ObjectServer os = new ObjectServer(port);
+        APS aps = new APS();
+        aps.set("string", "föö");
+        aps.set("boolean", true);
+        aps.set("byte", (byte)12);
+        aps.set("char", 'X');
+        aps.set("short", (short)1234);
+        aps.set("long", 123456789L);
+        aps.set("double", 1.23);
+        aps.set("foo", 4.5F);
+        aps.set("bar", -4.5F);
+        aps.set("goo", 999);
+        os.put("aps", aps);
+        os.put("lista", new ArrayList<>());
+        
+        os.start();
+        os.waitUntilRunning();
+        
+        try (ObjectClient oc = ObjectClient.open("localhost", port))
+        {
+            APS aps2 = new APS();
+            assertSame(aps2, oc.update("aps", aps2));
+            assertEquals(aps, aps2);
+            aps.set("double", 3.21);
+            aps.set("string", (Object)null);
+            aps2.set("short", (short)99);
+            oc.update("aps", aps2);
+            assertEquals(3.21, aps2.getDouble("double"), 1e-10);
+            assertNull(aps2.getObject("string"));
+            assertEquals(99, aps2.getShort("short"));   // not changed in server
+            APS aps3 = new APS();
+            oc.update("aps", aps3);
+            assertEquals(aps, aps3);
+            assertNull(oc.update("none", new APS()));
+            try
+            {
+                oc.update("lista", new APS());
+                fail();
+            }
+            catch (IOException ex)
+            {
+            }
+        }
+        os.stop();
+    }
     
 }
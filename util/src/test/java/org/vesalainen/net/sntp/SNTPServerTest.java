@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.net.sntp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Clock;
+import java.time.Instant;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.vesalainen.net.sntp.NtpV4Packet.Mode.*;
+import static org.vesalainen.net.sntp.ReferenceClock.*;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class SNTPServerTest
+{
+    private static final int COUNT = 100;
+    
+    public SNTPServerTest()
+    {
+    }
+
+    @Test
+    public void testHighRate() throws IOException, InterruptedException
+    {
+        int port = 12349;
+        CachedScheduledThreadPool executor = new CachedScheduledThreadPool();
+        SNTPServer server = new SNTPServer(6, 0, GPS, Clock.systemUTC(), executor);
+        server.setPort(port);
+        server.setReceivers(2);
+        server.start();
+        Thread.sleep(500);
+        try (DatagramChannel ch = DatagramChannel.open())
+        {
+            ch.connect(new InetSocketAddress("localhost", port));
+            NtpV4Packet request = new NtpV4Packet();
+            NtpV4Packet response = new NtpV4Packet(ByteBuffer.allocate(48));
+            for (int ii=0;ii<COUNT;ii++)
+            {
+                request.setMode(CLIENT);
+                request.setStratum(2);
+                request.setPoll(6);
+                request.setTransmitInstant(Instant.now());
+                long transmit = request.getTransmitTime();
+                ByteBuffer bb = request.getBuffer();
+                bb.clear();
+                ch.write(bb);
+                ByteBuffer rb = response.getBuffer();
+                rb.clear();
+                ch.read(rb);
+                assertEquals(48, rb.position());
+                assertEquals(SERVER, response.getMode());
+                assertEquals(4, response.getVersion());
+                assertEquals(1, response.getStratum());
+                assertEquals(6, response.getPoll());
+                assertEquals("GPS", response.getReferenceIdString());
+                assertEquals(transmit, response.getOriginateTime());
+                Instant now = Instant.now();
+                assertTrue(Math.abs(response.getReceiveInstant().until(now, MILLIS)) < 1000);
+                assertTrue(response.getReceiveTime() <= response.getTransmitTime());
+            }
+        }
+        try
+        {
+            assertEquals(COUNT, server.getRequests());
+            long sum = 0;
+            for (int ii=0;ii<10 && sum < COUNT;ii++)
+            {
+                Thread.sleep(10);
+                sum = 0;
+                for (long l : server.getLatencyHistogram())
+                {
+                    sum += l;
+                }
+            }
+            assertEquals(COUNT, sum);
+        }
+        finally
+        {
+            server.stop();
+            executor.shutdownNow();
+        }
+    }
+    
+}
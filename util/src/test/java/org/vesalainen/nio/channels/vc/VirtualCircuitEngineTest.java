@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nio.channels.vc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class VirtualCircuitEngineTest
+{
+    private static final int CIRCUITS = 10;
+    private static final int SIZE = 100000;
+    
+    public VirtualCircuitEngineTest()
+    {
+    }
+
+    @Test
+    public void testSelectable() throws Exception
+    {
+        test(false);
+    }
+
+    @Test
+    public void testBlocking() throws Exception
+    {
+        test(true);
+    }
+
+    @Test
+    public void testFileSource() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        VirtualCircuitEngine engine = new VirtualCircuitEngine(4096, executor);
+        Path path = Files.createTempFile("vc", ".dat");
+        try
+        {
+            byte[] exp = new byte[SIZE];
+            new Random(98765).nextBytes(exp);
+            Files.write(path, exp);
+            SocketChannel[] p = pair(executor);
+            try (FileChannel fc = FileChannel.open(path, READ))
+            {
+                PooledVirtualCircuit vc = engine.create(fc, p[1]);
+                vc.start();
+                ByteBuffer dst = ByteBuffer.allocate(SIZE+1);
+                while (p[0].read(dst) != -1)
+                {
+                }
+                assertEquals(SIZE, dst.position());
+                assertArrayEquals(exp, Arrays.copyOf(dst.array(), SIZE));
+                vc.waitForFinish();
+                assertEquals(SIZE, vc.getUpBytes());
+            }
+            p[0].close();
+        }
+        finally
+        {
+            engine.close();
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testFileSink() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        VirtualCircuitEngine engine = new VirtualCircuitEngine(4096, executor);
+        Path path = Files.createTempFile("vc", ".dat");
+        try
+        {
+            byte[] exp = new byte[SIZE];
+            new Random(98765).nextBytes(exp);
+            SocketChannel[] p = pair(executor);
+            try (FileChannel fc = FileChannel.open(path, WRITE))
+            {
+                PooledVirtualCircuit vc = engine.create(p[1], fc);
+                vc.start();
+                ByteBuffer src = ByteBuffer.wrap(exp);
+                while (src.hasRemaining())
+                {
+                    p[0].write(src);
+                }
+                p[0].close();
+                vc.waitForFinish();
+                assertEquals(SIZE, vc.getUpBytes());
+            }
+            assertArrayEquals(exp, Files.readAllBytes(path));
+        }
+        finally
+        {
+            engine.close();
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void test(boolean blocking) throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        VirtualCircuitEngine engine = new VirtualCircuitEngine(4096, executor);
+        SocketChannel[] clients = new SocketChannel[CIRCUITS];
+        SocketChannel[] echoes = new SocketChannel[CIRCUITS];
+        PooledVirtualCircuit[] circuits = new PooledVirtualCircuit[CIRCUITS];
+        try
+        {
+            for (int ii=0;ii<CIRCUITS;ii++)
+            {
+                SocketChannel[] p1 = pair(executor);
+                SocketChannel[] p2 = pair(executor);
+                clients[ii] = p1[0];
+                echoes[ii] = p2[1];
+                executor.submit(new Echo(p2[1]));
+                ByteChannel ch2 = blocking ? new Blocking(p2[0]) : p2[0];
+                circuits[ii] = engine.create(p1[1], ch2);
+                circuits[ii].start();
+            }
+            assertEquals(CIRCUITS, engine.getCircuitCount());
+            byte[] exp = new byte[SIZE];
+            Random random = new Random(98765);
+            random.nextBytes(exp);
+            for (int ii=0;ii<CIRCUITS;ii++)
+            {
+                ByteBuffer src = ByteBuffer.wrap(exp);
+                ByteBuffer dst = ByteBuffer.allocate(SIZE);
+                while (dst.hasRemaining())
+                {
+                    if (src.hasRemaining())
+                    {
+                        clients[ii].write(src);
+                    }
+                    assertTrue(clients[ii].read(dst) >= 0);
+                }
+                assertArrayEquals(exp, dst.array());
+            }
+            for (int ii=0;ii<CIRCUITS;ii++)
+            {
+                clients[ii].close();
+                circuits[ii].waitForFinish();
+                assertEquals(SIZE, circuits[ii].getUpBytes());
+                assertEquals(SIZE, circuits[ii].getDownBytes());
+                assertTrue(circuits[ii].getUpMaxLatency() >= circuits[ii].getUpAverageLatency());
+                echoes[ii].close();
+            }
+            assertEquals(0, engine.getCircuitCount());
+            assertTrue(engine.getPooledBuffers() > 0);
+        }
+        finally
+        {
+            engine.close();
+            executor.shutdownNow();
+        }
+    }
+
+    private SocketChannel[] pair(ExecutorService executor) throws IOException, InterruptedException, ExecutionException
+    {
+        SocketAcceptor sa = new SocketAcceptor();
+        Future<SocketChannel> f = executor.submit(sa);
+        SocketChannel sc = SocketChannel.open(new InetSocketAddress("localhost", sa.getPort()));
+        return new SocketChannel[] {sc, f.get()};
+    }
+    /**
+     * Hides SelectableChannel
+     */
+    private static class Blocking implements ByteChannel
+    {
+        private final ByteChannel channel;
+
+        public Blocking(ByteChannel channel)
+        {
+            this.channel = channel;
+        }
+        
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
@@ -42,7 +42,58 @@ public class AbstractFunctionQueueTest
             q.run();
         }
     }
+    @Test
+    public void testSPSC() throws InterruptedException
+    {
+        int count = 100000;
+        int[] expected = new int[1];
+        Q q = new Q((byte b, char c, short s, int i, long l, float f, double d)->
+        {
+            assertEquals(expected[0], i);
+            assertEquals(-i, l);
+            assertEquals(i, d, 1e-10);
+            f(b, c, s, 4, 5, f, 7);
+            expected[0]++;
+        }, 60, true);
+        assertTrue(q.isSingleProducerConsumer());
+        Thread producer = new Thread(()->
+        {
+            for (int ii=0;ii<count;ii++)
+            {
+                q.accept((byte)1, (char)2, (short)3, ii, -ii, 6F, ii);
+            }
+        });
+        producer.start();
+        for (int ii=0;ii<count;ii++)
+        {
+            q.run();
+        }
+        producer.join();
+        assertEquals(count, expected[0]);
+        assertEquals(0, q.getQueueLength());
+    }
  
+    @Test
+    public void testSize()
+    {
+        new Q(this::f, 1, true);
+        try
+        {
+            new Q(this::f, 0, true);
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+        try
+        {
+            new Q(this::f, -1);
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+        }
+    }
     private void f(byte b, char c, short s, int i, long l, float f, double d)
     {
         assertEquals(1, b);
@@ -69,6 +120,12 @@ public class AbstractFunctionQueueTest
             this.forwarder = forwarder;
         }
 
+        public Q(Itf forwarder, int size, boolean spsc)
+        {
+            super(size, spsc, spsc);
+            this.forwarder = forwarder;
+        }
+
         @Override
         public void accept(byte b, char c, short s, int i, long l, float f, double d)
         {
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CopyOnWriteIntMapTest
+{
+
+    public CopyOnWriteIntMapTest()
+    {
+    }
+
+    @Test
+    public void test1()
+    {
+        CopyOnWriteIntMap<String> m = new CopyOnWriteIntMap<>();
+        assertTrue(m.isEmpty());
+        assertNull(m.get(0));
+        assertNull(m.put(0, "zero"));
+        assertNull(m.put(-1, "minus"));
+        assertNull(m.put(0x98f00123, "eff"));
+        assertEquals("zero", m.put(0, "nolla"));
+        assertEquals(3, m.size());
+        assertEquals("nolla", m.get(0));
+        assertEquals("minus", m.get(-1));
+        assertEquals("eff", m.get(0x98f00123));
+        assertTrue(m.containsKey(-1));
+        assertEquals("minus", m.remove(-1));
+        assertFalse(m.containsKey(-1));
+        assertNull(m.remove(-1));
+        assertEquals(2, m.size());
+        m.clear();
+        assertTrue(m.isEmpty());
+    }
+    @Test
+    public void testGrow()
+    {
+        CopyOnWriteIntMap<Integer> m = new CopyOnWriteIntMap<>();
+        Map<Integer,Integer> exp = new HashMap<>();
+        for (int ii=0;ii<1000;ii++)
+        {
+            int k = ii*4096+7;
+            m.put(k, ii);
+            exp.put(k, ii);
+        }
+        assertEquals(exp.size(), m.size());
+        exp.forEach((k,v)->assertEquals(v, m.get(k)));
+        Map<Integer,Integer> act = new HashMap<>();
+        m.forEach((v,k)->act.put(k, v));
+        assertEquals(exp, act);
+    }
+    @Test
+    public void testComputeIfAbsent() throws InterruptedException
+    {
+        CopyOnWriteIntMap<String> m = new CopyOnWriteIntMap<>();
+        AtomicInteger count = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int ii=0;ii<threads.length;ii++)
+        {
+            threads[ii] = new Thread(()->
+            {
+                for (int jj=0;jj<100;jj++)
+                {
+                    String s = m.computeIfAbsent(jj, (k)->
+                    {
+                        count.incrementAndGet();
+                        return "v"+k;
+                    });
+                    assertEquals("v"+jj, s);
+                }
+            });
+            threads[ii].start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertEquals(100, count.get());
+        assertEquals(100, m.size());
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.util.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import static java.util.logging.Level.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.util.logging.AsyncChannelHandler.OverflowPolicy;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AsyncChannelHandlerTest
+{
+    
+    public AsyncChannelHandlerTest()
+    {
+    }
+
+    @Test
+    public void testFormat()
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AsyncChannelHandler handler = new AsyncChannelHandler(Channels.newChannel(baos));
+        handler.setLevel(Level.ALL);
+        handler.log(INFO, "a=%d b=%x 100%%", 123, 255);
+        handler.log(FINE, "pi=%.2f", Math.PI);
+        handler.log(WARNING, "%s/%s", 1.5, 2.5);
+        handler.publish(SEVERE, null, "%s %d %5d", new Object[]{"foo", 42, 7});
+        handler.log(CONFIG, "missing %d");
+        handler.setLevel(INFO);
+        handler.log(FINE, "filtered");
+        handler.flush();
+        String log = baos.toString();
+        String[] lines = log.split("\r\n");
+        assertEquals(log, 5, lines.length);
+        assertTrue(lines[0], lines[0].matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3} IN \\d+ a=123 b=ff 100%"));
+        assertTrue(lines[1], lines[1].endsWith(" F1 "+Thread.currentThread().getId()+" pi=3.14"));
+        assertTrue(lines[2], lines[2].endsWith(" WA "+Thread.currentThread().getId()+" 1.5/2.5"));
+        assertTrue(lines[3], lines[3].endsWith(" foo 42     7"));
+        assertTrue(lines[4], lines[4].contains(" CO ") && lines[4].contains("missing %d"));
+        assertEquals(5, handler.getWritten());
+        assertEquals(log.length(), handler.getBytes());
+        handler.close();
+    }
+
+    @Test
+    public void testJavaLogging() throws IOException
+    {
+        Path path = Files.createTempFile("async", ".log");
+        try (FileChannel ch = FileChannel.open(path, WRITE))
+        {
+            AsyncChannelHandler handler = new AsyncChannelHandler(ch, 64, OverflowPolicy.BLOCK, 2, 64);
+            JavaLogging log = new JavaLogging(AsyncChannelHandlerTest.class);
+            log.getLogger().setLevel(Level.FINE);
+            log.setAsyncHandler(handler);
+            for (int ii=0;ii<1000;ii++)
+            {
+                log.fine("line %d of %s", ii, "test");
+            }
+            log.log(SEVERE, new IOException("test"), "failed %d", 1);
+            log.finer("not logged");
+            handler.close();
+            assertEquals(0, handler.getDrops());
+            assertEquals(1001, handler.getWritten());
+            assertTrue(handler.getWrites() < handler.getWritten());
+            String text = new String(Files.readAllBytes(path));
+            assertTrue(text.contains(" F1 "+Thread.currentThread().getId()+" line 999 of test\r\n"));
+            assertTrue(text.contains(" SE "+Thread.currentThread().getId()+" failed 1\r\njava.io.IOException: test"));
+            assertFalse(text.contains("not logged"));
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testFormatFailure()
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AsyncChannelHandler handler = new AsyncChannelHandler(Channels.newChannel(baos), 4, OverflowPolicy.BLOCK, 1, 64);
+        handler.setErrorManager(new ErrorManager()
+        {
+            @Override
+            public synchronized void error(String msg, Exception ex, int code)
+            {
+            }
+        });
+        Object bad = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new IllegalStateException("bad");
+            }
+        };
+        handler.publish(INFO, null, "%s", new Object[]{bad});
+        for (int ii=0;ii<10;ii++)
+        {
+            handler.log(INFO, "ok %d", ii);
+        }
+        handler.flush();
+        String log = baos.toString();
+        assertTrue(log, log.contains(" ok 9\r\n"));
+        assertEquals(10, handler.getWritten());
+        handler.close();
+    }
+
+    @Test
+    public void testDrop() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        Stalled stalled = new Stalled(latch);
+        AsyncChannelHandler handler = new AsyncChannelHandler(stalled, 4, OverflowPolicy.DROP, 1, 16);
+        for (int ii=0;ii<100;ii++)
+        {
+            handler.log(SEVERE, "%d", ii);
+        }
+        assertTrue(handler.getDrops() > 0);
+        latch.countDown();
+        handler.close();
+        assertEquals(100, handler.getDrops()+handler.getWritten());
+    }
+
+    private static class Stalled implements WritableByteChannel
+    {
+        private final CountDownLatch latch;
+
+        public Stalled(CountDownLatch latch)
+        {
+            this.latch = latch;
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            try
+            {
+                latch.await();
+            }
+            catch (InterruptedException ex)
+            {
+                throw new IOException(ex);
+            }
+            int rem = src.remaining();
+            src.position(src.limit());
+            return rem;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+    }
+}